@@ -23,8 +23,6 @@
  */
 package com.mastfrog.acteur.bunyan;
 
-import com.google.common.cache.Cache;
-import com.google.common.cache.CacheBuilder;
 import com.google.inject.AbstractModule;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
@@ -41,15 +39,19 @@ import com.mastfrog.acteur.util.ErrorInterceptor;
 import com.mastfrog.acteur.util.RequestID;
 import com.mastfrog.acteurbase.ActeurState;
 import com.mastfrog.bunyan.Log;
+import com.mastfrog.bunyan.LogSink;
 import com.mastfrog.bunyan.Logger;
+import com.mastfrog.bunyan.Loggers;
 import com.mastfrog.bunyan.LoggingConfig;
 import com.mastfrog.bunyan.LoggingModule;
+import com.mastfrog.bunyan.type.Trace;
 import com.mastfrog.jackson.JacksonConfigurer;
-import com.mastfrog.util.preconditions.Exceptions;
 import static com.mastfrog.util.collections.CollectionUtils.map;
 import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.util.Attribute;
+import io.netty.util.AttributeKey;
+import java.util.Collections;
 import java.util.Map;
-import java.util.concurrent.ExecutionException;
 
 /**
  *
@@ -98,6 +100,8 @@ public class ActeurBunyanModule extends AbstractModule {
     }
 
     private boolean includeBody;
+    private boolean useByteBufLogSink;
+    private boolean offloadEventLoopLogging;
 
     public ActeurBunyanModule useProbe(boolean includeBody) {
         this.useProbe = true;
@@ -105,6 +109,45 @@ public class ActeurBunyanModule extends AbstractModule {
         return this;
     }
 
+    /**
+     * Render log records into pooled direct ByteBufs and write them from
+     * there, rather than through the default LogSink and LogWriter.
+     *
+     * @see ByteBufLogSink
+     * @return this
+     */
+    public ActeurBunyanModule useByteBufLogSink() {
+        checkLaunched();
+        this.useByteBufLogSink = true;
+        return this;
+    }
+
+    /**
+     * Assemble, serialize and write log records closed on Netty event loop
+     * threads on a worker thread instead.
+     *
+     * @see EventLoopLogSink
+     * @return this
+     */
+    public ActeurBunyanModule offloadEventLoopLogging() {
+        checkLaunched();
+        this.offloadEventLoopLogging = true;
+        return this;
+    }
+
+    /**
+     * Bind LogSink to MultiLogSink, so that MultiLogSink.Sinks bound as eager
+     * singletons receive log records.
+     *
+     * @see MultiLogSink
+     * @return this
+     */
+    public ActeurBunyanModule bindMultiLogSink() {
+        checkLaunched();
+        loggingModule.bindMultiLogSink();
+        return this;
+    }
+
     void checkLaunched() {
         if (launched) {
             throw new IllegalStateException("Cannot configure after the injector has been created");
@@ -120,6 +163,17 @@ public class ActeurBunyanModule extends AbstractModule {
             bindLogger("probe");
         }
         launched = true;
+        Class<? extends LogSink> sinkType = useByteBufLogSink ? ByteBufLogSink.class : null;
+        if (offloadEventLoopLogging) {
+            bind(LogSink.class).annotatedWith(Names.named(EventLoopLogSink.GUICE_BINDING_DELEGATE))
+                    .to(sinkType == null ? LoggingModule.DEFAULT_LOG_SINK : sinkType);
+            sinkType = EventLoopLogSink.class;
+        }
+        if (sinkType != null) {
+            // Through MultiLogSink, so MultiLogSink.Sinks still receive
+            // records and LogSink is only bound once
+            loggingModule.bindMultiLogSink(sinkType);
+        }
         install(loggingModule);
         if (bindErrorInterceptor && !Boolean.getBoolean("unit.test")) {
             bind(ErrorInterceptor.class).to(ErrorH.class);
@@ -136,31 +190,37 @@ public class ActeurBunyanModule extends AbstractModule {
 
     static class ProbeLogger extends HttpProbe {
 
+        static final AttributeKey<ProbeContext> PROBE_CONTEXT
+                = AttributeKey.valueOf(ProbeLogger.class, "probeContext");
         private final Logger logger;
-        private final Cache<RequestID, Logger> kids = CacheBuilder.newBuilder().weakKeys().build();
+        private final Trace trace;
         private final boolean bodies;
 
         @Inject
-        ProbeLogger(@Named("probe") Logger logger, @Named("_probeBody") boolean bodies) {
+        ProbeLogger(@Named("probe") Logger logger, @Named("_probeBody") boolean bodies, Loggers loggers) {
             this.logger = logger;
+            this.trace = loggers.trace;
             this.bodies = bodies;
         }
 
-        private Logger childLogger(RequestID id, HttpEvent evt) {
-            try {
-                Logger l = kids.get(id, () -> {
-                    return logger.child(
-                            map("rid").to(id.stringValue())
-                                    .map("path").to(evt.path())
-                                    .map("early").to(evt.isPreContent())
-                                    .map("method").to(evt.method().name())
-                                    .build());
-                });
-                return l;
-            } catch (ExecutionException ex) {
-                Exceptions.printStackTrace(ex);
-                return logger;
+        /**
+         * Get the context for a request, creating it on the first callback
+         * for that request. It lives in an attribute of the request's
+         * channel, so finding it again costs no more than an attribute
+         * lookup, and it is cleared when the response is sent.
+         */
+        private ProbeContext context(RequestID id, HttpEvent evt) {
+            Attribute<ProbeContext> attr = evt.channel().attr(PROBE_CONTEXT);
+            ProbeContext result = attr.get();
+            if (result == null || result.id != id) {
+                result = new ProbeContext(id, evt);
+                attr.set(result);
             }
+            return result;
+        }
+
+        private Log<Trace> trace(RequestID id, HttpEvent evt, String msg) {
+            return logger.trace(msg).add(context(id, evt).fields);
         }
 
         @Override
@@ -170,31 +230,65 @@ public class ActeurBunyanModule extends AbstractModule {
 
         @Override
         protected void onBeforeSendResponse(RequestID id, HttpEvent httpEvent, Acteur acteur, HttpResponseStatus status, boolean hasListener, Object message) {
-            childLogger(id, httpEvent).trace("onBeforeSendResponse").add("acteur", acteur.getClass().getName())
-                    .add("status", status).add("listener", hasListener).add("message", bodies ? message : "-").close();
+            if (trace.isEnabled()) {
+                trace(id, httpEvent, "onBeforeSendResponse").add("acteur", acteur.getClass().getName())
+                        .add("status", status).add("listener", hasListener).add("message", bodies ? message : "-").close();
+            }
+            Attribute<ProbeContext> attr = httpEvent.channel().attr(PROBE_CONTEXT);
+            ProbeContext ctx = attr.get();
+            if (ctx != null && ctx.id == id) {
+                attr.set(null);
+            }
         }
 
         @Override
         protected void onFallthrough(RequestID id, HttpEvent evt) {
-            childLogger(id, evt).trace("onFallthrough");
+            if (trace.isEnabled()) {
+                trace(id, evt, "onFallthrough").close();
+            }
         }
 
         @Override
         protected void onActeurWasRun(RequestID id, HttpEvent evt, Page page, Acteur acteur, ActeurState state) {
-            Map<String, Object> stateInfo = state == null ? null : map("finished").to(state.isFinished())
-                    .map("type").to(state.getClass().getName()).build();
-            childLogger(id, evt).trace("onActeurWasRun").add("page", page.getClass().getName())
-                    .add("acteur", acteur.getClass().getName()).add("state", stateInfo).close();
+            if (trace.isEnabled()) {
+                Map<String, Object> stateInfo = state == null ? null : map("finished").to(state.isFinished())
+                        .map("type").to(state.getClass().getName()).build();
+                trace(id, evt, "onActeurWasRun").add("page", page.getClass().getName())
+                        .add("acteur", acteur.getClass().getName()).add("state", stateInfo).close();
+            }
         }
 
         @Override
         protected void onBeforeRunPage(RequestID id, HttpEvent evt, Page page) {
-            childLogger(id, evt).trace("onBeforeRunPage").add("page", page.getClass().getSimpleName()).close();
+            if (trace.isEnabled()) {
+                trace(id, evt, "onBeforeRunPage").add("page", page.getClass().getSimpleName()).close();
+            }
         }
 
         @Override
         protected void onBeforeProcessRequest(RequestID id, HttpEvent req) {
-            childLogger(id, req).trace("onBeforeProcessRequest");
+            if (trace.isEnabled()) {
+                trace(id, req, "onBeforeProcessRequest").close();
+            }
+        }
+    }
+
+    /**
+     * The properties every probe record for one request shares, computed once
+     * when the first probe callback for that request arrives.
+     */
+    static final class ProbeContext {
+
+        final RequestID id;
+        final Map<String, Object> fields;
+
+        ProbeContext(RequestID id, HttpEvent evt) {
+            this.id = id;
+            this.fields = Collections.unmodifiableMap(map("rid").to(id.stringValue())
+                    .map("path").to(evt.path())
+                    .map("early").to(evt.isPreContent())
+                    .map("method").to(evt.method().name())
+                    .build());
         }
     }
 
@@ -228,14 +322,14 @@ public class ActeurBunyanModule extends AbstractModule {
     public static class JsonRequestLogger implements RequestLogger {
 
         private final Logger logger;
-        private final String level;
+        private final RequestLogShape shape;
         private final RequestLogRecordDecorator decorator;
 
         @Inject
         JsonRequestLogger(@Named(ACCESS_LOGGER) Logger logger, @Named(GUICE_BINDING_REQUEST_LOGGER_LEVEL) String level,
                 RequestLogRecordDecorator decorator) {
             this.logger = logger;
-            this.level = level.intern();
+            this.shape = new RequestLogShape(level);
             this.decorator = decorator;
         }
 
@@ -246,34 +340,9 @@ public class ActeurBunyanModule extends AbstractModule {
 
         @Override
         public void onRespond(RequestID rid, Event<?> event, HttpResponseStatus status) {
-            Log<?> log;
-            switch (level) {
-                case LoggingConfig.LEVEL_DEBUG:
-                    log = logger.debug("request", event);
-                    break;
-                case LoggingConfig.LEVEL_ERROR:
-                    log = logger.error("request", event);
-                    break;
-                case LoggingConfig.LEVEL_FATAL:
-                    log = logger.fatal("request", event);
-                    break;
-                case LoggingConfig.LEVEL_INFO:
-                    log = logger.info("request", event);
-                    break;
-                case LoggingConfig.LEVEL_WARNING:
-                    log = logger.warn("request", event);
-                    break;
-                case LoggingConfig.LEVEL_TRACE:
-                    log = logger.trace("request");
-                    break;
-                default:
-                    throw new AssertionError(level);
-            }
+            Log<?> log = shape.open(logger, event);
             decorator.decorate(log, event, status, rid);
-            log.add("id", rid.stringValue())
-                    .add("dur", rid.getDuration().toMillis())
-                    .add("status", status.code())
-                    .close();
+            shape.close(log, rid, status);
         }
     }
 
@@ -3,6 +3,7 @@ package com.mastfrog.acteur.bunyan;
 import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.core.Version;
 import com.fasterxml.jackson.databind.DeserializationContext;
 import com.fasterxml.jackson.databind.JsonDeserializer;
@@ -12,21 +13,20 @@ import com.fasterxml.jackson.databind.SerializerProvider;
 import com.fasterxml.jackson.databind.module.SimpleModule;
 import com.mastfrog.acteur.Event;
 import com.mastfrog.acteur.HttpEvent;
-import com.mastfrog.acteur.headers.Headers;
 import com.mastfrog.acteur.util.RequestID;
 import com.mastfrog.jackson.JacksonConfigurer;
 import com.mastfrog.url.Path;
 import com.mastfrog.url.URL;
-import com.mastfrog.util.strings.Strings;
 import com.mastfrog.util.time.TimeUtil;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.handler.codec.http.HttpRequest;
 import io.netty.handler.codec.http.HttpResponseStatus;
 import io.netty.handler.codec.http.websocketx.WebSocketFrame;
 import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.net.SocketAddress;
 import java.time.ZonedDateTime;
-import java.util.Map;
-import java.util.regex.Pattern;
 
 public class BunyanJacksonConfig implements JacksonConfigurer {
 
@@ -123,16 +123,31 @@ public class BunyanJacksonConfig implements JacksonConfigurer {
             return ZonedDateTime.class;
         }
 
-        private static final Pattern NUMBERS = Pattern.compile("^\\d+$");
-
         @Override
         public ZonedDateTime deserialize(JsonParser jp, DeserializationContext dc) throws IOException, JsonProcessingException {
-            String string = jp.readValueAs(String.class);
-            if (NUMBERS.matcher(string).matches()) {
+            if (jp.currentToken() == JsonToken.VALUE_NUMBER_INT) {
+                return TimeUtil.fromUnixTimestamp(jp.getLongValue());
+            }
+            String string = jp.getValueAsString();
+            if (string != null && isDigits(string)) {
                 return TimeUtil.fromUnixTimestamp(Long.parseLong(string));
             }
             return TimeUtil.fromIsoFormat(string);
         }
+
+        private static boolean isDigits(String string) {
+            int length = string.length();
+            if (length == 0) {
+                return false;
+            }
+            for (int i = 0; i < length; i++) {
+                char c = string.charAt(i);
+                if (c < '0' || c > '9') {
+                    return false;
+                }
+            }
+            return true;
+        }
     }
 
     private static final class SocketAddressSerializer extends JsonSerializer<SocketAddress> {
@@ -203,7 +218,15 @@ public class BunyanJacksonConfig implements JacksonConfigurer {
         }
     }
 
-    private static final class HttpEventSerializer extends JsonSerializer<HttpEvent> {
+    /**
+     * Serializes the request line and a few headers of an HttpEvent. Request
+     * logs are the most frequent records written, so this reads the query
+     * parameters straight out of the request URI rather than building a
+     * parameter map, and looks each header up only once. The path comes from
+     * the event, so it is relative to the application's base path and
+     * normalized the same way routing sees it.
+     */
+    static final class HttpEventSerializer extends JsonSerializer<HttpEvent> {
 
         @Override
         public Class<HttpEvent> handledType() {
@@ -212,6 +235,8 @@ public class BunyanJacksonConfig implements JacksonConfigurer {
 
         @Override
         public void serialize(HttpEvent t, JsonGenerator jg, SerializerProvider sp) throws IOException, JsonProcessingException {
+            HttpRequest req = t.request();
+            String uri = req.uri();
             jg.writeStartObject();
             jg.writeFieldName("path");
             jg.writeString(t.path().toString());
@@ -223,27 +248,28 @@ public class BunyanJacksonConfig implements JacksonConfigurer {
                 socketSer.serialize(addr, jg, sp);
             }
             jg.writeFieldName("method");
-            jg.writeString(t.method().name());
+            jg.writeString(req.method().name());
 
-            if (Strings.contains('?', t.request().uri())) {
+            int queryStart = QueryStrings.queryStart(uri);
+            if (queryStart >= 0) {
                 jg.writeFieldName("params");
-                jg.writeStartObject();
-                for (Map.Entry<String, String> e : t.urlParametersAsMap().entrySet()) {
-                    jg.writeFieldName(e.getKey());
-                    jg.writeString(e.getValue());
-                }
-                jg.writeEndObject();
+                QueryStrings.writeParameters(uri, queryStart, jg);
             }
-            if (t.header(Headers.REFERRER) != null) {
+            HttpHeaders headers = req.headers();
+            CharSequence referrer = headers.get(HttpHeaderNames.REFERER);
+            if (referrer != null) {
                 jg.writeFieldName("referrer");
-                jg.writeString(t.header(Headers.REFERRER).toString());
+                QueryStrings.writeCharSequence(referrer, jg);
             }
-            if (t.header(Headers.HOST) != null) {
-                jg.writeStringField("host", t.header(Headers.HOST).toString());
+            CharSequence host = headers.get(HttpHeaderNames.HOST);
+            if (host != null) {
+                jg.writeFieldName("host");
+                QueryStrings.writeCharSequence(host, jg);
             }
-            if (t.header(Headers.USER_AGENT) != null) {
+            CharSequence agent = headers.get(HttpHeaderNames.USER_AGENT);
+            if (agent != null) {
                 jg.writeFieldName("agent");
-                jg.writeString(t.header(Headers.USER_AGENT) + "");
+                QueryStrings.writeCharSequence(agent, jg);
             }
             jg.writeEndObject();
         }
@@ -0,0 +1,314 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 Tim Boudreau.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.acteur.bunyan;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.google.inject.name.Named;
+import com.mastfrog.bunyan.LogSink;
+import com.mastfrog.bunyan.LoggingModule;
+import static com.mastfrog.bunyan.LoggingModule.SETTINGS_KEY_ASYNC_LOGGING;
+import static com.mastfrog.bunyan.LoggingModule.SETTINGS_KEY_LOG_FILE;
+import static com.mastfrog.bunyan.LoggingModule.SETTINGS_KEY_LOG_FILE_GZIPPED;
+import static com.mastfrog.bunyan.LoggingModule.SETTINGS_KEY_LOG_TO_CONSOLE;
+import com.mastfrog.bunyan.type.LogLevel;
+import com.mastfrog.giulius.ShutdownHookRegistry;
+import com.mastfrog.settings.Settings;
+import com.mastfrog.util.preconditions.ConfigurationError;
+import com.mastfrog.util.thread.AtomicLinkedQueue;
+import com.mastfrog.util.thread.OneThreadLatch;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufOutputStream;
+import io.netty.buffer.PooledByteBufAllocator;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+
+/**
+ * LogSink which renders log records into direct buffers from Netty's pooled
+ * allocator, and writes them to the log file and/or stdout from there, so
+ * threads which log - typically event loop threads logging requests - draw
+ * on the same pooled memory the server already uses, rather than producing a
+ * byte array or string per record. Reads the same settings as the default
+ * LogWriter (<code>log.file</code>, <code>log.console</code> and
+ * <code>log.async</code>), except that gzip output is not supported.
+ * <p>
+ * In async mode, at most <code>log.bytebuf.max.queued</code> buffers
+ * (default {@link #DEFAULT_MAX_QUEUED}) wait to be written; if the disk falls
+ * behind far enough to fill that, the thread logging writes out the queue
+ * and its own record itself, so a slow disk slows logging down rather than
+ * draining the server's pool of direct memory. The number of records written
+ * that way is available from <code>callerWrites()</code>.
+ * <p>
+ * To use, call <code>useByteBufLogSink()</code> on ActeurBunyanModule.
+ *
+ * @author Tim Boudreau
+ */
+@Singleton
+public final class ByteBufLogSink implements LogSink {
+
+    /**
+     * Settings key for the maximum number of records waiting to be written
+     * in async mode.
+     */
+    public static final String SETTINGS_KEY_MAX_QUEUED = "log.bytebuf.max.queued";
+    public static final int DEFAULT_MAX_QUEUED = 8192;
+    private static final int INITIAL_BUFFER_SIZE = 512;
+    private final ObjectMapper mapper;
+    private final ByteBufAllocator alloc;
+    private final WritableByteChannel[] channels;
+    private final AtomicLinkedQueue<ByteBuf> queue;
+    private final Runner runner;
+    private final int maxQueued;
+    private final AtomicInteger queued = new AtomicInteger();
+    private final LongAdder callerWrites = new LongAdder();
+
+    @Inject
+    ByteBufLogSink(@Named(LoggingModule.GUICE_BINDING_OBJECT_MAPPER) ObjectMapper mapper, Settings settings,
+            ShutdownHookRegistry reg) throws IOException {
+        this(mapper, PooledByteBufAllocator.DEFAULT, channels(settings), settings.getBoolean(SETTINGS_KEY_ASYNC_LOGGING, true),
+                settings.getInt(SETTINGS_KEY_MAX_QUEUED, DEFAULT_MAX_QUEUED), reg);
+    }
+
+    ByteBufLogSink(ObjectMapper mapper, ByteBufAllocator alloc, WritableByteChannel[] channels, boolean async,
+            int maxQueued, ShutdownHookRegistry reg) {
+        if (maxQueued <= 0) {
+            throw new ConfigurationError(SETTINGS_KEY_MAX_QUEUED + " must be positive: " + maxQueued);
+        }
+        this.mapper = mapper;
+        this.alloc = alloc;
+        this.channels = channels;
+        this.maxQueued = maxQueued;
+        if (async) {
+            queue = new AtomicLinkedQueue<>();
+            OneThreadLatch latch = new OneThreadLatch();
+            ExecutorService exe = Executors.newSingleThreadExecutor();
+            exe.submit(runner = new Runner(latch));
+            queue.onAdd(latch);
+            reg.add((Runnable) () -> {
+                runner.stop();
+                exe.shutdown();
+                close();
+            });
+        } else {
+            queue = null;
+            runner = null;
+            reg.add((Runnable) this::close);
+        }
+    }
+
+    private static WritableByteChannel[] channels(Settings settings) throws IOException {
+        if (settings.getBoolean(SETTINGS_KEY_LOG_FILE_GZIPPED, false)) {
+            throw new ConfigurationError(ByteBufLogSink.class.getSimpleName()
+                    + " cannot write gzipped logs - unset " + SETTINGS_KEY_LOG_FILE_GZIPPED
+                    + " or do not use it");
+        }
+        String file = settings.getString(SETTINGS_KEY_LOG_FILE);
+        WritableByteChannel stdout = new FileOutputStream(FileDescriptor.out).getChannel();
+        if (file == null) {
+            return new WritableByteChannel[]{stdout};
+        }
+        FileChannel fileChannel = FileChannel.open(Paths.get(file), StandardOpenOption.CREATE,
+                StandardOpenOption.APPEND, StandardOpenOption.WRITE);
+        if (settings.getBoolean(SETTINGS_KEY_LOG_TO_CONSOLE, false)) {
+            return new WritableByteChannel[]{fileChannel, stdout};
+        }
+        return new WritableByteChannel[]{fileChannel};
+    }
+
+    @Override
+    public void push(LogLevel level, Map<String, Object> logrecord) {
+        ByteBuf buf = alloc.directBuffer(INITIAL_BUFFER_SIZE);
+        try {
+            try (OutputStream out = new ByteBufOutputStream(buf)) {
+                mapper.writeValue(out, logrecord);
+            }
+            buf.writeByte('\n');
+        } catch (IOException ex) {
+            buf.release();
+            // Give up
+            java.util.logging.Logger.getLogger(ByteBufLogSink.class.getName()).log(Level.SEVERE, null, ex);
+            return;
+        }
+        if (queue != null && queued.incrementAndGet() <= maxQueued) {
+            queue.add(buf);
+        } else if (queue != null) {
+            // The writer thread has fallen behind; write what is queued,
+            // then this record, here, so nothing is written out of order
+            queued.decrementAndGet();
+            callerWrites.increment();
+            synchronized (this) {
+                drainAndWrite(new ArrayList<>());
+                try {
+                    write(buf);
+                } finally {
+                    buf.release();
+                }
+            }
+        } else {
+            synchronized (this) {
+                try {
+                    write(buf);
+                } finally {
+                    buf.release();
+                }
+            }
+        }
+    }
+
+    private void write(ByteBuf buf) {
+        for (WritableByteChannel channel : channels) {
+            // nioBuffer() is a view of the buffer's memory, not a copy
+            ByteBuffer nio = buf.nioBuffer();
+            try {
+                while (nio.hasRemaining()) {
+                    channel.write(nio);
+                }
+            } catch (IOException ex) {
+                java.util.logging.Logger.getLogger(ByteBufLogSink.class.getName()).log(Level.SEVERE, null, ex);
+            }
+        }
+    }
+
+    /**
+     * Take everything queued and write it, holding the lock throughout so
+     * a caller writing for itself cannot get ahead of buffers already taken
+     * from the queue.
+     */
+    private synchronized void drainAndWrite(List<ByteBuf> bufs) {
+        queue.drainTo(bufs);
+        queued.addAndGet(-bufs.size());
+        for (ByteBuf buf : bufs) {
+            try {
+                write(buf);
+            } finally {
+                buf.release();
+            }
+        }
+        bufs.clear();
+    }
+
+    private synchronized void close() {
+        for (WritableByteChannel channel : channels) {
+            try {
+                if (channel instanceof FileChannel && channel.isOpen()) {
+                    ((FileChannel) channel).force(true);
+                    channel.close();
+                }
+            } catch (IOException ex) {
+                java.util.logging.Logger.getLogger(ByteBufLogSink.class.getName()).log(Level.SEVERE, null, ex);
+            }
+        }
+    }
+
+    /**
+     * The number of records written by the thread that logged them because
+     * the queue was full.
+     *
+     * @return A count
+     */
+    public long callerWrites() {
+        return callerWrites.sum();
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "{channels=" + channels.length + ", async=" + (queue != null)
+                + ", queued=" + queued + "}";
+    }
+
+    private final class Runner implements Runnable {
+
+        private final OneThreadLatch latch;
+        private volatile boolean stopped;
+        private volatile boolean exited;
+
+        Runner(OneThreadLatch latch) {
+            this.latch = latch;
+        }
+
+        void flush(List<ByteBuf> bufs) throws InterruptedException {
+            drainAndWrite(bufs);
+        }
+
+        void stop() {
+            stopped = true;
+            // Make sure we don't flush contents out-of-sequence
+            if (!exited) {
+                synchronized (this) {
+                    try {
+                        wait(3000);
+                    } catch (InterruptedException ex) {
+                        // ok
+                    }
+                }
+            }
+            try {
+                flush(new ArrayList<>());
+            } catch (InterruptedException ex) {
+                java.util.logging.Logger.getLogger(ByteBufLogSink.class.getName()).log(Level.SEVERE, null, ex);
+            }
+        }
+
+        @Override
+        public void run() {
+            Thread.currentThread().setName("Bunyan-Java ByteBuf log flush");
+            Thread.currentThread().setPriority(Thread.NORM_PRIORITY - 2);
+            List<ByteBuf> bufs = new ArrayList<>();
+            for (;;) {
+                try {
+                    latch.await();
+                    flush(bufs);
+                    if (stopped) {
+                        break;
+                    }
+                } catch (InterruptedException ex) {
+                    if (stopped) {
+                        break;
+                    }
+                }
+            }
+            exited = true;
+            synchronized (this) {
+                notifyAll();
+            }
+        }
+    }
+}
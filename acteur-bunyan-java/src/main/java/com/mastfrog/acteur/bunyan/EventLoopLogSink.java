@@ -0,0 +1,279 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 Tim Boudreau.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.acteur.bunyan;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.google.inject.name.Named;
+import com.mastfrog.bunyan.LogSink;
+import com.mastfrog.bunyan.type.LogLevel;
+import com.mastfrog.giulius.ShutdownHookRegistry;
+import com.mastfrog.settings.Settings;
+import com.mastfrog.util.preconditions.ConfigurationError;
+import io.netty.util.concurrent.FastThreadLocal;
+import io.netty.util.concurrent.FastThreadLocalThread;
+import io.netty.util.concurrent.ThreadExecutorMap;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+
+/**
+ * LogSink which keeps log record assembly, serialization and I/O off of Netty
+ * event loop threads. When a record is closed on an event loop, only a
+ * snapshot of what was added to it is taken there; building the record and
+ * passing it to the real sink happens on a single worker thread, so records
+ * logged by any one thread are written in the order they were logged.
+ * Records logged on other threads are passed straight through.
+ * <p>
+ * At most <code>log.offload.max.queued</code> records (default 8192) wait
+ * for the worker thread. If a record is offloaded while that many are
+ * waiting, or after shutdown, the thread that logged it writes everything
+ * waiting and then the record itself, so no record is lost or written out of
+ * order; <code>callerWrites()</code> counts how often that happens.
+ * <p>
+ * The time event loop threads spend closing records handed to this sink,
+ * including taking the snapshot, and the number of such records, are
+ * available from <code>eventLoopNanos()</code> and
+ * <code>eventLoopRecords()</code>.
+ * <p>
+ * To use, call <code>offloadEventLoopLogging()</code> on ActeurBunyanModule.
+ *
+ * @author Tim Boudreau
+ */
+@Singleton
+public final class EventLoopLogSink implements LogSink, LogSink.Offloading {
+
+    /**
+     * Settings key for the maximum number of offloaded records waiting to be
+     * written.
+     */
+    public static final String SETTINGS_KEY_MAX_QUEUED = "log.offload.max.queued";
+    public static final int DEFAULT_MAX_QUEUED = 8192;
+    static final String GUICE_BINDING_DELEGATE = "_eventLoopLogSinkDelegate";
+    private static final FastThreadLocal<long[]> CLOSE_STARTED = new FastThreadLocal<long[]>() {
+        @Override
+        protected long[] initialValue() {
+            return new long[1];
+        }
+    };
+    private final LongAdder eventLoopNanos = new LongAdder();
+    private final LongAdder eventLoopRecords = new LongAdder();
+    private final LongAdder callerWrites = new LongAdder();
+    private final AtomicInteger pending = new AtomicInteger();
+    private final LogSink delegate;
+    private final BlockingQueue<Offloaded> queue;
+    // Only touched while holding the lock in drainAndWrite()
+    private final List<Offloaded> draining = new ArrayList<>();
+    private final AtomicBoolean drainScheduled = new AtomicBoolean();
+    // At most one drain task runs and one waits, since drainScheduled is
+    // only cleared once a task starts
+    private final ThreadPoolExecutor worker = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(1), r -> {
+                Thread t = new Thread(r, "Bunyan-Java event loop log offload");
+                t.setDaemon(true);
+                t.setPriority(Thread.NORM_PRIORITY - 1);
+                return t;
+            }, (r, executor) -> {
+                // Shut down - the caller writes what is waiting, in order
+                drainScheduled.set(false);
+                callerWrites.increment();
+                drainAndWrite();
+            });
+
+    @Inject
+    EventLoopLogSink(@Named(GUICE_BINDING_DELEGATE) LogSink delegate, Settings settings, ShutdownHookRegistry reg) {
+        this(delegate, settings.getInt(SETTINGS_KEY_MAX_QUEUED, DEFAULT_MAX_QUEUED));
+        reg.add((Runnable) this::shutdown);
+    }
+
+    EventLoopLogSink(LogSink delegate, int maxQueued) {
+        if (maxQueued <= 0) {
+            throw new ConfigurationError(SETTINGS_KEY_MAX_QUEUED + " must be positive: " + maxQueued);
+        }
+        this.delegate = delegate;
+        this.queue = new ArrayBlockingQueue<>(maxQueued);
+    }
+
+    static boolean isEventLoopThread() {
+        return ThreadExecutorMap.currentExecutor() != null
+                || Thread.currentThread() instanceof FastThreadLocalThread;
+    }
+
+    @Override
+    public boolean shouldOffload(LogLevel level) {
+        if (isEventLoopThread()) {
+            // The snapshot is taken between here and offload(), so start
+            // timing now
+            CLOSE_STARTED.get()[0] = System.nanoTime();
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public void offload(LogLevel level, Supplier<Map<String, Object>> record) {
+        long[] started = CLOSE_STARTED.get();
+        long start = started[0] == 0 ? System.nanoTime() : started[0];
+        started[0] = 0;
+        Offloaded offloaded = new Offloaded(level, record);
+        pending.incrementAndGet();
+        try {
+            if (!worker.isShutdown() && queue.offer(offloaded)) {
+                if (drainScheduled.compareAndSet(false, true)) {
+                    worker.execute(this::drain);
+                }
+            } else {
+                // The worker has fallen behind or is gone; write what is
+                // waiting, then this record, here, so nothing is lost or
+                // out of order
+                callerWrites.increment();
+                synchronized (this) {
+                    drainAndWrite();
+                    write(offloaded);
+                }
+            }
+        } finally {
+            eventLoopRecords.increment();
+            eventLoopNanos.add(System.nanoTime() - start);
+        }
+    }
+
+    private void drain() {
+        drainScheduled.set(false);
+        drainAndWrite();
+    }
+
+    /**
+     * Take everything queued and write it, holding the lock throughout so
+     * a caller writing for itself cannot get ahead of records already taken
+     * from the queue.
+     */
+    private synchronized void drainAndWrite() {
+        queue.drainTo(draining);
+        try {
+            for (Offloaded offloaded : draining) {
+                write(offloaded);
+            }
+        } finally {
+            draining.clear();
+        }
+    }
+
+    private void write(Offloaded offloaded) {
+        try {
+            delegate.push(offloaded.level, offloaded.record.get());
+        } catch (RuntimeException ex) {
+            java.util.logging.Logger.getLogger(EventLoopLogSink.class.getName()).log(Level.SEVERE, null, ex);
+        } finally {
+            pending.decrementAndGet();
+        }
+    }
+
+    @Override
+    public void push(LogLevel level, Map<String, Object> logrecord) {
+        if (isEventLoopThread()) {
+            // Something other than LogImpl pushed a finished record; keep
+            // its I/O off the event loop all the same
+            offload(level, () -> logrecord);
+        } else {
+            delegate.push(level, logrecord);
+        }
+    }
+
+    /**
+     * The total time, in nanoseconds, event loop threads have spent closing
+     * records handed to this sink, including taking their snapshots.
+     *
+     * @return A number of nanoseconds
+     */
+    public long eventLoopNanos() {
+        return eventLoopNanos.sum();
+    }
+
+    /**
+     * The number of records event loop threads have handed to this sink.
+     *
+     * @return A count
+     */
+    public long eventLoopRecords() {
+        return eventLoopRecords.sum();
+    }
+
+    /**
+     * The number of times the thread that logged a record wrote it, and
+     * those waiting ahead of it, because the queue was full or the worker
+     * had been shut down.
+     *
+     * @return A count
+     */
+    public long callerWrites() {
+        return callerWrites.sum();
+    }
+
+    /**
+     * The number of offloaded records which have not been written yet.
+     *
+     * @return A count
+     */
+    public int pending() {
+        return pending.get();
+    }
+
+    void shutdown() {
+        worker.shutdown();
+        try {
+            worker.awaitTermination(3, TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {
+            java.util.logging.Logger.getLogger(EventLoopLogSink.class.getName()).log(Level.SEVERE, null, ex);
+        }
+        // Anything the worker did not get to
+        drainAndWrite();
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "{delegate=" + delegate + ", pending=" + pending
+                + ", callerWrites=" + callerWrites + "}";
+    }
+
+    private static final class Offloaded {
+
+        final LogLevel level;
+        final Supplier<Map<String, Object>> record;
+
+        Offloaded(LogLevel level, Supplier<Map<String, Object>> record) {
+            this.level = level;
+            this.record = record;
+        }
+    }
+}
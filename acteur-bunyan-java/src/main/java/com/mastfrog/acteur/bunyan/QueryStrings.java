@@ -0,0 +1,250 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 Tim Boudreau.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.acteur.bunyan;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import java.io.IOException;
+
+/**
+ * Writes the query parameters of a request URI directly to a JsonGenerator,
+ * decoding into a reusable per-thread buffer, so request logging does not
+ * need to build a parameter map or intermediate strings for values.
+ *
+ * @author Tim Boudreau
+ */
+final class QueryStrings {
+
+    private static final ThreadLocal<char[]> SCRATCH = ThreadLocal.withInitial(() -> new char[128]);
+
+    private QueryStrings() {
+        throw new AssertionError();
+    }
+
+    /**
+     * Get the offset of the <code>?</code> which starts the query portion of a
+     * URI, or -1 if there is none.
+     *
+     * @param uri A uri
+     * @return An offset or -1
+     */
+    static int queryStart(CharSequence uri) {
+        int len = uri.length();
+        for (int i = 0; i < len; i++) {
+            char c = uri.charAt(i);
+            if (c == '?') {
+                return i;
+            } else if (c == '#') {
+                break;
+            }
+        }
+        return -1;
+    }
+
+    private static int queryEnd(CharSequence uri, int from) {
+        int len = uri.length();
+        for (int i = from; i < len; i++) {
+            if (uri.charAt(i) == '#') {
+                return i;
+            }
+        }
+        return len;
+    }
+
+    private static int indexOf(char c, CharSequence seq, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (seq.charAt(i) == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static char[] scratch(int length) {
+        char[] result = SCRATCH.get();
+        if (result.length < length) {
+            result = new char[Math.max(length, result.length * 2)];
+            SCRATCH.set(result);
+        }
+        return result;
+    }
+
+    /**
+     * Write the query parameters of a URI as a JSON object. If a parameter
+     * occurs more than once, the first value wins, as with
+     * <code>HttpEvent.urlParametersAsMap()</code>.
+     *
+     * @param uri The request URI
+     * @param queryStart The offset of the <code>?</code> character, as returned
+     * by queryStart()
+     * @param jg The generator
+     * @throws IOException If something goes wrong
+     */
+    static void writeParameters(CharSequence uri, int queryStart, JsonGenerator jg) throws IOException {
+        int start = queryStart + 1;
+        int end = queryEnd(uri, start);
+        char[] buf = scratch(end - start);
+        jg.writeStartObject();
+        int pos = start;
+        while (pos < end) {
+            int amp = indexOf('&', uri, pos, end);
+            if (amp < 0) {
+                amp = end;
+            }
+            int eq = indexOf('=', uri, pos, amp);
+            int keyEnd = eq < 0 ? amp : eq;
+            if (keyEnd > pos && !seenBefore(uri, start, pos, keyEnd)) {
+                int len = decode(uri, pos, keyEnd, true, buf);
+                jg.writeFieldName(new String(buf, 0, len));
+                if (eq < 0) {
+                    jg.writeString("");
+                } else {
+                    len = decode(uri, eq + 1, amp, true, buf);
+                    jg.writeString(buf, 0, len);
+                }
+            }
+            pos = amp + 1;
+        }
+        jg.writeEndObject();
+    }
+
+    /**
+     * Write a CharSequence as a string value, without converting it to a
+     * String if it is not already one.
+     *
+     * @param seq The characters
+     * @param jg The generator
+     * @throws IOException If something goes wrong
+     */
+    static void writeCharSequence(CharSequence seq, JsonGenerator jg) throws IOException {
+        if (seq instanceof String) {
+            jg.writeString((String) seq);
+            return;
+        }
+        int len = seq.length();
+        char[] buf = scratch(len);
+        for (int i = 0; i < len; i++) {
+            buf[i] = seq.charAt(i);
+        }
+        jg.writeString(buf, 0, len);
+    }
+
+    private static boolean seenBefore(CharSequence uri, int queryStart, int keyStart, int keyEnd) {
+        int keyLength = keyEnd - keyStart;
+        int pos = queryStart;
+        while (pos < keyStart) {
+            int amp = indexOf('&', uri, pos, keyStart);
+            if (amp < 0) {
+                amp = keyStart;
+            }
+            int eq = indexOf('=', uri, pos, amp);
+            int end = eq < 0 ? amp : eq;
+            if (end - pos == keyLength && regionMatches(uri, pos, keyStart, keyLength)) {
+                return true;
+            }
+            pos = amp + 1;
+        }
+        return false;
+    }
+
+    private static boolean regionMatches(CharSequence seq, int a, int b, int length) {
+        for (int i = 0; i < length; i++) {
+            if (seq.charAt(a + i) != seq.charAt(b + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int hexValue(char c) {
+        if (c >= '0' && c <= '9') {
+            return c - '0';
+        } else if (c >= 'a' && c <= 'f') {
+            return 10 + (c - 'a');
+        } else if (c >= 'A' && c <= 'F') {
+            return 10 + (c - 'A');
+        }
+        return -1;
+    }
+
+    private static int hexByte(CharSequence seq, int at, int end) {
+        if (at + 2 >= end || seq.charAt(at) != '%') {
+            return -1;
+        }
+        int hi = hexValue(seq.charAt(at + 1));
+        int lo = hexValue(seq.charAt(at + 2));
+        return hi < 0 || lo < 0 ? -1 : (hi << 4) | lo;
+    }
+
+    /**
+     * Percent-decode a range of characters (as UTF-8) into the passed buffer,
+     * which must be at least <code>end - start</code> long.
+     *
+     * @return The number of characters written
+     */
+    static int decode(CharSequence seq, int start, int end, boolean plusIsSpace, char[] into) {
+        int count = 0;
+        int i = start;
+        while (i < end) {
+            char c = seq.charAt(i);
+            if (c == '+' && plusIsSpace) {
+                into[count++] = ' ';
+                i++;
+                continue;
+            } else if (c != '%') {
+                into[count++] = c;
+                i++;
+                continue;
+            }
+            int b = hexByte(seq, i, end);
+            if (b < 0) {
+                into[count++] = c;
+                i++;
+            } else if (b < 0x80) {
+                into[count++] = (char) b;
+                i += 3;
+            } else {
+                int extra = b >= 0xF8 ? -1 : b >= 0xF0 ? 3 : b >= 0xE0 ? 2 : b >= 0xC0 ? 1 : -1;
+                int codePoint = extra < 0 ? -1 : b & (0x3F >> extra);
+                int j = i + 3;
+                for (int k = 0; k < extra && codePoint >= 0; k++) {
+                    int next = hexByte(seq, j, end);
+                    if (next < 0 || (next & 0xC0) != 0x80) {
+                        codePoint = -1;
+                    } else {
+                        codePoint = (codePoint << 6) | (next & 0x3F);
+                        j += 3;
+                    }
+                }
+                if (codePoint >= 0 && Character.isValidCodePoint(codePoint)) {
+                    count += Character.toChars(codePoint, into, count);
+                    i = j;
+                } else {
+                    into[count++] = '\uFFFD';
+                    i += 3;
+                }
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,188 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 Tim Boudreau.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.acteur.bunyan;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonSerializable;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.jsontype.TypeSerializer;
+import com.mastfrog.acteur.Event;
+import com.mastfrog.acteur.HttpEvent;
+import com.mastfrog.acteur.util.RequestID;
+import com.mastfrog.bunyan.Log;
+import com.mastfrog.bunyan.Logger;
+import com.mastfrog.bunyan.LoggingConfig;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.websocketx.WebSocketFrame;
+import java.io.IOException;
+import java.util.function.Function;
+
+/**
+ * The shape of a request log record, resolved once when the request logger is
+ * created: the level dispatch is decided up front, and the properties of the
+ * event are added directly under constant keys, rather than the event being
+ * handed to the logger as an object that has to be serialized to JSON and
+ * parsed back into a map before it can be merged into the record. As before,
+ * trace-level records carry only the message, request id, duration and
+ * status.
+ *
+ * @author Tim Boudreau
+ */
+final class RequestLogShape {
+
+    static final String MESSAGE = "request";
+    static final String KEY_PATH = "path";
+    static final String KEY_ADDRESS = "address";
+    static final String KEY_METHOD = "method";
+    static final String KEY_PARAMS = "params";
+    static final String KEY_REFERRER = "referrer";
+    static final String KEY_HOST = "host";
+    static final String KEY_AGENT = "agent";
+    static final String KEY_TYPE = "type";
+    static final String KEY_LENGTH = "len";
+    static final String KEY_FINAL_FRAGMENT = "ff";
+    static final String KEY_ID = "id";
+    static final String KEY_DURATION = "dur";
+    static final String KEY_STATUS = "status";
+
+    // Passed as the varargs array directly, so opening a record does not
+    // allocate one
+    private static final Object[] INITIAL = {MESSAGE};
+    private final Function<Logger, Log<?>> opener;
+    private final boolean withEvent;
+
+    RequestLogShape(String level) {
+        withEvent = !LoggingConfig.LEVEL_TRACE.equals(level);
+        switch (level) {
+            case LoggingConfig.LEVEL_TRACE:
+                opener = logger -> logger.trace(INITIAL);
+                break;
+            case LoggingConfig.LEVEL_DEBUG:
+                opener = logger -> logger.debug(INITIAL);
+                break;
+            case LoggingConfig.LEVEL_INFO:
+                opener = logger -> logger.info(INITIAL);
+                break;
+            case LoggingConfig.LEVEL_WARNING:
+                opener = logger -> logger.warn(INITIAL);
+                break;
+            case LoggingConfig.LEVEL_ERROR:
+                opener = logger -> logger.error(INITIAL);
+                break;
+            case LoggingConfig.LEVEL_FATAL:
+                opener = logger -> logger.fatal(INITIAL);
+                break;
+            default:
+                throw new IllegalArgumentException("Not a log level: " + level);
+        }
+    }
+
+    /**
+     * Create a log record at this shape's level, populated with the
+     * properties of the passed event unless the level is trace.
+     *
+     * @param logger The logger
+     * @param event The event
+     * @return A log record
+     */
+    Log<?> open(Logger logger, Event<?> event) {
+        Log<?> log = opener.apply(logger);
+        if (!withEvent) {
+            return log;
+        } else if (event instanceof HttpEvent) {
+            addHttpEvent(log, (HttpEvent) event);
+        } else {
+            addEvent(log, event);
+        }
+        return log;
+    }
+
+    /**
+     * Add the request id, duration and status to a log record and write it.
+     *
+     * @param log The log record
+     * @param rid The request id
+     * @param status The response status
+     */
+    void close(Log<?> log, RequestID rid, HttpResponseStatus status) {
+        log.add(KEY_ID, rid.stringValue())
+                .add(KEY_DURATION, rid.getDuration().toMillis())
+                .add(KEY_STATUS, status.code())
+                .close();
+    }
+
+    private void addHttpEvent(Log<?> log, HttpEvent event) {
+        HttpRequest req = event.request();
+        String uri = req.uri();
+        log.add(KEY_PATH, event.path().toString())
+                .add(KEY_ADDRESS, event.remoteAddress())
+                .add(KEY_METHOD, req.method().name());
+        int queryStart = QueryStrings.queryStart(uri);
+        if (queryStart >= 0) {
+            log.add(KEY_PARAMS, new UriParameters(uri, queryStart));
+        }
+        HttpHeaders headers = req.headers();
+        log.addIfNotNull(KEY_REFERRER, headers.get(HttpHeaderNames.REFERER))
+                .addIfNotNull(KEY_HOST, headers.get(HttpHeaderNames.HOST))
+                .addIfNotNull(KEY_AGENT, headers.get(HttpHeaderNames.USER_AGENT));
+    }
+
+    private void addEvent(Log<?> log, Event<?> event) {
+        log.add(KEY_TYPE, event.getClass().getSimpleName())
+                .add(KEY_ADDRESS, event.remoteAddress())
+                .add(KEY_LENGTH, event.content().readableBytes());
+        if (event.request() instanceof WebSocketFrame) {
+            log.add(KEY_FINAL_FRAGMENT, ((WebSocketFrame) event.request()).isFinalFragment());
+        }
+    }
+
+    private static final class UriParameters extends JsonSerializable.Base {
+
+        private final String uri;
+        private final int queryStart;
+
+        UriParameters(String uri, int queryStart) {
+            this.uri = uri;
+            this.queryStart = queryStart;
+        }
+
+        @Override
+        public void serialize(JsonGenerator jg, SerializerProvider sp) throws IOException {
+            QueryStrings.writeParameters(uri, queryStart, jg);
+        }
+
+        @Override
+        public void serializeWithType(JsonGenerator jg, SerializerProvider sp, TypeSerializer ts) throws IOException {
+            serialize(jg, sp);
+        }
+
+        @Override
+        public String toString() {
+            return uri.substring(queryStart + 1);
+        }
+    }
+}
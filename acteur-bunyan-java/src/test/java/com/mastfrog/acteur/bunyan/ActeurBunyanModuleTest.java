@@ -0,0 +1,145 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 Tim Boudreau.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.acteur.bunyan;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.inject.AbstractModule;
+import com.google.inject.Inject;
+import com.google.inject.Key;
+import com.google.inject.name.Names;
+import com.mastfrog.bunyan.Log;
+import com.mastfrog.bunyan.LogSink;
+import com.mastfrog.bunyan.Logger;
+import com.mastfrog.bunyan.LoggingModule;
+import com.mastfrog.bunyan.MultiLogSink;
+import com.mastfrog.bunyan.type.Info;
+import com.mastfrog.bunyan.type.LogLevel;
+import com.mastfrog.giulius.Dependencies;
+import com.mastfrog.settings.Settings;
+import com.mastfrog.settings.SettingsBuilder;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ *
+ * @author Tim Boudreau
+ */
+public class ActeurBunyanModuleTest {
+
+    @Test
+    public void testSinksAreInstalledThroughMultiLogSink() throws IOException {
+        Path file = Files.createTempFile(getClass().getSimpleName(), ".log");
+        try {
+            Settings settings = new SettingsBuilder()
+                    .add(LoggingModule.SETTINGS_KEY_ASYNC_LOGGING, true)
+                    .add(LoggingModule.SETTINGS_KEY_LOG_TO_CONSOLE, false)
+                    .add(LoggingModule.SETTINGS_KEY_LOG_FILE, file.toString())
+                    .build();
+            Dependencies deps = new Dependencies(settings, new ActeurBunyanModule(false)
+                    .dontBindErrorInterceptor()
+                    .useByteBufLogSink()
+                    .offloadEventLoopLogging(), new SinkModule());
+
+            LogSink sink = deps.getInstance(LogSink.class);
+            assertTrue("Not a MultiLogSink: " + sink, sink instanceof MultiLogSink);
+            RecordingSink recording = deps.getInstance(RecordingSink.class);
+            Logger logger = deps.getInstance(Key.get(Logger.class, Names.named(ActeurBunyanModule.ACCESS_LOGGER)));
+            for (int i = 0; i < 20; i++) {
+                try (Log<Info> log = logger.info("request")) {
+                    log.add("index", i);
+                }
+            }
+            // Not logged from an event loop, so nothing was offloaded
+            assertEquals(0L, deps.getInstance(EventLoopLogSink.class).eventLoopRecords());
+            deps.shutdown();
+
+            assertEquals(20, recording.records.size());
+            List<String> lines = Files.readAllLines(file);
+            assertEquals(20, lines.size());
+            ObjectMapper mapper = new ObjectMapper();
+            for (int i = 0; i < lines.size(); i++) {
+                Map<?, ?> written = mapper.readValue(lines.get(i), Map.class);
+                assertEquals(i, written.get("index"));
+                assertEquals(i, recording.records.get(i).get("index"));
+                assertEquals("request", written.get("msg"));
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    public void testSinkRegistersWithTheBoundMultiLogSink() throws IOException {
+        Settings settings = new SettingsBuilder()
+                .add(LoggingModule.SETTINGS_KEY_ASYNC_LOGGING, false)
+                .add(LoggingModule.SETTINGS_KEY_LOG_TO_CONSOLE, false)
+                .build();
+        Dependencies deps = new Dependencies(settings, new ActeurBunyanModule(false)
+                .dontBindErrorInterceptor()
+                .bindMultiLogSink(), new SinkModule());
+        try {
+            assertSame(deps.getInstance(LogSink.class), deps.getInstance(MultiLogSink.class));
+            Logger logger = deps.getInstance(Key.get(Logger.class, Names.named(ActeurBunyanModule.ERROR_LOGGER)));
+            try (Log<Info> log = logger.info("failed")) {
+                log.add("status", 500);
+            }
+            RecordingSink recording = deps.getInstance(RecordingSink.class);
+            assertEquals(1, recording.records.size());
+            assertEquals(500, recording.records.get(0).get("status"));
+        } finally {
+            deps.shutdown();
+        }
+    }
+
+    static final class SinkModule extends AbstractModule {
+
+        @Override
+        protected void configure() {
+            bind(RecordingSink.class).asEagerSingleton();
+        }
+    }
+
+    static final class RecordingSink extends MultiLogSink.Sink {
+
+        final List<Map<String, Object>> records = new CopyOnWriteArrayList<>();
+
+        @Inject
+        RecordingSink(MultiLogSink multi) {
+            super(multi);
+        }
+
+        @Override
+        public void push(LogLevel level, Map<String, Object> logrecord, ObjectMapper mapper) {
+            records.add(logrecord);
+        }
+    }
+}
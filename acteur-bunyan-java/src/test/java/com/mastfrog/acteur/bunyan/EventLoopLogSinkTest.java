@@ -0,0 +1,200 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 Tim Boudreau.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.acteur.bunyan;
+
+import com.mastfrog.bunyan.LogSink;
+import com.mastfrog.bunyan.Loggers;
+import com.mastfrog.bunyan.LoggingModule;
+import com.mastfrog.bunyan.type.LogLevel;
+import com.mastfrog.giulius.Dependencies;
+import io.netty.channel.DefaultEventLoop;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ *
+ * @author Tim Boudreau
+ */
+public class EventLoopLogSinkTest {
+
+    private Dependencies deps;
+    private LogLevel<?> level;
+    private DefaultEventLoop loop;
+    private RecordingSink delegate;
+    private EventLoopLogSink sink;
+
+    @Before
+    public void setup() throws IOException {
+        deps = new Dependencies(new LoggingModule(false));
+        level = deps.getInstance(Loggers.class).info;
+        loop = new DefaultEventLoop();
+        delegate = new RecordingSink();
+        sink = new EventLoopLogSink(delegate, 1024);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        sink.shutdown();
+        loop.shutdownGracefully(0, 1, TimeUnit.SECONDS).await(5, TimeUnit.SECONDS);
+        deps.shutdown();
+    }
+
+    @Test
+    public void testOffloadedRecordsKeepTheirOrder() throws Exception {
+        Thread loopThread = loop.submit(() -> {
+            for (int i = 0; i < 500; i++) {
+                assertTrue(sink.shouldOffload(level));
+                int index = i;
+                sink.offload(level, () -> record(index));
+            }
+            return Thread.currentThread();
+        }).get(10, TimeUnit.SECONDS);
+        sink.shutdown();
+
+        assertEquals(500, delegate.records.size());
+        for (int i = 0; i < 500; i++) {
+            assertEquals(i, delegate.records.get(i).get("index"));
+            assertNotSame(loopThread, delegate.threads.get(i));
+        }
+        assertEquals(500L, sink.eventLoopRecords());
+        assertTrue(sink.eventLoopNanos() > 0);
+        assertEquals(0, sink.pending());
+        assertEquals(0L, sink.callerWrites());
+    }
+
+    @Test
+    public void testRecordsFromOtherThreadsPassThrough() {
+        assertFalse(sink.shouldOffload(level));
+        Map<String, Object> record = record(1);
+        sink.push(level, record);
+        assertEquals(1, delegate.records.size());
+        assertSame(record, delegate.records.get(0));
+        assertSame(Thread.currentThread(), delegate.threads.get(0));
+        assertEquals(0L, sink.eventLoopRecords());
+    }
+
+    @Test
+    public void testRecordsAfterShutdownAreWrittenByTheCaller() throws Exception {
+        sink.shutdown();
+        Thread loopThread = loop.submit(() -> {
+            sink.push(level, record(7));
+            return Thread.currentThread();
+        }).get(10, TimeUnit.SECONDS);
+
+        assertEquals(1, delegate.records.size());
+        assertEquals(7, delegate.records.get(0).get("index"));
+        assertSame(loopThread, delegate.threads.get(0));
+        assertEquals(0, sink.pending());
+        assertEquals(1L, sink.callerWrites());
+    }
+
+    @Test
+    public void testOverflowIsWrittenInOrderByTheCaller() throws Exception {
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        RecordingSink blocking = new RecordingSink() {
+            @Override
+            public void push(LogLevel level, Map<String, Object> logrecord) {
+                if (records.isEmpty()) {
+                    // Hold up the worker on the first record
+                    entered.countDown();
+                    try {
+                        release.await(10, TimeUnit.SECONDS);
+                    } catch (InterruptedException ex) {
+                        throw new IllegalStateException(ex);
+                    }
+                }
+                super.push(level, logrecord);
+            }
+        };
+        EventLoopLogSink small = new EventLoopLogSink(blocking, 2);
+        try {
+            Future<?> logged = loop.submit(() -> {
+                for (int i = 0; i < 10; i++) {
+                    int index = i;
+                    small.offload(level, () -> record(index));
+                    if (i == 0) {
+                        awaitQuietly(entered);
+                    }
+                }
+            });
+            // One record held by the worker, two waiting and one with
+            // nowhere to go
+            long until = System.currentTimeMillis() + 10000;
+            while (small.pending() < 4 && System.currentTimeMillis() < until) {
+                Thread.sleep(5);
+            }
+            assertEquals(4, small.pending());
+            release.countDown();
+            logged.get(10, TimeUnit.SECONDS);
+        } finally {
+            release.countDown();
+            small.shutdown();
+        }
+        assertEquals(10, blocking.records.size());
+        for (int i = 0; i < 10; i++) {
+            assertEquals(i, blocking.records.get(i).get("index"));
+        }
+        assertTrue(small.callerWrites() > 0);
+        assertEquals(0, small.pending());
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            assertTrue(latch.await(10, TimeUnit.SECONDS));
+        } catch (InterruptedException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private static Map<String, Object> record(int index) {
+        return Collections.singletonMap("index", index);
+    }
+
+    static class RecordingSink implements LogSink {
+
+        final List<Map<String, Object>> records = new CopyOnWriteArrayList<>();
+        final List<Thread> threads = new CopyOnWriteArrayList<>();
+
+        @Override
+        public void push(LogLevel level, Map<String, Object> logrecord) {
+            threads.add(Thread.currentThread());
+            records.add(logrecord);
+        }
+    }
+}
@@ -0,0 +1,237 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 Tim Boudreau.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.acteur.bunyan;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.mastfrog.acteur.HttpEvent;
+import com.mastfrog.acteur.headers.Headers;
+import com.mastfrog.url.Path;
+import io.netty.handler.codec.http.DefaultHttpRequest;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.handler.codec.http.QueryStringDecoder;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.InetSocketAddress;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import static org.junit.Assert.assertEquals;
+import org.junit.Test;
+
+/**
+ * Compares the streaming HttpEventSerializer with the map-building one it
+ * replaced, for both output and speed.
+ *
+ * @author Tim Boudreau
+ */
+public class HttpEventSerializerTest {
+
+    private static final boolean RUN_BENCHMARK = false;
+    private static final int WARMUP = 500000;
+    private static final int REAL = 2000000;
+
+    private static final String[] URIS = {
+        "/api/users/1234/widgets?limit=20&offset=40&sort=name&q=hello+world",
+        "/api/things?a=%E2%82%AC%20euro&b=2&a=3&flag",
+        "/static/index.html",
+        "//api//users/1234/?limit=20",
+        "/?"
+    };
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final JsonFactory factory = new JsonFactory();
+
+    @Test
+    public void testOutputMatchesLegacySerializer() throws Exception {
+        LegacyHttpEventSerializer legacy = new LegacyHttpEventSerializer();
+        for (String uri : URIS) {
+            HttpEvent evt = event(uri);
+            Map<?, ?> expected = mapper.readValue(serialize(evt, legacy), Map.class);
+            Map<?, ?> got = mapper.readValue(serialize(evt, BunyanJacksonConfig.HTTP), Map.class);
+            for (String key : new String[]{"path", "address", "method", "params", "referrer", "host", "agent"}) {
+                assertEquals(uri + ": " + key, expected.get(key), got.get(key));
+            }
+        }
+        Map<?, ?> got = mapper.readValue(serialize(event(URIS[0]), BunyanJacksonConfig.HTTP), Map.class);
+        assertEquals("api/users/1234/widgets", got.get("path"));
+    }
+
+    @Test
+    public void benchmark() throws Exception {
+        if (!RUN_BENCHMARK) {
+            return;
+        }
+        HttpEvent[] events = new HttpEvent[URIS.length];
+        for (int i = 0; i < events.length; i++) {
+            events[i] = event(URIS[i]);
+        }
+        LegacyHttpEventSerializer legacy = new LegacyHttpEventSerializer();
+        run(events, legacy, WARMUP);
+        run(events, BunyanJacksonConfig.HTTP, WARMUP);
+        long legacyTime = run(events, legacy, REAL);
+        long streamingTime = run(events, BunyanJacksonConfig.HTTP, REAL);
+        System.out.println("Legacy serializer: " + REAL + " events in " + legacyTime + " ms");
+        System.out.println("Streaming serializer: " + REAL + " events in " + streamingTime + " ms");
+    }
+
+    private long run(HttpEvent[] events, JsonSerializer<HttpEvent> ser, int count) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(512);
+        long start = System.currentTimeMillis();
+        for (int i = 0; i < count; i++) {
+            out.reset();
+            try (JsonGenerator jg = factory.createGenerator(out)) {
+                ser.serialize(events[i % events.length], jg, null);
+            }
+        }
+        return System.currentTimeMillis() - start;
+    }
+
+    private byte[] serialize(HttpEvent evt, JsonSerializer<HttpEvent> ser) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (JsonGenerator jg = factory.createGenerator(out)) {
+            ser.serialize(evt, jg, null);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * HttpEvent has many methods the serializers do not touch, so use a proxy
+     * which implements just the ones they call.
+     */
+    static HttpEvent event(String uri) {
+        HttpRequest req = new DefaultHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, uri);
+        req.headers().add(HttpHeaderNames.HOST, "example.com:8080");
+        req.headers().add(HttpHeaderNames.USER_AGENT, "Mozilla/5.0 (X11; Linux x86_64) Gecko/20100101 Firefox/60.0");
+        req.headers().add(HttpHeaderNames.REFERER, "http://example.com/start");
+        InetSocketAddress addr = new InetSocketAddress("127.0.0.1", 52110);
+        return (HttpEvent) Proxy.newProxyInstance(HttpEventSerializerTest.class.getClassLoader(),
+                new Class<?>[]{HttpEvent.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "request":
+                            return req;
+                        case "remoteAddress":
+                            return addr;
+                        case "method":
+                            return method(method.getReturnType());
+                        case "path":
+                            return Path.parse(new QueryStringDecoder(uri).path());
+                        case "urlParametersAsMap":
+                            Map<String, String> result = new LinkedHashMap<>();
+                            for (Map.Entry<String, List<String>> e : new QueryStringDecoder(uri).parameters().entrySet()) {
+                                result.put(e.getKey(), e.getValue().get(0));
+                            }
+                            return result;
+                        case "header":
+                            return header(req, method, args[0]);
+                        case "toString":
+                            return "Event(" + uri + ")";
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        case "equals":
+                            return proxy == args[0];
+                        default:
+                            throw new UnsupportedOperationException(method.toString());
+                    }
+                });
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Object method(Class<?> type) {
+        if (type.isEnum()) {
+            return Enum.valueOf((Class<Enum>) type, "GET");
+        }
+        return HttpMethod.GET;
+    }
+
+    private static Object header(HttpRequest req, Method method, Object headerType) throws Exception {
+        if (headerType instanceof CharSequence) {
+            return req.headers().get((CharSequence) headerType);
+        }
+        Class<?> type = method.getParameterTypes()[0];
+        CharSequence name = (CharSequence) type.getMethod("name").invoke(headerType);
+        String raw = req.headers().get(name);
+        if (raw == null) {
+            return null;
+        }
+        for (Method m : type.getMethods()) {
+            if ("toValue".equals(m.getName()) && m.getParameterCount() == 1
+                    && m.getParameterTypes()[0].isAssignableFrom(String.class)) {
+                return m.invoke(headerType, raw);
+            }
+        }
+        return raw;
+    }
+
+    /**
+     * The serializer as it was before it streamed the URI and headers.
+     */
+    static final class LegacyHttpEventSerializer extends JsonSerializer<HttpEvent> {
+
+        @Override
+        public Class<HttpEvent> handledType() {
+            return HttpEvent.class;
+        }
+
+        @Override
+        public void serialize(HttpEvent t, JsonGenerator jg, SerializerProvider sp) throws IOException {
+            jg.writeStartObject();
+            jg.writeFieldName("path");
+            jg.writeString(t.path().toString());
+            jg.writeFieldName("address");
+            jg.writeString(((InetSocketAddress) t.remoteAddress()).getHostString());
+            jg.writeFieldName("method");
+            jg.writeString(t.method().name());
+            if (t.request().uri().indexOf('?') >= 0) {
+                jg.writeFieldName("params");
+                jg.writeStartObject();
+                for (Map.Entry<String, String> e : t.urlParametersAsMap().entrySet()) {
+                    jg.writeFieldName(e.getKey());
+                    jg.writeString(e.getValue());
+                }
+                jg.writeEndObject();
+            }
+            if (t.header(Headers.REFERRER) != null) {
+                jg.writeFieldName("referrer");
+                jg.writeString(t.header(Headers.REFERRER).toString());
+            }
+            if (t.header(Headers.HOST) != null) {
+                jg.writeStringField("host", t.header(Headers.HOST).toString());
+            }
+            if (t.header(Headers.USER_AGENT) != null) {
+                jg.writeFieldName("agent");
+                jg.writeString(t.header(Headers.USER_AGENT) + "");
+            }
+            jg.writeEndObject();
+        }
+    }
+}
@@ -0,0 +1,187 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 Tim Boudreau.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.acteur.bunyan;
+
+import com.mastfrog.acteur.Acteur;
+import com.mastfrog.acteur.HttpEvent;
+import com.mastfrog.acteur.bunyan.ActeurBunyanModule.ProbeContext;
+import com.mastfrog.acteur.bunyan.ActeurBunyanModule.ProbeLogger;
+import com.mastfrog.acteur.bunyan.ActeurBunyanModuleTest.RecordingSink;
+import com.mastfrog.acteur.bunyan.ActeurBunyanModuleTest.SinkModule;
+import com.mastfrog.acteur.util.RequestID;
+import com.mastfrog.bunyan.LoggingConfig;
+import com.mastfrog.bunyan.LoggingModule;
+import com.mastfrog.giulius.Dependencies;
+import com.mastfrog.settings.Settings;
+import com.mastfrog.settings.SettingsBuilder;
+import io.netty.channel.Channel;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.util.Map;
+import org.junit.After;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ * Checks the lifecycle of the ProbeContext ProbeLogger keeps on a request's
+ * channel.
+ *
+ * @author Tim Boudreau
+ */
+public class ProbeLoggerTest {
+
+    private final EmbeddedChannel channel = new EmbeddedChannel();
+    private final RequestID.Factory ids = new RequestID.Factory();
+    private Dependencies deps;
+
+    @After
+    public void tearDown() {
+        channel.finishAndReleaseAll();
+        if (deps != null) {
+            deps.shutdown();
+        }
+    }
+
+    @Test
+    public void testContextIsSetPerRequestAndCleared() throws IOException {
+        ProbeLogger probe = probe(LoggingConfig.LEVEL_TRACE);
+        RecordingSink sink = deps.getInstance(RecordingSink.class);
+        RequestID id = ids.next();
+        HttpEvent evt = event("/api/users/1234");
+
+        probe.onBeforeProcessRequest(id, evt);
+        ProbeContext ctx = channel.attr(ProbeLogger.PROBE_CONTEXT).get();
+        assertSame(id, ctx.id);
+        probe.onFallthrough(id, evt);
+        assertSame("Context should be reused", ctx, channel.attr(ProbeLogger.PROBE_CONTEXT).get());
+        probe.onBeforeSendResponse(id, evt, new TestActeur(), HttpResponseStatus.OK, false, null);
+        assertNull(channel.attr(ProbeLogger.PROBE_CONTEXT).get());
+
+        assertEquals(3, sink.records.size());
+        for (Map<String, Object> record : sink.records) {
+            assertEquals(id.stringValue(), record.get("rid"));
+            assertEquals("api/users/1234", record.get("path").toString());
+        }
+    }
+
+    @Test
+    public void testPipelinedRequestsOnOneChannel() throws IOException {
+        ProbeLogger probe = probe(LoggingConfig.LEVEL_TRACE);
+        RecordingSink sink = deps.getInstance(RecordingSink.class);
+        RequestID first = ids.next();
+        RequestID second = ids.next();
+        HttpEvent firstEvent = event("/first");
+        HttpEvent secondEvent = event("/second");
+
+        probe.onBeforeProcessRequest(first, firstEvent);
+        probe.onBeforeProcessRequest(second, secondEvent);
+        assertSame(second, channel.attr(ProbeLogger.PROBE_CONTEXT).get().id);
+        probe.onFallthrough(first, firstEvent);
+        probe.onBeforeSendResponse(first, firstEvent, new TestActeur(), HttpResponseStatus.OK, false, null);
+        probe.onFallthrough(second, secondEvent);
+        assertSame(second, channel.attr(ProbeLogger.PROBE_CONTEXT).get().id);
+        probe.onBeforeSendResponse(second, secondEvent, new TestActeur(), HttpResponseStatus.OK, false, null);
+        assertNull(channel.attr(ProbeLogger.PROBE_CONTEXT).get());
+
+        // Each record describes the request it was logged for
+        String[][] expected = {{"first", "onBeforeProcessRequest"}, {"second", "onBeforeProcessRequest"},
+            {"first", "onFallthrough"}, {"first", "onBeforeSendResponse"},
+            {"second", "onFallthrough"}, {"second", "onBeforeSendResponse"}};
+        assertEquals(expected.length, sink.records.size());
+        for (int i = 0; i < expected.length; i++) {
+            Map<String, Object> record = sink.records.get(i);
+            RequestID id = "first".equals(expected[i][0]) ? first : second;
+            assertEquals(expected[i][1], record.get("msg").toString());
+            assertEquals(expected[i][1], id.stringValue(), record.get("rid"));
+            assertEquals(expected[i][1], expected[i][0], record.get("path").toString());
+        }
+    }
+
+    @Test
+    public void testResponseOnlyClearsItsOwnContext() throws IOException {
+        // With trace off, nothing is logged and no context is created
+        ProbeLogger probe = probe(LoggingConfig.LEVEL_INFO);
+        RequestID first = ids.next();
+        RequestID second = ids.next();
+        HttpEvent firstEvent = event("/first");
+        HttpEvent secondEvent = event("/second");
+
+        probe.onBeforeProcessRequest(first, firstEvent);
+        assertNull(channel.attr(ProbeLogger.PROBE_CONTEXT).get());
+
+        ProbeContext ctx = new ProbeContext(second, secondEvent);
+        channel.attr(ProbeLogger.PROBE_CONTEXT).set(ctx);
+        probe.onBeforeSendResponse(first, firstEvent, new TestActeur(), HttpResponseStatus.OK, false, null);
+        assertSame(ctx, channel.attr(ProbeLogger.PROBE_CONTEXT).get());
+        probe.onBeforeSendResponse(second, secondEvent, new TestActeur(), HttpResponseStatus.OK, false, null);
+        assertNull(channel.attr(ProbeLogger.PROBE_CONTEXT).get());
+        assertTrue(deps.getInstance(RecordingSink.class).records.isEmpty());
+    }
+
+    private ProbeLogger probe(String level) throws IOException {
+        Settings settings = new SettingsBuilder()
+                .add(LoggingModule.SETTINGS_KEY_LOG_LEVEL, level)
+                .add(LoggingModule.SETTINGS_KEY_ASYNC_LOGGING, false)
+                .add(LoggingModule.SETTINGS_KEY_LOG_TO_CONSOLE, false)
+                .build();
+        deps = new Dependencies(settings, new ActeurBunyanModule(false)
+                .dontBindErrorInterceptor()
+                .useProbe(false)
+                .bindMultiLogSink(), new SinkModule());
+        return deps.getInstance(ProbeLogger.class);
+    }
+
+    /**
+     * An event on the shared channel, which otherwise behaves like the one
+     * HttpEventSerializerTest uses.
+     */
+    private HttpEvent event(String uri) {
+        HttpEvent base = HttpEventSerializerTest.event(uri);
+        Channel ch = channel;
+        return (HttpEvent) Proxy.newProxyInstance(ProbeLoggerTest.class.getClassLoader(),
+                new Class<?>[]{HttpEvent.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "channel":
+                            return ch;
+                        case "isPreContent":
+                            return false;
+                        default:
+                            try {
+                                return method.invoke(base, args);
+                            } catch (InvocationTargetException ex) {
+                                throw ex.getCause();
+                            }
+                    }
+                });
+    }
+
+    static final class TestActeur extends Acteur {
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 Tim Boudreau.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.acteur.bunyan;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.inject.Key;
+import com.google.inject.name.Names;
+import com.mastfrog.acteur.Event;
+import com.mastfrog.acteur.bunyan.ActeurBunyanModuleTest.RecordingSink;
+import com.mastfrog.acteur.bunyan.ActeurBunyanModuleTest.SinkModule;
+import com.mastfrog.bunyan.Log;
+import com.mastfrog.bunyan.Logger;
+import com.mastfrog.bunyan.LoggingConfig;
+import com.mastfrog.bunyan.LoggingModule;
+import com.mastfrog.giulius.Dependencies;
+import com.mastfrog.settings.Settings;
+import com.mastfrog.settings.SettingsBuilder;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import org.junit.After;
+import static org.junit.Assert.assertEquals;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Compares records opened by RequestLogShape with those JsonRequestLogger
+ * wrote before it existed.
+ *
+ * @author Tim Boudreau
+ */
+public class RequestLogShapeTest {
+
+    private static final String[] LEVELS = {
+        LoggingConfig.LEVEL_TRACE, LoggingConfig.LEVEL_DEBUG, LoggingConfig.LEVEL_INFO,
+        LoggingConfig.LEVEL_WARNING, LoggingConfig.LEVEL_ERROR, LoggingConfig.LEVEL_FATAL
+    };
+    private Dependencies deps;
+    private Logger logger;
+    private ObjectMapper mapper;
+    private RecordingSink sink;
+
+    @Before
+    public void setup() throws IOException {
+        Settings settings = new SettingsBuilder()
+                .add(LoggingModule.SETTINGS_KEY_LOG_LEVEL, LoggingConfig.LEVEL_TRACE)
+                .add(LoggingModule.SETTINGS_KEY_ASYNC_LOGGING, false)
+                .add(LoggingModule.SETTINGS_KEY_LOG_TO_CONSOLE, false)
+                .build();
+        deps = new Dependencies(settings, new ActeurBunyanModule(false)
+                .dontBindErrorInterceptor()
+                .bindMultiLogSink(), new SinkModule());
+        logger = deps.getInstance(Key.get(Logger.class, Names.named(ActeurBunyanModule.ACCESS_LOGGER)));
+        mapper = deps.getInstance(Key.get(ObjectMapper.class, Names.named(LoggingModule.GUICE_BINDING_OBJECT_MAPPER)));
+        sink = deps.getInstance(RecordingSink.class);
+    }
+
+    @After
+    public void tearDown() {
+        deps.shutdown();
+    }
+
+    @Test
+    public void testRecordsMatchLegacyRequestLogger() throws IOException {
+        Event<?> event = HttpEventSerializerTest.event("/api/users/1234/widgets?limit=20&q=hello+world");
+        for (String level : LEVELS) {
+            legacyOpen(level, event).add("status", 200).close();
+            new RequestLogShape(level).open(logger, event).add("status", 200).close();
+            assertEquals(level, 2, sink.records.size());
+            Map<?, ?> expected = written(sink.records.get(0));
+            Map<?, ?> got = written(sink.records.get(1));
+            assertEquals(level, expected, got);
+            sink.records.clear();
+        }
+    }
+
+    @Test
+    public void testTraceRecordsOmitTheEvent() throws IOException {
+        Event<?> event = HttpEventSerializerTest.event("/api/things?a=1");
+        new RequestLogShape(LoggingConfig.LEVEL_TRACE).open(logger, event).add("status", 200).close();
+        new RequestLogShape(LoggingConfig.LEVEL_INFO).open(logger, event).add("status", 200).close();
+        Map<?, ?> trace = written(sink.records.get(0));
+        Map<?, ?> info = written(sink.records.get(1));
+        assertEquals(new HashSet<>(Arrays.asList("name", "msg", "v", "pid", "level", "hostname", "status")),
+                trace.keySet());
+        assertEquals(10, trace.get("level"));
+        assertEquals(30, info.get("level"));
+        assertEquals("api/things", info.get("path"));
+        assertEquals("GET", info.get("method"));
+        assertEquals("example.com:8080", info.get("host"));
+        assertEquals("1", ((Map<?, ?>) info.get("params")).get("a"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidLevel() {
+        new RequestLogShape("loud");
+    }
+
+    private Map<?, ?> written(Map<String, Object> record) throws IOException {
+        Map<?, ?> result = mapper.readValue(mapper.writeValueAsBytes(record), Map.class);
+        // Differs between any two records
+        result.remove("time");
+        return result;
+    }
+
+    /**
+     * How JsonRequestLogger.onRespond() opened records before
+     * RequestLogShape.
+     */
+    private Log<?> legacyOpen(String level, Event<?> event) {
+        switch (level) {
+            case LoggingConfig.LEVEL_DEBUG:
+                return logger.debug("request", event);
+            case LoggingConfig.LEVEL_ERROR:
+                return logger.error("request", event);
+            case LoggingConfig.LEVEL_FATAL:
+                return logger.fatal("request", event);
+            case LoggingConfig.LEVEL_INFO:
+                return logger.info("request", event);
+            case LoggingConfig.LEVEL_WARNING:
+                return logger.warn("request", event);
+            case LoggingConfig.LEVEL_TRACE:
+                return logger.trace("request");
+            default:
+                throw new AssertionError(level);
+        }
+    }
+}
@@ -37,6 +37,7 @@ import java.time.ZonedDateTime;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -127,9 +128,47 @@ class LogImpl<T extends LogLevel> implements Log<T> {
         if (!level.isEnabled()) {
             return;
         }
+        if (sink instanceof LogSink.Offloading && ((LogSink.Offloading) sink).shouldOffload(level)) {
+            List<Object> snapshot = snapshot();
+            ((LogSink.Offloading) sink).offload(level, () -> record(snapshot));
+            return;
+        }
+        sink.push(level, record(m));
+    }
+
+    private List<Object> snapshot() {
+        List<Object> result = new ArrayList<>(m.size());
+        for (Object o : m) {
+            result.add(copy(o));
+        }
+        return result;
+    }
+
+    private static Object copy(Object o) {
+        if (o instanceof CharSequence && !(o instanceof String)) {
+            return o.toString();
+        } else if (o instanceof Map<?, ?>) {
+            Map<?, ?> map = (Map<?, ?>) o;
+            Map<Object, Object> result = new LinkedHashMap<>();
+            for (Map.Entry<?, ?> e : map.entrySet()) {
+                result.put(copy(e.getKey()), copy(e.getValue()));
+            }
+            return result;
+        } else if (o instanceof List<?>) {
+            List<?> list = (List<?>) o;
+            List<Object> result = new ArrayList<>(list.size());
+            for (Object item : list) {
+                result.add(copy(item));
+            }
+            return result;
+        }
+        return o;
+    }
+
+    private Map<String, Object> record(List<Object> items) {
         AppendableCharSequence msg = new AppendableCharSequence(60);
         MapBuilder2<String, Object> mb = CollectionUtils.map();
-        for (Iterator<Object> it = m.iterator(); it.hasNext();) {
+        for (Iterator<Object> it = items.iterator(); it.hasNext();) {
             Object o = it.next();
             CharSequence s = null;
             if (o == null) {
@@ -194,7 +233,7 @@ class LogImpl<T extends LogLevel> implements Log<T> {
                 .map("pid").to(pid())
                 .map("level").to(level.ordinal())
                 .map("hostname").to(config.hostname());
-        sink.push(level, mb.build());
+        return mb.build();
     }
 
     @Override
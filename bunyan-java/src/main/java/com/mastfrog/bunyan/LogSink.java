@@ -26,6 +26,7 @@ package com.mastfrog.bunyan;
 import com.google.inject.ImplementedBy;
 import com.mastfrog.bunyan.type.LogLevel;
 import java.util.Map;
+import java.util.function.Supplier;
 
 /**
  * Bind this instead of LogWriter if you want to receive log records as
@@ -42,4 +43,36 @@ public interface LogSink {
      * @param logrecord The log record
      */
     void push(LogLevel level, Map<String, Object> logrecord);
+
+    /**
+     * Optional interface for sinks which want some records assembled on a
+     * thread other than the one that logged them - for example, to keep
+     * serialization and I/O off of a network event loop.
+     */
+    interface Offloading {
+
+        /**
+         * Called when a log record is closed, before it has been assembled
+         * into a map.
+         *
+         * @param level The log level
+         * @return true if the record should be passed to offload() instead
+         * of push()
+         */
+        boolean shouldOffload(LogLevel level);
+
+        /**
+         * Receive a log record which has not been assembled yet. The
+         * supplier builds the same map push() would have received from a
+         * snapshot of what was added to the record, and may be called once,
+         * from any thread. Character sequences, maps and lists added to the
+         * record, and those they contain, are copied into the snapshot;
+         * other objects are not, so they must not be modified after the
+         * record is closed.
+         *
+         * @param level The log level
+         * @param record Supplies the log record
+         */
+        void offload(LogLevel level, Supplier<Map<String, Object>> record);
+    }
 }
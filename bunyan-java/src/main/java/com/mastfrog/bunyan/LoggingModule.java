@@ -136,12 +136,28 @@ public class LoggingModule extends AbstractModule {
     public static final Class<? extends LogSink> DEFAULT_LOG_SINK = DefaultLogSink.class;
 
     private boolean bindMultiLogSink;
+    private Class<? extends LogSink> primaryLogSink = DEFAULT_LOG_SINK;
 
     public LoggingModule bindMultiLogSink() {
         bindMultiLogSink = true;
         return this;
     }
 
+    /**
+     * Bind LogSink to MultiLogSink, passing every record to the passed sink
+     * type as well as any MultiLogSink.Sinks.
+     *
+     * @param primary The sink type which writes records
+     * @return This
+     */
+    public LoggingModule bindMultiLogSink(Class<? extends LogSink> primary) {
+        if (primary == MultiLogSink.class) {
+            throw new IllegalArgumentException("MultiLogSink cannot be its own primary sink");
+        }
+        primaryLogSink = primary;
+        return bindMultiLogSink();
+    }
+
     @Override
     protected void configure() {
         for (String s : loggers) {
@@ -149,6 +165,10 @@ public class LoggingModule extends AbstractModule {
                     .toProvider(new LoggerProvider(s, binder().getProvider(Loggers.class)));
         }
         install(jacksonModule);
+        // Bound even without bindMultiLogSink(), for code which binds
+        // LogSink to MultiLogSink itself, as was once the only way
+        bind(LogSink.class).annotatedWith(Names.named(MultiLogSink.GUICE_BINDING_PRIMARY_SINK))
+                .to(primaryLogSink);
         if(bindMultiLogSink) {
             bind(LogSink.class).to(MultiLogSink.class).asEagerSingleton();
         }
@@ -26,38 +26,71 @@ package com.mastfrog.bunyan;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.inject.name.Named;
 import com.mastfrog.bunyan.type.LogLevel;
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Supplier;
 import javax.inject.Inject;
+import javax.inject.Singleton;
 
 /**
  * Multiplexing LogSink - use for cases where you have a consumer of log records
- * that wants the raw map (say, storing log records in MongoDB). To use, bind
- * LogSink to MultiLogSink, and then implement any number of MultiLogSink.Sink
- * instances and bind them as eager singletons.
+ * that wants the raw map (say, storing log records in MongoDB). To use, call
+ * LoggingModule.bindMultiLogSink(), and then implement any number of
+ * MultiLogSink.Sink instances and bind them as eager singletons. Records are
+ * also passed to the primary sink, which is DefaultLogSink unless another
+ * one was passed to LoggingModule.bindMultiLogSink(Class); if that sink
+ * offloads records, so does this.
  *
  * @author Tim Boudreau
  */
-public final class MultiLogSink implements LogSink {
+@Singleton
+public final class MultiLogSink implements LogSink, LogSink.Offloading {
 
-    private final List<Sink> sinks = new ArrayList<>();
+    /**
+     * Name used by the Named annotation for the sink all records are passed
+     * to in addition to the registered Sinks.
+     */
+    public static final String GUICE_BINDING_PRIMARY_SINK = "multiLogSinkPrimary";
+    private final List<Sink> sinks = new CopyOnWriteArrayList<>();
+    private final LogSink primary;
     private final ObjectMapper mapper;
 
     @Inject
-    @SuppressWarnings("ResultOfObjectAllocationIgnored")
-    MultiLogSink(DefaultLogSink defaultSink, @Named(LoggingModule.GUICE_BINDING_OBJECT_MAPPER) ObjectMapper mapper) {
-        new DefaultWrapper(this, defaultSink);
+    MultiLogSink(@Named(GUICE_BINDING_PRIMARY_SINK) LogSink primary, @Named(LoggingModule.GUICE_BINDING_OBJECT_MAPPER) ObjectMapper mapper) {
+        this.primary = primary;
         this.mapper = mapper;
     }
 
     @Override
     public void push(LogLevel level, Map<String, Object> logrecord) {
+        primary.push(level, logrecord);
+        pushToSinks(level, logrecord);
+    }
+
+    private void pushToSinks(LogLevel level, Map<String, Object> logrecord) {
         for (Sink sink : sinks) {
             sink.push(level, logrecord, mapper);
         }
     }
 
+    @Override
+    public boolean shouldOffload(LogLevel level) {
+        return primary instanceof LogSink.Offloading
+                && ((LogSink.Offloading) primary).shouldOffload(level);
+    }
+
+    @Override
+    public void offload(LogLevel level, Supplier<Map<String, Object>> record) {
+        // The registered sinks get the record on whatever thread the
+        // primary sink assembles it on
+        ((LogSink.Offloading) primary).offload(level, () -> {
+            Map<String, Object> logrecord = record.get();
+            pushToSinks(level, logrecord);
+            return logrecord;
+        });
+    }
+
     void register(Sink sink) {
         sinks.add(sink);
     }
@@ -78,19 +111,4 @@ public final class MultiLogSink implements LogSink {
          */
         public abstract void push(LogLevel level, Map<String, Object> logrecord, ObjectMapper mapper);
     }
-
-    private static final class DefaultWrapper extends Sink {
-
-        private final DefaultLogSink sink;
-
-        public DefaultWrapper(MultiLogSink multi, DefaultLogSink sink) {
-            super(multi);
-            this.sink = sink;
-        }
-
-        @Override
-        public void push(LogLevel level, Map<String, Object> logrecord, ObjectMapper mapper) {
-            sink.push(level, logrecord);
-        }
-    }
 }
@@ -0,0 +1,181 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 Tim Boudreau.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.bunyan;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.inject.AbstractModule;
+import com.google.inject.Key;
+import com.google.inject.name.Names;
+import com.mastfrog.bunyan.type.Info;
+import com.mastfrog.bunyan.type.LogLevel;
+import com.mastfrog.giulius.Dependencies;
+import com.mastfrog.settings.Settings;
+import com.mastfrog.settings.SettingsBuilder;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Supplier;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ *
+ * @author Tim Boudreau
+ */
+public class MultiLogSinkTest {
+
+    @Test
+    public void testDefaultSinkAndSinksReceiveRecords() throws IOException {
+        Path file = Files.createTempFile(getClass().getSimpleName(), ".log");
+        try {
+            Dependencies deps = new Dependencies(settings(file), new LoggingModule(false)
+                    .bindLogger("x").bindMultiLogSink(), new SinkModule());
+            RecordingSink recording;
+            try {
+                MultiLogSink multi = deps.getInstance(MultiLogSink.class);
+                assertSame(multi, deps.getInstance(LogSink.class));
+                Logger logger = deps.getInstance(Key.get(Logger.class, Names.named("x")));
+                for (int i = 0; i < 3; i++) {
+                    try (Log<Info> log = logger.info("hello")) {
+                        log.add("index", i);
+                    }
+                }
+                recording = deps.getInstance(RecordingSink.class);
+            } finally {
+                deps.shutdown();
+            }
+            assertEquals(3, recording.records.size());
+            List<String> lines = Files.readAllLines(file);
+            assertEquals(3, lines.size());
+            ObjectMapper mapper = new ObjectMapper();
+            for (int i = 0; i < 3; i++) {
+                assertEquals(i, mapper.readValue(lines.get(i), Map.class).get("index"));
+                assertEquals(i, recording.records.get(i).get("index"));
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    public void testOffloadingPrimarySinkOffloadsForSinks() throws IOException {
+        Dependencies deps = new Dependencies(settings(null), new LoggingModule(false)
+                .bindLogger("x").bindMultiLogSink(OffloadingSink.class), new SinkModule());
+        try {
+            MultiLogSink multi = deps.getInstance(MultiLogSink.class);
+            assertSame(multi, deps.getInstance(LogSink.class));
+            OffloadingSink primary = deps.getInstance(OffloadingSink.class);
+            RecordingSink recording = deps.getInstance(RecordingSink.class);
+            Logger logger = deps.getInstance(Key.get(Logger.class, Names.named("x")));
+
+            logger.info("offloaded").close();
+            assertEquals(1, primary.offloaded.size());
+            assertTrue(primary.pushed.isEmpty());
+            // Sinks see the record when the primary sink assembles it
+            assertTrue(recording.records.isEmpty());
+            assertEquals("offloaded", primary.offloaded.get(0).get().get("msg"));
+            assertEquals(1, recording.records.size());
+            assertEquals("offloaded", recording.records.get(0).get("msg"));
+
+            primary.offload = false;
+            assertFalse(multi.shouldOffload(null));
+            logger.info("pushed").close();
+            assertEquals(1, primary.offloaded.size());
+            assertEquals(1, primary.pushed.size());
+            assertEquals(2, recording.records.size());
+            assertEquals("pushed", recording.records.get(1).get("msg"));
+        } finally {
+            deps.shutdown();
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMultiLogSinkCannotBeItsOwnPrimary() {
+        new LoggingModule(false).bindMultiLogSink(MultiLogSink.class);
+    }
+
+    private static Settings settings(Path file) {
+        SettingsBuilder sb = new SettingsBuilder()
+                .add(LoggingModule.SETTINGS_KEY_ASYNC_LOGGING, false)
+                .add(LoggingModule.SETTINGS_KEY_LOG_TO_CONSOLE, false);
+        if (file != null) {
+            sb.add(LoggingModule.SETTINGS_KEY_LOG_FILE, file.toString());
+        }
+        return sb.build();
+    }
+
+    static final class SinkModule extends AbstractModule {
+
+        @Override
+        protected void configure() {
+            bind(RecordingSink.class).asEagerSingleton();
+        }
+    }
+
+    static final class RecordingSink extends MultiLogSink.Sink {
+
+        final List<Map<String, Object>> records = new CopyOnWriteArrayList<>();
+
+        @Inject
+        RecordingSink(MultiLogSink multi) {
+            super(multi);
+        }
+
+        @Override
+        public void push(LogLevel level, Map<String, Object> logrecord, ObjectMapper mapper) {
+            records.add(logrecord);
+        }
+    }
+
+    @Singleton
+    static final class OffloadingSink implements LogSink, LogSink.Offloading {
+
+        final List<Supplier<Map<String, Object>>> offloaded = new CopyOnWriteArrayList<>();
+        final List<Map<String, Object>> pushed = new CopyOnWriteArrayList<>();
+        volatile boolean offload = true;
+
+        @Override
+        public boolean shouldOffload(LogLevel level) {
+            return offload;
+        }
+
+        @Override
+        public void offload(LogLevel level, Supplier<Map<String, Object>> record) {
+            offloaded.add(record);
+        }
+
+        @Override
+        public void push(LogLevel level, Map<String, Object> logrecord) {
+            pushed.add(logrecord);
+        }
+    }
+}
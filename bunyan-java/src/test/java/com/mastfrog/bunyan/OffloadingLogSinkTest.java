@@ -0,0 +1,128 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 Tim Boudreau.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.bunyan;
+
+import com.google.inject.AbstractModule;
+import com.mastfrog.bunyan.OffloadingLogSinkTest.MM;
+import static com.mastfrog.bunyan.ChildLoggerTest.assertEqualsS;
+import com.mastfrog.bunyan.type.Info;
+import com.mastfrog.bunyan.type.LogLevel;
+import com.mastfrog.giulius.tests.GuiceRunner;
+import com.mastfrog.giulius.tests.TestWith;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+import javax.inject.Named;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ *
+ * @author Tim Boudreau
+ */
+@RunWith(GuiceRunner.class)
+@TestWith(MM.class)
+public class OffloadingLogSinkTest {
+
+    @Test
+    public void testRecordsAreAssembledFromSnapshot(@Named("x") Logger logger, OffloadingSink sink) {
+        StringBuilder sb = new StringBuilder("hey");
+        try (Log<Info> l = logger.info(sb).add("foo", "bar")) {
+            l.add("skiddoo", 23);
+        }
+        sb.append(" you");
+        assertTrue("Record should not have been pushed", sink.pushed.isEmpty());
+        assertEquals(1, sink.offloaded.size());
+
+        Map<String, Object> m = sink.offloaded.get(0).get();
+        assertEqualsS("name", "x", m);
+        assertEqualsS("msg", "hey", m);
+        assertEqualsS("foo", "bar", m);
+        assertEqualsS("skiddoo", 23, m);
+
+        sink.offload = false;
+        logger.info("again").close();
+        assertEquals(1, sink.offloaded.size());
+        assertEquals(1, sink.pushed.size());
+        assertEqualsS("msg", "again", sink.pushed.get(0));
+    }
+
+    @Test
+    public void testMutableValuesAreCopiedIntoSnapshot(@Named("x") Logger logger, OffloadingSink sink) {
+        StringBuilder path = new StringBuilder("/api");
+        List<Object> tags = new ArrayList<>(Arrays.asList("a", path));
+        Map<String, Object> req = new LinkedHashMap<>();
+        req.put("path", path);
+        try (Log<Info> l = logger.info("request")) {
+            l.add("tags", tags).add("req", req).add("path", path);
+        }
+        path.append("/more");
+        tags.add("b");
+        req.put("status", 500);
+
+        Map<String, Object> m = sink.offloaded.get(0).get();
+        assertEqualsS("path", "/api", m);
+        assertEquals(Arrays.asList("a", "/api"), m.get("tags"));
+        assertEquals(Collections.singletonMap("path", "/api"), m.get("req"));
+    }
+
+    static final class MM extends AbstractModule {
+
+        @Override
+        protected void configure() {
+            install(new LoggingModule().bindLogger("x"));
+            OffloadingSink sink = new OffloadingSink();
+            bind(LogSink.class).toInstance(sink);
+            bind(OffloadingSink.class).toInstance(sink);
+        }
+    }
+
+    static final class OffloadingSink implements LogSink, LogSink.Offloading {
+
+        final List<Supplier<Map<String, Object>>> offloaded = new ArrayList<>();
+        final List<Map<String, Object>> pushed = new ArrayList<>();
+        boolean offload = true;
+
+        @Override
+        public boolean shouldOffload(LogLevel level) {
+            return offload;
+        }
+
+        @Override
+        public void offload(LogLevel level, Supplier<Map<String, Object>> record) {
+            offloaded.add(record);
+        }
+
+        @Override
+        public void push(LogLevel level, Map<String, Object> logrecord) {
+            pushed.add(logrecord);
+        }
+    }
+}
@@ -0,0 +1,769 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 Tim Boudreau.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.bunyan.parse;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collector;
+import java.util.stream.Stream;
+
+/**
+ * Summarizes a stream of log records without holding them in memory - counts
+ * of records, the sum, minimum, maximum and approximate percentiles of
+ * numeric fields, and the approximate number of distinct values and most
+ * frequent values of any field, grouped by the values of some fields and
+ * optionally by time bucket. For example, requests and 99th percentile
+ * duration per status code per minute:
+ * <pre>
+ * Aggregation agg = Aggregation.builder().groupBy("status")
+ *      .bucket(Duration.ofMinutes(1)).percentiles("dur").build();
+ * for (Map.Entry&lt;Aggregation.Group, Aggregation.Metrics&gt; e
+ *          : factory.aggregate(null, agg).groups().entrySet()) {
+ *      System.out.println(e.getKey() + ": " + e.getValue().count()
+ *          + " " + e.getValue().percentile("dur", 0.99));
+ * }
+ * </pre>
+ * or the distinct remote addresses per hour:
+ * <pre>
+ * Aggregation agg = Aggregation.builder().bucket(Duration.ofHours(1))
+ *      .distinct("remoteAddress").build();
+ * </pre>
+ * Fields are named as in the JSON, including core fields such as
+ * <code>level</code> and <code>hostname</code>; values in nested objects can
+ * be referred to by dotted paths such as <code>req.path</code>. Aggregation
+ * is done with a collector, so a parallel stream aggregates into a partial
+ * result per thread and merges them at the end; results from several files
+ * can be merged the same way.
+ *
+ * @author Tim Boudreau
+ */
+public final class Aggregation {
+
+    // Statistics requested for a numeric field, as bits
+    private static final int SUM = 1;
+    private static final int MIN = 2;
+    private static final int MAX = 4;
+    private static final int PERCENTILES = 8;
+    private final List<String> groupBy;
+    private final long bucketMillis;
+    private final List<String> fields;
+    private final int[] stats;
+    private final List<String> distinct;
+    private final List<String> topFields;
+    private final int[] topK;
+    private final int[] topWidths;
+    private final int[] topDepths;
+
+    private Aggregation(Builder builder) {
+        groupBy = Collections.unmodifiableList(new ArrayList<>(builder.groupBy));
+        bucketMillis = builder.bucketMillis;
+        fields = Collections.unmodifiableList(new ArrayList<>(builder.fields.keySet()));
+        stats = new int[fields.size()];
+        for (int i = 0; i < stats.length; i++) {
+            stats[i] = builder.fields.get(fields.get(i));
+        }
+        distinct = Collections.unmodifiableList(new ArrayList<>(builder.distinct));
+        topFields = Collections.unmodifiableList(new ArrayList<>(builder.topK.keySet()));
+        topK = new int[topFields.size()];
+        topWidths = new int[topK.length];
+        topDepths = new int[topK.length];
+        for (int i = 0; i < topK.length; i++) {
+            int[] spec = builder.topK.get(topFields.get(i));
+            topK[i] = spec[0];
+            topWidths[i] = spec[1];
+            topDepths[i] = spec[2];
+        }
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Aggregate a stream, in parallel if it is a parallel stream.
+     *
+     * @param records The records
+     * @return The result
+     */
+    public Result apply(Stream<LogRecord> records) {
+        return records.collect(collector());
+    }
+
+    /**
+     * Get a collector which performs this aggregation.
+     *
+     * @return A collector
+     */
+    public Collector<LogRecord, ?, Result> collector() {
+        return Collector.of(() -> new Result(this), Result::add, Result::merge,
+                Collector.Characteristics.UNORDERED, Collector.Characteristics.IDENTITY_FINISH);
+    }
+
+    private int fieldIndex(String field) {
+        int result = fields.indexOf(field);
+        if (result < 0) {
+            throw new IllegalArgumentException("Not aggregated: " + field
+                    + " in " + fields);
+        }
+        return result;
+    }
+
+    private int statIndex(String field, int stat, String what) {
+        int result = fieldIndex(field);
+        if ((stats[result] & stat) == 0) {
+            throw new IllegalArgumentException(what + " not computed for " + field);
+        }
+        return result;
+    }
+
+    private static int sketchIndex(List<String> sketchedFields, String field, String what) {
+        int result = sketchedFields.indexOf(field);
+        if (result < 0) {
+            throw new IllegalArgumentException(what + " not computed for " + field
+                    + " - only " + sketchedFields);
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "Aggregation(groupBy=" + groupBy + ", bucket=" + bucketMillis
+                + "ms, fields=" + fields + ", distinct=" + distinct
+                + ", topK=" + topFields + ")";
+    }
+
+    /**
+     * Builds an aggregation.
+     */
+    public static final class Builder {
+
+        private final List<String> groupBy = new ArrayList<>();
+        private final Map<String, Integer> fields = new LinkedHashMap<>();
+        private final Set<String> distinct = new LinkedHashSet<>();
+        private final Map<String, int[]> topK = new LinkedHashMap<>();
+        private long bucketMillis;
+
+        Builder() {
+        }
+
+        /**
+         * Group records by the values of some fields; records which lack
+         * a field are grouped under null.
+         *
+         * @param fields The field names
+         * @return this
+         */
+        public Builder groupBy(String... fields) {
+            groupBy.addAll(Arrays.asList(fields));
+            return this;
+        }
+
+        /**
+         * Group records into buckets of a fixed length of time, aligned to
+         * the epoch.
+         *
+         * @param bucket The bucket length
+         * @return this
+         */
+        public Builder bucket(Duration bucket) {
+            if (bucket.isNegative() || bucket.isZero()) {
+                throw new IllegalArgumentException("Bad bucket " + bucket);
+            }
+            bucketMillis = bucket.toMillis();
+            return this;
+        }
+
+        /**
+         * Compute the sum and mean of a numeric field.
+         *
+         * @param field The field name
+         * @return this
+         */
+        public Builder sum(String field) {
+            return stat(field, SUM);
+        }
+
+        /**
+         * Compute the minimum of a numeric field.
+         *
+         * @param field The field name
+         * @return this
+         */
+        public Builder min(String field) {
+            return stat(field, MIN);
+        }
+
+        /**
+         * Compute the maximum of a numeric field.
+         *
+         * @param field The field name
+         * @return this
+         */
+        public Builder max(String field) {
+            return stat(field, MAX);
+        }
+
+        /**
+         * Compute approximate percentiles of a numeric field, with
+         * {@link QuantileSketch#DEFAULT_RELATIVE_ACCURACY}.
+         *
+         * @param field The field name
+         * @return this
+         */
+        public Builder percentiles(String field) {
+            return stat(field, PERCENTILES);
+        }
+
+        private Builder stat(String field, int stat) {
+            fields.merge(field, stat, (a, b) -> a | b);
+            return this;
+        }
+
+        /**
+         * Estimate the number of distinct values of a field, of any type,
+         * with a {@link HyperLogLog} of the default precision.
+         *
+         * @param field The field name
+         * @return this
+         */
+        public Builder distinct(String field) {
+            distinct.add(field);
+            return this;
+        }
+
+        /**
+         * Find the most frequent values of a field, of any type, and
+         * estimate their counts with a {@link CountMinSketch} of the default
+         * dimensions.
+         *
+         * @param field The field name
+         * @param k The number of values wanted
+         * @return this
+         */
+        public Builder topK(String field, int k) {
+            return topK(field, k, CountMinSketch.DEFAULT_WIDTH, CountMinSketch.DEFAULT_DEPTH);
+        }
+
+        /**
+         * Find the most frequent values of a field, of any type, and
+         * estimate their counts with a {@link CountMinSketch} of the passed
+         * dimensions. Each group in each time bucket gets its own sketch of
+         * <i>width</i> x <i>depth</i> counters, so when there are many
+         * groups, a smaller sketch - trading accuracy for memory - may be
+         * wanted.
+         *
+         * @param field The field name
+         * @param k The number of values wanted
+         * @param width The number of counters per row of the sketch
+         * @param depth The number of rows of the sketch
+         * @return this
+         */
+        public Builder topK(String field, int k, int width, int depth) {
+            if (k <= 0) {
+                throw new IllegalArgumentException("Bad k " + k);
+            }
+            if (width <= 0 || depth <= 0 || (long) width * depth > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Bad width " + width + " or depth " + depth);
+            }
+            topK.put(field, new int[]{k, width, depth});
+            return this;
+        }
+
+        public Aggregation build() {
+            return new Aggregation(this);
+        }
+    }
+
+    /**
+     * The values of the group-by fields and the time bucket that a set of
+     * records share.
+     */
+    public static final class Group {
+
+        private final Aggregation aggregation;
+        private final Object[] keys;
+        private final long bucket;
+
+        Group(Aggregation aggregation, Object[] keys, long bucket) {
+            this.aggregation = aggregation;
+            this.keys = keys;
+            this.bucket = bucket;
+        }
+
+        /**
+         * Get the value of a group-by field.
+         *
+         * @param field The field name
+         * @return The value, or null if the records lack it
+         */
+        public Object key(String field) {
+            int ix = aggregation.groupBy.indexOf(field);
+            if (ix < 0) {
+                throw new IllegalArgumentException("Not grouped by " + field);
+            }
+            return keys[ix];
+        }
+
+        /**
+         * Get the values of the group-by fields in the order they were
+         * specified.
+         *
+         * @return The values
+         */
+        public List<Object> keys() {
+            return Collections.unmodifiableList(Arrays.asList(keys));
+        }
+
+        /**
+         * Get the start of the time bucket, in UTC.
+         *
+         * @return The start of the bucket, or null if not bucketing by time
+         * or the records have no time
+         */
+        public ZonedDateTime bucket() {
+            return bucket == Long.MIN_VALUE ? null
+                    : ZonedDateTime.ofInstant(Instant.ofEpochMilli(bucket), ZoneOffset.UTC);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * Arrays.hashCode(keys) + Long.hashCode(bucket);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            } else if (!(obj instanceof Group)) {
+                return false;
+            }
+            Group other = (Group) obj;
+            return bucket == other.bucket && Arrays.equals(keys, other.keys);
+        }
+
+        @Override
+        public String toString() {
+            ZonedDateTime time = bucket();
+            StringBuilder sb = new StringBuilder();
+            if (time != null) {
+                sb.append(time);
+            }
+            for (int i = 0; i < keys.length; i++) {
+                if (sb.length() > 0) {
+                    sb.append(", ");
+                }
+                sb.append(aggregation.groupBy.get(i)).append('=').append(keys[i]);
+            }
+            return sb.toString();
+        }
+
+        private static final Comparator<Group> ORDER = (a, b) -> {
+            int result = Long.compare(a.bucket, b.bucket);
+            for (int i = 0; result == 0 && i < a.keys.length; i++) {
+                result = compareKeys(a.keys[i], b.keys[i]);
+            }
+            return result;
+        };
+
+        private static int compareKeys(Object a, Object b) {
+            if (a == null || b == null) {
+                return a == null ? b == null ? 0 : -1 : 1;
+            } else if (a instanceof Number && b instanceof Number) {
+                return Double.compare(((Number) a).doubleValue(), ((Number) b).doubleValue());
+            }
+            return a.toString().compareTo(b.toString());
+        }
+    }
+
+    /**
+     * The count of records in a group, and statistics of the numeric fields
+     * being aggregated. Non-numeric and missing values of a field are not
+     * counted in its statistics; missing values are not counted as distinct
+     * or frequent values either.
+     */
+    public static final class Metrics {
+
+        private final Aggregation aggregation;
+        private final long[] counts;
+        private final double[] sums;
+        private final double[] mins;
+        private final double[] maxes;
+        private final QuantileSketch[] sketches;
+        private final HyperLogLog[] cardinalities;
+        private final CountMinSketch[] frequencies;
+        private long count;
+
+        Metrics(Aggregation aggregation) {
+            this.aggregation = aggregation;
+            int size = aggregation.fields.size();
+            counts = new long[size];
+            sums = new double[size];
+            mins = new double[size];
+            maxes = new double[size];
+            Arrays.fill(mins, Double.POSITIVE_INFINITY);
+            Arrays.fill(maxes, Double.NEGATIVE_INFINITY);
+            sketches = new QuantileSketch[size];
+            for (int i = 0; i < size; i++) {
+                if ((aggregation.stats[i] & PERCENTILES) != 0) {
+                    sketches[i] = new QuantileSketch();
+                }
+            }
+            cardinalities = new HyperLogLog[aggregation.distinct.size()];
+            for (int i = 0; i < cardinalities.length; i++) {
+                cardinalities[i] = new HyperLogLog();
+            }
+            frequencies = new CountMinSketch[aggregation.topK.length];
+            for (int i = 0; i < frequencies.length; i++) {
+                frequencies[i] = new CountMinSketch(aggregation.topWidths[i],
+                        aggregation.topDepths[i],
+                        Math.max(aggregation.topK[i], CountMinSketch.DEFAULT_TRACKED));
+            }
+        }
+
+        void add(LogRecord record) {
+            count++;
+            for (int i = 0; i < counts.length; i++) {
+                Object value = Fields.value(record, aggregation.fields.get(i));
+                if (value instanceof Number) {
+                    double v = ((Number) value).doubleValue();
+                    int stats = aggregation.stats[i];
+                    counts[i]++;
+                    if ((stats & SUM) != 0) {
+                        sums[i] += v;
+                    }
+                    if ((stats & MIN) != 0) {
+                        mins[i] = Math.min(mins[i], v);
+                    }
+                    if ((stats & MAX) != 0) {
+                        maxes[i] = Math.max(maxes[i], v);
+                    }
+                    if (sketches[i] != null) {
+                        sketches[i].add(v);
+                    }
+                }
+            }
+            for (int i = 0; i < cardinalities.length; i++) {
+                Object value = Fields.value(record, aggregation.distinct.get(i));
+                if (value != null) {
+                    cardinalities[i].add(value);
+                }
+            }
+            for (int i = 0; i < frequencies.length; i++) {
+                Object value = Fields.value(record, aggregation.topFields.get(i));
+                if (value != null) {
+                    frequencies[i].add(value);
+                }
+            }
+        }
+
+        void merge(Metrics other) {
+            count += other.count;
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] += other.counts[i];
+                sums[i] += other.sums[i];
+                mins[i] = Math.min(mins[i], other.mins[i]);
+                maxes[i] = Math.max(maxes[i], other.maxes[i]);
+                if (sketches[i] != null) {
+                    sketches[i].merge(other.sketches[i]);
+                }
+            }
+            for (int i = 0; i < cardinalities.length; i++) {
+                cardinalities[i].merge(other.cardinalities[i]);
+            }
+            for (int i = 0; i < frequencies.length; i++) {
+                frequencies[i].merge(other.frequencies[i]);
+            }
+        }
+
+        /**
+         * Get the number of records in the group.
+         *
+         * @return The count
+         */
+        public long count() {
+            return count;
+        }
+
+        /**
+         * Get the number of records in the group with a numeric value for
+         * a field.
+         *
+         * @param field The field name
+         * @return The count
+         */
+        public long count(String field) {
+            return counts[aggregation.fieldIndex(field)];
+        }
+
+        /**
+         * Get the sum of a field, which must have been passed to
+         * {@link Builder#sum(String)}.
+         *
+         * @param field The field name
+         * @return The sum
+         */
+        public double sum(String field) {
+            return sums[aggregation.statIndex(field, SUM, "Sum")];
+        }
+
+        /**
+         * Get the minimum of a field, which must have been passed to
+         * {@link Builder#min(String)}.
+         *
+         * @param field The field name
+         * @return The minimum, or NaN if no record had a numeric value
+         */
+        public double min(String field) {
+            int ix = aggregation.statIndex(field, MIN, "Minimum");
+            return counts[ix] == 0 ? Double.NaN : mins[ix];
+        }
+
+        /**
+         * Get the maximum of a field, which must have been passed to
+         * {@link Builder#max(String)}.
+         *
+         * @param field The field name
+         * @return The maximum, or NaN if no record had a numeric value
+         */
+        public double max(String field) {
+            int ix = aggregation.statIndex(field, MAX, "Maximum");
+            return counts[ix] == 0 ? Double.NaN : maxes[ix];
+        }
+
+        /**
+         * Get the mean of a field, which must have been passed to
+         * {@link Builder#sum(String)}.
+         *
+         * @param field The field name
+         * @return The mean, or NaN if no record had a numeric value
+         */
+        public double mean(String field) {
+            int ix = aggregation.statIndex(field, SUM, "Mean");
+            return counts[ix] == 0 ? Double.NaN : sums[ix] / counts[ix];
+        }
+
+        /**
+         * Get an approximate percentile of a field, which must have been
+         * passed to {@link Builder#percentiles(String)}.
+         *
+         * @param field The field name
+         * @param quantile The quantile, from 0 to 1
+         * @return The value, or NaN if no record had a numeric value
+         */
+        public double percentile(String field, double quantile) {
+            return sketch(field).quantile(quantile);
+        }
+
+        /**
+         * Get the sketch of the distribution of a field, which must have been
+         * passed to {@link Builder#percentiles(String)}.
+         *
+         * @param field The field name
+         * @return The sketch
+         */
+        public QuantileSketch sketch(String field) {
+            return sketches[aggregation.statIndex(field, PERCENTILES, "Percentiles")];
+        }
+
+        /**
+         * Get the approximate number of distinct values of a field, which
+         * must have been passed to {@link Builder#distinct(String)}.
+         *
+         * @param field The field name
+         * @return The estimate
+         */
+        public long distinct(String field) {
+            return hyperLogLog(field).estimate();
+        }
+
+        /**
+         * Get the sketch of the distinct values of a field, which must have
+         * been passed to {@link Builder#distinct(String)}.
+         *
+         * @param field The field name
+         * @return The sketch
+         */
+        public HyperLogLog hyperLogLog(String field) {
+            return cardinalities[sketchIndex(aggregation.distinct, field, "Distinct values")];
+        }
+
+        /**
+         * Get the most frequent values of a field and their approximate
+         * counts, most frequent first, for the field and number of values
+         * passed to {@link Builder#topK(String, int)}.
+         *
+         * @param field The field name
+         * @return The values and counts
+         */
+        public List<Map.Entry<Object, Long>> topK(String field) {
+            int ix = sketchIndex(aggregation.topFields, field, "Top values");
+            return frequencies[ix].topK(aggregation.topK[ix]);
+        }
+
+        /**
+         * Get the sketch of the frequencies of the values of a field, which
+         * must have been passed to {@link Builder#topK(String, int)}.
+         *
+         * @param field The field name
+         * @return The sketch
+         */
+        public CountMinSketch countMin(String field) {
+            return frequencies[sketchIndex(aggregation.topFields, field, "Top values")];
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder("count=").append(count);
+            for (int i = 0; i < counts.length; i++) {
+                String field = aggregation.fields.get(i);
+                int stats = aggregation.stats[i];
+                sb.append(", ").append(field).append("(count=").append(counts[i]);
+                if ((stats & SUM) != 0) {
+                    sb.append(", sum=").append(sum(field));
+                }
+                if ((stats & MIN) != 0) {
+                    sb.append(", min=").append(min(field));
+                }
+                if ((stats & MAX) != 0) {
+                    sb.append(", max=").append(max(field));
+                }
+                if (sketches[i] != null) {
+                    sb.append(", p50=").append(sketches[i].quantile(0.5))
+                            .append(", p99=").append(sketches[i].quantile(0.99));
+                }
+                sb.append(')');
+            }
+            for (int i = 0; i < cardinalities.length; i++) {
+                sb.append(", distinct(").append(aggregation.distinct.get(i)).append(")=")
+                        .append(cardinalities[i].estimate());
+            }
+            for (int i = 0; i < frequencies.length; i++) {
+                sb.append(", top(").append(aggregation.topFields.get(i)).append(")=")
+                        .append(frequencies[i].topK(aggregation.topK[i]));
+            }
+            return sb.toString();
+        }
+    }
+
+    /**
+     * The result of an aggregation; while a stream is being aggregated, each
+     * thread accumulates its own result and they are merged at the end.
+     */
+    public static final class Result {
+
+        private final Aggregation aggregation;
+        private final Map<Group, Metrics> groups = new HashMap<>();
+
+        Result(Aggregation aggregation) {
+            this.aggregation = aggregation;
+        }
+
+        void add(LogRecord record) {
+            Object[] keys = new Object[aggregation.groupBy.size()];
+            for (int i = 0; i < keys.length; i++) {
+                keys[i] = Fields.value(record, aggregation.groupBy.get(i));
+            }
+            long bucket = Long.MIN_VALUE;
+            long time;
+            if (aggregation.bucketMillis > 0 && (time = record.timeMillis()) != TimeParser.NO_TIME) {
+                bucket = Math.floorDiv(time, aggregation.bucketMillis) * aggregation.bucketMillis;
+            }
+            groups.computeIfAbsent(new Group(aggregation, keys, bucket),
+                    g -> new Metrics(aggregation)).add(record);
+        }
+
+        /**
+         * Merge another result of the same aggregation - say, of another
+         * file - into this one.
+         *
+         * @param other Another result
+         * @return this
+         */
+        public Result merge(Result other) {
+            if (other.aggregation != aggregation) {
+                throw new IllegalArgumentException("Not the same aggregation: "
+                        + other.aggregation + " and " + aggregation);
+            }
+            for (Map.Entry<Group, Metrics> e : other.groups.entrySet()) {
+                // Merge into metrics of our own, so that later merges into
+                // this result cannot alter the other one
+                groups.computeIfAbsent(e.getKey(), g -> new Metrics(aggregation))
+                        .merge(e.getValue());
+            }
+            return this;
+        }
+
+        /**
+         * Get the groups, ordered by time bucket and then by the values of
+         * the group-by fields.
+         *
+         * @return The groups and their metrics
+         */
+        public Map<Group, Metrics> groups() {
+            List<Group> keys = new ArrayList<>(groups.keySet());
+            keys.sort(Group.ORDER);
+            Map<Group, Metrics> result = new LinkedHashMap<>();
+            for (Group key : keys) {
+                result.put(key, groups.get(key));
+            }
+            return Collections.unmodifiableMap(result);
+        }
+
+        /**
+         * Get the metrics of the group with the passed values of the
+         * group-by fields, when not bucketing by time.
+         *
+         * @param keys The values, in the order of the group-by fields
+         * @return The metrics, or null if no records had those values
+         */
+        public Metrics get(Object... keys) {
+            Object[] normalized = new Object[keys.length];
+            for (int i = 0; i < keys.length; i++) {
+                normalized[i] = Fields.normalize(keys[i]);
+            }
+            return groups.get(new Group(aggregation, normalized, Long.MIN_VALUE));
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            for (Map.Entry<Group, Metrics> e : groups().entrySet()) {
+                sb.append(e.getKey()).append(": ").append(e.getValue()).append('\n');
+            }
+            return sb.toString();
+        }
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 Tim Boudreau.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.bunyan.parse;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * A simple bloom filter over strings, using double hashing of a 64-bit
+ * FNV-1a hash to derive its probes.
+ *
+ * @author Tim Boudreau
+ */
+final class BloomFilter {
+
+    private static final int BITS_PER_ELEMENT = 10;
+    private static final int HASHES = 7;
+    private final long[] bits;
+
+    private BloomFilter(long[] bits) {
+        this.bits = bits;
+    }
+
+    /**
+     * Create a bloom filter sized for a false-positive rate of about 1% with
+     * the passed number of elements.
+     *
+     * @param expectedElements The number of elements
+     */
+    BloomFilter(int expectedElements) {
+        int words = Math.max(1, (expectedElements * BITS_PER_ELEMENT + 63) / 64);
+        bits = new long[words];
+    }
+
+    void add(CharSequence s) {
+        long hash = hash(s);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        long bitCount = bits.length * 64L;
+        for (int i = 0; i < HASHES; i++) {
+            int bit = (int) (((h1 + i * h2) & Integer.MAX_VALUE) % bitCount);
+            bits[bit >>> 6] |= 1L << bit;
+        }
+    }
+
+    boolean mightContain(CharSequence s) {
+        long hash = hash(s);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        long bitCount = bits.length * 64L;
+        for (int i = 0; i < HASHES; i++) {
+            int bit = (int) (((h1 + i * h2) & Integer.MAX_VALUE) % bitCount);
+            if ((bits[bit >>> 6] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    static long hash(CharSequence s) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < s.length(); i++) {
+            hash ^= s.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        // FNV's low bits are weak; finish with murmur3's mixer
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    void write(DataOutput out) throws IOException {
+        out.writeInt(bits.length);
+        for (long word : bits) {
+            out.writeLong(word);
+        }
+    }
+
+    static BloomFilter read(DataInput in) throws IOException {
+        long[] bits = new long[in.readInt()];
+        for (int i = 0; i < bits.length; i++) {
+            bits[i] = in.readLong();
+        }
+        return new BloomFilter(bits);
+    }
+}
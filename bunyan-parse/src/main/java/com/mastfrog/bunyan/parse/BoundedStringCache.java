@@ -0,0 +1,136 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 Tim Boudreau.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.bunyan.parse;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A fixed-size, two-way set-associative table of strings. Slots are read and
+ * written without locking; a racing write can only cause a string to be
+ * forgotten or stored twice, and Strings are safe to publish through a
+ * race.
+ *
+ * @author Tim Boudreau
+ */
+final class BoundedStringCache implements StringCache {
+
+    private final String[] table;
+    private final int mask;
+    private final int maxLength;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    BoundedStringCache(int capacity, int maxLength) {
+        if (capacity < 2 || capacity > 1 << 28) {
+            throw new IllegalArgumentException("Bad capacity " + capacity);
+        }
+        int size = Integer.highestOneBit(capacity - 1) << 1;
+        table = new String[size];
+        mask = size - 2;
+        this.maxLength = maxLength;
+    }
+
+    @Override
+    public String dedup(String s) {
+        if (s == null || s.length() > maxLength) {
+            return s;
+        }
+        int slot = slot(s.hashCode());
+        String cached = table[slot];
+        if (s.equals(cached)) {
+            hits.increment();
+            return cached;
+        }
+        cached = table[slot + 1];
+        if (s.equals(cached)) {
+            hits.increment();
+            return cached;
+        }
+        return store(slot, s);
+    }
+
+    @Override
+    public String dedup(char[] chars, int offset, int length) {
+        if (length > maxLength) {
+            return new String(chars, offset, length);
+        }
+        // Same as String.hashCode()
+        int hash = 0;
+        for (int i = offset; i < offset + length; i++) {
+            hash = 31 * hash + chars[i];
+        }
+        int slot = slot(hash);
+        String cached = table[slot];
+        if (cached != null && equal(cached, chars, offset, length)) {
+            hits.increment();
+            return cached;
+        }
+        cached = table[slot + 1];
+        if (cached != null && equal(cached, chars, offset, length)) {
+            hits.increment();
+            return cached;
+        }
+        return store(slot, new String(chars, offset, length));
+    }
+
+    private String store(int slot, String s) {
+        misses.increment();
+        // The newest string goes first; the previous first is kept second
+        table[slot + 1] = table[slot];
+        table[slot] = s;
+        return s;
+    }
+
+    private int slot(int hash) {
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+
+    private static boolean equal(String s, char[] chars, int offset, int length) {
+        if (s.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (s.charAt(i) != chars[offset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public long hits() {
+        return hits.sum();
+    }
+
+    @Override
+    public long misses() {
+        return misses.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "BoundedStringCache(" + table.length + " strings up to " + maxLength
+                + " chars, hit rate " + hitRate() + ")";
+    }
+}
@@ -0,0 +1,194 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 Tim Boudreau.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.bunyan.parse;
+
+import java.nio.ByteBuffer;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Tests a range of a ByteBuffer containing UTF-8 text for the presence of
+ * groups of strings, without decoding it, using an Aho-Corasick automaton
+ * compiled to a full transition table, so each byte costs one table lookup
+ * regardless of the number of strings. A range matches if, for every group,
+ * at least one of the group's strings occurs in it - so a single group gives
+ * OR semantics and one group per string gives AND semantics. Immutable and
+ * thread-safe once constructed.
+ *
+ * @author Tim Boudreau
+ */
+final class ByteMatcher {
+
+    /**
+     * Groups are tracked as bits in a long; groups past this are dropped,
+     * which can only make the matcher more permissive.
+     */
+    static final int MAX_GROUPS = 64;
+    private static final int ALPHABET = 256;
+    private final int[] transitions;
+    private final long[] outputs;
+    private final long allGroups;
+
+    /**
+     * Create a matcher.
+     *
+     * @param groups A list of groups of strings, at least one string from
+     * each of which must be present for a range to match
+     */
+    ByteMatcher(List<? extends Collection<String>> groups) {
+        List<byte[]> needles = new ArrayList<>();
+        List<Integer> needleGroups = new ArrayList<>();
+        int groupCount = Math.min(MAX_GROUPS, groups.size());
+        for (int g = 0; g < groupCount; g++) {
+            for (String s : groups.get(g)) {
+                needles.add(s.getBytes(UTF_8));
+                needleGroups.add(g);
+            }
+        }
+        allGroups = groupCount == MAX_GROUPS ? -1L : (1L << groupCount) - 1;
+        // Build the trie
+        int maxStates = 1;
+        for (byte[] needle : needles) {
+            maxStates += needle.length;
+        }
+        int[] trie = new int[maxStates * ALPHABET];
+        Arrays.fill(trie, -1);
+        long[] out = new long[maxStates];
+        int stateCount = 1;
+        for (int i = 0; i < needles.size(); i++) {
+            int state = 0;
+            for (byte b : needles.get(i)) {
+                int ix = state * ALPHABET + (b & 0xFF);
+                if (trie[ix] < 0) {
+                    trie[ix] = stateCount++;
+                }
+                state = trie[ix];
+            }
+            out[state] |= 1L << needleGroups.get(i);
+        }
+        // Breadth-first over the trie, computing failure links and filling
+        // in the missing transitions from them, so matching never needs to
+        // follow a failure link
+        int[] fail = new int[stateCount];
+        int[] queue = new int[stateCount];
+        int head = 0;
+        int tail = 0;
+        for (int c = 0; c < ALPHABET; c++) {
+            int next = trie[c];
+            if (next < 0) {
+                trie[c] = 0;
+            } else {
+                fail[next] = 0;
+                queue[tail++] = next;
+            }
+        }
+        while (head < tail) {
+            int state = queue[head++];
+            out[state] |= out[fail[state]];
+            for (int c = 0; c < ALPHABET; c++) {
+                int ix = state * ALPHABET + c;
+                int next = trie[ix];
+                if (next < 0) {
+                    trie[ix] = trie[fail[state] * ALPHABET + c];
+                } else {
+                    fail[next] = trie[fail[state] * ALPHABET + c];
+                    queue[tail++] = next;
+                }
+            }
+        }
+        transitions = Arrays.copyOf(trie, stateCount * ALPHABET);
+        outputs = Arrays.copyOf(out, stateCount);
+    }
+
+    /**
+     * Create a matcher which matches if any of the passed strings is present.
+     *
+     * @param strings Some strings
+     * @return A matcher
+     */
+    static ByteMatcher any(String... strings) {
+        return new ByteMatcher(strings.length == 0
+                ? Collections.<List<String>>emptyList()
+                : Collections.singletonList(Arrays.asList(strings)));
+    }
+
+    /**
+     * Create a matcher which matches if all of the passed strings are
+     * present.
+     *
+     * @param strings Some strings
+     * @return A matcher
+     */
+    static ByteMatcher all(String... strings) {
+        List<List<String>> groups = new ArrayList<>(strings.length);
+        for (String s : strings) {
+            groups.add(Collections.singletonList(s));
+        }
+        return new ByteMatcher(groups);
+    }
+
+    /**
+     * Determine if this matcher matches everything.
+     *
+     * @return true if there are no groups
+     */
+    boolean isEmpty() {
+        return allGroups == 0;
+    }
+
+    /**
+     * Test the bytes between start and end in the passed buffer, using
+     * absolute gets, so the buffer's position is not altered.
+     *
+     * @param buf A buffer
+     * @param start The start offset
+     * @param end The end offset, exclusive
+     * @return true if some string from every group is present
+     */
+    boolean matches(ByteBuffer buf, int start, int end) {
+        // The root state's output is non-zero only for empty strings
+        long found = outputs[0];
+        if ((found & allGroups) == allGroups) {
+            return true;
+        }
+        int[] trans = transitions;
+        long[] outs = outputs;
+        int state = 0;
+        for (int i = start; i < end; i++) {
+            state = trans[state * ALPHABET + (buf.get(i) & 0xFF)];
+            long out = outs[state];
+            if (out != 0) {
+                found |= out;
+                if (found == allGroups) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+}
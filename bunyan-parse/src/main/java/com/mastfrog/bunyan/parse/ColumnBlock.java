@@ -0,0 +1,490 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 Tim Boudreau.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.bunyan.parse;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.mastfrog.util.preconditions.Exceptions;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * One block of rows of a {@link ColumnarLog}. Each column of a block is
+ * stored contiguously: primitive arrays for level, pid and time, dictionary
+ * ids for name and hostname, offsets into a byte heap for messages, and for
+ * each property present in any row of the block, the rows it is present in
+ * and their values. The block is memory-mapped when first read, and values
+ * are read with absolute gets, so only the pages of the columns a query
+ * touches are ever read from disk.
+ *
+ * @author Tim Boudreau
+ */
+final class ColumnBlock {
+
+    static final int LEVEL = 0;
+    static final int PID = 1;
+    static final int TIME = 2;
+    static final int TIME_DETAIL = 3;
+    static final int NAME = 4;
+    static final int HOSTNAME = 5;
+    static final int MSG = 6;
+    private static final int SECTIONS = 7;
+    private static final byte NULL = 0;
+    private static final byte TRUE = 1;
+    private static final byte FALSE = 2;
+    private static final byte INT = 3;
+    private static final byte LONG = 4;
+    private static final byte DOUBLE = 5;
+    private static final byte STRING = 6;
+    private static final byte JSON = 7;
+    final int rows;
+    final IndexBlock stats;
+    private final long offset;
+    private final int length;
+    private final int[] sections;
+    // Property name to offset of its section
+    private final Map<String, Integer> properties;
+    private volatile ByteBuffer mapped;
+
+    ColumnBlock(int rows, long offset, int length, int[] sections, Map<String, Integer> properties, IndexBlock stats) {
+        this.rows = rows;
+        this.offset = offset;
+        this.length = length;
+        this.sections = sections;
+        this.properties = properties;
+        this.stats = stats;
+    }
+
+    int length() {
+        return length;
+    }
+
+    private ByteBuffer buffer(Path file) {
+        ByteBuffer result = mapped;
+        if (result == null) {
+            // A racing thread may map it twice, which is harmless
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                mapped = result = channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+            } catch (IOException ex) {
+                return Exceptions.chuck(ex);
+            }
+        }
+        return result;
+    }
+
+    int level(ColumnarLog log, int row) {
+        return buffer(log.file()).getInt(sections[LEVEL] + row * 4);
+    }
+
+    int pid(ColumnarLog log, int row) {
+        return buffer(log.file()).getInt(sections[PID] + row * 4);
+    }
+
+    long timeMillis(ColumnarLog log, int row) {
+        return buffer(log.file()).getLong(sections[TIME] + row * 8);
+    }
+
+    ZonedDateTime time(ColumnarLog log, int row) {
+        ByteBuffer buf = buffer(log.file());
+        long millis = buf.getLong(sections[TIME] + row * 8);
+        if (millis == TimeParser.NO_TIME) {
+            return null;
+        }
+        int detail = sections[TIME_DETAIL] + row * 8;
+        int nanosOfMilli = buf.getInt(detail);
+        ZoneId zone = ZoneId.of(log.string(buf.getInt(detail + 4)));
+        return ZonedDateTime.ofInstant(Instant.ofEpochSecond(Math.floorDiv(millis, 1000),
+                Math.floorMod(millis, 1000) * 1000000L + nanosOfMilli), zone);
+    }
+
+    String name(ColumnarLog log, int row) {
+        return log.string(buffer(log.file()).getInt(sections[NAME] + row * 4));
+    }
+
+    String hostName(ColumnarLog log, int row) {
+        return log.string(buffer(log.file()).getInt(sections[HOSTNAME] + row * 4));
+    }
+
+    String msg(ColumnarLog log, int row) {
+        ByteBuffer buf = buffer(log.file());
+        int start = buf.getInt(sections[MSG] + row * 8);
+        if (start < 0) {
+            return null;
+        }
+        int len = buf.getInt(sections[MSG] + row * 8 + 4);
+        return new String(bytes(buf, sections[MSG] + rows * 8 + start, len), UTF_8);
+    }
+
+    /**
+     * Get the names of the properties which appear in any row of this
+     * block.
+     */
+    Set<String> propertyNames() {
+        return properties.keySet();
+    }
+
+    boolean has(ColumnarLog log, int row, String property) {
+        Integer section = properties.get(property);
+        return section != null && find(buffer(log.file()), section, row) >= 0;
+    }
+
+    /**
+     * Get the value of a property in a row.
+     *
+     * @return The value, or null if absent or null
+     */
+    Object get(ColumnarLog log, int row, String property) {
+        Integer section = properties.get(property);
+        if (section == null) {
+            return null;
+        }
+        ByteBuffer buf = buffer(log.file());
+        int ix = find(buf, section, row);
+        if (ix < 0) {
+            return null;
+        }
+        int count = buf.getInt(section);
+        int values = section + 4 + count * 8;
+        int at = values + buf.getInt(section + 4 + count * 4 + ix * 4);
+        switch (buf.get(at)) {
+            case NULL:
+                return null;
+            case TRUE:
+                return Boolean.TRUE;
+            case FALSE:
+                return Boolean.FALSE;
+            case INT:
+                return buf.getInt(at + 1);
+            case LONG:
+                return buf.getLong(at + 1);
+            case DOUBLE:
+                return buf.getDouble(at + 1);
+            case STRING:
+                return new String(bytes(buf, at + 5, buf.getInt(at + 1)), UTF_8);
+            case JSON:
+                try {
+                    return log.valueReader().readValue(bytes(buf, at + 5, buf.getInt(at + 1)));
+                } catch (IOException ex) {
+                    return Exceptions.chuck(ex);
+                }
+            default:
+                throw new IllegalStateException("Bad value type " + buf.get(at) + " in " + log.file());
+        }
+    }
+
+    /**
+     * Binary search the rows a property is present in.
+     */
+    private static int find(ByteBuffer buf, int section, int row) {
+        int lo = 0;
+        int hi = buf.getInt(section) - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int val = buf.getInt(section + 4 + mid * 4);
+            if (val < row) {
+                lo = mid + 1;
+            } else if (val > row) {
+                hi = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    private static byte[] bytes(ByteBuffer buf, int at, int len) {
+        byte[] result = new byte[len];
+        ByteBuffer dup = buf.duplicate();
+        dup.position(at);
+        dup.get(result);
+        return result;
+    }
+
+    void write(DataOutput out, Map<String, Integer> stringIds) throws IOException {
+        out.writeInt(rows);
+        out.writeLong(offset);
+        out.writeInt(length);
+        for (int section : sections) {
+            out.writeInt(section);
+        }
+        out.writeInt(properties.size());
+        for (Map.Entry<String, Integer> e : properties.entrySet()) {
+            out.writeInt(stringIds.get(e.getKey()));
+            out.writeInt(e.getValue());
+        }
+        stats.write(out);
+    }
+
+    static ColumnBlock read(DataInput in, String[] strings, Set<String> indexedProperties) throws IOException {
+        int rows = in.readInt();
+        long offset = in.readLong();
+        int length = in.readInt();
+        int[] sections = new int[SECTIONS];
+        for (int i = 0; i < SECTIONS; i++) {
+            sections[i] = in.readInt();
+        }
+        int count = in.readInt();
+        Map<String, Integer> properties = new LinkedHashMap<>(count * 2);
+        for (int i = 0; i < count; i++) {
+            properties.put(strings[in.readInt()], in.readInt());
+        }
+        return new ColumnBlock(rows, offset, length, sections, properties,
+                IndexBlock.read(in, indexedProperties));
+    }
+
+    /**
+     * Accumulates the columns of a block in memory as records are added.
+     */
+    static final class Builder {
+
+        private final ObjectMapper mapper;
+        private final Map<String, Integer> stringIds;
+        private final Set<String> indexedProperties;
+        private final IndexBlock.Builder stats;
+        private final int capacity;
+        private final int[] levels;
+        private final int[] pids;
+        private final long[] times;
+        private final int[] nanos;
+        private final int[] zones;
+        private final int[] names;
+        private final int[] hostNames;
+        private final int[] msgStarts;
+        private final int[] msgLengths;
+        private final ByteArrayOutputStream msgs = new ByteArrayOutputStream();
+        private final Map<String, PropertyColumn> properties = new LinkedHashMap<>();
+        private int rows;
+
+        Builder(long firstRow, int capacity, ObjectMapper mapper, Map<String, Integer> stringIds, Set<String> indexedProperties) {
+            this.capacity = capacity;
+            this.mapper = mapper;
+            this.stringIds = stringIds;
+            this.indexedProperties = indexedProperties;
+            this.stats = new IndexBlock.Builder(firstRow, indexedProperties);
+            levels = new int[capacity];
+            pids = new int[capacity];
+            times = new long[capacity];
+            nanos = new int[capacity];
+            zones = new int[capacity];
+            names = new int[capacity];
+            hostNames = new int[capacity];
+            msgStarts = new int[capacity];
+            msgLengths = new int[capacity];
+        }
+
+        int rows() {
+            return rows;
+        }
+
+        boolean isFull() {
+            return rows == capacity;
+        }
+
+        void add(LogRecord record) throws IOException {
+            int row = rows++;
+            levels[row] = record.level();
+            stats.level(record.level());
+            pids[row] = record.pid();
+            ZonedDateTime time = record.time();
+            if (time == null) {
+                times[row] = TimeParser.NO_TIME;
+                zones[row] = -1;
+            } else {
+                Instant instant = time.toInstant();
+                times[row] = instant.toEpochMilli();
+                nanos[row] = instant.getNano() % 1000000;
+                zones[row] = id(time.getZone().getId());
+                stats.time(times[row]);
+            }
+            String name = record.name();
+            names[row] = id(name);
+            if (name != null) {
+                stats.name(name);
+            }
+            hostNames[row] = id(record.hostName());
+            String msg = record.msg();
+            if (msg == null) {
+                msgStarts[row] = -1;
+            } else {
+                byte[] bytes = msg.getBytes(UTF_8);
+                msgStarts[row] = msgs.size();
+                msgLengths[row] = bytes.length;
+                msgs.write(bytes);
+            }
+            for (String key : record.keys()) {
+                Object value = record.get(key);
+                PropertyColumn column = properties.get(key);
+                if (column == null) {
+                    id(key);
+                    properties.put(key, column = new PropertyColumn());
+                }
+                column.add(row, value, mapper);
+                if (indexedProperties.contains(key)) {
+                    String text = IndexBlock.indexText(value);
+                    if (text != null) {
+                        stats.property(key, text);
+                    }
+                }
+            }
+        }
+
+        private int id(String string) {
+            if (string == null) {
+                return -1;
+            }
+            Integer result = stringIds.get(string);
+            if (result == null) {
+                stringIds.put(string, result = stringIds.size());
+            }
+            return result;
+        }
+
+        /**
+         * Write the columns of this block at the passed offset in a file.
+         *
+         * @param stream The output, positioned at the offset
+         * @param offset The offset in the file
+         * @return A block to read them back
+         */
+        ColumnBlock write(OutputStream stream, long offset) throws IOException {
+            DataOutputStream out = new DataOutputStream(stream);
+            int[] sections = new int[SECTIONS];
+            sections[LEVEL] = out.size();
+            writeInts(out, levels);
+            sections[PID] = out.size();
+            writeInts(out, pids);
+            sections[TIME] = out.size();
+            for (int i = 0; i < rows; i++) {
+                out.writeLong(times[i]);
+            }
+            sections[TIME_DETAIL] = out.size();
+            for (int i = 0; i < rows; i++) {
+                out.writeInt(nanos[i]);
+                out.writeInt(zones[i]);
+            }
+            sections[NAME] = out.size();
+            writeInts(out, names);
+            sections[HOSTNAME] = out.size();
+            writeInts(out, hostNames);
+            sections[MSG] = out.size();
+            for (int i = 0; i < rows; i++) {
+                out.writeInt(msgStarts[i]);
+                out.writeInt(msgLengths[i]);
+            }
+            msgs.writeTo(out);
+            Map<String, Integer> props = new LinkedHashMap<>(properties.size() * 2);
+            for (Map.Entry<String, PropertyColumn> e : properties.entrySet()) {
+                props.put(e.getKey(), out.size());
+                e.getValue().write(out);
+            }
+            if (out.size() == Integer.MAX_VALUE) {
+                // The counter sticks at MAX_VALUE on overflow
+                throw new IOException("Block of " + rows + " rows too large to map; use fewer rows per block");
+            }
+            out.flush();
+            return new ColumnBlock(rows, offset, out.size(), sections, props,
+                    stats.build(stats.start() + rows));
+        }
+
+        private void writeInts(DataOutputStream out, int[] values) throws IOException {
+            for (int i = 0; i < rows; i++) {
+                out.writeInt(values[i]);
+            }
+        }
+    }
+
+    /**
+     * The rows one property is present in within a block, and its values.
+     */
+    private static final class PropertyColumn {
+
+        private int[] rows = new int[16];
+        private int[] offsets = new int[16];
+        private int count;
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final DataOutputStream values = new DataOutputStream(bytes);
+
+        void add(int row, Object value, ObjectMapper mapper) throws IOException {
+            if (count == rows.length) {
+                rows = Arrays.copyOf(rows, count * 2);
+                offsets = Arrays.copyOf(offsets, count * 2);
+            }
+            rows[count] = row;
+            offsets[count++] = values.size();
+            if (value == null) {
+                values.writeByte(NULL);
+            } else if (value instanceof Boolean) {
+                values.writeByte((Boolean) value ? TRUE : FALSE);
+            } else if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+                values.writeByte(INT);
+                values.writeInt(((Number) value).intValue());
+            } else if (value instanceof Long) {
+                values.writeByte(LONG);
+                values.writeLong((Long) value);
+            } else if (value instanceof Double || value instanceof Float) {
+                values.writeByte(DOUBLE);
+                values.writeDouble(((Number) value).doubleValue());
+            } else if (value instanceof String) {
+                writeBytes(STRING, ((String) value).getBytes(UTF_8));
+            } else {
+                // Objects, arrays and numbers such as BigInteger are kept as
+                // JSON and decoded as they would have been from the log
+                writeBytes(JSON, mapper.writeValueAsBytes(value));
+            }
+        }
+
+        private void writeBytes(byte type, byte[] data) throws IOException {
+            values.writeByte(type);
+            values.writeInt(data.length);
+            values.write(data);
+        }
+
+        void write(DataOutputStream out) throws IOException {
+            out.writeInt(count);
+            for (int i = 0; i < count; i++) {
+                out.writeInt(rows[i]);
+            }
+            for (int i = 0; i < count; i++) {
+                out.writeInt(offsets[i]);
+            }
+            bytes.writeTo(out);
+        }
+    }
+}
@@ -0,0 +1,335 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 Tim Boudreau.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.bunyan.parse;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * A bunyan log converted to a binary, columnar form, for repeated offline
+ * analysis of the same logs without parsing JSON each time. Rows are stored
+ * in blocks of {@link #DEFAULT_BLOCK_ROWS}, within which level, pid and
+ * time are primitive columns, name and hostname are ids in a dictionary of
+ * strings shared by the whole file, and each property is a sparse column of
+ * the rows it appears in and its values. Each block also carries the same
+ * statistics as a {@link LogIndex} block - minimum and maximum time and
+ * level, level counts, logger names and a bloom filter of selected
+ * properties - so blocks a LogFilter cannot match are skipped entirely.
+ * <p>
+ * Blocks are memory-mapped, and records read only the columns they are
+ * asked for, so a filter on the level, or an aggregation grouped by name,
+ * never touches the pages holding messages or properties. As with
+ * {@link LogStreamFactory#lazyStream(java.util.function.Predicate)}, the
+ * public fields of the records are <i>not</i> populated - use accessor
+ * methods such as <code>level()</code>. The file is immutable once
+ * written; it must not be modified or replaced while open.
+ * </p>
+ *
+ * @see LogStreamFactory#exportColumnar(java.nio.file.Path, java.lang.String...)
+ * @author Tim Boudreau
+ */
+public final class ColumnarLog {
+
+    /**
+     * The default number of rows per block.
+     */
+    public static final int DEFAULT_BLOCK_ROWS = 64 * 1024;
+    private static final int MAGIC = 0x424e5943;
+    private static final int VERSION = 1;
+    // Magic and version
+    private static final int HEADER_BYTES = 8;
+    // Footer offset and magic
+    private static final int TRAILER_BYTES = 12;
+    private final Path file;
+    private final ObjectReader valueReader;
+    private final String[] strings;
+    private final List<ColumnBlock> blocks;
+    private final long rowCount;
+
+    private ColumnarLog(Path file, ObjectMapper mapper, String[] strings, List<ColumnBlock> blocks) {
+        this.file = file;
+        this.valueReader = mapper.readerFor(Object.class);
+        this.strings = strings;
+        this.blocks = blocks;
+        long rows = 0;
+        for (ColumnBlock block : blocks) {
+            rows += block.rows;
+        }
+        this.rowCount = rows;
+    }
+
+    /**
+     * Write records to a columnar file, replacing any existing file once
+     * complete, and open it.
+     *
+     * @param records The records, in the order they should be read back
+     * @param target The file to write
+     * @param mapper The object mapper, used to store property values which
+     * are objects or arrays
+     * @param indexedProperties The names of properties whose values should be
+     * recorded in each block's bloom filter, such as <code>id</code>
+     * @return The opened file
+     * @throws IOException if something goes wrong
+     */
+    public static ColumnarLog write(Stream<? extends LogRecord> records, Path target, ObjectMapper mapper,
+            String... indexedProperties) throws IOException {
+        return write(records, target, mapper, DEFAULT_BLOCK_ROWS, indexedProperties);
+    }
+
+    /**
+     * Write records to a columnar file, replacing any existing file once
+     * complete, and open it.
+     *
+     * @param records The records, in the order they should be read back
+     * @param target The file to write
+     * @param mapper The object mapper, used to store property values which
+     * are objects or arrays
+     * @param blockRows The number of rows per block
+     * @param indexedProperties The names of properties whose values should be
+     * recorded in each block's bloom filter, such as <code>id</code>
+     * @return The opened file
+     * @throws IOException if something goes wrong
+     */
+    public static ColumnarLog write(Stream<? extends LogRecord> records, Path target, ObjectMapper mapper,
+            int blockRows, String... indexedProperties) throws IOException {
+        if (blockRows <= 0) {
+            throw new IllegalArgumentException("Bad block size " + blockRows);
+        }
+        Set<String> props = Collections.unmodifiableSet(new LinkedHashSet<>(Arrays.asList(indexedProperties)));
+        Map<String, Integer> stringIds = new LinkedHashMap<>();
+        List<ColumnBlock> blocks = new ArrayList<>();
+        Path tmp = Segments.sidecar(target, Segments.TEMP_SUFFIX);
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(tmp), 256 * 1024)) {
+            DataOutputStream data = new DataOutputStream(out);
+            data.writeInt(MAGIC);
+            data.writeInt(VERSION);
+            long position = HEADER_BYTES;
+            ColumnBlock.Builder block = new ColumnBlock.Builder(0, blockRows, mapper, stringIds, props);
+            long rows = 0;
+            Iterator<? extends LogRecord> it = records.iterator();
+            while (it.hasNext()) {
+                block.add(it.next());
+                rows++;
+                if (block.isFull()) {
+                    ColumnBlock written = block.write(out, position);
+                    position += written.length();
+                    blocks.add(written);
+                    block = new ColumnBlock.Builder(rows, blockRows, mapper, stringIds, props);
+                }
+            }
+            if (block.rows() > 0) {
+                ColumnBlock written = block.write(out, position);
+                position += written.length();
+                blocks.add(written);
+            }
+            // The footer is written last, since the dictionary is not
+            // complete until every record has been seen
+            data.writeInt(VERSION);
+            data.writeInt(props.size());
+            for (String prop : props) {
+                writeString(data, prop);
+            }
+            data.writeInt(stringIds.size());
+            for (String string : stringIds.keySet()) {
+                writeString(data, string);
+            }
+            data.writeInt(blocks.size());
+            for (ColumnBlock b : blocks) {
+                b.write(data, stringIds);
+            }
+            data.writeLong(position);
+            data.writeInt(MAGIC);
+        } catch (IOException | RuntimeException ex) {
+            Files.deleteIfExists(tmp);
+            throw ex;
+        }
+        Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return open(target, mapper);
+    }
+
+    /**
+     * Open a columnar file.
+     *
+     * @param file The file
+     * @param mapper The object mapper, used to decode property values which
+     * are objects or arrays
+     * @return A columnar log
+     * @throws IOException if the file cannot be read or is not a columnar
+     * log
+     */
+    public static ColumnarLog open(Path file, ObjectMapper mapper) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            ByteBuffer ends = ByteBuffer.allocate(TRAILER_BYTES);
+            if (size < HEADER_BYTES + TRAILER_BYTES) {
+                throw new IOException("Not a columnar log: " + file);
+            }
+            while (ends.hasRemaining()) {
+                if (channel.read(ends, size - TRAILER_BYTES + ends.position()) < 0) {
+                    throw new IOException("Truncated: " + file);
+                }
+            }
+            long footer = ends.getLong(0);
+            if (ends.getInt(8) != MAGIC || footer < HEADER_BYTES || footer > size - TRAILER_BYTES) {
+                throw new IOException("Not a columnar log, or incompletely written: " + file);
+            }
+            channel.position(footer);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+            int version = in.readInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported version " + version + " of " + file);
+            }
+            int propCount = in.readInt();
+            Set<String> props = new LinkedHashSet<>();
+            for (int i = 0; i < propCount; i++) {
+                props.add(readString(in));
+            }
+            props = Collections.unmodifiableSet(props);
+            String[] strings = new String[in.readInt()];
+            for (int i = 0; i < strings.length; i++) {
+                strings[i] = readString(in);
+            }
+            int blockCount = in.readInt();
+            List<ColumnBlock> blocks = new ArrayList<>(blockCount);
+            for (int i = 0; i < blockCount; i++) {
+                blocks.add(ColumnBlock.read(in, strings, props));
+            }
+            return new ColumnarLog(file, mapper, strings, Collections.unmodifiableList(blocks));
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String string) throws IOException {
+        // Not writeUTF(), which is limited to 64k
+        byte[] bytes = string.getBytes(UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    /**
+     * Get the file.
+     *
+     * @return The file
+     */
+    public Path file() {
+        return file;
+    }
+
+    /**
+     * Get the number of records in the file.
+     *
+     * @return The record count
+     */
+    public long rowCount() {
+        return rowCount;
+    }
+
+    /**
+     * Get the number of blocks in the file.
+     *
+     * @return The block count
+     */
+    public int blockCount() {
+        return blocks.size();
+    }
+
+    String string(int id) {
+        return id < 0 ? null : strings[id];
+    }
+
+    ObjectReader valueReader() {
+        return valueReader;
+    }
+
+    /**
+     * Get a stream of the records matching a filter, in the order they were
+     * written. Blocks whose statistics show that no record in them can
+     * match a LogFilter are skipped without being read. The stream is
+     * sequential, but may be made parallel, which splits it by block.
+     *
+     * @param filter The filter, or null for none
+     * @return A stream of records
+     */
+    public Stream<LogRecord> stream(Predicate<LogRecord> filter) {
+        LogFilter logFilter = filter instanceof LogFilter ? (LogFilter) filter : null;
+        Stream<ColumnBlock> candidates = blocks.stream();
+        if (logFilter != null) {
+            candidates = candidates.filter(block -> logFilter.mayMatch(block.stats));
+        }
+        return candidates.flatMap(block -> {
+            Stream<LogRecord> rows = IntStream.range(0, block.rows)
+                    .mapToObj(row -> new ColumnarRecord(this, block, row));
+            return filter == null ? rows : rows.filter(filter);
+        });
+    }
+
+    /**
+     * Aggregate the records matching a filter, in parallel by block. Since
+     * records are not seen in order, stateful filters such as
+     * <code>limit()</code> should not be used.
+     *
+     * @param filter The filter, or null for none
+     * @param aggregation The aggregation
+     * @return The result
+     */
+    public Aggregation.Result aggregate(Predicate<LogRecord> filter, Aggregation aggregation) {
+        return aggregation.apply(stream(filter).parallel());
+    }
+
+    @Override
+    public String toString() {
+        return "ColumnarLog(" + file + ", " + rowCount + " rows in " + blocks.size() + " blocks)";
+    }
+}
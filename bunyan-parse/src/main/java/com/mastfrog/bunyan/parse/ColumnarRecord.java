@@ -0,0 +1,186 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 Tim Boudreau.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.bunyan.parse;
+
+import java.time.ZonedDateTime;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A LogRecord backed by a row of a {@link ColumnarLog}, which reads each
+ * column from the mapped file only when it is asked for. Primitive fields
+ * are read afresh on each call; messages, times and property values are
+ * cached once decoded. As with {@link LazyLogRecord}, the public fields of
+ * LogRecord are <i>not</i> populated; use the accessor methods.
+ *
+ * @author Tim Boudreau
+ */
+final class ColumnarRecord extends LogRecord {
+
+    private final ColumnarLog log;
+    private final ColumnBlock block;
+    private final int row;
+    private Map<String, Object> decoded;
+    private Map<String, Object> added;
+    private String msg;
+    private ZonedDateTime time;
+
+    ColumnarRecord(ColumnarLog log, ColumnBlock block, int row) {
+        super(null, null, null, 0, 0, null);
+        this.log = log;
+        this.block = block;
+        this.row = row;
+    }
+
+    @Override
+    public String name() {
+        return block.name(log, row);
+    }
+
+    @Override
+    public synchronized String msg() {
+        if (msg == null) {
+            msg = block.msg(log, row);
+        }
+        return msg;
+    }
+
+    @Override
+    public String hostName() {
+        return block.hostName(log, row);
+    }
+
+    @Override
+    public synchronized ZonedDateTime time() {
+        if (time == null) {
+            time = block.time(log, row);
+        }
+        return time;
+    }
+
+    @Override
+    public long timeMillis() {
+        return block.timeMillis(log, row);
+    }
+
+    @Override
+    public int level() {
+        return block.level(log, row);
+    }
+
+    @Override
+    public int pid() {
+        return block.pid(log, row);
+    }
+
+    @Override
+    public synchronized Object get(String name) {
+        if (added != null && added.containsKey(name)) {
+            return added.get(name);
+        }
+        if (decoded == null) {
+            decoded = new HashMap<>();
+        } else if (decoded.containsKey(name)) {
+            return decoded.get(name);
+        }
+        Object result = block.get(log, row, name);
+        decoded.put(name, result);
+        return result;
+    }
+
+    @Override
+    public synchronized void put(String name, Object val) {
+        if (added == null) {
+            added = new LinkedHashMap<>();
+        }
+        added.put(name, val);
+    }
+
+    @Override
+    public synchronized boolean has(String name) {
+        return (added != null && added.containsKey(name)) || block.has(log, row, name);
+    }
+
+    @Override
+    public synchronized Set<String> keys() {
+        Set<String> result = new LinkedHashSet<>();
+        for (String key : block.propertyNames()) {
+            if (block.has(log, row, key)) {
+                result.add(key);
+            }
+        }
+        if (added != null) {
+            result.addAll(added.keySet());
+        }
+        return Collections.unmodifiableSet(result);
+    }
+
+    @Override
+    public Iterator<String> iterator() {
+        return keys().iterator();
+    }
+
+    @Override
+    public synchronized Map<String, Object> toMap() {
+        LinkedHashMap<String, Object> result = new LinkedHashMap<>();
+        result.put("name", name());
+        result.put("msg", msg());
+        result.put("time", time());
+        result.put("level", level());
+        result.put("pid", pid());
+        result.put("hostname", hostName());
+        for (String key : keys()) {
+            result.put(key, get(key));
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        Map<String, Object> props = new LinkedHashMap<>();
+        for (String key : keys()) {
+            props.put(key, get(key));
+        }
+        return "name=" + name() + ", msg=" + msg() + ", hostName=" + hostName()
+                + ", time=" + time() + ", level=" + level() + ", props=" + props + '}';
+    }
+
+    @Override
+    public int hashCode() {
+        return toMap().hashCode();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        return obj instanceof ColumnarRecord && toMap().equals(((ColumnarRecord) obj).toMap());
+    }
+}
@@ -0,0 +1,341 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 Tim Boudreau.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.bunyan.parse;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collector;
+
+/**
+ * A mergeable sketch which estimates how often each value occurs in a
+ * stream, and tracks the most frequent ones - such as the top paths of
+ * failed requests - using a fixed amount of memory, following the
+ * Count-Min algorithm: each value increments one counter in each of
+ * <i>depth</i> rows of <i>width</i> counters, chosen by hashing it, and
+ * its count is estimated as the smallest of those counters. Estimates are
+ * never low, and are high by at most <i>e</i>/<i>width</i> of the total
+ * count with probability 1 - <i>e</i><sup>-<i>depth</i></sup>. Alongside
+ * the counters, the sketch keeps the values with the highest estimates
+ * seen so far, up to a fixed number, for {@link #topK(int)}. Sketches built
+ * over different parts of the data - on different threads, or from
+ * different files - can be merged.
+ *
+ * @author Tim Boudreau
+ */
+public final class CountMinSketch {
+
+    public static final int DEFAULT_WIDTH = 1024;
+    public static final int DEFAULT_DEPTH = 4;
+    /**
+     * The default number of most frequent values tracked.
+     */
+    public static final int DEFAULT_TRACKED = 64;
+    private final int width;
+    private final int depth;
+    private final int tracked;
+    private final long[] counts;
+    /**
+     * The tracked values, by value, and as a binary min-heap by estimate, so
+     * the least frequent can be found and replaced without a scan.
+     */
+    private final Map<Object, Hitter> heavyHitters = new HashMap<>();
+    private Hitter[] heap;
+    private long total;
+
+    public CountMinSketch() {
+        this(DEFAULT_WIDTH, DEFAULT_DEPTH, DEFAULT_TRACKED);
+    }
+
+    /**
+     * Create a sketch.
+     *
+     * @param width The number of counters per row
+     * @param depth The number of rows
+     * @param tracked The number of most frequent values to track
+     */
+    public CountMinSketch(int width, int depth, int tracked) {
+        if (width <= 0 || depth <= 0 || tracked < 0 || (long) width * depth > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Bad width " + width + ", depth "
+                    + depth + " or tracked " + tracked);
+        }
+        this.width = width;
+        this.depth = depth;
+        this.tracked = tracked;
+        counts = new long[width * depth];
+        heap = new Hitter[Math.min(tracked, 16)];
+    }
+
+    /**
+     * Get a collector which counts the values of a field of the records in
+     * a stream, such as one filtered with
+     * {@link LogFilter#parse(java.lang.String)}, tracking the
+     * {@link #DEFAULT_TRACKED} most frequent. Records which lack the field
+     * are ignored.
+     *
+     * @param field A field name, as in {@link Aggregation}
+     * @return A collector
+     */
+    public static Collector<LogRecord, ?, CountMinSketch> collector(String field) {
+        return Collector.of(CountMinSketch::new, (cms, record) -> {
+            Object value = Fields.value(record, field);
+            if (value != null) {
+                cms.add(value);
+            }
+        }, CountMinSketch::merge, Collector.Characteristics.UNORDERED, Collector.Characteristics.IDENTITY_FINISH);
+    }
+
+    /**
+     * Count one occurrence of a value.
+     *
+     * @param value A value
+     * @return this
+     */
+    public CountMinSketch add(Object value) {
+        return add(value, 1);
+    }
+
+    /**
+     * Count occurrences of a value.
+     *
+     * @param value A value
+     * @param count The number of occurrences
+     * @return this
+     */
+    public CountMinSketch add(Object value, long count) {
+        if (count < 0) {
+            throw new IllegalArgumentException("Negative count " + count);
+        }
+        value = Fields.normalize(value);
+        long hash = SketchHash.hash(value);
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            int ix = index(hash, row);
+            counts[ix] += count;
+            estimate = Math.min(estimate, counts[ix]);
+        }
+        total += count;
+        track(value, estimate);
+        return this;
+    }
+
+    private void track(Object value, long estimate) {
+        if (tracked == 0) {
+            return;
+        }
+        Hitter hitter = heavyHitters.get(value);
+        if (hitter != null) {
+            // Estimates only grow
+            hitter.estimate = estimate;
+            siftDown(hitter.index);
+        } else if (heavyHitters.size() < tracked) {
+            push(new Hitter(value, estimate));
+        } else if (estimate > heap[0].estimate) {
+            heavyHitters.remove(heap[0].value);
+            hitter = new Hitter(value, estimate);
+            heavyHitters.put(value, hitter);
+            set(0, hitter);
+            siftDown(0);
+        }
+    }
+
+    private void push(Hitter hitter) {
+        int size = heavyHitters.size();
+        if (size == heap.length) {
+            heap = Arrays.copyOf(heap, Math.min(tracked, size * 2));
+        }
+        heavyHitters.put(hitter.value, hitter);
+        set(size, hitter);
+        siftUp(size);
+    }
+
+    private void set(int index, Hitter hitter) {
+        heap[index] = hitter;
+        hitter.index = index;
+    }
+
+    private void siftUp(int index) {
+        Hitter hitter = heap[index];
+        while (index > 0) {
+            int parent = (index - 1) / 2;
+            if (heap[parent].estimate <= hitter.estimate) {
+                break;
+            }
+            set(index, heap[parent]);
+            index = parent;
+        }
+        set(index, hitter);
+    }
+
+    private void siftDown(int index) {
+        int size = heavyHitters.size();
+        Hitter hitter = heap[index];
+        for (int child = index * 2 + 1; child < size; child = index * 2 + 1) {
+            if (child + 1 < size && heap[child + 1].estimate < heap[child].estimate) {
+                child++;
+            }
+            if (hitter.estimate <= heap[child].estimate) {
+                break;
+            }
+            set(index, heap[child]);
+            index = child;
+        }
+        set(index, hitter);
+    }
+
+    private static final class Hitter {
+
+        private final Object value;
+        private long estimate;
+        private int index;
+
+        Hitter(Object value, long estimate) {
+            this.value = value;
+            this.estimate = estimate;
+        }
+    }
+
+    /**
+     * Each row indexes by a different combination of the two halves of the
+     * hash.
+     */
+    private int index(long hash, int row) {
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        return row * width + Math.floorMod(h1 + row * h2, width);
+    }
+
+    /**
+     * Estimate the number of occurrences of a value.
+     *
+     * @param value A value
+     * @return An estimate which is never less than the true count
+     */
+    public long estimate(Object value) {
+        long hash = SketchHash.hash(value);
+        long result = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            result = Math.min(result, counts[index(hash, row)]);
+        }
+        return result;
+    }
+
+    /**
+     * Get the number of counters per row.
+     *
+     * @return The width
+     */
+    public int width() {
+        return width;
+    }
+
+    /**
+     * Get the number of rows.
+     *
+     * @return The depth
+     */
+    public int depth() {
+        return depth;
+    }
+
+    /**
+     * Get the total of all counts added.
+     *
+     * @return The total
+     */
+    public long total() {
+        return total;
+    }
+
+    /**
+     * Get the most frequent values and their estimated counts, most
+     * frequent first.
+     *
+     * @param k The maximum number of values, which can be no more than the
+     * number tracked
+     * @return A list of values and counts
+     */
+    public List<Map.Entry<Object, Long>> topK(int k) {
+        List<Map.Entry<Object, Long>> result = ranked(heavyHitters.keySet());
+        return result.size() > k ? new ArrayList<>(result.subList(0, k)) : result;
+    }
+
+    private List<Map.Entry<Object, Long>> ranked(Set<Object> values) {
+        List<Map.Entry<Object, Long>> result = new ArrayList<>();
+        for (Object value : values) {
+            result.add(new AbstractMap.SimpleImmutableEntry<>(value, estimate(value)));
+        }
+        result.sort((a, b) -> {
+            int cmp = Long.compare(b.getValue(), a.getValue());
+            return cmp != 0 ? cmp : String.valueOf(a.getKey()).compareTo(String.valueOf(b.getKey()));
+        });
+        return result;
+    }
+
+    /**
+     * Add all of the counts of another sketch, which must have the same
+     * dimensions, to this one. The values tracked are the most frequent of
+     * those tracked by either, by their estimates from the merged counters.
+     *
+     * @param other Another sketch
+     * @return this
+     */
+    public CountMinSketch merge(CountMinSketch other) {
+        if (other.width != width || other.depth != depth || other.tracked != tracked) {
+            throw new IllegalArgumentException("Cannot merge a " + other.width + "x" + other.depth
+                    + " sketch tracking " + other.tracked + " into a " + width + "x" + depth
+                    + " one tracking " + tracked);
+        }
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] += other.counts[i];
+        }
+        total += other.total;
+        Set<Object> values = new HashSet<>(heavyHitters.keySet());
+        values.addAll(other.heavyHitters.keySet());
+        List<Map.Entry<Object, Long>> top = ranked(values);
+        heavyHitters.clear();
+        Arrays.fill(heap, null);
+        for (Map.Entry<Object, Long> e : top.subList(0, Math.min(tracked, top.size()))) {
+            track(e.getKey(), e.getValue());
+        }
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("CountMinSketch(").append(width).append('x').append(depth)
+                .append(", total=").append(total);
+        for (Iterator<Map.Entry<Object, Long>> it = topK(5).iterator(); it.hasNext();) {
+            Map.Entry<Object, Long> e = it.next();
+            sb.append(", ").append(e.getKey()).append('=').append(e.getValue());
+        }
+        return sb.append(')').toString();
+    }
+}
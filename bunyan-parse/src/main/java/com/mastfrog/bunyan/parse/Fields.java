@@ -0,0 +1,96 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 Tim Boudreau.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.bunyan.parse;
+
+import java.util.Map;
+
+/**
+ * Looks up fields of log records by name, so that core fields such as
+ * <code>level</code> and properties can be referred to uniformly, and values
+ * nested in objects by dotted paths such as <code>req.path</code>.
+ *
+ * @author Tim Boudreau
+ */
+final class Fields {
+
+    private Fields() {
+        throw new AssertionError();
+    }
+
+    /**
+     * Get the value of a field of a record, with integral numbers widened to
+     * Long so that values compare equal however they were decoded.
+     *
+     * @param record A record
+     * @param field A field name
+     * @return The value, or null
+     */
+    static Object value(LogRecord record, String field) {
+        switch (field) {
+            case "name":
+                return record.name();
+            case "msg":
+                return record.msg();
+            case "hostname":
+                return record.hostName();
+            case "pid":
+                return (long) record.pid();
+            case "level":
+                return (long) record.level();
+            case "time":
+                return record.time();
+            default:
+                Object result = record.get(field);
+                if (result == null && !record.has(field)) {
+                    result = nested(record, field);
+                }
+                return normalize(result);
+        }
+    }
+
+    private static Object nested(LogRecord record, String path) {
+        int dot = path.indexOf('.');
+        if (dot <= 0) {
+            return null;
+        }
+        Object result = record.get(path.substring(0, dot));
+        while (result instanceof Map<?, ?> && dot < path.length()) {
+            int next = path.indexOf('.', dot + 1);
+            String key = path.substring(dot + 1, next < 0 ? path.length() : next);
+            result = ((Map<?, ?>) result).get(key);
+            if (next < 0) {
+                return result;
+            }
+            dot = next;
+        }
+        return null;
+    }
+
+    static Object normalize(Object value) {
+        if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            return ((Number) value).longValue();
+        }
+        return value;
+    }
+}
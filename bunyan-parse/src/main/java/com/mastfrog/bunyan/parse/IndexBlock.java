@@ -0,0 +1,268 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 Tim Boudreau.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.bunyan.parse;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.ZonedDateTime;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Metadata for one block of lines in a log file, used to skip blocks which
+ * cannot contain records matching a LogFilter.
+ *
+ * @author Tim Boudreau
+ */
+final class IndexBlock {
+
+    /**
+     * Blocks with more distinct logger names than this do not record them.
+     */
+    static final int MAX_NAMES = 64;
+    private static final int[] LEVELS = {10, 20, 30, 40, 50, 60};
+    final long start;
+    final long end;
+    final long minTime;
+    final long maxTime;
+    final int minLevel;
+    final int maxLevel;
+    private final int[] levelCounts;
+    private final Set<String> names;
+    private final Set<String> indexedProperties;
+    private final BloomFilter properties;
+
+    IndexBlock(long start, long end, long minTime, long maxTime, int minLevel, int maxLevel,
+            int[] levelCounts, Set<String> names, Set<String> indexedProperties, BloomFilter properties) {
+        this.start = start;
+        this.end = end;
+        this.minTime = minTime;
+        this.maxTime = maxTime;
+        this.minLevel = minLevel;
+        this.maxLevel = maxLevel;
+        this.levelCounts = levelCounts;
+        this.names = names;
+        this.indexedProperties = indexedProperties;
+        this.properties = properties;
+    }
+
+    long length() {
+        return end - start;
+    }
+
+    /**
+     * Get the number of records in this block with exactly the passed
+     * level, which must be one of the standard bunyan levels.
+     *
+     * @param level A level
+     * @return A count, or -1 if not a standard level
+     */
+    int levelCount(int level) {
+        int ix = levelIndex(level);
+        return ix < 0 ? -1 : levelCounts[ix];
+    }
+
+    boolean mayContainLevel(int level) {
+        int count = levelCount(level);
+        return count < 0 ? level >= minLevel && level <= maxLevel : count > 0;
+    }
+
+    boolean mayContainTimeBefore(ZonedDateTime time) {
+        return minTime <= time.toInstant().toEpochMilli();
+    }
+
+    boolean mayContainTimeAfter(ZonedDateTime time) {
+        return maxTime >= time.toInstant().toEpochMilli();
+    }
+
+    boolean mayContainName(String name) {
+        return names == null || names.contains(name);
+    }
+
+    boolean mayContainProperty(String name, Object value) {
+        String text = indexText(value);
+        if (text == null || !indexedProperties.contains(name)) {
+            return true;
+        }
+        return properties.mightContain(key(name, text));
+    }
+
+    static int levelIndex(int level) {
+        for (int i = 0; i < LEVELS.length; i++) {
+            if (LEVELS[i] == level) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Get the text a property value is indexed under, which is the same for
+     * a value parsed from JSON and one passed to a LogFilter, or null for
+     * values which are not indexed. Integral floating-point values are
+     * indexed as the integer they equal, since a filter for
+     * <code>status==500</code> matches a value of <code>500.0</code>.
+     */
+    static String indexText(Object value) {
+        if (value instanceof String || value instanceof Boolean || value instanceof Integer
+                || value instanceof Long || value instanceof Short || value instanceof Byte
+                || value instanceof BigInteger) {
+            return value.toString();
+        } else if (value instanceof Double || value instanceof Float) {
+            return integralText(((Number) value).doubleValue());
+        }
+        return null;
+    }
+
+    static String integralText(double value) {
+        if (Double.isInfinite(value) || value != Math.rint(value)) {
+            return null;
+        } else if (Math.abs(value) < 0x1p63) {
+            return Long.toString((long) value);
+        }
+        return new BigDecimal(value).toBigInteger().toString();
+    }
+
+    static String key(String name, String value) {
+        return name + '\u0000' + value;
+    }
+
+    void write(DataOutput out) throws IOException {
+        out.writeLong(start);
+        out.writeLong(end);
+        out.writeLong(minTime);
+        out.writeLong(maxTime);
+        out.writeInt(minLevel);
+        out.writeInt(maxLevel);
+        for (int count : levelCounts) {
+            out.writeInt(count);
+        }
+        if (names == null) {
+            out.writeInt(-1);
+        } else {
+            out.writeInt(names.size());
+            for (String name : names) {
+                out.writeUTF(name);
+            }
+        }
+        properties.write(out);
+    }
+
+    static IndexBlock read(DataInput in, Set<String> indexedProperties) throws IOException {
+        long start = in.readLong();
+        long end = in.readLong();
+        long minTime = in.readLong();
+        long maxTime = in.readLong();
+        int minLevel = in.readInt();
+        int maxLevel = in.readInt();
+        int[] levelCounts = new int[LEVELS.length];
+        for (int i = 0; i < levelCounts.length; i++) {
+            levelCounts[i] = in.readInt();
+        }
+        int nameCount = in.readInt();
+        Set<String> names = null;
+        if (nameCount >= 0) {
+            names = new HashSet<>(nameCount * 2);
+            for (int i = 0; i < nameCount; i++) {
+                names.add(in.readUTF());
+            }
+            names = Collections.unmodifiableSet(names);
+        }
+        BloomFilter properties = BloomFilter.read(in);
+        return new IndexBlock(start, end, minTime, maxTime, minLevel, maxLevel,
+                levelCounts, names, indexedProperties, properties);
+    }
+
+    /**
+     * Accumulates the contents of a block as its lines are read.
+     */
+    static final class Builder {
+
+        private final long start;
+        private final Set<String> indexedProperties;
+        private long minTime = Long.MAX_VALUE;
+        private long maxTime = Long.MIN_VALUE;
+        private int minLevel = Integer.MAX_VALUE;
+        private int maxLevel = Integer.MIN_VALUE;
+        private final int[] levelCounts = new int[LEVELS.length];
+        private Set<String> names = new HashSet<>();
+        private final Set<String> propertyKeys = new HashSet<>();
+
+        Builder(long start, Set<String> indexedProperties) {
+            this.start = start;
+            this.indexedProperties = indexedProperties;
+        }
+
+        long start() {
+            return start;
+        }
+
+        void time(long epochMillis) {
+            minTime = Math.min(minTime, epochMillis);
+            maxTime = Math.max(maxTime, epochMillis);
+        }
+
+        void level(int level) {
+            minLevel = Math.min(minLevel, level);
+            maxLevel = Math.max(maxLevel, level);
+            int ix = levelIndex(level);
+            if (ix >= 0) {
+                levelCounts[ix]++;
+            }
+        }
+
+        void name(String name) {
+            if (names != null) {
+                names.add(name);
+                if (names.size() > MAX_NAMES) {
+                    names = null;
+                }
+            }
+        }
+
+        void property(String name, String value) {
+            propertyKeys.add(key(name, value));
+        }
+
+        IndexBlock build(long end) {
+            BloomFilter bloom = new BloomFilter(propertyKeys.size());
+            for (String key : propertyKeys) {
+                bloom.add(key);
+            }
+            // A block with no records, or none with times, must not be
+            // skipped by time or level
+            return new IndexBlock(start, end,
+                    minTime == Long.MAX_VALUE ? Long.MIN_VALUE : minTime,
+                    maxTime == Long.MIN_VALUE ? Long.MAX_VALUE : maxTime,
+                    minLevel == Integer.MAX_VALUE ? Integer.MIN_VALUE : minLevel,
+                    maxLevel == Integer.MIN_VALUE ? Integer.MAX_VALUE : maxLevel,
+                    levelCounts, names == null ? null : Collections.unmodifiableSet(names),
+                    indexedProperties, bloom);
+        }
+    }
+}
@@ -0,0 +1,367 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 Tim Boudreau.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.bunyan.parse;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.mastfrog.util.preconditions.Exceptions;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.time.ZonedDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * A LogRecord which holds a copy of the bytes of its line, and decodes each
+ * field only when it is first asked for, caching the result. Fields are
+ * located by a single incremental scan of the line which skips values other
+ * than numbers without decoding them, and stops as soon as the requested field is found,
+ * so a filter that only reads the level of a record pays for parsing only
+ * as far as the level. The public fields of LogRecord are <i>not</i>
+ * populated; use the accessor methods.
+ *
+ * @author Tim Boudreau
+ */
+final class LazyLogRecord extends LogRecord {
+
+    private static final Set<String> CORE_FIELDS = Collections.unmodifiableSet(
+            new HashSet<>(Arrays.asList("name", "msg", "time", "level", "pid", "hostname", "v")));
+    private final byte[] bytes;
+    private final Handler handler;
+    // Decoded values, or Offsets for fields seen but not yet decoded
+    private final Map<String, Object> fields = new LinkedHashMap<>();
+    private JsonParser cursor;
+    private boolean scanned;
+
+    LazyLogRecord(byte[] bytes, Handler handler) {
+        super(null, null, null, 0, 0, null);
+        this.bytes = bytes;
+        this.handler = handler;
+    }
+
+    /**
+     * Get the bytes of the line this record was read from, which must not be
+     * modified.
+     *
+     * @return The bytes
+     */
+    byte[] bytes() {
+        return bytes;
+    }
+
+    @Override
+    public synchronized String name() {
+        return (String) value("name");
+    }
+
+    @Override
+    public synchronized String msg() {
+        return (String) value("msg");
+    }
+
+    @Override
+    public synchronized String hostName() {
+        return (String) value("hostname");
+    }
+
+    @Override
+    public synchronized ZonedDateTime time() {
+        return (ZonedDateTime) value("time");
+    }
+
+    @Override
+    public synchronized long timeMillis() {
+        Object time = fields.get("time");
+        if (time == null && !fields.containsKey("time")) {
+            time = scanTo("time", false);
+        }
+        if (time instanceof Offset) {
+            // Not decoded yet, so the millis can be had without creating a
+            // ZonedDateTime
+            try (JsonParser parser = handler.factory.createParser(bytes, ((Offset) time).at,
+                    bytes.length - ((Offset) time).at)) {
+                if (parser.nextToken() == JsonToken.VALUE_STRING) {
+                    long result = TimeParser.epochMillis(parser.getTextCharacters(),
+                            parser.getTextOffset(), parser.getTextLength());
+                    if (result != TimeParser.NO_TIME) {
+                        return result;
+                    }
+                }
+            } catch (IOException ex) {
+                return Exceptions.chuck(ex);
+            }
+        }
+        return super.timeMillis();
+    }
+
+    @Override
+    public synchronized int level() {
+        Integer result = (Integer) value("level");
+        return result == null ? 0 : result;
+    }
+
+    @Override
+    public synchronized int pid() {
+        Integer result = (Integer) value("pid");
+        return result == null ? 0 : result;
+    }
+
+    @Override
+    public synchronized Object get(String name) {
+        return CORE_FIELDS.contains(name) ? null : value(name);
+    }
+
+    @Override
+    public synchronized void put(String name, Object val) {
+        scanToEnd();
+        fields.put(name, val);
+    }
+
+    @Override
+    public synchronized boolean has(String name) {
+        if (CORE_FIELDS.contains(name)) {
+            return false;
+        }
+        if (!fields.containsKey(name)) {
+            scanTo(name);
+        }
+        return fields.containsKey(name);
+    }
+
+    @Override
+    public synchronized Set<String> keys() {
+        scanToEnd();
+        Set<String> result = new LinkedHashSet<>(fields.keySet());
+        result.removeAll(CORE_FIELDS);
+        return Collections.unmodifiableSet(result);
+    }
+
+    @Override
+    public Iterator<String> iterator() {
+        return keys().iterator();
+    }
+
+    @Override
+    public synchronized Map<String, Object> toMap() {
+        LinkedHashMap<String, Object> result = new LinkedHashMap<>();
+        result.put("name", name());
+        result.put("msg", msg());
+        result.put("time", time());
+        result.put("level", level());
+        result.put("pid", pid());
+        result.put("hostname", hostName());
+        for (String key : keys()) {
+            result.put(key, value(key));
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "name=" + name() + ", msg=" + msg() + ", hostName=" + hostName()
+                + ", time=" + time() + ", level=" + level() + ", props=" + propsMap() + '}';
+    }
+
+    private synchronized Map<String, Object> propsMap() {
+        Map<String, Object> result = toMap();
+        result.keySet().removeAll(CORE_FIELDS);
+        return result;
+    }
+
+    @Override
+    public int hashCode() {
+        return toMap().hashCode();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        return obj instanceof LazyLogRecord && toMap().equals(((LazyLogRecord) obj).toMap());
+    }
+
+    private Object value(String field) {
+        Object result = fields.get(field);
+        if (result == null && !fields.containsKey(field)) {
+            return scanTo(field);
+        }
+        if (result instanceof Offset) {
+            try (JsonParser parser = handler.factory.createParser(bytes, ((Offset) result).at,
+                    bytes.length - ((Offset) result).at)) {
+                parser.nextToken();
+                result = decode(field, parser);
+            } catch (IOException ex) {
+                return Exceptions.chuck(ex);
+            }
+            fields.put(field, result);
+        }
+        return result;
+    }
+
+    private void scanToEnd() {
+        scanTo(null);
+    }
+
+    private Object scanTo(String field) {
+        return scanTo(field, true);
+    }
+
+    /**
+     * Scan forward to a field, recording the offsets of any passed over.
+     *
+     * @param field The field, or null to scan to the end
+     * @param decode If false, a non-numeric value for the field is left
+     * undecoded and its Offset returned
+     * @return The value, an Offset, or null
+     */
+    private Object scanTo(String field, boolean decode) {
+        if (scanned) {
+            return null;
+        }
+        try {
+            if (cursor == null) {
+                cursor = handler.factory.createParser(bytes);
+                if (cursor.nextToken() != JsonToken.START_OBJECT) {
+                    finishScan();
+                    return null;
+                }
+            }
+            while (cursor.nextToken() == JsonToken.FIELD_NAME) {
+                String name = cursor.getCurrentName();
+                cursor.nextToken();
+                if (name.equals(field)) {
+                    if (!decode && !cursor.currentToken().isNumeric()) {
+                        Offset result = new Offset((int) cursor.getTokenLocation().getByteOffset());
+                        fields.put(name, result);
+                        cursor.skipChildren();
+                        return result;
+                    }
+                    Object result = decode(name, cursor);
+                    fields.put(name, result);
+                    return result;
+                }
+                if (cursor.currentToken().isNumeric()) {
+                    // The tokenizer has already delimited it, and a number
+                    // cannot be reparsed as a root-level value with a
+                    // trailing comma
+                    fields.put(name, decode(name, cursor));
+                } else {
+                    fields.put(name, new Offset((int) cursor.getTokenLocation().getByteOffset()));
+                    cursor.skipChildren();
+                }
+            }
+            finishScan();
+            return null;
+        } catch (IOException ex) {
+            return Exceptions.chuck(ex);
+        }
+    }
+
+    private void finishScan() throws IOException {
+        scanned = true;
+        cursor.close();
+        cursor = null;
+    }
+
+    private Object decode(String field, JsonParser parser) throws IOException {
+        if (parser.currentToken() == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        switch (field) {
+            case "name":
+            case "msg":
+            case "hostname":
+                return ProjectingLineHandler.string(parser);
+            case "level":
+            case "pid":
+                return parser.getValueAsInt();
+            case "time":
+                return handler.timeReader.readValue(parser);
+            default:
+                return parser.currentToken() == JsonToken.VALUE_STRING
+                        ? ProjectingLineHandler.string(parser) : handler.valueReader.readValue(parser);
+        }
+    }
+
+    private static final class Offset {
+
+        final int at;
+
+        Offset(int at) {
+            this.at = at;
+        }
+    }
+
+    /**
+     * Creates lazy records from lines.
+     */
+    static final class Handler implements LineSpliterator.LineHandler<LogRecord> {
+
+        private final JsonFactory factory;
+        private final ObjectReader timeReader;
+        private final ObjectReader valueReader;
+        private final Predicate<LogRecord> filter;
+        private final ByteMatcher prefilter;
+
+        Handler(ObjectMapper mapper, Predicate<LogRecord> filter) {
+            this(mapper, filter, true);
+        }
+
+        Handler(ObjectMapper mapper, Predicate<LogRecord> filter, boolean test) {
+            this.factory = mapper.getFactory();
+            this.timeReader = mapper.readerFor(ZonedDateTime.class);
+            this.valueReader = mapper.readerFor(Object.class);
+            this.filter = test ? filter : null;
+            ByteMatcher matcher = filter instanceof LogFilter ? ((LogFilter) filter).prefilter() : null;
+            this.prefilter = matcher == null || matcher.isEmpty() ? null : matcher;
+        }
+
+        @Override
+        public LogRecord handle(ByteBuffer buf, int start, int end) throws IOException {
+            if (buf.get(start) != '{') {
+                return null;
+            }
+            if (prefilter != null && !prefilter.matches(buf, start, end)) {
+                return null;
+            }
+            byte[] bytes = new byte[end - start];
+            ByteBuffer dup = buf.duplicate();
+            dup.position(start);
+            dup.get(bytes);
+            LazyLogRecord record = new LazyLogRecord(bytes, this);
+            return filter == null || filter.test(record) ? record : null;
+        }
+    }
+}
@@ -0,0 +1,226 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 Tim Boudreau.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.bunyan.parse;
+
+import com.mastfrog.util.preconditions.Exceptions;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * Spliterator over the lines in a range of a file, which splits by dividing
+ * its range at the newline nearest its midpoint, so that a parallel stream
+ * can parse different parts of a large file on different threads. Chunks are
+ * either read into heap buffers using positional reads on a shared
+ * FileChannel, which are safe to perform concurrently, or are memory-mapped;
+ * handlers must not assume the buffers they are passed have an array.
+ *
+ * @author Tim Boudreau
+ */
+final class LineSpliterator<T> implements Spliterator<T> {
+
+    static final int DEFAULT_CHUNK_SIZE = 1024 * 1024;
+    static final int MAPPED_CHUNK_SIZE = 16 * 1024 * 1024;
+    private static final int AVERAGE_LINE_LENGTH = 256;
+    private static final int SCAN_BUFFER_SIZE = 8192;
+    private final FileChannel channel;
+    private final LineHandler<? extends T> handler;
+    private final int characteristics;
+    private final int chunkSize;
+    private final boolean mapped;
+    private long start;
+    private long end;
+    private ByteBuffer chunk;
+    private long chunkOffset;
+
+    LineSpliterator(FileChannel channel, LineHandler<? extends T> handler, boolean ordered, boolean mapped, int chunkSize, long start, long end) {
+        this.channel = channel;
+        this.handler = handler;
+        this.characteristics = ordered ? NONNULL | ORDERED : NONNULL;
+        this.mapped = mapped;
+        this.chunkSize = chunkSize;
+        this.start = start;
+        this.end = end;
+    }
+
+    /**
+     * Converts one line to an object.
+     *
+     * @param <T> The type
+     */
+    interface LineHandler<T> {
+
+        /**
+         * Handle the bytes of one line, which lie between the start and end
+         * offsets in the passed buffer (exclusive of any line terminator).
+         * Implementations must not alter the buffer's position or limit.
+         *
+         * @param buf A buffer
+         * @param start The start offset
+         * @param end The end offset
+         * @return An object, or null to skip this line
+         * @throws IOException If something goes wrong
+         */
+        T handle(ByteBuffer buf, int start, int end) throws IOException;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super T> action) {
+        try {
+            for (;;) {
+                if (start >= end) {
+                    return false;
+                }
+                if (chunk == null || start >= chunkOffset + chunk.limit()) {
+                    fill(chunkSize);
+                }
+                int lineStart = (int) (start - chunkOffset);
+                int lineEnd = indexOfNewline(chunk, lineStart, chunk.limit());
+                if (lineEnd < 0) {
+                    if (chunkOffset + chunk.limit() >= end) {
+                        // Last line, with no trailing newline
+                        lineEnd = chunk.limit();
+                        start = end;
+                    } else {
+                        // Line is cut off by the end of the chunk; re-read
+                        // starting from it, with a larger chunk if it will
+                        // not fit
+                        fill(lineStart == 0 ? chunk.capacity() * 2 : chunkSize);
+                        continue;
+                    }
+                } else {
+                    start = chunkOffset + lineEnd + 1;
+                }
+                if (lineEnd > lineStart && chunk.get(lineEnd - 1) == '\r') {
+                    lineEnd--;
+                }
+                if (lineEnd > lineStart) {
+                    T obj = handler.handle(chunk, lineStart, lineEnd);
+                    if (obj != null) {
+                        action.accept(obj);
+                        return true;
+                    }
+                }
+            }
+        } catch (IOException ex) {
+            return Exceptions.chuck(ex);
+        }
+    }
+
+    private void fill(int size) throws IOException {
+        if (mapped) {
+            map(size);
+            return;
+        }
+        int len = (int) Math.min(size, end - start);
+        if (chunk == null || chunk.capacity() < len) {
+            chunk = ByteBuffer.allocate(Math.max(len, Math.min(chunkSize, size)));
+        }
+        chunk.clear();
+        chunk.limit(len);
+        while (chunk.hasRemaining()) {
+            if (channel.read(chunk, start + chunk.position()) < 0) {
+                // File was truncated since we started
+                end = start + chunk.position();
+                break;
+            }
+        }
+        chunk.flip();
+        chunkOffset = start;
+    }
+
+    private void map(int size) throws IOException {
+        // A read-only mapping past the end of the file fails rather than
+        // growing it, so clip to its current size in case it was truncated
+        end = Math.min(end, channel.size());
+        int len = (int) Math.min(size, end - start);
+        chunk = channel.map(FileChannel.MapMode.READ_ONLY, start, len);
+        chunkOffset = start;
+    }
+
+    static int indexOfNewline(ByteBuffer buf, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (buf.get(i) == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Find the offset of the first line which starts at or after the passed
+     * position.
+     */
+    private long nextLineStart(long pos) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(SCAN_BUFFER_SIZE);
+        long at = pos - 1;
+        while (at < end) {
+            buf.clear();
+            int read = channel.read(buf, at);
+            if (read <= 0) {
+                return end;
+            }
+            int ix = indexOfNewline(buf, 0, read);
+            if (ix >= 0) {
+                return at + ix + 1;
+            }
+            at += read;
+        }
+        return end;
+    }
+
+    @Override
+    public Spliterator<T> trySplit() {
+        long remaining = end - start;
+        if (remaining < chunkSize * 2L) {
+            return null;
+        }
+        long split;
+        try {
+            split = nextLineStart(start + remaining / 2);
+        } catch (IOException ex) {
+            return Exceptions.chuck(ex);
+        }
+        if (split <= start || split >= end) {
+            return null;
+        }
+        LineSpliterator<T> prefix = new LineSpliterator<>(channel, handler,
+                (characteristics & ORDERED) != 0, mapped, chunkSize, start, split);
+        start = split;
+        chunk = null;
+        return prefix;
+    }
+
+    @Override
+    public long estimateSize() {
+        return Math.max(0, (end - start) / AVERAGE_LINE_LENGTH);
+    }
+
+    @Override
+    public int characteristics() {
+        return characteristics;
+    }
+}
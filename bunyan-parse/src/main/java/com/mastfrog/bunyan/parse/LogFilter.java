@@ -24,8 +24,11 @@
 package com.mastfrog.bunyan.parse;
 
 import java.time.ZonedDateTime;
-import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
@@ -42,6 +45,8 @@ import java.util.regex.Pattern;
  */
 public abstract class LogFilter implements Predicate<LogRecord> {
 
+    private volatile ByteMatcher prefilter;
+
     /**
      * Add to the passed collection of strings any strings which, if
      * present, mean a particular log line should <b>not</b> be ignored
@@ -52,28 +57,157 @@ public abstract class LogFilter implements Predicate<LogRecord> {
         //do nothing
     }
 
-    final Predicate<String> prefilterPredicate() {
-        Predicate<String> result = new JsonHashCheck();
-        Set<String> toMatch = new HashSet<>();
-        collectPrefilterStrings(toMatch);
-        if (toMatch.isEmpty()) {
-            return result;
+    /**
+     * Add to the passed list groups of strings, at least one string of
+     * each of which must be present in a line for it to possibly match. The
+     * default implementation adds the strings from collectPrefilterStrings()
+     * as a single group, unless any of them would be escaped when written
+     * as JSON and so might not appear verbatim in a line.
+     *
+     * @param groups A list of groups
+     */
+    void collectPrefilterGroups(List<Set<String>> groups) {
+        Set<String> strings = new HashSet<>();
+        collectPrefilterStrings(strings);
+        addPrefilterGroup(strings, groups);
+    }
+
+    static void addPrefilterGroup(Set<String> strings, List<Set<String>> groups) {
+        if (strings.isEmpty()) {
+            return;
+        }
+        for (String s : strings) {
+            for (int i = 0; i < s.length(); i++) {
+                char c = s.charAt(i);
+                if (c < ' ' || c == '"' || c == '\\') {
+                    return;
+                }
+            }
+        }
+        groups.add(strings);
+    }
+
+    /**
+     * Add to the passed set the names of the properties (using the names
+     * they have in JSON, such as <code>hostname</code>) this filter reads
+     * from the records it tests, so that a stream which only parses some
+     * fields can be sure to parse those.
+     *
+     * @param fields A set of field names
+     * @return false if this filter may read properties it cannot name, in
+     * which case the whole record must be parsed
+     */
+    boolean collectFieldNames(Set<String> fields) {
+        return false;
+    }
+
+    /**
+     * Determine whether a block of a log file, as described by a LogIndex,
+     * may contain records this filter accepts. Returning false allows the
+     * block to be skipped without reading it.
+     *
+     * @param block A block
+     * @return false only if no record in the block can match
+     */
+    boolean mayMatch(IndexBlock block) {
+        return true;
+    }
+
+    /**
+     * Get the blocks of a MessageIndex which may contain records this
+     * filter accepts.
+     *
+     * @param index An index
+     * @return The blocks, or null if any block may
+     */
+    BitSet candidateBlocks(MessageIndex index) {
+        return null;
+    }
+
+    /**
+     * Determine whether this filter will reject every record from now on,
+     * as a <code>limit()</code> does once it has accepted its limit, so that
+     * a stream which can stop reading early may do so.
+     *
+     * @return true if no further record can match
+     */
+    boolean exhausted() {
+        return false;
+    }
+
+    /**
+     * Get the byte matcher built from the prefilter groups of this filter,
+     * which is created once and shared by all threads using this filter.
+     *
+     * @return A matcher, which may be empty
+     */
+    final ByteMatcher prefilter() {
+        ByteMatcher result = prefilter;
+        if (result == null) {
+            List<Set<String>> groups = new ArrayList<>();
+            collectPrefilterGroups(groups);
+            // Fewest strings first, so a line is rejected by the group least
+            // likely to be satisfied if there are more groups than the
+            // matcher can track
+            Collections.sort(groups, (a, b) -> Integer.compare(a.size(), b.size()));
+            prefilter = result = new ByteMatcher(groups);
         }
-        String[] strings = toMatch.toArray(new String[toMatch.size()]);
-        // Fasiter fail if shortest strings are tested first
-        Arrays.sort(strings, (String t, String t1) -> {
-            Integer a = t.length();
-            Integer b = t1.length();
-            return a.compareTo(b);
-        });
-        return result.and(new MatchWords(true, strings));
+        return result;
     }
-    
+
+    /**
+     * Compile a filter query, such as
+     * <code>level&gt;=warn &amp;&amp; name=="requests" &amp;&amp; status==500
+     * &amp;&amp; time&gt;2026-10-01</code>. A query is made of comparisons
+     * of a field with a value, combined with <code>&amp;&amp;</code> (or
+     * <code>and</code>), <code>||</code> (or <code>or</code>), <code>!</code>
+     * (or <code>not</code>) and parentheses.
+     * <ul>
+     * <li>Fields are named as in the JSON, such as <code>hostname</code>;
+     * values in nested objects can be compared using dotted paths such as
+     * <code>req.method</code></li>
+     * <li>The operators are <code>== != &lt; &lt;= &gt; &gt;=</code>, and
+     * <code>=~</code>, which matches a regular expression anywhere in the
+     * value</li>
+     * <li>Values are numbers, <code>true</code>, <code>false</code>,
+     * <code>null</code>, or strings, which need only be quoted (with JSON
+     * escapes) if they contain spaces or operator characters</li>
+     * <li>Levels may be given by name, as in <code>level&gt;=warn</code></li>
+     * <li>Times are ISO-8601 dates or date-times, in UTC unless they have an
+     * offset</li>
+     * </ul>
+     * Comparing a field a record lacks is false, except with
+     * <code>!=</code>; so is comparing a number with a string. Each
+     * comparison supplies the strings a line must contain for the byte-level
+     * prefilter - for <code>status==500</code>, <code>"status":500</code> -
+     * and checks against a LogIndex, and the operands of each run of
+     * <code>&amp;&amp;</code> or <code>||</code> are reordered so that the
+     * cheapest to test, such as comparisons on the level, come first.
+     *
+     * @param query A query
+     * @return A filter
+     * @throws IllegalArgumentException if the query is malformed
+     */
+    public static LogFilter parse(String query) {
+        return LogQuery.compile(query);
+    }
+
     public static LogFilter levelMatches(int level) {
         return new LogFilter() {
             @Override
             public boolean test(LogRecord t) {
-                return t.level == level;
+                return t.level() == level;
+            }
+
+            @Override
+            boolean mayMatch(IndexBlock block) {
+                return block.mayContainLevel(level);
+            }
+
+            @Override
+            boolean collectFieldNames(Set<String> fields) {
+                fields.add("level");
+                return true;
             }
         };
     }
@@ -82,7 +216,18 @@ public abstract class LogFilter implements Predicate<LogRecord> {
         return new LogFilter() {
             @Override
             public boolean test(LogRecord t) {
-                return t.level > level;
+                return t.level() > level;
+            }
+
+            @Override
+            boolean mayMatch(IndexBlock block) {
+                return block.maxLevel > level;
+            }
+
+            @Override
+            boolean collectFieldNames(Set<String> fields) {
+                fields.add("level");
+                return true;
             }
         };
     }
@@ -91,7 +236,18 @@ public abstract class LogFilter implements Predicate<LogRecord> {
         return new LogFilter() {
             @Override
             public boolean test(LogRecord t) {
-                return t.level < level;
+                return t.level() < level;
+            }
+
+            @Override
+            boolean mayMatch(IndexBlock block) {
+                return block.minLevel < level;
+            }
+
+            @Override
+            boolean collectFieldNames(Set<String> fields) {
+                fields.add("level");
+                return true;
             }
         };
     }
@@ -100,10 +256,26 @@ public abstract class LogFilter implements Predicate<LogRecord> {
         if (dt == null) {
             throw new IllegalArgumentException("Null date");
         }
+        long millis = dt.toInstant().toEpochMilli();
         return new LogFilter() {
             @Override
             public boolean test(LogRecord t) {
-                return t.time.isBefore(dt);
+                // Compare millis, and only compare whole times when the
+                // millis are the same
+                long time = t.timeMillis();
+                return time != TimeParser.NO_TIME && (time < millis
+                        || (time == millis && t.time().isBefore(dt)));
+            }
+
+            @Override
+            boolean mayMatch(IndexBlock block) {
+                return block.mayContainTimeBefore(dt);
+            }
+
+            @Override
+            boolean collectFieldNames(Set<String> fields) {
+                fields.add("time");
+                return true;
             }
         };
     }
@@ -112,10 +284,24 @@ public abstract class LogFilter implements Predicate<LogRecord> {
         if (dt == null) {
             throw new IllegalArgumentException("Null date");
         }
+        long millis = dt.toInstant().toEpochMilli();
         return new LogFilter() {
             @Override
             public boolean test(LogRecord t) {
-                return t.time.isAfter(dt);
+                long time = t.timeMillis();
+                return time != TimeParser.NO_TIME && (time > millis
+                        || (time == millis && t.time().isAfter(dt)));
+            }
+
+            @Override
+            boolean mayMatch(IndexBlock block) {
+                return block.mayContainTimeAfter(dt);
+            }
+
+            @Override
+            boolean collectFieldNames(Set<String> fields) {
+                fields.add("time");
+                return true;
             }
         };
     }
@@ -127,7 +313,18 @@ public abstract class LogFilter implements Predicate<LogRecord> {
         LogFilter result = new LogFilter() {
             @Override
             public boolean test(LogRecord t) {
-                return name.equals(t.name);
+                return name.equals(t.name());
+            }
+
+            @Override
+            boolean mayMatch(IndexBlock block) {
+                return block.mayContainName(name);
+            }
+
+            @Override
+            boolean collectFieldNames(Set<String> fields) {
+                fields.add("name");
+                return true;
             }
 
             @Override
@@ -151,6 +348,11 @@ public abstract class LogFilter implements Predicate<LogRecord> {
                 return counter.getAndIncrement() >= count;
             }
 
+            @Override
+            boolean collectFieldNames(Set<String> fields) {
+                return true;
+            }
+
         };
         return result;
     }    
@@ -166,6 +368,16 @@ public abstract class LogFilter implements Predicate<LogRecord> {
                 return counter.getAndIncrement() < limit;
             }
 
+            @Override
+            boolean exhausted() {
+                return counter.get() >= limit;
+            }
+
+            @Override
+            boolean collectFieldNames(Set<String> fields) {
+                return true;
+            }
+
         };
         return result;
     }
@@ -181,6 +393,11 @@ public abstract class LogFilter implements Predicate<LogRecord> {
             public boolean test(LogRecord t) {
                 return counter.getAndIncrement() % every == 0;
             }
+
+            @Override
+            boolean collectFieldNames(Set<String> fields) {
+                return true;
+            }
         };
         return result;
     }
@@ -189,10 +406,21 @@ public abstract class LogFilter implements Predicate<LogRecord> {
         LogFilter result = new LogFilter() {
             @Override
             public boolean test(LogRecord t) {
-                Object val = t.props.get(name);
+                Object val = t.get(name);
                 return value.equals(val);
             }
 
+            @Override
+            boolean mayMatch(IndexBlock block) {
+                return block.mayContainProperty(name, value);
+            }
+
+            @Override
+            boolean collectFieldNames(Set<String> fields) {
+                fields.add(name);
+                return true;
+            }
+
             @Override
             protected void collectPrefilterStrings(Set<? super String> strings) {
                 strings.add(name);
@@ -200,6 +428,15 @@ public abstract class LogFilter implements Predicate<LogRecord> {
                     strings.add((String) value);
                 }
             }
+
+            @Override
+            void collectPrefilterGroups(List<Set<String>> groups) {
+                // Both must be present
+                addPrefilterGroup(Collections.singleton(name), groups);
+                if (value instanceof String) {
+                    addPrefilterGroup(Collections.singleton((String) value), groups);
+                }
+            }
         };
         return result;
     }
@@ -208,10 +445,16 @@ public abstract class LogFilter implements Predicate<LogRecord> {
         LogFilter result = new LogFilter() {
             @Override
             public boolean test(LogRecord t) {
-                Object val = t.props.get(name);
+                Object val = t.get(name);
                 return val instanceof String && value.matcher(val.toString()).matches();
             }
 
+            @Override
+            boolean collectFieldNames(Set<String> fields) {
+                fields.add(name);
+                return true;
+            }
+
             @Override
             protected void collectPrefilterStrings(Set<? super String> strings) {
                 strings.add(name);
@@ -224,7 +467,99 @@ public abstract class LogFilter implements Predicate<LogRecord> {
         return new LogFilter() {
             @Override
             public boolean test(LogRecord t) {
-                return msg.equals(t.msg);
+                return msg.equals(t.msg());
+            }
+
+            @Override
+            boolean collectFieldNames(Set<String> fields) {
+                fields.add("msg");
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Match records whose message contains the passed text. Used with a
+     * {@link MessageIndex}, only the blocks of a file containing every word
+     * of the text are read.
+     *
+     * @param text The text
+     * @return A filter
+     */
+    public static LogFilter messageContains(String text) {
+        if (text == null) {
+            throw new IllegalArgumentException("Null text");
+        }
+        return new LogFilter() {
+            @Override
+            public boolean test(LogRecord t) {
+                String msg = t.msg();
+                return msg != null && msg.contains(text);
+            }
+
+            @Override
+            boolean collectFieldNames(Set<String> fields) {
+                fields.add("msg");
+                return true;
+            }
+
+            @Override
+            void collectPrefilterGroups(List<Set<String>> groups) {
+                addPrefilterGroup(Collections.singleton(text), groups);
+            }
+
+            @Override
+            BitSet candidateBlocks(MessageIndex index) {
+                return index.blocksContaining(null, text);
+            }
+
+            @Override
+            public String toString() {
+                return "messageContains(" + text + ")";
+            }
+        };
+    }
+
+    /**
+     * Match records with a string property which contains the passed text.
+     * Used with a {@link MessageIndex} which indexes the property, only the
+     * blocks of a file containing every word of the text are read.
+     *
+     * @param name The property name
+     * @param text The text
+     * @return A filter
+     */
+    public static LogFilter propertyContains(String name, String text) {
+        if (name == null || text == null) {
+            throw new IllegalArgumentException("Null name or text");
+        }
+        return new LogFilter() {
+            @Override
+            public boolean test(LogRecord t) {
+                Object val = t.get(name);
+                return val instanceof String && ((String) val).contains(text);
+            }
+
+            @Override
+            boolean collectFieldNames(Set<String> fields) {
+                fields.add(name);
+                return true;
+            }
+
+            @Override
+            void collectPrefilterGroups(List<Set<String>> groups) {
+                addPrefilterGroup(Collections.singleton(name), groups);
+                addPrefilterGroup(Collections.singleton(text), groups);
+            }
+
+            @Override
+            BitSet candidateBlocks(MessageIndex index) {
+                return index.blocksContaining(name, text);
+            }
+
+            @Override
+            public String toString() {
+                return "propertyContains(" + name + ", " + text + ")";
             }
         };
     }
@@ -258,6 +593,21 @@ public abstract class LogFilter implements Predicate<LogRecord> {
         protected void collectPrefilterStrings(Set<? super String> strings) {
             // do nothing
         }
+
+        @Override
+        void collectPrefilterGroups(List<Set<String>> groups) {
+            // do nothing
+        }
+
+        @Override
+        boolean collectFieldNames(Set<String> fields) {
+            return filter.collectFieldNames(fields);
+        }
+
+        @Override
+        public String toString() {
+            return "!(" + filter + ")";
+        }
     }
 
     private static final class Or extends LogFilter {
@@ -280,6 +630,64 @@ public abstract class LogFilter implements Predicate<LogRecord> {
             a.collectPrefilterStrings(strings);
             b.collectPrefilterStrings(strings);
         }
+
+        @Override
+        void collectPrefilterGroups(List<Set<String>> groups) {
+            // Whichever side matches satisfies every one of its groups, so
+            // the union of one group from each side must be present - and
+            // if either side can match anything, so can this
+            Set<String> fromA = smallestGroup(a);
+            Set<String> fromB = smallestGroup(b);
+            if (fromA != null && fromB != null) {
+                Set<String> union = new HashSet<>(fromA);
+                union.addAll(fromB);
+                groups.add(union);
+            }
+        }
+
+        @Override
+        boolean collectFieldNames(Set<String> fields) {
+            boolean aKnown = a.collectFieldNames(fields);
+            return b.collectFieldNames(fields) && aKnown;
+        }
+
+        @Override
+        boolean mayMatch(IndexBlock block) {
+            return a.mayMatch(block) || b.mayMatch(block);
+        }
+
+        @Override
+        boolean exhausted() {
+            return a.exhausted() && b.exhausted();
+        }
+
+        @Override
+        BitSet candidateBlocks(MessageIndex index) {
+            BitSet fromA = a.candidateBlocks(index);
+            BitSet fromB = fromA == null ? null : b.candidateBlocks(index);
+            if (fromB == null) {
+                return null;
+            }
+            fromA.or(fromB);
+            return fromA;
+        }
+
+        @Override
+        public String toString() {
+            return "(" + a + " || " + b + ")";
+        }
+
+        private static Set<String> smallestGroup(LogFilter filter) {
+            List<Set<String>> groups = new ArrayList<>();
+            filter.collectPrefilterGroups(groups);
+            Set<String> result = null;
+            for (Set<String> group : groups) {
+                if (result == null || group.size() < result.size()) {
+                    result = group;
+                }
+            }
+            return result;
+        }
     }
 
     private static final class And extends LogFilter {
@@ -302,5 +710,43 @@ public abstract class LogFilter implements Predicate<LogRecord> {
             a.collectPrefilterStrings(strings);
             b.collectPrefilterStrings(strings);
         }
+
+        @Override
+        void collectPrefilterGroups(List<Set<String>> groups) {
+            a.collectPrefilterGroups(groups);
+            b.collectPrefilterGroups(groups);
+        }
+
+        @Override
+        boolean collectFieldNames(Set<String> fields) {
+            boolean aKnown = a.collectFieldNames(fields);
+            return b.collectFieldNames(fields) && aKnown;
+        }
+
+        @Override
+        boolean mayMatch(IndexBlock block) {
+            return a.mayMatch(block) && b.mayMatch(block);
+        }
+
+        @Override
+        boolean exhausted() {
+            return a.exhausted() || b.exhausted();
+        }
+
+        @Override
+        BitSet candidateBlocks(MessageIndex index) {
+            BitSet fromA = a.candidateBlocks(index);
+            BitSet fromB = b.candidateBlocks(index);
+            if (fromA == null || fromB == null) {
+                return fromA == null ? fromB : fromA;
+            }
+            fromA.and(fromB);
+            return fromA;
+        }
+
+        @Override
+        public String toString() {
+            return "(" + a + " && " + b + ")";
+        }
     }
 }
@@ -0,0 +1,398 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 Tim Boudreau.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.bunyan.parse;
+
+import com.mastfrog.bunyan.parse.LogStreamFactory.ReadResult;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Follows a log file as records are appended to it, in the manner of
+ * <code>tail -f</code>, reading whatever complete lines have been appended
+ * as a batch each time the file changes. Changes are detected using a
+ * WatchService on the file's directory where one is available, and by
+ * polling at a fixed interval regardless, since some WatchService
+ * implementations are themselves slow polling.
+ * <p>
+ * If the file is truncated, reading restarts from its beginning; if it is
+ * rotated (renamed and replaced by a new file), the remainder of the old
+ * file is read before switching to the new one - and if a reader stops
+ * part way through the old file's records, reading resumes there. The offset after the last
+ * line read is available from {@link #offset()}, and can be saved durably
+ * to a checkpoint file with {@link #commit()}, so that a consumer which is
+ * restarted resumes where it left off.
+ * </p><p>
+ * Instances are intended to be read from by one thread at a time, but may
+ * be closed from any thread.
+ * </p>
+ *
+ * @author Tim Boudreau
+ */
+public final class LogFollower implements AutoCloseable {
+
+    /**
+     * The default interval at which the file is checked for changes, in
+     * addition to any WatchService notifications.
+     */
+    public static final long DEFAULT_POLL_INTERVAL_MILLIS = 500;
+    private static final int READ_BUFFER_SIZE = 256 * 1024;
+    private static final int CHECKPOINT_MAGIC = 0x424e5946;
+    private final Path path;
+    private final LineSpliterator.LineHandler<LogRecord> handler;
+    private final Path checkpoint;
+    private final long pollIntervalMillis;
+    private final WatchService watch;
+    private ByteBuffer buf = ByteBuffer.allocate(READ_BUFFER_SIZE);
+    private FileChannel channel;
+    private Object fileKey;
+    private long offset;
+    // The file rotated away from during the last batch, kept open until the
+    // next one in case the batch is rewound into it
+    private FileChannel previousChannel;
+    private Object previousKey;
+    // End offsets of the lines of the records in the last batch, and the
+    // index of the first record read from a new file after rotation, if any
+    private long[] batchEnds = new long[64];
+    private int batchSize;
+    private int batchRotatedAt = -1;
+    private volatile boolean closed;
+
+    LogFollower(Path path, LineSpliterator.LineHandler<LogRecord> handler, long offset, Path checkpoint, long pollIntervalMillis) throws IOException {
+        this.path = path.toAbsolutePath();
+        this.handler = handler;
+        this.checkpoint = checkpoint;
+        this.pollIntervalMillis = pollIntervalMillis;
+        this.offset = offset;
+        if (checkpoint != null) {
+            this.offset = loadCheckpoint();
+        }
+        this.watch = watchService(this.path);
+    }
+
+    private static WatchService watchService(Path path) {
+        try {
+            WatchService result = path.getFileSystem().newWatchService();
+            path.getParent().register(result, ENTRY_CREATE, ENTRY_MODIFY);
+            return result;
+        } catch (IOException | UnsupportedOperationException ex) {
+            // Poll only
+            Logger.getLogger(LogFollower.class.getName()).log(Level.FINE,
+                    "No WatchService for " + path + "; polling", ex);
+            return null;
+        }
+    }
+
+    /**
+     * Get the offset in the current file just past the last line read,
+     * from which reading will continue.
+     *
+     * @return An offset
+     */
+    public synchronized long offset() {
+        return offset;
+    }
+
+    /**
+     * Durably record the current offset in the checkpoint file, so a
+     * follower later created with the same checkpoint file resumes from it.
+     * Does nothing if this follower has no checkpoint file.
+     *
+     * @throws IOException if something goes wrong
+     */
+    public synchronized void commit() throws IOException {
+        if (checkpoint == null) {
+            return;
+        }
+        long fingerprint;
+        int fingerprintLength = (int) Math.min(offset, LogIndex.FINGERPRINT_BYTES);
+        if (channel != null) {
+            fingerprint = LogIndex.fingerprint(channel, fingerprintLength);
+        } else {
+            try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+                fingerprint = LogIndex.fingerprint(ch, fingerprintLength);
+            } catch (NoSuchFileException ex) {
+                fingerprint = -1;
+            }
+        }
+        Path tmp = Segments.sidecar(checkpoint, Segments.TEMP_SUFFIX);
+        try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            DataOutputStream data = new DataOutputStream(Channels.newOutputStream(out));
+            data.writeInt(CHECKPOINT_MAGIC);
+            data.writeLong(offset);
+            data.writeInt(fingerprintLength);
+            data.writeLong(fingerprint);
+            data.flush();
+            out.force(true);
+        }
+        Files.move(tmp, checkpoint, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private long loadCheckpoint() throws IOException {
+        long savedOffset;
+        int fingerprintLength;
+        long fingerprint;
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(checkpoint))) {
+            if (in.readInt() != CHECKPOINT_MAGIC) {
+                throw new IOException("Not a checkpoint file: " + checkpoint);
+            }
+            savedOffset = in.readLong();
+            fingerprintLength = in.readInt();
+            fingerprint = in.readLong();
+        } catch (NoSuchFileException ex) {
+            return offset;
+        }
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (ch.size() < savedOffset || LogIndex.fingerprint(ch, fingerprintLength) != fingerprint) {
+                // Truncated or rotated while we were not running
+                return 0;
+            }
+            return savedOffset;
+        } catch (NoSuchFileException ex) {
+            return 0;
+        }
+    }
+
+    /**
+     * Wait up to the passed timeout for records to be appended to the file,
+     * returning all of those available as soon as there are any.
+     *
+     * @param timeout The maximum time to wait
+     * @param unit The time unit
+     * @return A list of records, empty if none were appended before the
+     * timeout elapsed or this follower was closed
+     * @throws IOException if something goes wrong
+     */
+    public List<LogRecord> poll(long timeout, TimeUnit unit) throws IOException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        for (;;) {
+            List<LogRecord> result = readAvailable();
+            long remaining = deadline - System.nanoTime();
+            if (!result.isEmpty() || closed || remaining <= 0) {
+                return result;
+            }
+            if (!awaitChange(Math.min(TimeUnit.NANOSECONDS.toMillis(remaining) + 1, pollIntervalMillis))) {
+                return result;
+            }
+        }
+    }
+
+    /**
+     * Pass records to the passed function as they are appended, committing
+     * the offset after each batch, until the function returns
+     * <code>ReadResult.STOP</code>, this follower is closed or the calling
+     * thread is interrupted.
+     *
+     * @param reader A function that consumes records
+     * @throws IOException if something goes wrong
+     */
+    public void read(Function<LogRecord, ReadResult> reader) throws IOException {
+        while (!closed && !Thread.currentThread().isInterrupted()) {
+            List<LogRecord> batch = poll(pollIntervalMillis, TimeUnit.MILLISECONDS);
+            for (int i = 0; i < batch.size(); i++) {
+                ReadResult res = reader.apply(batch.get(i));
+                if (res != ReadResult.CONTINUE && res != null) {
+                    // Leave the rest of the batch to be read again
+                    rewindTo(i);
+                    commit();
+                    return;
+                }
+            }
+            commit();
+        }
+    }
+
+    private synchronized void rewindTo(int recordIndex) throws IOException {
+        if (batchRotatedAt >= 0 && recordIndex < batchRotatedAt && previousChannel != null) {
+            // Go back to the old file, so the rest of it is read again
+            // before rotating to the new one once more
+            channel.close();
+            channel = previousChannel;
+            fileKey = previousKey;
+            previousChannel = null;
+        }
+        offset = batchEnds[recordIndex];
+    }
+
+    private boolean awaitChange(long millis) {
+        try {
+            if (watch == null) {
+                Thread.sleep(millis);
+                return true;
+            }
+            WatchKey key = watch.poll(millis, TimeUnit.MILLISECONDS);
+            if (key != null) {
+                key.pollEvents();
+                key.reset();
+            }
+            return true;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ClosedWatchServiceException ex) {
+            return false;
+        }
+    }
+
+    private synchronized List<LogRecord> readAvailable() throws IOException {
+        if (closed) {
+            return Collections.emptyList();
+        }
+        closePrevious();
+        BasicFileAttributes attrs;
+        try {
+            attrs = Files.readAttributes(path, BasicFileAttributes.class);
+        } catch (NoSuchFileException ex) {
+            // Not yet created, or rotated away and not yet replaced
+            attrs = null;
+        }
+        if (channel == null) {
+            if (attrs == null) {
+                return Collections.emptyList();
+            }
+            open(attrs);
+        }
+        List<LogRecord> result = new ArrayList<>();
+        batchSize = 0;
+        batchRotatedAt = -1;
+        long size = channel.size();
+        if (size < offset) {
+            // Truncated
+            offset = 0;
+        }
+        readLines(size, result);
+        if (attrs != null && !key(attrs).equals(fileKey)) {
+            // Rotated - we have read the rest of the old file, so move to
+            // the new one
+            FileChannel old = channel;
+            Object oldKey = fileKey;
+            open(attrs);
+            previousChannel = old;
+            previousKey = oldKey;
+            offset = 0;
+            batchRotatedAt = result.size();
+            readLines(channel.size(), result);
+        }
+        return result;
+    }
+
+    private void closePrevious() throws IOException {
+        if (previousChannel != null) {
+            FileChannel ch = previousChannel;
+            previousChannel = null;
+            previousKey = null;
+            ch.close();
+        }
+    }
+
+    private void open(BasicFileAttributes attrs) throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.READ);
+        fileKey = key(attrs);
+    }
+
+    private static Object key(BasicFileAttributes attrs) {
+        Object key = attrs.fileKey();
+        return key == null ? attrs.creationTime() : key;
+    }
+
+    private void readLines(long size, List<LogRecord> into) throws IOException {
+        while (offset < size) {
+            buf.clear();
+            buf.limit((int) Math.min(buf.capacity(), size - offset));
+            while (buf.hasRemaining()) {
+                if (channel.read(buf, offset + buf.position()) < 0) {
+                    break;
+                }
+            }
+            int limit = buf.position();
+            int lineStart = 0;
+            int newline;
+            while ((newline = LineSpliterator.indexOfNewline(buf, lineStart, limit)) >= 0) {
+                int lineEnd = newline;
+                if (lineEnd > lineStart && buf.get(lineEnd - 1) == '\r') {
+                    lineEnd--;
+                }
+                if (lineEnd > lineStart) {
+                    LogRecord record = handler.handle(buf, lineStart, lineEnd);
+                    if (record != null) {
+                        into.add(record);
+                        if (batchSize == batchEnds.length) {
+                            batchEnds = Arrays.copyOf(batchEnds, batchSize * 2);
+                        }
+                        batchEnds[batchSize++] = offset + newline + 1;
+                    }
+                }
+                lineStart = newline + 1;
+            }
+            if (lineStart == 0) {
+                if (limit == buf.capacity()) {
+                    // A line longer than the buffer
+                    buf = ByteBuffer.allocate(buf.capacity() * 2);
+                    continue;
+                }
+                // Incomplete last line, still being written
+                break;
+            }
+            offset += lineStart;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        if (watch != null) {
+            watch.close();
+        }
+        synchronized (this) {
+            closePrevious();
+            if (channel != null) {
+                channel.close();
+                channel = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,435 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 Tim Boudreau.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.bunyan.parse;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * A sidecar index for a bunyan log file, which divides it into blocks of
+ * lines and records, for each block, its byte range, minimum and maximum
+ * time, a histogram of levels, the set of logger names and a bloom filter of
+ * the values of a set of selected properties (such as <code>id</code> or
+ * <code>rid</code>). Passed to
+ * {@link LogStreamFactory#stream(java.util.function.Predicate, LogIndex)},
+ * it allows blocks which cannot contain records matching a LogFilter to be
+ * skipped without reading them.
+ * <p>
+ * The index is stored next to the log file (by default, with
+ * <code>.idx</code> appended to its name) and is updated incrementally by
+ * {@link #update()} as the log grows; if the file has been truncated or
+ * replaced, it is rebuilt. Instances are thread-safe.
+ * </p>
+ *
+ * @author Tim Boudreau
+ */
+public final class LogIndex {
+
+    /**
+     * The default number of bytes of log lines per block.
+     */
+    public static final int DEFAULT_BLOCK_SIZE = 1024 * 1024;
+    private static final int MAGIC = 0x424e5958;
+    private static final int VERSION = 2;
+    static final int FINGERPRINT_BYTES = 256;
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+    private final Path logFile;
+    private final Path sidecar;
+    private final int blockSize;
+    private final Set<String> indexedProperties;
+    private final JsonFactory factory;
+    private final ObjectReader timeReader;
+    private final List<IndexBlock> blocks = new ArrayList<>();
+    private long indexedTo;
+    private int fingerprintLength;
+    private long fingerprint;
+
+    private LogIndex(Path logFile, Path sidecar, int blockSize, ObjectMapper mapper, Set<String> indexedProperties) {
+        this.logFile = logFile;
+        this.sidecar = sidecar;
+        this.blockSize = blockSize;
+        this.factory = mapper.getFactory();
+        this.timeReader = mapper.readerFor(ZonedDateTime.class);
+        this.indexedProperties = indexedProperties;
+    }
+
+    /**
+     * Open or create the index for a log file, in a sidecar file named by
+     * appending <code>.idx</code> to the log file's name, and bring it up to
+     * date.
+     *
+     * @param logFile The log file
+     * @param mapper The object mapper used to read times
+     * @param indexedProperties The names of properties whose values should be
+     * indexed, such as <code>id</code> or <code>rid</code>
+     * @return An index
+     * @throws IOException if something goes wrong
+     */
+    public static LogIndex open(Path logFile, ObjectMapper mapper, String... indexedProperties) throws IOException {
+        return open(logFile, Segments.sidecar(logFile, Segments.INDEX_SUFFIX),
+                DEFAULT_BLOCK_SIZE, mapper, indexedProperties);
+    }
+
+    /**
+     * Open or create the index for a log file and bring it up to date. If
+     * the sidecar exists but was built with a different block size or set of
+     * properties, it is rebuilt.
+     *
+     * @param logFile The log file
+     * @param sidecar The index file
+     * @param blockSize The approximate number of bytes per block
+     * @param mapper The object mapper used to read times
+     * @param indexedProperties The names of properties whose values should be
+     * indexed
+     * @return An index
+     * @throws IOException if something goes wrong
+     */
+    public static LogIndex open(Path logFile, Path sidecar, int blockSize, ObjectMapper mapper, String... indexedProperties) throws IOException {
+        if (blockSize <= 0) {
+            throw new IllegalArgumentException("Bad block size " + blockSize);
+        }
+        Set<String> props = Collections.unmodifiableSet(new LinkedHashSet<>(Arrays.asList(indexedProperties)));
+        LogIndex result = new LogIndex(logFile, sidecar, blockSize, mapper, props);
+        result.load();
+        return result.update();
+    }
+
+    /**
+     * Get the log file this index is for.
+     *
+     * @return The log file
+     */
+    public Path logFile() {
+        return logFile;
+    }
+
+    /**
+     * Get the number of blocks in this index.
+     *
+     * @return The block count
+     */
+    public synchronized int blockCount() {
+        return blocks.size();
+    }
+
+    /**
+     * Get the offset in the log file up to which lines have been indexed.
+     *
+     * @return An offset
+     */
+    public synchronized long indexedTo() {
+        return indexedTo;
+    }
+
+    /**
+     * Index any lines appended to the log file since this index was last
+     * updated, rebuilding it if the file has been truncated or replaced, and
+     * save it if anything changed.
+     *
+     * @return this
+     * @throws IOException if something goes wrong
+     */
+    public synchronized LogIndex update() throws IOException {
+        try (FileChannel channel = FileChannel.open(logFile, StandardOpenOption.READ)) {
+            long size = channel.size();
+            boolean changed = false;
+            if (replaced(channel, indexedTo, fingerprintLength, fingerprint)) {
+                blocks.clear();
+                indexedTo = 0;
+                fingerprintLength = 0;
+                changed = true;
+            }
+            if (fingerprintLength < FINGERPRINT_BYTES && size > fingerprintLength) {
+                fingerprintLength = (int) Math.min(FINGERPRINT_BYTES, size);
+                fingerprint = fingerprint(channel, fingerprintLength);
+                changed = true;
+            }
+            // The last block may have been cut short by the end of the file
+            // last time, so redo it
+            if (!blocks.isEmpty() && blocks.get(blocks.size() - 1).length() < blockSize && size > indexedTo) {
+                indexedTo = blocks.remove(blocks.size() - 1).start;
+            }
+            if (size > indexedTo) {
+                index(channel, size);
+                changed = true;
+            }
+            if (changed) {
+                save();
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Get the byte ranges of the log file which may contain records matching
+     * the passed filter, merging adjacent ranges, and including any part of
+     * the file not yet indexed.
+     *
+     * @param filter A filter
+     * @param channel A channel open on the log file
+     * @return A list of start and end offsets
+     * @throws IOException if something goes wrong
+     */
+    synchronized List<long[]> candidateRanges(Predicate<LogRecord> filter, FileChannel channel) throws IOException {
+        List<long[]> result = new ArrayList<>();
+        long size = channel.size();
+        if (replaced(channel, indexedTo, fingerprintLength, fingerprint)) {
+            // Truncated or replaced since the last update; the index is
+            // useless
+            result.add(new long[]{0, size});
+            return result;
+        }
+        LogFilter logFilter = filter instanceof LogFilter ? (LogFilter) filter : null;
+        long[] last = null;
+        for (IndexBlock block : blocks) {
+            if (logFilter != null && !logFilter.mayMatch(block)) {
+                continue;
+            }
+            if (last != null && last[1] == block.start) {
+                last[1] = block.end;
+            } else {
+                result.add(last = new long[]{block.start, block.end});
+            }
+        }
+        if (size > indexedTo) {
+            if (last != null && last[1] == indexedTo) {
+                last[1] = size;
+            } else {
+                result.add(new long[]{indexedTo, size});
+            }
+        }
+        return result;
+    }
+
+    private void index(FileChannel channel, long size) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(READ_BUFFER_SIZE);
+        IndexBlock.Builder block = new IndexBlock.Builder(indexedTo, indexedProperties);
+        long bufferOffset = indexedTo;
+        while (bufferOffset < size) {
+            buf.clear();
+            buf.limit((int) Math.min(buf.capacity(), size - bufferOffset));
+            while (buf.hasRemaining()) {
+                if (channel.read(buf, bufferOffset + buf.position()) < 0) {
+                    break;
+                }
+            }
+            int limit = buf.position();
+            int lineStart = 0;
+            int newline;
+            while ((newline = LineSpliterator.indexOfNewline(buf, lineStart, limit)) >= 0) {
+                indexLine(buf.array(), lineStart, newline, block);
+                lineStart = newline + 1;
+                long lineEnd = bufferOffset + lineStart;
+                if (lineEnd - block.start() >= blockSize) {
+                    blocks.add(block.build(lineEnd));
+                    block = new IndexBlock.Builder(lineEnd, indexedProperties);
+                }
+            }
+            if (lineStart == 0 && limit == buf.capacity()) {
+                // A line longer than the buffer
+                buf = ByteBuffer.allocate(buf.capacity() * 2);
+                continue;
+            }
+            if (lineStart == 0) {
+                // An incomplete last line, still being written
+                break;
+            }
+            bufferOffset += lineStart;
+        }
+        if (bufferOffset > block.start()) {
+            blocks.add(block.build(bufferOffset));
+        }
+        indexedTo = bufferOffset;
+    }
+
+    private void indexLine(byte[] bytes, int start, int end, IndexBlock.Builder block) {
+        if (end <= start || bytes[start] != '{') {
+            return;
+        }
+        int level = 0;
+        try (JsonParser parser = factory.createParser(bytes, start, end - start)) {
+            parser.nextToken();
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.getCurrentName();
+                JsonToken tok = parser.nextToken();
+                switch (name) {
+                    case "time":
+                        if (tok == JsonToken.VALUE_STRING) {
+                            long millis = TimeParser.epochMillis(parser.getTextCharacters(),
+                                    parser.getTextOffset(), parser.getTextLength());
+                            if (millis == TimeParser.NO_TIME) {
+                                ZonedDateTime time = timeReader.readValue(parser);
+                                millis = time.toInstant().toEpochMilli();
+                            }
+                            block.time(millis);
+                        }
+                        break;
+                    case "level":
+                        level = parser.getValueAsInt();
+                        break;
+                    case "name":
+                        if (tok == JsonToken.VALUE_STRING) {
+                            block.name(parser.getText());
+                        }
+                        break;
+                    default:
+                        if (!indexedProperties.contains(name)) {
+                            parser.skipChildren();
+                        } else if (tok == JsonToken.VALUE_NUMBER_FLOAT) {
+                            String text = IndexBlock.integralText(parser.getDoubleValue());
+                            if (text != null) {
+                                block.property(name, text);
+                            }
+                        } else if (tok.isScalarValue() && tok != JsonToken.VALUE_NULL) {
+                            block.property(name, parser.getText());
+                        } else {
+                            parser.skipChildren();
+                        }
+                }
+            }
+        } catch (IOException ex) {
+            // Not a parseable line - streams will skip or fail on it too
+            return;
+        }
+        block.level(level);
+    }
+
+    /**
+     * Determine if a file has been truncated or replaced since it was
+     * indexed - if it is shorter than the indexed length, or its first bytes
+     * no longer match the fingerprint, as when it has been rotated and
+     * replaced by one of the same size or larger.
+     *
+     * @param channel A channel
+     * @param indexedTo The length indexed
+     * @param fingerprintLength The number of bytes fingerprinted
+     * @param fingerprint The fingerprint
+     * @return true if the index no longer describes the file
+     * @throws IOException If something goes wrong
+     */
+    static boolean replaced(FileChannel channel, long indexedTo, int fingerprintLength, long fingerprint) throws IOException {
+        return channel.size() < indexedTo || fingerprint(channel, fingerprintLength) != fingerprint;
+    }
+
+    /**
+     * Compute a CRC of the first bytes of a file, to detect it having been
+     * replaced by a different one.
+     *
+     * @param channel A channel
+     * @param length The number of bytes
+     * @return A CRC, or -1 if the file is shorter than the length
+     * @throws IOException If something goes wrong
+     */
+    static long fingerprint(FileChannel channel, int length) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(length);
+        while (buf.hasRemaining()) {
+            if (channel.read(buf, buf.position()) < 0) {
+                return -1;
+            }
+        }
+        CRC32 crc = new CRC32();
+        crc.update(buf.array(), 0, length);
+        return crc.getValue();
+    }
+
+    private void load() throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(sidecar)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION || in.readInt() != blockSize) {
+                return;
+            }
+            int propCount = in.readInt();
+            Set<String> props = new LinkedHashSet<>();
+            for (int i = 0; i < propCount; i++) {
+                props.add(in.readUTF());
+            }
+            if (!props.equals(indexedProperties)) {
+                return;
+            }
+            long loadedTo = in.readLong();
+            int loadedFingerprintLength = in.readInt();
+            long loadedFingerprint = in.readLong();
+            int count = in.readInt();
+            List<IndexBlock> loaded = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                loaded.add(IndexBlock.read(in, indexedProperties));
+            }
+            blocks.addAll(loaded);
+            indexedTo = loadedTo;
+            fingerprintLength = loadedFingerprintLength;
+            fingerprint = loadedFingerprint;
+        } catch (NoSuchFileException ex) {
+            // not created yet
+        } catch (IOException ex) {
+            // Truncated or corrupt; it will be rebuilt
+            Logger.getLogger(LogIndex.class.getName()).log(Level.INFO, "Rebuilding " + sidecar, ex);
+        }
+    }
+
+    private void save() throws IOException {
+        Path tmp = Segments.sidecar(sidecar, Segments.TEMP_SUFFIX);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(blockSize);
+            out.writeInt(indexedProperties.size());
+            for (String prop : indexedProperties) {
+                out.writeUTF(prop);
+            }
+            out.writeLong(indexedTo);
+            out.writeInt(fingerprintLength);
+            out.writeLong(fingerprint);
+            out.writeInt(blocks.size());
+            for (IndexBlock block : blocks) {
+                block.write(out);
+            }
+        }
+        Files.move(tmp, sidecar, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
@@ -0,0 +1,607 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 Tim Boudreau.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.bunyan.parse;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Compiles filter queries such as
+ * <code>level&gt;=warn &amp;&amp; name=="requests" &amp;&amp; status==500
+ * &amp;&amp; time&gt;2026-10-01</code> into LogFilters, deriving prefilter
+ * strings for the byte-level matcher and index checks from each comparison,
+ * and ordering the operands of each run of <code>&amp;&amp;</code> or
+ * <code>||</code> so the cheapest are tested first. See
+ * {@link LogFilter#parse(String)} for the syntax.
+ *
+ * @author Tim Boudreau
+ */
+final class LogQuery {
+
+    private static final Map<String, Integer> LEVELS = new HashMap<>();
+
+    static {
+        LEVELS.put("trace", 10);
+        LEVELS.put("debug", 20);
+        LEVELS.put("info", 30);
+        LEVELS.put("warn", 40);
+        LEVELS.put("error", 50);
+        LEVELS.put("fatal", 60);
+    }
+
+    private final String query;
+    private final List<Token> tokens;
+    private int pos;
+
+    private LogQuery(String query) {
+        this.query = query;
+        this.tokens = tokenize(query);
+    }
+
+    static LogFilter compile(String query) {
+        LogQuery parser = new LogQuery(query);
+        Term result = parser.or();
+        if (parser.pos < parser.tokens.size()) {
+            throw parser.error("Unexpected '" + parser.tokens.get(parser.pos).text + "'");
+        }
+        return result.filter;
+    }
+
+    private Term or() {
+        List<Term> terms = new ArrayList<>();
+        terms.add(and());
+        while (accept(Kind.OR)) {
+            terms.add(and());
+        }
+        return combine(terms, false);
+    }
+
+    private Term and() {
+        List<Term> terms = new ArrayList<>();
+        terms.add(unary());
+        while (accept(Kind.AND)) {
+            terms.add(unary());
+        }
+        return combine(terms, true);
+    }
+
+    private static Term combine(List<Term> terms, boolean and) {
+        // Neither operator has side effects in a query, so the operands can
+        // be tested in any order - cheapest first
+        Collections.sort(terms, (a, b) -> Integer.compare(a.cost, b.cost));
+        LogFilter filter = terms.get(0).filter;
+        int cost = terms.get(0).cost;
+        for (int i = 1; i < terms.size(); i++) {
+            filter = and ? filter.and(terms.get(i).filter) : filter.or(terms.get(i).filter);
+            cost += terms.get(i).cost;
+        }
+        return new Term(filter, cost);
+    }
+
+    private Term unary() {
+        if (accept(Kind.NOT)) {
+            Term term = unary();
+            return new Term(term.filter.negate(), term.cost);
+        }
+        if (accept(Kind.OPEN)) {
+            Term result = or();
+            expect(Kind.CLOSE, "')'");
+            return result;
+        }
+        return comparison();
+    }
+
+    private Term comparison() {
+        Token field = expect(Kind.WORD, "a field name");
+        Token op = expect(Kind.OP, "an operator");
+        Token value = peek();
+        if (value == null || (value.kind != Kind.WORD && value.kind != Kind.STRING)) {
+            throw error("Expected a value after " + field.text + op.text);
+        }
+        pos++;
+        Op operator = Op.of(op.text);
+        Object literal;
+        if (operator == Op.MATCHES) {
+            try {
+                literal = Pattern.compile(value.text);
+            } catch (PatternSyntaxException ex) {
+                throw error("Bad pattern " + value.text + ": " + ex.getDescription());
+            }
+        } else {
+            literal = literal(field.text, value);
+        }
+        Comparison result = new Comparison(field.text, operator, literal);
+        return new Term(result, result.cost());
+    }
+
+    private Object literal(String field, Token token) {
+        String text = token.text;
+        if ("time".equals(field)) {
+            Instant time = time(text);
+            if (time == null) {
+                throw error("Bad time '" + text + "'");
+            }
+            return time;
+        }
+        if ("level".equals(field) && LEVELS.containsKey(text.toLowerCase(Locale.US))) {
+            return (long) LEVELS.get(text.toLowerCase(Locale.US));
+        }
+        if (token.kind == Kind.STRING) {
+            return text;
+        }
+        switch (text) {
+            case "true":
+                return Boolean.TRUE;
+            case "false":
+                return Boolean.FALSE;
+            case "null":
+                return Comparison.NULL;
+            default:
+                Number number = number(text);
+                return number == null ? text : number;
+        }
+    }
+
+    private static Number number(String text) {
+        char first = text.charAt(0);
+        if (first != '-' && (first < '0' || first > '9')) {
+            return null;
+        }
+        try {
+            return Long.parseLong(text);
+        } catch (NumberFormatException ex) {
+            try {
+                return new BigDecimal(text).doubleValue();
+            } catch (NumberFormatException ex2) {
+                return null;
+            }
+        }
+    }
+
+    private static Instant time(String text) {
+        try {
+            return ZonedDateTime.parse(text).toInstant();
+        } catch (DateTimeParseException ex) {
+            try {
+                return LocalDateTime.parse(text).toInstant(ZoneOffset.UTC);
+            } catch (DateTimeParseException ex2) {
+                try {
+                    return LocalDate.parse(text).atStartOfDay(ZoneOffset.UTC).toInstant();
+                } catch (DateTimeParseException ex3) {
+                    return null;
+                }
+            }
+        }
+    }
+
+    private Token peek() {
+        return pos < tokens.size() ? tokens.get(pos) : null;
+    }
+
+    private boolean accept(Kind kind) {
+        Token token = peek();
+        if (token != null && token.kind == kind) {
+            pos++;
+            return true;
+        }
+        return false;
+    }
+
+    private Token expect(Kind kind, String what) {
+        Token token = peek();
+        if (token == null || token.kind != kind) {
+            throw error("Expected " + what + (token == null ? " at end" : " but found '" + token.text + "'"));
+        }
+        pos++;
+        return token;
+    }
+
+    private IllegalArgumentException error(String msg) {
+        int offset = pos < tokens.size() ? tokens.get(pos).offset : query.length();
+        return new IllegalArgumentException(msg + " at " + offset + " in " + query);
+    }
+
+    private static List<Token> tokenize(String query) {
+        List<Token> result = new ArrayList<>();
+        int i = 0;
+        int length = query.length();
+        while (i < length) {
+            char c = query.charAt(i);
+            int start = i;
+            if (Character.isWhitespace(c)) {
+                i++;
+            } else if (c == '(' || c == ')') {
+                result.add(new Token(c == '(' ? Kind.OPEN : Kind.CLOSE, String.valueOf(c), start));
+                i++;
+            } else if (query.startsWith("&&", i) || query.startsWith("||", i)) {
+                result.add(new Token(c == '&' ? Kind.AND : Kind.OR, query.substring(i, i + 2), start));
+                i += 2;
+            } else if (c == '=' || c == '!' || c == '<' || c == '>') {
+                String op = i + 1 < length && (query.charAt(i + 1) == '=' || query.charAt(i + 1) == '~')
+                        ? query.substring(i, i + 2) : query.substring(i, i + 1);
+                if ("!".equals(op)) {
+                    result.add(new Token(Kind.NOT, op, start));
+                } else if (Op.of(op) == null) {
+                    throw new IllegalArgumentException("Unknown operator '" + op + "' at "
+                            + start + " in " + query);
+                } else {
+                    result.add(new Token(Kind.OP, op, start));
+                }
+                i += op.length();
+            } else if (c == '"') {
+                StringBuilder sb = new StringBuilder();
+                i = string(query, i + 1, sb);
+                result.add(new Token(Kind.STRING, sb.toString(), start));
+            } else if (isWordChar(c)) {
+                while (i < length && isWordChar(query.charAt(i))) {
+                    i++;
+                }
+                String word = query.substring(start, i);
+                switch (word.toLowerCase(Locale.US)) {
+                    case "and":
+                        result.add(new Token(Kind.AND, word, start));
+                        break;
+                    case "or":
+                        result.add(new Token(Kind.OR, word, start));
+                        break;
+                    case "not":
+                        result.add(new Token(Kind.NOT, word, start));
+                        break;
+                    default:
+                        result.add(new Token(Kind.WORD, word, start));
+                }
+            } else {
+                throw new IllegalArgumentException("Unexpected '" + c + "' at "
+                        + i + " in " + query);
+            }
+        }
+        return result;
+    }
+
+    private static boolean isWordChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '_' || c == '.' || c == '-'
+                || c == '+' || c == ':' || c == '/' || c == '$' || c == '@';
+    }
+
+    private static int string(String query, int i, StringBuilder into) {
+        int length = query.length();
+        while (i < length) {
+            char c = query.charAt(i++);
+            if (c == '"') {
+                return i;
+            } else if (c == '\\' && i < length) {
+                char next = query.charAt(i++);
+                switch (next) {
+                    case 'n':
+                        into.append('\n');
+                        break;
+                    case 't':
+                        into.append('\t');
+                        break;
+                    case 'r':
+                        into.append('\r');
+                        break;
+                    case 'u':
+                        if (i + 4 > length) {
+                            throw new IllegalArgumentException("Bad escape at " + (i - 2) + " in " + query);
+                        }
+                        try {
+                            into.append((char) Integer.parseInt(query.substring(i, i + 4), 16));
+                        } catch (NumberFormatException ex) {
+                            throw new IllegalArgumentException("Bad escape at " + (i - 2) + " in " + query);
+                        }
+                        i += 4;
+                        break;
+                    default:
+                        into.append(next);
+                }
+            } else {
+                into.append(c);
+            }
+        }
+        throw new IllegalArgumentException("Unterminated string in " + query);
+    }
+
+    private enum Kind {
+        WORD, STRING, OP, AND, OR, NOT, OPEN, CLOSE
+    }
+
+    private static final class Token {
+
+        private final Kind kind;
+        private final String text;
+        private final int offset;
+
+        Token(Kind kind, String text, int offset) {
+            this.kind = kind;
+            this.text = text;
+            this.offset = offset;
+        }
+    }
+
+    private static final class Term {
+
+        private final LogFilter filter;
+        private final int cost;
+
+        Term(LogFilter filter, int cost) {
+            this.filter = filter;
+            this.cost = cost;
+        }
+    }
+
+    enum Op {
+        EQ("=="), NE("!="), LT("<"), LE("<="), GT(">"), GE(">="), MATCHES("=~");
+
+        private final String text;
+
+        Op(String text) {
+            this.text = text;
+        }
+
+        static Op of(String text) {
+            for (Op op : values()) {
+                if (op.text.equals(text)) {
+                    return op;
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public String toString() {
+            return text;
+        }
+    }
+
+    /**
+     * A comparison of one field with a literal. A comparison with a field a
+     * record does not have is false, except for <code>!=</code>.
+     */
+    static final class Comparison extends LogFilter {
+
+        static final Object NULL = new Object() {
+            @Override
+            public String toString() {
+                return "null";
+            }
+        };
+        private static final Set<String> CORE_FIELDS = Collections.unmodifiableSet(
+                new LinkedHashSet<>(Arrays.asList("name", "msg", "hostname", "pid", "level", "time")));
+        private final String field;
+        private final Op op;
+        private final Object literal;
+        private final LogFilter indexCheck;
+
+        Comparison(String field, Op op, Object literal) {
+            this.field = field;
+            this.op = op;
+            this.literal = literal;
+            this.indexCheck = indexCheck();
+        }
+
+        int cost() {
+            int result;
+            if (CORE_FIELDS.contains(field)) {
+                result = "level".equals(field) || "pid".equals(field) ? 1 : 2;
+            } else {
+                result = field.indexOf('.') > 0 ? 6 : 4;
+            }
+            if (op == Op.MATCHES) {
+                result += 20;
+            } else if (literal instanceof String || literal instanceof Instant) {
+                result++;
+            }
+            return result;
+        }
+
+        @Override
+        public boolean test(LogRecord t) {
+            Object value = Fields.value(t, field);
+            if (literal == NULL) {
+                return (value == null) == (op == Op.EQ);
+            } else if (op == Op.MATCHES) {
+                return value != null && !(value instanceof Map<?, ?>) && !(value instanceof List<?>)
+                        && ((Pattern) literal).matcher(value.toString()).find();
+            }
+            Integer cmp = compare(value);
+            if (cmp == null) {
+                return op == Op.NE;
+            }
+            switch (op) {
+                case EQ:
+                    return cmp == 0;
+                case NE:
+                    return cmp != 0;
+                case LT:
+                    return cmp < 0;
+                case LE:
+                    return cmp <= 0;
+                case GT:
+                    return cmp > 0;
+                case GE:
+                    return cmp >= 0;
+                default:
+                    throw new AssertionError(op);
+            }
+        }
+
+        private Integer compare(Object value) {
+            if (literal instanceof Instant) {
+                return value instanceof ZonedDateTime
+                        ? ((ZonedDateTime) value).toInstant().compareTo((Instant) literal) : null;
+            } else if (literal instanceof Long && value instanceof Long) {
+                return Long.compare((Long) value, (Long) literal);
+            } else if (literal instanceof Number && value instanceof Number) {
+                return Double.compare(((Number) value).doubleValue(), ((Number) literal).doubleValue());
+            } else if (literal instanceof String && value instanceof String) {
+                return ((String) value).compareTo((String) literal);
+            } else if (literal instanceof Boolean && value instanceof Boolean) {
+                return ((Boolean) value).compareTo((Boolean) literal);
+            }
+            return null;
+        }
+
+        private LogFilter indexCheck() {
+            if ("level".equals(field) && literal instanceof Long
+                    && (Long) literal > Integer.MIN_VALUE && (Long) literal < Integer.MAX_VALUE) {
+                int level = ((Long) literal).intValue();
+                switch (op) {
+                    case EQ:
+                        return LogFilter.levelMatches(level);
+                    case LT:
+                        return LogFilter.levelLessThan(level);
+                    case LE:
+                        return LogFilter.levelLessThan(level + 1);
+                    case GT:
+                        return LogFilter.levelGreaterThan(level);
+                    case GE:
+                        return LogFilter.levelGreaterThan(level - 1);
+                    default:
+                        return null;
+                }
+            } else if ("time".equals(field)) {
+                ZonedDateTime time = ZonedDateTime.ofInstant((Instant) literal, ZoneOffset.UTC);
+                switch (op) {
+                    case EQ:
+                        return LogFilter.after(time.minusNanos(1)).and(LogFilter.before(time.plusNanos(1)));
+                    case LT:
+                        return LogFilter.before(time);
+                    case LE:
+                        return LogFilter.before(time.plusNanos(1));
+                    case GT:
+                        return LogFilter.after(time);
+                    case GE:
+                        return LogFilter.after(time.minusNanos(1));
+                    default:
+                        return null;
+                }
+            }
+            return null;
+        }
+
+        @Override
+        boolean mayMatch(IndexBlock block) {
+            if (indexCheck != null) {
+                return indexCheck.mayMatch(block);
+            } else if (op != Op.EQ) {
+                return true;
+            } else if ("name".equals(field) && literal instanceof String) {
+                return block.mayContainName((String) literal);
+            } else if (!CORE_FIELDS.contains(field)) {
+                // Only top-level properties are indexed, by their own name
+                return block.mayContainProperty(field, literal);
+            }
+            return true;
+        }
+
+        @Override
+        boolean collectFieldNames(Set<String> fields) {
+            fields.add(field);
+            int dot = field.indexOf('.');
+            if (dot > 0) {
+                fields.add(field.substring(0, dot));
+            }
+            return true;
+        }
+
+        @Override
+        void collectPrefilterGroups(List<Set<String>> groups) {
+            if (op == Op.NE || (op == Op.EQ && literal == NULL)) {
+                // True when the field is absent
+                return;
+            }
+            Set<String> keys = new LinkedHashSet<>();
+            keys.add(field);
+            int dot = field.lastIndexOf('.');
+            if (dot > 0 && dot < field.length() - 1) {
+                // A dotted name may be a key of its own, or a path
+                keys.add(field.substring(dot + 1));
+            }
+            for (String key : keys) {
+                if (needsEscape(key)) {
+                    return;
+                }
+            }
+            String value = op == Op.EQ ? jsonText(literal) : null;
+            Set<String> group = new LinkedHashSet<>();
+            for (String key : keys) {
+                if (value != null) {
+                    // The key and value exactly as JSON.stringify() or
+                    // Jackson write them, or with a space
+                    group.add('"' + key + "\":" + value);
+                    group.add('"' + key + "\": " + value);
+                } else if (!CORE_FIELDS.contains(field)) {
+                    group.add('"' + key + '"');
+                }
+            }
+            if (!group.isEmpty()) {
+                groups.add(group);
+            }
+        }
+
+        private static String jsonText(Object literal) {
+            if (literal instanceof String) {
+                return needsEscape((String) literal) ? null : '"' + (String) literal + '"';
+            } else if (literal instanceof Long || literal instanceof Boolean) {
+                // A number may be written with a fraction or exponent, but
+                // integers are written as digits by every bunyan writer
+                return literal.toString();
+            }
+            return null;
+        }
+
+        private static boolean needsEscape(String s) {
+            for (int i = 0; i < s.length(); i++) {
+                char c = s.charAt(i);
+                if (c < ' ' || c == '"' || c == '\\') {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public String toString() {
+            return field + op + (literal instanceof String ? '"' + (String) literal + '"'
+                    : literal instanceof Pattern ? '"' + ((Pattern) literal).pattern() + '"' : literal);
+        }
+    }
+}
@@ -50,7 +50,9 @@ public class LogRecord implements Iterable<String> {
     public final ZonedDateTime time;
     public final int level;
     public @JsonIgnore
-    final Map<String, Object> props = new LinkedHashMap<>();
+    final Map<String, Object> props = new PropertyMap();
+    private static volatile StringCache strings
+            = StringCache.bounded(StringCache.DEFAULT_CAPACITY, StringCache.DEFAULT_MAX_LENGTH);
 
     /**
      * Create a new log record.
@@ -64,17 +66,99 @@ public class LogRecord implements Iterable<String> {
      * @param hostName The host name property
      */
     public LogRecord(@JsonProperty("name") String name, @JsonProperty("msg") String msg,
-            @JsonProperty("time") ZonedDateTime time, @JsonProperty("v") int version,
+            @JsonProperty("time") ZonedDateTime time,
+            @JsonProperty("v") int version,
             @JsonProperty("level") int level,
             @JsonProperty("pid") int pid, @JsonProperty("hostname") String hostName) {
-        this.name = name.intern();
-        this.msg = msg.intern();
+        StringCache cache = strings;
+        this.name = cache.dedup(name);
+        this.msg = cache.dedup(msg);
         this.pid = pid;
-        this.hostName = hostName.intern();
+        this.hostName = cache.dedup(hostName);
         this.time = time;
         this.level = level;
     }
 
+    /**
+     * Create a record with some fields possibly absent, as when only some
+     * fields of a line have been parsed.
+     */
+    LogRecord(String name, String msg, ZonedDateTime time, int level, int pid, String hostName) {
+        this.name = name;
+        this.msg = msg;
+        this.pid = pid;
+        this.hostName = hostName;
+        this.time = time;
+        this.level = level;
+    }
+
+    /**
+     * Get the name property. Filters should prefer this method to the
+     * field, since some kinds of record are populated on demand.
+     *
+     * @return The name, or null if not parsed
+     */
+    public String name() {
+        return name;
+    }
+
+    /**
+     * Get the message property.
+     *
+     * @return The message, or null if not parsed
+     */
+    public String msg() {
+        return msg;
+    }
+
+    /**
+     * Get the process id property.
+     *
+     * @return The process id, or 0 if not parsed
+     */
+    public int pid() {
+        return pid;
+    }
+
+    /**
+     * Get the host name property.
+     *
+     * @return The host name, or null if not parsed
+     */
+    public String hostName() {
+        return hostName;
+    }
+
+    /**
+     * Get the time property.
+     *
+     * @return The time, or null if not parsed
+     */
+    public ZonedDateTime time() {
+        return time;
+    }
+
+    /**
+     * Get the time as milliseconds since the epoch, which is cheaper than
+     * <code>time()</code> for some kinds of record, for filters that only
+     * compare times. Any fraction of a millisecond is truncated.
+     *
+     * @return The time, or Long.MIN_VALUE if there is none
+     */
+    public long timeMillis() {
+        ZonedDateTime t = time();
+        return t == null ? TimeParser.NO_TIME : t.toInstant().toEpochMilli();
+    }
+
+    /**
+     * Get the log level property.
+     *
+     * @return The level, or 0 if not parsed
+     */
+    public int level() {
+        return level;
+    }
+
     /**
      * Convert this object to a Map.
      *
@@ -106,7 +190,34 @@ public class LogRecord implements Iterable<String> {
 
     @JsonAnySetter
     public void put(String name, Object val) {
-        props.put(name, val);
+        StringCache cache = strings;
+        props.put(cache.dedup(name), val instanceof String ? cache.dedup((String) val) : val);
+    }
+
+    /**
+     * Set the cache used to deduplicate the names, messages, host names and
+     * property names and string values of records as they are parsed, in
+     * place of <code>String.intern()</code>. The default is a bounded cache
+     * of {@link StringCache#DEFAULT_CAPACITY} strings.
+     *
+     * @param cache A cache - <code>StringCache.none()</code> to disable
+     * deduplication
+     */
+    public static void setStringCache(StringCache cache) {
+        if (cache == null) {
+            throw new IllegalArgumentException("Null cache");
+        }
+        strings = cache;
+    }
+
+    /**
+     * Get the cache used to deduplicate strings as records are parsed, for
+     * example to check its hit rate.
+     *
+     * @return The cache
+     */
+    public static StringCache stringCache() {
+        return strings;
     }
 
     /**
@@ -25,15 +25,26 @@ package com.mastfrog.bunyan.parse;
 
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 import com.google.inject.name.Named;
 import com.mastfrog.util.preconditions.Exceptions;
 import java.io.IOException;
-import java.nio.charset.Charset;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Function;
 import java.util.function.Predicate;
 import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 import javax.inject.Inject;
 
 /**
@@ -44,12 +55,34 @@ import javax.inject.Inject;
  */
 public final class LogStreamFactory {
 
+    /**
+     * The default maximum amount a record's time may precede that of an
+     * earlier record in the file, for time range queries.
+     */
+    public static final Duration DEFAULT_MAX_DISORDER = Duration.ofSeconds(5);
     private final Path path;
     private final ObjectMapper mapper;
 
+    private final String glob;
+    private final Map<Class<?>, ObjectReader> converters = new ConcurrentHashMap<>();
+
     @Inject
     public LogStreamFactory(Path path, @Named("bunyan-java") ObjectMapper mapper) {
-        this.path = path;
+        this(path, null, mapper);
+    }
+
+    /**
+     * Create a factory for reading the log segments in a directory whose
+     * names match a glob, such as <code>app.log*</code>, as a single
+     * time-ordered log via <code>stream()</code> and <code>read()</code>.
+     *
+     * @param dir A directory
+     * @param glob A glob pattern, or null for all files
+     * @param mapper The object mapper
+     */
+    public LogStreamFactory(Path dir, String glob, ObjectMapper mapper) {
+        this.path = dir;
+        this.glob = glob;
         this.mapper = mapper;
     }
 
@@ -89,27 +122,467 @@ public final class LogStreamFactory {
      * @throws IOException if something goes wrong
      */
     public Stream<LogRecord> stream(Predicate<LogRecord> filter) throws IOException {
-        Stream<String> textLines = Files.lines(path, Charset.forName("UTF-8"));
-        Predicate<String> prefilter = filter instanceof LogFilter ? ((LogFilter) filter).prefilterPredicate() : new JsonHashCheck();
-        if (prefilter != null) {
-            textLines = textLines.filter(prefilter);
-        }
-        Stream<LogRecord> lines = textLines.map((String t) -> {
-            try {
-                return mapper.readValue(t, LogRecord.class);
-            } catch (IOException ex) {
-                return Exceptions.chuck(ex);
+        if (isSegmented()) {
+            return stream(filter, Segments.DEFAULT_PARALLELISM, Segments.DEFAULT_MEMORY_BUDGET);
+        }
+        return lineStream(recordHandler(filter), true, false, false);
+    }
+
+    /**
+     * Get a stream over a gzipped file, or a directory of log segments (as
+     * produced by log rotation, possibly gzipped, in which case the segments
+     * are read in the order of the first record time in each), using the
+     * passed predicate for filtering. Segments after the one currently being
+     * consumed are decompressed and parsed ahead of time on background
+     * threads, with a bound on the memory held by records parsed ahead.
+     * Multi-member gzip files are supported. For a plain file, this is the
+     * same as <code>stream(filter)</code>. The returned stream must be
+     * closed.
+     *
+     * @param filter The filter, or null for none
+     * @param parallelism The number of segments to read at once
+     * @param memoryBudget The maximum number of bytes of records to hold in
+     * memory ahead of the consumer, which is divided among the segments
+     * being read
+     * @return A stream of log records
+     * @throws IOException if something goes wrong
+     */
+    public Stream<LogRecord> stream(Predicate<LogRecord> filter, int parallelism, int memoryBudget) throws IOException {
+        if (parallelism <= 0 || memoryBudget <= 0) {
+            throw new IllegalArgumentException("Bad parallelism " + parallelism
+                    + " or memory budget " + memoryBudget);
+        }
+        if (!isSegmented()) {
+            return stream(filter);
+        }
+        List<Path> segments = segments();
+        // Only prefilter and parse on the read-ahead threads, so that
+        // stateful filters such as limit() see records in order
+        Stream<LogRecord> result = Segments.stream(segments,
+                new RecordLineHandler(mapper.readerFor(LogRecord.class), filter, false),
+                parallelism, memoryBudget);
+        return filter == null ? result : result.filter(filter);
+    }
+
+    /**
+     * Merge several log files - say, from each host behind a load balancer -
+     * into one stream in time order. Each file, which may be gzipped, is read
+     * ahead on its own thread into a bounded buffer, and the next record from
+     * each is kept in a heap, so memory use does not grow with the size of
+     * the files. Records within a single file may be out of time order by up
+     * to <code>tolerance</code> (as when a host's clock is stepped backwards),
+     * at the cost of holding records that recent in memory; pass
+     * Duration.ZERO if each file is strictly ordered. Records with no time
+     * stay with the record before them. The returned stream must be closed.
+     *
+     * @param sources The log files
+     * @param mapper The object mapper
+     * @param tolerance How far out of time order records within one file may
+     * be
+     * @param filter The filter, or null for none
+     * @return A stream of log records
+     * @throws IOException if something goes wrong
+     */
+    public static Stream<LogRecord> merge(List<Path> sources, ObjectMapper mapper, Duration tolerance, Predicate<LogRecord> filter) throws IOException {
+        return merge(sources, Collections.emptyMap(), mapper, tolerance, filter);
+    }
+
+    /**
+     * Merge several log files into one stream in time order, as
+     * {@link #merge(java.util.List, com.fasterxml.jackson.databind.ObjectMapper, java.time.Duration, java.util.function.Predicate)}
+     * does, correcting for hosts whose clocks are skewed relative to each
+     * other: the clock offset for a file is added to the time of each of
+     * its records before it is compared with records from other files, so a
+     * host whose clock runs two seconds slow should be given an offset of
+     * two seconds. The records themselves are returned unaltered.
+     *
+     * @param sources The log files
+     * @param clockOffsets Offsets to add to the times of records in some
+     * of the files
+     * @param mapper The object mapper
+     * @param tolerance How far out of time order records within one file may
+     * be
+     * @param filter The filter, or null for none
+     * @return A stream of log records
+     * @throws IOException if something goes wrong
+     */
+    public static Stream<LogRecord> merge(List<Path> sources, Map<Path, Duration> clockOffsets, ObjectMapper mapper,
+            Duration tolerance, Predicate<LogRecord> filter) throws IOException {
+        if (tolerance.isNegative()) {
+            throw new IllegalArgumentException("Negative tolerance " + tolerance);
+        }
+        for (Path offset : clockOffsets.keySet()) {
+            if (!sources.contains(offset)) {
+                throw new IllegalArgumentException("Clock offset for " + offset + " which is not a source");
+            }
+        }
+        for (Path source : sources) {
+            if (!Files.isRegularFile(source)) {
+                throw new IOException("Not a file: " + source);
             }
+        }
+        Stream<LogRecord> result = TimeMerge.stream(sources, clockOffsets,
+                new RecordLineHandler(mapper.readerFor(LogRecord.class), filter, false),
+                tolerance, TimeMerge.DEFAULT_READ_AHEAD_BYTES);
+        return filter == null ? result : result.filter(filter);
+    }
+
+    private List<Path> segments() throws IOException {
+        return Files.isDirectory(path)
+                ? Segments.inTimeOrder(Segments.find(path, glob), mapper)
+                : Collections.singletonList(path);
+    }
+
+    private boolean isSegmented() throws IOException {
+        return Files.isDirectory(path) || Segments.isGzip(path);
+    }
+
+    /**
+     * Get a stream of records in which only the requested fields, plus any
+     * fields the filter needs, are decoded - the values of all others are
+     * skipped over by the parser without being materialized, which is
+     * considerably faster for records with many properties. Field names are
+     * as they appear in JSON, e.g. <code>hostname</code>; unparsed fields
+     * have null or 0 values, and unrequested ad-hoc properties are absent.
+     * <p>
+     * A LogFilter which cannot name the fields it uses (such as a custom
+     * subclass) causes all fields to be decoded; a filter which is not a
+     * LogFilter is passed records containing only the requested fields.
+     * </p>
+     *
+     * @param filter The filter, or null for none
+     * @param fields The fields to decode
+     * @return A stream of log records
+     * @throws IOException if something goes wrong
+     */
+    public Stream<LogRecord> stream(Predicate<LogRecord> filter, String... fields) throws IOException {
+        return lineStream(new ProjectingLineHandler(mapper, filter, fields), true, false, false);
+    }
+
+    /**
+     * Get a stream using the passed predicate for filtering, which uses a
+     * sidecar index of the file to skip blocks of it which cannot contain
+     * records the filter matches (if it is a LogFilter). Any part of the file
+     * appended since the index was last updated is read in full, as is
+     * all of it if it has been truncated or replaced since then. The
+     * returned stream must be closed.
+     *
+     * @see LogIndex
+     * @param filter The filter, or null for none
+     * @param index An index of this factory's file
+     * @return A stream of log records
+     * @throws IOException if something goes wrong
+     */
+    public Stream<LogRecord> stream(Predicate<LogRecord> filter, LogIndex index) throws IOException {
+        if (!index.logFile().toAbsolutePath().equals(path.toAbsolutePath())) {
+            throw new IllegalArgumentException("Index is for " + index.logFile() + " not " + path);
+        }
+        return rangeStream(filter, index::candidateRanges);
+    }
+
+    /**
+     * Get a stream using the passed predicate for filtering, which uses a
+     * sidecar inverted index of the words in the file's messages to read
+     * only blocks of it which contain the text searched for by filters such
+     * as {@link LogFilter#messageContains(java.lang.String)}. Any part of the
+     * file appended since the index was last updated is read in full, as is
+     * all of it if it has been truncated or replaced since then. The
+     * returned stream must be closed.
+     *
+     * @see MessageIndex
+     * @param filter The filter, or null for none
+     * @param index An index of this factory's file
+     * @return A stream of log records
+     * @throws IOException if something goes wrong
+     */
+    public Stream<LogRecord> stream(Predicate<LogRecord> filter, MessageIndex index) throws IOException {
+        if (!index.logFile().toAbsolutePath().equals(path.toAbsolutePath())) {
+            throw new IllegalArgumentException("Index is for " + index.logFile() + " not " + path);
+        }
+        return rangeStream(filter, index::candidateRanges);
+    }
+
+    private Stream<LogRecord> rangeStream(Predicate<LogRecord> filter,
+            RangeSource candidateRanges) throws IOException {
+        LineSpliterator.LineHandler<LogRecord> handler = recordHandler(filter);
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            List<long[]> ranges = candidateRanges.candidateRanges(filter, channel);
+            return ranges.stream().flatMap(range -> StreamSupport.stream(
+                    new LineSpliterator<>(channel, handler, true, false,
+                            LineSpliterator.DEFAULT_CHUNK_SIZE, range[0], range[1]), false))
+                    .onClose(() -> {
+                        try {
+                            channel.close();
+                        } catch (IOException ex) {
+                            Exceptions.chuck(ex);
+                        }
+                    });
+        } catch (IOException | RuntimeException ex) {
+            channel.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * Follow the file as records are appended to it, starting at the passed
+     * offset (0 for the beginning of the file, or the file's size to read
+     * only records appended from now on). The file need not exist yet.
+     *
+     * @see LogFollower
+     * @param filter The filter, or null for none
+     * @param offset The offset of a line start to begin reading at
+     * @return A follower, which must be closed
+     * @throws IOException if something goes wrong
+     */
+    public LogFollower follow(Predicate<LogRecord> filter, long offset) throws IOException {
+        return new LogFollower(path, recordHandler(filter), offset, null, LogFollower.DEFAULT_POLL_INTERVAL_MILLIS);
+    }
+
+    /**
+     * Follow the file as records are appended to it, resuming from the
+     * offset saved in the passed checkpoint file by
+     * {@link LogFollower#commit()}, or from the start of the file if the
+     * checkpoint file does not exist, or the log file has been truncated or
+     * replaced since it was written.
+     *
+     * @see LogFollower
+     * @param filter The filter, or null for none
+     * @param checkpoint The checkpoint file
+     * @return A follower, which must be closed
+     * @throws IOException if something goes wrong
+     */
+    public LogFollower follow(Predicate<LogRecord> filter, Path checkpoint) throws IOException {
+        return new LogFollower(path, recordHandler(filter), 0, checkpoint, LogFollower.DEFAULT_POLL_INTERVAL_MILLIS);
+    }
+
+    /**
+     * Get a stream of records which keep the bytes of their line and decode
+     * each field only when it is first requested, so that records rejected
+     * by the filter cost little more than a scan of the bytes it needed.
+     * The public fields of the returned records are <i>not</i> populated -
+     * use accessor methods such as <code>level()</code> and
+     * <code>time()</code>. Records are safe to pass between threads, but
+     * decoding synchronizes on the record. The returned stream must be
+     * closed.
+     *
+     * @see LogFilter
+     * @param filter The filter, or null for none
+     * @return A stream of log records
+     * @throws IOException if something goes wrong
+     */
+    public Stream<LogRecord> lazyStream(Predicate<LogRecord> filter) throws IOException {
+        return lineStream(new LazyLogRecord.Handler(mapper, filter), true, false, false);
+    }
+
+    /**
+     * Get a stream of records newest-first, reading the file backwards from
+     * its end in large chunks. Records are lazy, as with
+     * <code>lazyStream()</code>, so the public fields of the returned
+     * records are <i>not</i> populated. The filter sees records in reverse
+     * order, and reading stops as soon as it can accept no more records, so
+     * <code>LogFilter.levelGreaterThan(40).and(LogFilter.limit(100))</code>
+     * finds the last hundred errors reading only as far back as the hundredth
+     * one. Only plain files can be read in reverse. The returned stream
+     * must be closed.
+     *
+     * @see LogFilter#limit(long)
+     * @param filter The filter, or null for none
+     * @return A stream of log records, newest first
+     * @throws IOException if something goes wrong
+     */
+    public Stream<LogRecord> reverseStream(Predicate<LogRecord> filter) throws IOException {
+        if (isSegmented()) {
+            throw new IOException("Only plain files can be read in reverse: " + path);
+        }
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            ReverseLineSpliterator<LogRecord> lines = new ReverseLineSpliterator<>(channel,
+                    new LazyLogRecord.Handler(mapper, filter),
+                    filter instanceof LogFilter ? ((LogFilter) filter)::exhausted : null,
+                    LineSpliterator.DEFAULT_CHUNK_SIZE, 0, channel.size());
+            return StreamSupport.stream(lines, false).onClose(() -> {
+                try {
+                    channel.close();
+                } catch (IOException ex) {
+                    Exceptions.chuck(ex);
+                }
+            });
+        } catch (IOException | RuntimeException ex) {
+            channel.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * Get a parallel stream of log records. The file is split into byte
+     * ranges at line boundaries, which are read and parsed concurrently by
+     * the fork-join pool the stream's terminal operation runs in - the common
+     * pool, unless it is invoked from a task running in some other
+     * ForkJoinPool. The returned stream must be closed.
+     *
+     * @see LogFilter
+     * @param filter The filter, or null for none
+     * @param ordered If true, the stream is ordered, so operations such as
+     * <code>forEachOrdered()</code> and <code>collect()</code> see records in
+     * the order they occur in the file; if false, records are delivered in
+     * whatever order they are parsed in, which is faster
+     * @return A parallel stream of log records
+     * @throws IOException if something goes wrong
+     */
+    public Stream<LogRecord> parallelStream(Predicate<LogRecord> filter, boolean ordered) throws IOException {
+        return lineStream(recordHandler(filter), ordered, false, true);
+    }
+
+    /**
+     * Aggregate the records matching a filter, in parallel across the
+     * available cores for a plain file. Since records are not seen in file
+     * order, stateful filters such as <code>limit()</code> should not be
+     * used.
+     *
+     * @param filter The filter, or null for none
+     * @param aggregation The aggregation
+     * @return The result
+     * @throws IOException if something goes wrong
+     */
+    public Aggregation.Result aggregate(Predicate<LogRecord> filter, Aggregation aggregation) throws IOException {
+        try (Stream<LogRecord> records = isSegmented() ? stream(filter) : parallelStream(filter, false)) {
+            return aggregation.apply(records);
+        }
+    }
+
+    /**
+     * Convert this factory's file, or rotated set of files, to a columnar
+     * file which can be queried repeatedly without parsing JSON.
+     *
+     * @see ColumnarLog
+     * @param target The file to write
+     * @param indexedProperties The names of properties whose values should be
+     * recorded in each block's bloom filter, such as <code>id</code>
+     * @return The columnar log
+     * @throws IOException if something goes wrong
+     */
+    public ColumnarLog exportColumnar(Path target, String... indexedProperties) throws IOException {
+        try (Stream<LogRecord> records = stream(null)) {
+            return ColumnarLog.write(records, target, mapper, indexedProperties);
+        }
+    }
+
+    /**
+     * Get a stream of log records which memory-maps the file in large chunks
+     * and tests the prefilter strings of a LogFilter directly against the
+     * UTF-8 bytes of each line, so that only lines which can match are
+     * decoded and parsed. The stream is sequential and ordered, but can be
+     * made parallel by calling <code>parallel()</code>. The returned stream
+     * must be closed.
+     *
+     * @see LogFilter
+     * @param filter The filter, or null for none
+     * @return A stream of log records
+     * @throws IOException if something goes wrong
+     */
+    public Stream<LogRecord> mappedStream(Predicate<LogRecord> filter) throws IOException {
+        return lineStream(recordHandler(filter), true, true, false);
+    }
+
+    private LineSpliterator.LineHandler<LogRecord> recordHandler(Predicate<LogRecord> filter) {
+        return new RecordLineHandler(mapper.readerFor(LogRecord.class), filter, true);
+    }
+
+    /**
+     * Get a stream of the records with times from <code>from</code>
+     * (inclusive) to <code>to</code> (exclusive), assuming the file is in
+     * time order to within {@link #DEFAULT_MAX_DISORDER}. Rather than reading
+     * the whole file, the offsets to read between are found by binary
+     * search, so reading the last few minutes of a large file reads only its
+     * tail. The returned stream must be closed.
+     *
+     * @param from The start time, or null for the start of the file
+     * @param to The end time, or null for the end of the file
+     * @param filter An additional filter, or null for none
+     * @return A stream of log records
+     * @throws IOException if something goes wrong
+     */
+    public Stream<LogRecord> timeRange(ZonedDateTime from, ZonedDateTime to, Predicate<LogRecord> filter) throws IOException {
+        return timeRange(from, to, DEFAULT_MAX_DISORDER, filter);
+    }
+
+    /**
+     * Get a stream of the records with times from <code>from</code>
+     * (inclusive) to <code>to</code> (exclusive), found by binary search
+     * over the file's byte offsets. Bunyan logs are nearly, but not
+     * strictly, in time order - records from concurrent threads can be
+     * written slightly out of order - so the range read is widened by
+     * <code>maxDisorder</code> at each end and then filtered by time;
+     * records out of order by more than that may be missed.
+     *
+     * @param from The start time, or null for the start of the file
+     * @param to The end time, or null for the end of the file
+     * @param maxDisorder The maximum amount by which any record's time is
+     * earlier than that of a record preceding it in the file
+     * @param filter An additional filter, or null for none
+     * @return A stream of log records
+     * @throws IOException if something goes wrong
+     */
+    public Stream<LogRecord> timeRange(ZonedDateTime from, ZonedDateTime to, Duration maxDisorder, Predicate<LogRecord> filter) throws IOException {
+        LogFilter range = new LogFilter() {
+            @Override
+            public boolean test(LogRecord t) {
+                ZonedDateTime time = t.time();
+                return time != null && (from == null || !time.isBefore(from))
+                        && (to == null || time.isBefore(to));
+            }
+
+            @Override
+            boolean collectFieldNames(Set<String> fields) {
+                fields.add("time");
+                return true;
+            }
+        };
+        Predicate<LogRecord> combined = filter == null ? range
+                : filter instanceof LogFilter ? range.and((LogFilter) filter)
+                : range.and(filter);
+        return lineStream(recordHandler(combined), true, false, false, (FileChannel channel) -> {
+            TimeSeek seek = new TimeSeek(channel, mapper);
+            long start = from == null ? 0 : seek.offsetOf(from.minus(maxDisorder));
+            long end = to == null ? channel.size() : seek.offsetOf(to.plus(maxDisorder));
+            return new long[]{start, Math.max(start, end)};
         });
-        if (filter != null) {
-            lines = lines.filter(filter);
+    }
+
+    private <T> Stream<T> lineStream(LineSpliterator.LineHandler<T> handler, boolean ordered, boolean mapped, boolean parallel) throws IOException {
+        return lineStream(handler, ordered, mapped, parallel, (FileChannel channel) -> new long[]{0, channel.size()});
+    }
+
+    private <T> Stream<T> lineStream(LineSpliterator.LineHandler<T> handler, boolean ordered, boolean mapped,
+            boolean parallel, Range range) throws IOException {
+        if (isSegmented()) {
+            throw new IOException("Only stream() and read() support gzipped or "
+                    + "multi-segment logs: " + path);
+        }
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            long[] startAndEnd = range.find(channel);
+            LineSpliterator<T> lines = new LineSpliterator<>(channel, handler, ordered, mapped,
+                    mapped ? LineSpliterator.MAPPED_CHUNK_SIZE : LineSpliterator.DEFAULT_CHUNK_SIZE,
+                    startAndEnd[0], startAndEnd[1]);
+            return StreamSupport.stream(lines, parallel).onClose(() -> {
+                try {
+                    channel.close();
+                } catch (IOException ex) {
+                    Exceptions.chuck(ex);
+                }
+            });
+        } catch (IOException | RuntimeException ex) {
+            channel.close();
+            throw ex;
         }
-        return lines;
     }
 
     /**
      * Create a stream of some other object type which can be read as JSON from
-     * the stream.
+     * the stream. Each matching line is deserialized directly as the type;
+     * a LogFilter only has the fields it names decoded to test each line.
      *
      * @param <T> The type
      * @param pred An optional filter predicate
@@ -120,24 +593,40 @@ public final class LogStreamFactory {
      * @throws IOException if something goes wrong
      */
     public <T> Stream<T> convertedStream(Predicate<LogRecord> pred, Class<T> type) throws IOException {
-        final ObjectMapper configuredMapper = mapper.copy()
-                .configure(DeserializationFeature.ACCEPT_FLOAT_AS_INT, true)
-                .configure(DeserializationFeature.FAIL_ON_IGNORED_PROPERTIES, false)
-                .configure(DeserializationFeature.FAIL_ON_MISSING_CREATOR_PROPERTIES, false)
-                .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false)
-                .configure(DeserializationFeature.FAIL_ON_NULL_FOR_PRIMITIVES, false)
-                .configure(DeserializationFeature.FAIL_ON_READING_DUP_TREE_KEY, false)
-                .configure(DeserializationFeature.FAIL_ON_UNRESOLVED_OBJECT_IDS, false)
-                .configure(DeserializationFeature.READ_UNKNOWN_ENUM_VALUES_AS_NULL, true)
-                .configure(DeserializationFeature.ACCEPT_SINGLE_VALUE_AS_ARRAY, true);
-        return stream(pred).map((record) -> {
-            try {
-                byte[] b = configuredMapper.writeValueAsBytes(record.toMap());
-                return mapper.readValue(b, type);
-            } catch (IOException ex) {
-                return Exceptions.chuck(ex);
-            }
-        });
+        ObjectReader reader = converter(type);
+        if (isSegmented()) {
+            // Lazy records keep the bytes of their lines, and only decode
+            // what the filter looks at
+            Stream<LogRecord> records = Segments.stream(segments(), new LazyLogRecord.Handler(mapper, pred, false),
+                    Segments.DEFAULT_PARALLELISM, Segments.DEFAULT_MEMORY_BUDGET);
+            return (pred == null ? records : records.filter(pred)).map(record -> {
+                try {
+                    return reader.<T>readValue(((LazyLogRecord) record).bytes());
+                } catch (IOException ex) {
+                    return Exceptions.chuck(ex);
+                }
+            });
+        }
+        // The filter sees a record with only the fields it names decoded, if
+        // it is a LogFilter; the target type is read directly from the bytes
+        // of lines it accepts
+        LineSpliterator.LineHandler<LogRecord> peek = pred == null ? null
+                : pred instanceof LogFilter ? new ProjectingLineHandler(mapper, pred)
+                        : recordHandler(pred);
+        return lineStream(new ConvertingLineHandler<T>(reader, peek), true, false, false);
+    }
+
+    private ObjectReader converter(Class<?> type) {
+        return converters.computeIfAbsent(type, t -> mapper.readerFor(t)
+                .with(DeserializationFeature.ACCEPT_FLOAT_AS_INT,
+                        DeserializationFeature.READ_UNKNOWN_ENUM_VALUES_AS_NULL,
+                        DeserializationFeature.ACCEPT_SINGLE_VALUE_AS_ARRAY)
+                .without(DeserializationFeature.FAIL_ON_IGNORED_PROPERTIES,
+                        DeserializationFeature.FAIL_ON_MISSING_CREATOR_PROPERTIES,
+                        DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES,
+                        DeserializationFeature.FAIL_ON_NULL_FOR_PRIMITIVES,
+                        DeserializationFeature.FAIL_ON_READING_DUP_TREE_KEY,
+                        DeserializationFeature.FAIL_ON_UNRESOLVED_OBJECT_IDS));
     }
 
     /**
@@ -186,6 +675,81 @@ public final class LogStreamFactory {
         }
     }
 
+    private static final class ConvertingLineHandler<T> implements LineSpliterator.LineHandler<T> {
+
+        private final ObjectReader reader;
+        private final LineSpliterator.LineHandler<LogRecord> peek;
+
+        ConvertingLineHandler(ObjectReader reader, LineSpliterator.LineHandler<LogRecord> peek) {
+            this.reader = reader;
+            this.peek = peek;
+        }
+
+        @Override
+        public T handle(ByteBuffer buf, int start, int end) throws IOException {
+            if (buf.get(start) != '{') {
+                return null;
+            }
+            // Applies the prefilter and the filter
+            if (peek != null && peek.handle(buf, start, end) == null) {
+                return null;
+            }
+            if (buf.hasArray()) {
+                return reader.readValue(buf.array(), buf.arrayOffset() + start, end - start);
+            }
+            byte[] bytes = new byte[end - start];
+            ByteBuffer dup = buf.duplicate();
+            dup.position(start);
+            dup.get(bytes);
+            return reader.readValue(bytes);
+        }
+    }
+
+    private static final class RecordLineHandler implements LineSpliterator.LineHandler<LogRecord> {
+
+        private final ObjectReader reader;
+        private final Predicate<LogRecord> filter;
+        private final ByteMatcher prefilter;
+
+        RecordLineHandler(ObjectReader reader, Predicate<LogRecord> filter, boolean test) {
+            this.reader = reader;
+            this.filter = test ? filter : null;
+            ByteMatcher matcher = filter instanceof LogFilter ? ((LogFilter) filter).prefilter() : null;
+            this.prefilter = matcher == null || matcher.isEmpty() ? null : matcher;
+        }
+
+        @Override
+        public LogRecord handle(ByteBuffer buf, int start, int end) throws IOException {
+            if (buf.get(start) != '{') {
+                return null;
+            }
+            if (prefilter != null && !prefilter.matches(buf, start, end)) {
+                return null;
+            }
+            LogRecord record;
+            if (buf.hasArray()) {
+                record = reader.readValue(buf.array(), buf.arrayOffset() + start, end - start);
+            } else {
+                byte[] bytes = new byte[end - start];
+                ByteBuffer dup = buf.duplicate();
+                dup.position(start);
+                dup.get(bytes);
+                record = reader.readValue(bytes);
+            }
+            return filter == null || filter.test(record) ? record : null;
+        }
+    }
+
+    private interface Range {
+
+        long[] find(FileChannel channel) throws IOException;
+    }
+
+    private interface RangeSource {
+
+        List<long[]> candidateRanges(Predicate<LogRecord> filter, FileChannel channel) throws IOException;
+    }
+
     private static final class Abort extends RuntimeException {
 
         @Override
@@ -0,0 +1,1171 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 Tim Boudreau.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.bunyan.parse;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mastfrog.util.preconditions.Exceptions;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Predicate;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * A sidecar inverted index of the words in the messages of a bunyan log
+ * file, and of the string values of a set of selected properties, which
+ * maps each word to the list of blocks of the file it occurs in. Passed to
+ * {@link LogStreamFactory#stream(java.util.function.Predicate, MessageIndex)},
+ * it allows a substring search with
+ * {@link LogFilter#messageContains(java.lang.String)} to read only the
+ * blocks which contain every word of the text searched for. Words are runs
+ * of letters and digits, compared ignoring case.
+ * <p>
+ * The index is stored next to the log file (by default, with
+ * <code>.msgidx</code> appended to its name). Each call to
+ * {@link #update()} appends the words of lines added since the last one to
+ * the sidecar as a new segment, so updating a large index as its log grows
+ * does not rewrite it; once there are more than {@link #MAX_SEGMENTS}
+ * segments they are merged into one on a background thread. If the file
+ * has been truncated or replaced, the index is rebuilt. Instances are
+ * thread-safe.
+ * </p><p>
+ * The lists of blocks for each word are not kept in memory. The words of
+ * each segment are written in sorted order, and only one word in
+ * {@link #SAMPLE_INTERVAL} is kept, with its offset in the sidecar, to seek
+ * to before reading the segment from there when searching.
+ * </p>
+ *
+ * @see LogIndex
+ * @author Tim Boudreau
+ */
+public final class MessageIndex {
+
+    /**
+     * The default number of bytes of log lines per block.
+     */
+    public static final int DEFAULT_BLOCK_SIZE = 256 * 1024;
+    /**
+     * The number of segments the sidecar may have before they are merged.
+     */
+    public static final int MAX_SEGMENTS = 16;
+    /**
+     * One word in this many of each segment is held in memory to seek to
+     * when searching.
+     */
+    public static final int SAMPLE_INTERVAL = 64;
+    /**
+     * Words longer than this are indexed by their first MAX_WORD_LENGTH
+     * characters.
+     */
+    static final int MAX_WORD_LENGTH = 64;
+    private static final int MAGIC = 0x424e594d;
+    private static final int VERSION = 2;
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+    private static final int SCAN_BUFFER_SIZE = 8 * 1024;
+    private static final ExecutorService MERGER = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "bunyan-message-index-merge");
+        t.setDaemon(true);
+        return t;
+    });
+    private final Path logFile;
+    private final Path sidecar;
+    private final int blockSize;
+    private final Set<String> indexedProperties;
+    private final JsonFactory factory;
+    private final List<long[]> blocks = new ArrayList<>();
+    // Where the words of each segment of the sidecar are
+    private final List<Segment> segments = new ArrayList<>();
+    private long indexedTo;
+    private int fingerprintLength;
+    private long fingerprint;
+    // Incremented whenever the sidecar is rewritten rather than appended to
+    private int generation;
+    private Future<?> merge;
+
+    private MessageIndex(Path logFile, Path sidecar, int blockSize, ObjectMapper mapper, Set<String> indexedProperties) {
+        this.logFile = logFile;
+        this.sidecar = sidecar;
+        this.blockSize = blockSize;
+        this.factory = mapper.getFactory();
+        this.indexedProperties = indexedProperties;
+    }
+
+    /**
+     * Open or create the index for a log file, in a sidecar file named by
+     * appending <code>.msgidx</code> to the log file's name, and bring it up
+     * to date.
+     *
+     * @param logFile The log file
+     * @param mapper The object mapper
+     * @param indexedProperties The names of string properties whose words
+     * should be indexed along with those of the message
+     * @return An index
+     * @throws IOException if something goes wrong
+     */
+    public static MessageIndex open(Path logFile, ObjectMapper mapper, String... indexedProperties) throws IOException {
+        return open(logFile, Segments.sidecar(logFile, Segments.MESSAGE_INDEX_SUFFIX),
+                DEFAULT_BLOCK_SIZE, mapper, indexedProperties);
+    }
+
+    /**
+     * Open or create the index for a log file and bring it up to date. If
+     * the sidecar exists but was built with a different block size or set of
+     * properties, it is rebuilt.
+     *
+     * @param logFile The log file
+     * @param sidecar The index file
+     * @param blockSize The approximate number of bytes per block
+     * @param mapper The object mapper
+     * @param indexedProperties The names of string properties whose words
+     * should be indexed along with those of the message
+     * @return An index
+     * @throws IOException if something goes wrong
+     */
+    public static MessageIndex open(Path logFile, Path sidecar, int blockSize, ObjectMapper mapper, String... indexedProperties) throws IOException {
+        if (blockSize <= 0) {
+            throw new IllegalArgumentException("Bad block size " + blockSize);
+        }
+        Set<String> props = Collections.unmodifiableSet(new LinkedHashSet<>(Arrays.asList(indexedProperties)));
+        MessageIndex result = new MessageIndex(logFile, sidecar, blockSize, mapper, props);
+        result.load();
+        return result.update();
+    }
+
+    /**
+     * Get the log file this index is for.
+     *
+     * @return The log file
+     */
+    public Path logFile() {
+        return logFile;
+    }
+
+    /**
+     * Get the number of blocks in this index.
+     *
+     * @return The block count
+     */
+    public synchronized int blockCount() {
+        return blocks.size();
+    }
+
+    /**
+     * Get the number of distinct words in this index. This reads the whole
+     * sidecar.
+     *
+     * @return The word count
+     */
+    public synchronized int wordCount() {
+        try (FileChannel channel = FileChannel.open(sidecar, StandardOpenOption.READ)) {
+            Entries words = mergedEntries(channel, segments);
+            int result = 0;
+            while (words.next() != null) {
+                result++;
+            }
+            return result;
+        } catch (IOException ex) {
+            return Exceptions.chuck(ex);
+        }
+    }
+
+    /**
+     * Get the offset in the log file up to which lines have been indexed.
+     *
+     * @return An offset
+     */
+    public synchronized long indexedTo() {
+        return indexedTo;
+    }
+
+    synchronized int segmentCount() {
+        return segments.size();
+    }
+
+    /**
+     * The number of words held in memory to seek to, for tests.
+     */
+    synchronized int residentWordCount() {
+        int result = 0;
+        for (Segment segment : segments) {
+            result += segment.sampleKeys.length;
+        }
+        return result;
+    }
+
+    /**
+     * Index any lines appended to the log file since this index was last
+     * updated, appending them to the sidecar as a new segment, or rebuilding
+     * the index if the file has been truncated or replaced.
+     *
+     * @return this
+     * @throws IOException if something goes wrong
+     */
+    public synchronized MessageIndex update() throws IOException {
+        try (FileChannel channel = FileChannel.open(logFile, StandardOpenOption.READ)) {
+            long size = channel.size();
+            boolean rebuild = false;
+            boolean changed = false;
+            if (LogIndex.replaced(channel, indexedTo, fingerprintLength, fingerprint)) {
+                blocks.clear();
+                indexedTo = 0;
+                fingerprintLength = 0;
+                rebuild = true;
+            }
+            if (fingerprintLength < LogIndex.FINGERPRINT_BYTES && size > fingerprintLength) {
+                fingerprintLength = (int) Math.min(LogIndex.FINGERPRINT_BYTES, size);
+                fingerprint = LogIndex.fingerprint(channel, fingerprintLength);
+                changed = true;
+            }
+            int firstBlock = blocks.size();
+            // The last block may have been cut short by the end of the file
+            // last time, so redo it; the segment appended replaces it, and
+            // the words of earlier segments in it are ignored from then on
+            if (firstBlock > 0 && length(blocks.get(firstBlock - 1)) < blockSize && size > indexedTo) {
+                indexedTo = blocks.remove(--firstBlock)[0];
+            }
+            TreeMap<String, Postings> added = new TreeMap<>();
+            if (size > indexedTo) {
+                index(channel, size, added);
+                changed = true;
+            }
+            if (rebuild || segments.isEmpty()) {
+                save(added);
+            } else if (changed) {
+                appendSegment(firstBlock, added);
+                if (segments.size() > MAX_SEGMENTS && merge == null) {
+                    merge = MERGER.submit(this::mergeInBackground);
+                }
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Merge the segments of the sidecar into one now.
+     *
+     * @throws IOException if something goes wrong
+     */
+    public void compact() throws IOException {
+        try {
+            awaitMerge();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for merge of " + sidecar);
+        }
+        synchronized (this) {
+            if (segments.size() <= 1) {
+                return;
+            }
+        }
+        mergeSegments();
+    }
+
+    /**
+     * Wait for any background merge to finish, for tests.
+     */
+    void awaitMerge() throws IOException, InterruptedException {
+        Future<?> f;
+        synchronized (this) {
+            f = merge;
+        }
+        if (f != null) {
+            try {
+                f.get();
+            } catch (ExecutionException ex) {
+                throw new IOException(ex.getCause());
+            }
+        }
+    }
+
+    /**
+     * Get the blocks which may contain lines whose message (or the passed
+     * property) contains the passed text.
+     *
+     * @param property A property name, or null for the message
+     * @param text The text
+     * @return The blocks, or null if the text contains no words which can
+     * narrow the search, the property is not indexed, or the sidecar cannot
+     * be read
+     */
+    synchronized BitSet blocksContaining(String property, String text) {
+        if (property != null && !indexedProperties.contains(property)) {
+            return null;
+        }
+        String prefix = property == null ? "" : property + '\u0000';
+        BitSet[] result = new BitSet[1];
+        IOException[] failed = new IOException[1];
+        try (FileChannel channel = FileChannel.open(sidecar, StandardOpenOption.READ)) {
+            int[] limits = limits(segments);
+            words(text, (word, wholeStart, wholeEnd) -> {
+                if (word.length() > MAX_WORD_LENGTH || failed[0] != null) {
+                    return;
+                }
+                BitSet found = new BitSet(blocks.size());
+                try {
+                    if (wholeStart && wholeEnd) {
+                        String key = prefix + word;
+                        collect(channel, limits, key, key + '\u0000', k -> true, found);
+                    } else if (wholeStart) {
+                        collect(channel, limits, prefix + word, prefix + word + '\uffff',
+                                key -> property != null || key.indexOf('\u0000') < 0, found);
+                    } else {
+                        // The first word of the text may be the end of a
+                        // longer one, and a single word may be anywhere in one
+                        collect(channel, limits, property == null ? null : prefix,
+                                property == null ? null : property + '\u0001', key -> {
+                                    if (property == null && key.indexOf('\u0000') >= 0) {
+                                        return false;
+                                    }
+                                    // Words cut short at MAX_WORD_LENGTH may have
+                                    // the text in the part that was cut off
+                                    return key.length() - prefix.length() >= MAX_WORD_LENGTH
+                                            || (wholeEnd ? key.endsWith(word) && key.length() - word.length() >= prefix.length()
+                                            : key.indexOf(word, prefix.length()) >= 0);
+                                }, found);
+                    }
+                } catch (IOException ex) {
+                    failed[0] = ex;
+                    return;
+                }
+                if (result[0] == null) {
+                    result[0] = found;
+                } else {
+                    result[0].and(found);
+                }
+            });
+            if (failed[0] != null) {
+                throw failed[0];
+            }
+        } catch (IOException ex) {
+            Logger.getLogger(MessageIndex.class.getName()).log(Level.INFO, "Reading " + sidecar, ex);
+            return null;
+        }
+        return result[0];
+    }
+
+    /**
+     * Add the blocks of words in the range from (inclusive, or from the
+     * first word if null) to (exclusive, or to the last word if null) which
+     * match the passed predicate, in every segment.
+     */
+    private void collect(FileChannel channel, int[] limits, String from, String to, Predicate<String> match, BitSet into) throws IOException {
+        for (int i = 0; i < segments.size(); i++) {
+            Segment segment = segments.get(i);
+            DataInputStream in = new DataInputStream(new ChannelInput(channel, segment.seek(from), SCAN_BUFFER_SIZE));
+            for (String key = in.readUTF(); !key.isEmpty(); key = in.readUTF()) {
+                if (to != null && key.compareTo(to) >= 0) {
+                    break;
+                }
+                if ((from == null || key.compareTo(from) >= 0) && match.test(key)) {
+                    Postings postings = new Postings();
+                    postings.read(in, limits[i]);
+                    postings.addTo(into);
+                } else {
+                    Postings.skip(in);
+                }
+            }
+        }
+    }
+
+    /**
+     * A segment replaces the blocks from its first block on, so the blocks
+     * listed for a word in a segment are only valid below the first block
+     * of any later one.
+     */
+    private static int[] limits(List<Segment> segments) {
+        int[] result = new int[segments.size()];
+        int limit = Integer.MAX_VALUE;
+        for (int i = result.length - 1; i >= 0; i--) {
+            result[i] = limit;
+            limit = Math.min(limit, segments.get(i).firstBlock);
+        }
+        return result;
+    }
+
+    /**
+     * Get the byte ranges of the log file which may contain records matching
+     * the passed filter, merging adjacent ranges, and including any part of
+     * the file not yet indexed.
+     *
+     * @param filter A filter
+     * @param channel A channel open on the log file
+     * @return A list of start and end offsets
+     * @throws IOException if something goes wrong
+     */
+    synchronized List<long[]> candidateRanges(Predicate<LogRecord> filter, FileChannel channel) throws IOException {
+        List<long[]> result = new ArrayList<>();
+        long size = channel.size();
+        if (LogIndex.replaced(channel, indexedTo, fingerprintLength, fingerprint)) {
+            // Truncated or replaced since the last update; the index is
+            // useless
+            result.add(new long[]{0, size});
+            return result;
+        }
+        BitSet candidates = filter instanceof LogFilter ? ((LogFilter) filter).candidateBlocks(this) : null;
+        long[] last = null;
+        for (int i = 0; i < blocks.size(); i++) {
+            if (candidates != null && !candidates.get(i)) {
+                continue;
+            }
+            long[] block = blocks.get(i);
+            if (last != null && last[1] == block[0]) {
+                last[1] = block[1];
+            } else {
+                result.add(last = new long[]{block[0], block[1]});
+            }
+        }
+        if (size > indexedTo) {
+            if (last != null && last[1] == indexedTo) {
+                last[1] = size;
+            } else {
+                result.add(new long[]{indexedTo, size});
+            }
+        }
+        return result;
+    }
+
+    private static long length(long[] block) {
+        return block[1] - block[0];
+    }
+
+    interface WordConsumer {
+
+        /**
+         * Accept a word.
+         *
+         * @param word The word, in lower case
+         * @param wholeStart If the word is preceded by a character which is
+         * not part of a word
+         * @param wholeEnd If the word is followed by a character which is
+         * not part of a word
+         */
+        void word(String word, boolean wholeStart, boolean wholeEnd);
+    }
+
+    /**
+     * Split text into words - runs of letters and digits.
+     */
+    static void words(String text, WordConsumer consumer) {
+        int len = text.length();
+        int start = -1;
+        for (int i = 0; i <= len; i++) {
+            boolean inWord = i < len && Character.isLetterOrDigit(text.charAt(i));
+            if (inWord && start < 0) {
+                start = i;
+            } else if (!inWord && start >= 0) {
+                consumer.word(text.substring(start, i).toLowerCase(Locale.ROOT), start > 0, i < len);
+                start = -1;
+            }
+        }
+    }
+
+    private void index(FileChannel channel, long size, Map<String, Postings> added) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(READ_BUFFER_SIZE);
+        long blockStart = indexedTo;
+        long bufferOffset = indexedTo;
+        while (bufferOffset < size) {
+            buf.clear();
+            buf.limit((int) Math.min(buf.capacity(), size - bufferOffset));
+            while (buf.hasRemaining()) {
+                if (channel.read(buf, bufferOffset + buf.position()) < 0) {
+                    break;
+                }
+            }
+            int limit = buf.position();
+            int lineStart = 0;
+            int newline;
+            while ((newline = LineSpliterator.indexOfNewline(buf, lineStart, limit)) >= 0) {
+                indexLine(buf.array(), lineStart, newline, blocks.size(), added);
+                lineStart = newline + 1;
+                long lineEnd = bufferOffset + lineStart;
+                if (lineEnd - blockStart >= blockSize) {
+                    blocks.add(new long[]{blockStart, lineEnd});
+                    blockStart = lineEnd;
+                }
+            }
+            if (lineStart == 0 && limit == buf.capacity()) {
+                // A line longer than the buffer
+                buf = ByteBuffer.allocate(buf.capacity() * 2);
+                continue;
+            }
+            if (lineStart == 0) {
+                // An incomplete last line, still being written
+                break;
+            }
+            bufferOffset += lineStart;
+        }
+        if (bufferOffset > blockStart) {
+            blocks.add(new long[]{blockStart, bufferOffset});
+        }
+        indexedTo = bufferOffset;
+    }
+
+    private void indexLine(byte[] bytes, int start, int end, int block, Map<String, Postings> added) {
+        if (end <= start || bytes[start] != '{') {
+            return;
+        }
+        try (JsonParser parser = factory.createParser(bytes, start, end - start)) {
+            parser.nextToken();
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.getCurrentName();
+                JsonToken tok = parser.nextToken();
+                if (tok == JsonToken.VALUE_STRING && ("msg".equals(name) || indexedProperties.contains(name))) {
+                    String prefix = "msg".equals(name) ? "" : name + '\u0000';
+                    words(parser.getText(), (word, wholeStart, wholeEnd) -> {
+                        String key = prefix + (word.length() > MAX_WORD_LENGTH
+                                ? word.substring(0, MAX_WORD_LENGTH) : word);
+                        added.computeIfAbsent(key, k -> new Postings()).add(block);
+                    });
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        } catch (IOException ex) {
+            // Not a parseable line - streams will skip or fail on it too
+        }
+    }
+
+    private void load() throws IOException {
+        try (FileChannel channel = FileChannel.open(sidecar, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ChannelInput input = new ChannelInput(channel, 0, READ_BUFFER_SIZE);
+            DataInputStream in = new DataInputStream(input);
+            if (in.readInt() != MAGIC || in.readInt() != VERSION || in.readInt() != blockSize) {
+                return;
+            }
+            int propCount = in.readInt();
+            Set<String> props = new LinkedHashSet<>();
+            for (int i = 0; i < propCount; i++) {
+                props.add(in.readUTF());
+            }
+            if (!props.equals(indexedProperties)) {
+                return;
+            }
+            long good = input.position();
+            try {
+                while (good < channel.size()) {
+                    segments.add(readSegment(input));
+                    good = input.position();
+                }
+            } catch (IOException ex) {
+                // A segment only partly written when the process died;
+                // drop it so segments appended after it can be read
+                Logger.getLogger(MessageIndex.class.getName()).log(Level.INFO,
+                        "Truncating " + sidecar + " to " + good + " after a torn segment: " + ex);
+                channel.truncate(good);
+            }
+        } catch (NoSuchFileException ex) {
+            // not created yet
+        } catch (IOException ex) {
+            Logger.getLogger(MessageIndex.class.getName()).log(Level.INFO, "Rebuilding " + sidecar, ex);
+            blocks.clear();
+            segments.clear();
+            indexedTo = 0;
+            fingerprintLength = 0;
+        }
+    }
+
+    private void writeHeader(DataOutputStream out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(blockSize);
+        out.writeInt(indexedProperties.size());
+        for (String prop : indexedProperties) {
+            out.writeUTF(prop);
+        }
+    }
+
+    /**
+     * Read a segment: its length and checksum, the state of the log file
+     * when it was written, the blocks it added, starting from a block number
+     * which replaces any blocks from there on, and the words in those blocks
+     * in sorted order, each followed by its blocks, ending with an empty
+     * string. The blocks are applied once the checksum has been verified;
+     * the words are skipped, sampling them to seek to later.
+     */
+    private Segment readSegment(ChannelInput input) throws IOException {
+        DataInputStream in = new DataInputStream(input);
+        int length = in.readInt();
+        long crc = in.readInt() & 0xFFFFFFFFL;
+        input.crc.reset();
+        long payloadStart = input.position();
+        long to = in.readLong();
+        int fpLength = in.readInt();
+        long fp = in.readLong();
+        int firstBlock = in.readInt();
+        if (firstBlock > blocks.size()) {
+            throw new IOException("Segment starts at block " + firstBlock + " of " + blocks.size());
+        }
+        int blockCount = in.readInt();
+        List<long[]> added = new ArrayList<>();
+        for (int i = 0; i < blockCount; i++) {
+            added.add(new long[]{in.readLong(), in.readLong()});
+        }
+        long start = input.position();
+        List<String> keys = new ArrayList<>();
+        List<Long> offsets = new ArrayList<>();
+        for (int i = 0;; i++) {
+            long offset = input.position();
+            String key = in.readUTF();
+            if (key.isEmpty()) {
+                break;
+            }
+            if (i % SAMPLE_INTERVAL == 0) {
+                keys.add(key);
+                offsets.add(offset);
+            }
+            Postings.skip(in);
+        }
+        if (input.position() - payloadStart != length || input.crc.getValue() != crc) {
+            throw new IOException("Bad checksum");
+        }
+        while (blocks.size() > firstBlock) {
+            blocks.remove(blocks.size() - 1);
+        }
+        blocks.addAll(added);
+        indexedTo = to;
+        fingerprintLength = fpLength;
+        fingerprint = fp;
+        return new Segment(start, firstBlock, keys, offsets);
+    }
+
+    /**
+     * Write a segment at the current position of the output, in the format
+     * read by readSegment, skipping words with no blocks.
+     */
+    private static Segment writeSegment(ChannelOutput output, long to, int fpLength, long fp, int firstBlock,
+            List<long[]> blocks, Entries words) throws IOException {
+        long offset = output.position();
+        DataOutputStream out = new DataOutputStream(output);
+        // Length and checksum, filled in once the segment is written
+        out.writeInt(0);
+        out.writeInt(0);
+        output.crc.reset();
+        long payloadStart = output.position();
+        out.writeLong(to);
+        out.writeInt(fpLength);
+        out.writeLong(fp);
+        out.writeInt(firstBlock);
+        out.writeInt(blocks.size() - firstBlock);
+        for (int i = firstBlock; i < blocks.size(); i++) {
+            out.writeLong(blocks.get(i)[0]);
+            out.writeLong(blocks.get(i)[1]);
+        }
+        long start = output.position();
+        List<String> keys = new ArrayList<>();
+        List<Long> offsets = new ArrayList<>();
+        int count = 0;
+        for (Map.Entry<String, Postings> e = words.next(); e != null; e = words.next()) {
+            if (e.getValue().isEmpty()) {
+                continue;
+            }
+            if (count++ % SAMPLE_INTERVAL == 0) {
+                keys.add(e.getKey());
+                offsets.add(output.position());
+            }
+            out.writeUTF(e.getKey());
+            e.getValue().write(out);
+        }
+        out.writeUTF("");
+        long end = output.position();
+        output.flush();
+        ByteBuffer lengthAndChecksum = ByteBuffer.allocate(8);
+        lengthAndChecksum.putInt((int) (end - payloadStart));
+        lengthAndChecksum.putInt((int) output.crc.getValue());
+        lengthAndChecksum.flip();
+        while (lengthAndChecksum.hasRemaining()) {
+            output.channel.write(lengthAndChecksum, offset + lengthAndChecksum.position());
+        }
+        return new Segment(start, firstBlock, keys, offsets);
+    }
+
+    private void appendSegment(int firstBlock, Map<String, Postings> added) throws IOException {
+        try (FileChannel channel = FileChannel.open(sidecar, StandardOpenOption.WRITE)) {
+            segments.add(writeSegment(new ChannelOutput(channel, channel.size()), indexedTo,
+                    fingerprintLength, fingerprint, firstBlock, blocks, entries(added)));
+        }
+    }
+
+    private void save(Map<String, Postings> words) throws IOException {
+        Path tmp = Segments.sidecar(sidecar, Segments.TEMP_SUFFIX);
+        Segment segment;
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ChannelOutput output = new ChannelOutput(channel, 0);
+            writeHeader(new DataOutputStream(output));
+            segment = writeSegment(output, indexedTo, fingerprintLength, fingerprint, 0, blocks, entries(words));
+        }
+        Files.move(tmp, sidecar, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        segments.clear();
+        segments.add(segment);
+        generation++;
+    }
+
+    private void mergeInBackground() {
+        try {
+            mergeSegments();
+        } catch (IOException ex) {
+            Logger.getLogger(MessageIndex.class.getName()).log(Level.WARNING, "Merging " + sidecar, ex);
+        } finally {
+            synchronized (this) {
+                merge = null;
+            }
+        }
+    }
+
+    /**
+     * Rewrite the sidecar as a single segment, merging the sorted words of
+     * its segments as they are read. The index is only locked while taking
+     * a snapshot and while replacing the file, so updates can proceed while
+     * the merged file is written; any segments they append in the meantime
+     * are copied onto the end of it.
+     */
+    private void mergeSegments() throws IOException {
+        Path tmp = Segments.sidecar(sidecar, Segments.MERGE_SUFFIX);
+        FileChannel from;
+        List<Segment> snapshot;
+        List<long[]> snapshotBlocks;
+        long snapshotIndexedTo;
+        int snapshotFingerprintLength;
+        long snapshotFingerprint;
+        long snapshotLength;
+        int snapshotGeneration;
+        synchronized (this) {
+            from = FileChannel.open(sidecar, StandardOpenOption.READ);
+            snapshot = new ArrayList<>(segments);
+            snapshotBlocks = new ArrayList<>(blocks);
+            snapshotIndexedTo = indexedTo;
+            snapshotFingerprintLength = fingerprintLength;
+            snapshotFingerprint = fingerprint;
+            snapshotLength = from.size();
+            snapshotGeneration = generation;
+        }
+        try {
+            Segment merged;
+            long mergedLength;
+            try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                ChannelOutput output = new ChannelOutput(channel, 0);
+                writeHeader(new DataOutputStream(output));
+                merged = writeSegment(output, snapshotIndexedTo, snapshotFingerprintLength, snapshotFingerprint,
+                        0, snapshotBlocks, mergedEntries(from, snapshot));
+                mergedLength = output.position();
+            }
+            synchronized (this) {
+                if (generation != snapshotGeneration) {
+                    // Rebuilt in the meantime, so what was appended since the
+                    // snapshot is not a continuation of it
+                    Files.deleteIfExists(tmp);
+                    return;
+                }
+                long length = from.size();
+                if (length > snapshotLength) {
+                    try (FileChannel to = FileChannel.open(tmp, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+                        long pos = snapshotLength;
+                        while (pos < length) {
+                            pos += from.transferTo(pos, length - pos, to);
+                        }
+                    }
+                }
+                Files.move(tmp, sidecar, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                List<Segment> appended = new ArrayList<>();
+                for (int i = snapshot.size(); i < segments.size(); i++) {
+                    appended.add(segments.get(i).shifted(mergedLength - snapshotLength));
+                }
+                segments.clear();
+                segments.add(merged);
+                segments.addAll(appended);
+                generation++;
+            }
+        } catch (IOException | RuntimeException ex) {
+            Files.deleteIfExists(tmp);
+            throw ex;
+        } finally {
+            from.close();
+        }
+    }
+
+    /**
+     * A source of words and their blocks in sorted order, returning null at
+     * the end.
+     */
+    private interface Entries {
+
+        Map.Entry<String, Postings> next() throws IOException;
+    }
+
+    private static Entries entries(Map<String, Postings> words) {
+        Iterator<Map.Entry<String, Postings>> iter = words.entrySet().iterator();
+        return () -> iter.hasNext() ? iter.next() : null;
+    }
+
+    /**
+     * Merge the words of a list of segments, combining the valid blocks of
+     * each word in segment order, which keeps them sorted.
+     */
+    private static Entries mergedEntries(FileChannel channel, List<Segment> segments) throws IOException {
+        int[] limits = limits(segments);
+        PriorityQueue<Cursor> queue = new PriorityQueue<>();
+        for (int i = 0; i < segments.size(); i++) {
+            Cursor cursor = new Cursor(new DataInputStream(new ChannelInput(channel,
+                    segments.get(i).start, SCAN_BUFFER_SIZE)), i, limits[i]);
+            if (cursor.advance()) {
+                queue.add(cursor);
+            }
+        }
+        return () -> {
+            while (!queue.isEmpty()) {
+                Cursor first = queue.poll();
+                String key = first.key;
+                Postings postings = first.postings;
+                if (first.advance()) {
+                    queue.add(first);
+                }
+                while (!queue.isEmpty() && queue.peek().key.equals(key)) {
+                    Cursor next = queue.poll();
+                    postings.addAll(next.postings);
+                    if (next.advance()) {
+                        queue.add(next);
+                    }
+                }
+                if (!postings.isEmpty()) {
+                    return new AbstractMap.SimpleImmutableEntry<>(key, postings);
+                }
+            }
+            return null;
+        };
+    }
+
+    /**
+     * The current word of a segment being merged.
+     */
+    private static final class Cursor implements Comparable<Cursor> {
+
+        private final DataInputStream in;
+        private final int index;
+        private final int limit;
+        private String key;
+        private Postings postings;
+
+        Cursor(DataInputStream in, int index, int limit) {
+            this.in = in;
+            this.index = index;
+            this.limit = limit;
+        }
+
+        boolean advance() throws IOException {
+            key = in.readUTF();
+            if (key.isEmpty()) {
+                return false;
+            }
+            postings = new Postings();
+            postings.read(in, limit);
+            return true;
+        }
+
+        @Override
+        public int compareTo(Cursor o) {
+            int result = key.compareTo(o.key);
+            return result != 0 ? result : Integer.compare(index, o.index);
+        }
+    }
+
+    /**
+     * Where the words of a segment start in the sidecar, and every
+     * SAMPLE_INTERVAL'th word with its offset.
+     */
+    private static final class Segment {
+
+        private final long start;
+        private final int firstBlock;
+        private final String[] sampleKeys;
+        private final long[] sampleOffsets;
+
+        Segment(long start, int firstBlock, List<String> keys, List<Long> offsets) {
+            this(start, firstBlock, keys.toArray(new String[keys.size()]), new long[offsets.size()]);
+            for (int i = 0; i < sampleOffsets.length; i++) {
+                sampleOffsets[i] = offsets.get(i);
+            }
+        }
+
+        private Segment(long start, int firstBlock, String[] sampleKeys, long[] sampleOffsets) {
+            this.start = start;
+            this.firstBlock = firstBlock;
+            this.sampleKeys = sampleKeys;
+            this.sampleOffsets = sampleOffsets;
+        }
+
+        /**
+         * Get the offset to start reading from to find a word, or the
+         * first word if null.
+         */
+        long seek(String key) {
+            if (key == null) {
+                return start;
+            }
+            int ix = Arrays.binarySearch(sampleKeys, key);
+            if (ix < 0) {
+                ix = -ix - 2;
+            }
+            return ix < 0 ? start : sampleOffsets[ix];
+        }
+
+        Segment shifted(long by) {
+            long[] offsets = new long[sampleOffsets.length];
+            for (int i = 0; i < offsets.length; i++) {
+                offsets[i] = sampleOffsets[i] + by;
+            }
+            return new Segment(start + by, firstBlock, sampleKeys, offsets);
+        }
+    }
+
+    /**
+     * Reads a file channel from an offset, with its own position, so several
+     * can read one channel, computing a checksum of what it reads.
+     */
+    private static final class ChannelInput extends InputStream {
+
+        private final FileChannel channel;
+        private final ByteBuffer buffer;
+        private long bufferStart;
+        final CRC32 crc = new CRC32();
+
+        ChannelInput(FileChannel channel, long offset, int bufferSize) {
+            this.channel = channel;
+            this.buffer = ByteBuffer.allocate(bufferSize);
+            this.bufferStart = offset;
+            buffer.limit(0);
+        }
+
+        long position() {
+            return bufferStart + buffer.position();
+        }
+
+        private boolean fill() throws IOException {
+            bufferStart += buffer.limit();
+            buffer.clear();
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, bufferStart + buffer.position()) < 0) {
+                    break;
+                }
+            }
+            buffer.flip();
+            return buffer.hasRemaining();
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (!buffer.hasRemaining() && !fill()) {
+                return -1;
+            }
+            int result = buffer.get() & 0xFF;
+            crc.update(result);
+            return result;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (!buffer.hasRemaining() && !fill()) {
+                return -1;
+            }
+            int count = Math.min(len, buffer.remaining());
+            buffer.get(b, off, count);
+            crc.update(b, off, count);
+            return count;
+        }
+    }
+
+    /**
+     * Writes a file channel from an offset, computing a checksum of what it
+     * writes.
+     */
+    private static final class ChannelOutput extends OutputStream {
+
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+        private long bufferStart;
+        final CRC32 crc = new CRC32();
+
+        ChannelOutput(FileChannel channel, long offset) {
+            this.channel = channel;
+            this.bufferStart = offset;
+        }
+
+        long position() {
+            return bufferStart + buffer.position();
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (!buffer.hasRemaining()) {
+                flush();
+            }
+            buffer.put((byte) b);
+            crc.update(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            crc.update(b, off, len);
+            while (len > 0) {
+                if (!buffer.hasRemaining()) {
+                    flush();
+                }
+                int count = Math.min(len, buffer.remaining());
+                buffer.put(b, off, count);
+                off += count;
+                len -= count;
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                bufferStart += channel.write(buffer, bufferStart);
+            }
+            buffer.clear();
+        }
+    }
+
+    /**
+     * A sorted list of the blocks a word occurs in.
+     */
+    private static final class Postings {
+
+        private int[] blocks = new int[2];
+        private int size;
+
+        void add(int block) {
+            if (size > 0 && blocks[size - 1] == block) {
+                return;
+            }
+            if (size == blocks.length) {
+                blocks = Arrays.copyOf(blocks, size * 2);
+            }
+            blocks[size++] = block;
+        }
+
+        void addAll(Postings other) {
+            for (int i = 0; i < other.size; i++) {
+                add(other.blocks[i]);
+            }
+        }
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        void addTo(BitSet set) {
+            for (int i = 0; i < size; i++) {
+                set.set(blocks[i]);
+            }
+        }
+
+        void write(DataOutputStream out) throws IOException {
+            // Deltas, which are small for words that occur often
+            out.writeInt(size);
+            int prev = 0;
+            for (int i = 0; i < size; i++) {
+                writeVarInt(out, blocks[i] - prev);
+                prev = blocks[i];
+            }
+        }
+
+        /**
+         * Read the blocks below a limit.
+         */
+        void read(DataInputStream in, int limit) throws IOException {
+            int count = in.readInt();
+            int block = 0;
+            for (int i = 0; i < count; i++) {
+                block += readVarInt(in);
+                if (block < limit) {
+                    add(block);
+                }
+            }
+        }
+
+        static void skip(DataInputStream in) throws IOException {
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                readVarInt(in);
+            }
+        }
+
+        private static void writeVarInt(DataOutputStream out, int value) throws IOException {
+            while ((value & ~0x7F) != 0) {
+                out.writeByte((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            out.writeByte(value);
+        }
+
+        private static int readVarInt(DataInputStream in) throws IOException {
+            int result = 0;
+            for (int shift = 0; shift < 35; shift += 7) {
+                int b = in.readUnsignedByte();
+                result |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return result;
+                }
+            }
+            throw new IOException("Malformed posting list");
+        }
+    }
+}
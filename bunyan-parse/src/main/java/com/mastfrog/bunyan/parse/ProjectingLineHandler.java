@@ -0,0 +1,177 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 Tim Boudreau.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.bunyan.parse;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.time.ZonedDateTime;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * Line handler which uses Jackson's streaming parser to decode only a set of
+ * requested fields from each line, skipping the values of all others without
+ * materializing them, and stopping as soon as all requested fields have been
+ * seen.
+ *
+ * @author Tim Boudreau
+ */
+final class ProjectingLineHandler implements LineSpliterator.LineHandler<LogRecord> {
+
+    private final JsonFactory factory;
+    private final ObjectReader timeReader;
+    private final ObjectReader valueReader;
+    private final Set<String> fields;
+    private final Predicate<LogRecord> filter;
+    private final ByteMatcher prefilter;
+
+    ProjectingLineHandler(ObjectMapper mapper, Predicate<LogRecord> filter, String... fields) {
+        this.factory = mapper.getFactory();
+        this.timeReader = mapper.readerFor(ZonedDateTime.class);
+        this.valueReader = mapper.readerFor(Object.class);
+        this.filter = filter;
+        Set<String> all = new HashSet<>();
+        for (String field : fields) {
+            all.add(field);
+        }
+        if (filter instanceof LogFilter) {
+            LogFilter logFilter = (LogFilter) filter;
+            if (!logFilter.collectFieldNames(all)) {
+                // The filter may look at anything
+                all = null;
+            }
+            ByteMatcher matcher = logFilter.prefilter();
+            prefilter = matcher.isEmpty() ? null : matcher;
+        } else {
+            prefilter = null;
+        }
+        this.fields = all;
+    }
+
+    @Override
+    public LogRecord handle(ByteBuffer buf, int start, int end) throws IOException {
+        if (buf.get(start) != '{') {
+            return null;
+        }
+        if (prefilter != null && !prefilter.matches(buf, start, end)) {
+            return null;
+        }
+        byte[] bytes;
+        int offset;
+        if (buf.hasArray()) {
+            bytes = buf.array();
+            offset = buf.arrayOffset() + start;
+        } else {
+            bytes = new byte[end - start];
+            offset = 0;
+            ByteBuffer dup = buf.duplicate();
+            dup.position(start);
+            dup.get(bytes);
+        }
+        LogRecord record = parse(bytes, offset, end - start);
+        return record == null || (filter != null && !filter.test(record)) ? null : record;
+    }
+
+    private LogRecord parse(byte[] bytes, int offset, int length) throws IOException {
+        String name = null;
+        String msg = null;
+        String hostName = null;
+        ZonedDateTime time = null;
+        int level = 0;
+        int pid = 0;
+        Map<String, Object> props = null;
+        try (JsonParser parser = factory.createParser(bytes, offset, length)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return null;
+            }
+            int remaining = fields == null ? Integer.MAX_VALUE : fields.size();
+            while (remaining > 0 && parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                parser.nextToken();
+                if (fields != null && !fields.contains(field)) {
+                    parser.skipChildren();
+                    continue;
+                }
+                remaining--;
+                switch (field) {
+                    case "name":
+                        name = string(parser);
+                        break;
+                    case "msg":
+                        msg = string(parser);
+                        break;
+                    case "hostname":
+                        hostName = string(parser);
+                        break;
+                    case "level":
+                        level = parser.getValueAsInt();
+                        break;
+                    case "pid":
+                        pid = parser.getValueAsInt();
+                        break;
+                    case "time":
+                        time = parser.currentToken() == JsonToken.VALUE_NULL
+                                ? null : timeReader.readValue(parser);
+                        break;
+                    case "v":
+                        parser.skipChildren();
+                        break;
+                    default:
+                        if (props == null) {
+                            props = new LinkedHashMap<>();
+                        }
+                        props.put(field, parser.currentToken() == JsonToken.VALUE_NULL
+                                ? null : parser.currentToken() == JsonToken.VALUE_STRING
+                                        ? string(parser) : valueReader.readValue(parser));
+                }
+            }
+        }
+        LogRecord result = new LogRecord(name, msg, time, level, pid, hostName);
+        if (props != null) {
+            result.props.putAll(props);
+        }
+        return result;
+    }
+
+    /**
+     * Get the text of the current token, deduplicated by the record string
+     * cache straight from the parser's buffer, so a string seen before is
+     * not allocated again.
+     */
+    static String string(JsonParser parser) throws IOException {
+        if (parser.currentToken() != JsonToken.VALUE_STRING) {
+            return parser.getValueAsString();
+        }
+        return LogRecord.stringCache().dedup(parser.getTextCharacters(),
+                parser.getTextOffset(), parser.getTextLength());
+    }
+}
@@ -0,0 +1,354 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 Tim Boudreau.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.bunyan.parse;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A compact, insertion-ordered map of the ad-hoc properties of a log record.
+ * Records with the same properties in the same order, as almost all records
+ * from one source have, share a Shape - a table of keys, value kinds and
+ * slots, reached by adding keys one at a time from an empty shape - so a
+ * record itself holds only its values: objects in one array, and numbers in
+ * another as unboxed longs. Ints, longs and doubles come back out as
+ * Integer, Long and Double, as Jackson decoded them. Not thread-safe.
+ *
+ * @author Tim Boudreau
+ */
+final class PropertyMap extends AbstractMap<String, Object> {
+
+    private static final byte OBJECT = 0;
+    private static final byte INT = 1;
+    private static final byte LONG = 2;
+    private static final byte DOUBLE = 3;
+    private static final Object[] NO_OBJECTS = new Object[0];
+    private static final long[] NO_NUMBERS = new long[0];
+    private Shape shape = Shape.root();
+    private Object[] objects = NO_OBJECTS;
+    private long[] numbers = NO_NUMBERS;
+
+    Shape shape() {
+        return shape;
+    }
+
+    @Override
+    public int size() {
+        return shape.size();
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return shape.indexOf(key) >= 0;
+    }
+
+    @Override
+    public Object get(Object key) {
+        int ix = shape.indexOf(key);
+        return ix < 0 ? null : value(ix);
+    }
+
+    @Override
+    public Object put(String key, Object value) {
+        byte kind = kindOf(value);
+        int ix = shape.indexOf(key);
+        if (ix >= 0) {
+            Object old = value(ix);
+            if (shape.kinds[ix] == kind) {
+                store(ix, value);
+            } else {
+                Map<String, Object> copy = new LinkedHashMap<>(this);
+                copy.put(key, value);
+                rebuild(copy);
+            }
+            return old;
+        }
+        // Arrays grow one at a time, so a record holds no slack
+        if (kind == OBJECT) {
+            objects = Arrays.copyOf(objects, objects.length + 1);
+        } else {
+            numbers = Arrays.copyOf(numbers, numbers.length + 1);
+        }
+        shape = shape.with(key, kind);
+        store(shape.size() - 1, value);
+        return null;
+    }
+
+    @Override
+    public Object remove(Object key) {
+        int ix = shape.indexOf(key);
+        if (ix < 0) {
+            return null;
+        }
+        Object old = value(ix);
+        Map<String, Object> copy = new LinkedHashMap<>(this);
+        copy.remove(key);
+        rebuild(copy);
+        return old;
+    }
+
+    @Override
+    public void clear() {
+        shape = Shape.root();
+        objects = NO_OBJECTS;
+        numbers = NO_NUMBERS;
+    }
+
+    private void rebuild(Map<String, Object> contents) {
+        clear();
+        for (Map.Entry<String, Object> e : contents.entrySet()) {
+            put(e.getKey(), e.getValue());
+        }
+    }
+
+    private static byte kindOf(Object value) {
+        if (value instanceof Integer) {
+            return INT;
+        } else if (value instanceof Long) {
+            return LONG;
+        } else if (value instanceof Double) {
+            return DOUBLE;
+        }
+        return OBJECT;
+    }
+
+    private void store(int ix, Object value) {
+        int slot = shape.slots[ix];
+        switch (shape.kinds[ix]) {
+            case OBJECT:
+                objects[slot] = value;
+                break;
+            case DOUBLE:
+                numbers[slot] = Double.doubleToRawLongBits((Double) value);
+                break;
+            default:
+                numbers[slot] = ((Number) value).longValue();
+        }
+    }
+
+    private Object value(int ix) {
+        int slot = shape.slots[ix];
+        switch (shape.kinds[ix]) {
+            case OBJECT:
+                return objects[slot];
+            case INT:
+                return (int) numbers[slot];
+            case LONG:
+                return numbers[slot];
+            case DOUBLE:
+                return Double.longBitsToDouble(numbers[slot]);
+            default:
+                throw new AssertionError(shape.kinds[ix]);
+        }
+    }
+
+    @Override
+    public Set<Map.Entry<String, Object>> entrySet() {
+        return new AbstractSet<Map.Entry<String, Object>>() {
+            @Override
+            public Iterator<Map.Entry<String, Object>> iterator() {
+                return new Entries();
+            }
+
+            @Override
+            public int size() {
+                return PropertyMap.this.size();
+            }
+        };
+    }
+
+    private final class Entries implements Iterator<Map.Entry<String, Object>> {
+
+        private int index;
+        private String last;
+
+        @Override
+        public boolean hasNext() {
+            return index < size();
+        }
+
+        @Override
+        public Map.Entry<String, Object> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            last = shape.keys[index];
+            Map.Entry<String, Object> result = new Entry(PropertyMap.this, last, value(index));
+            index++;
+            return result;
+        }
+
+        @Override
+        public void remove() {
+            if (last == null) {
+                throw new IllegalStateException();
+            }
+            PropertyMap.this.remove(last);
+            last = null;
+            index--;
+        }
+    }
+
+    private static final class Entry extends AbstractMap.SimpleEntry<String, Object> {
+
+        private static final long serialVersionUID = 1L;
+        private final transient PropertyMap map;
+
+        Entry(PropertyMap map, String key, Object value) {
+            super(key, value);
+            this.map = map;
+        }
+
+        @Override
+        public Object setValue(Object value) {
+            if (map != null) {
+                map.put(getKey(), value);
+            }
+            return super.setValue(value);
+        }
+    }
+
+    /**
+     * The keys of a map, the kind of each value, and where each is stored.
+     * Shapes are immutable and shared, linked by the transitions made by
+     * adding a key of some kind; to bound the memory they use, a shape only
+     * remembers a limited number of transitions, and large shapes none -
+     * further ones are created per record. The tree of shapes reachable
+     * from the root is also limited in size: once it is full it stops
+     * growing, and maps created after that start from a new, empty root, so
+     * a long-running reader seeing ever more key orders or value kinds does
+     * not accumulate shapes - the old tree is collected once no record uses
+     * it.
+     */
+    static final class Shape {
+
+        private static final int MAX_TRANSITIONS = 64;
+        private static final int MAX_SHARED_KEYS = 128;
+        private static final int MAX_SHARED_SHAPES = 8192;
+        private static final int LINEAR_SEARCH_MAX = 8;
+        private static volatile Shape root = new Shape();
+        private final String[] keys;
+        private final byte[] kinds;
+        private final int[] slots;
+        private final int objectCount;
+        private final Map<String, Integer> index;
+        private final Map<String, Shape[]> transitions = new ConcurrentHashMap<>();
+        // The number of shapes shared in the tree this shape belongs to
+        private final AtomicInteger shared;
+
+        private Shape() {
+            shared = new AtomicInteger();
+            keys = new String[0];
+            kinds = new byte[0];
+            slots = new int[0];
+            objectCount = 0;
+            index = null;
+        }
+
+        private Shape(Shape parent, String key, byte kind) {
+            shared = parent.shared;
+            int size = parent.keys.length;
+            keys = Arrays.copyOf(parent.keys, size + 1);
+            keys[size] = key;
+            kinds = Arrays.copyOf(parent.kinds, size + 1);
+            kinds[size] = kind;
+            slots = Arrays.copyOf(parent.slots, size + 1);
+            slots[size] = kind == OBJECT ? parent.objectCount : size - parent.objectCount;
+            objectCount = parent.objectCount + (kind == OBJECT ? 1 : 0);
+            if (keys.length > LINEAR_SEARCH_MAX) {
+                index = new HashMap<>(keys.length * 2);
+                for (int i = 0; i < keys.length; i++) {
+                    index.put(keys[i], i);
+                }
+            } else {
+                index = null;
+            }
+        }
+
+        static Shape root() {
+            return root;
+        }
+
+        int size() {
+            return keys.length;
+        }
+
+        int indexOf(Object key) {
+            if (index != null) {
+                Integer result = index.get(key);
+                return result == null ? -1 : result;
+            }
+            for (int i = 0; i < keys.length; i++) {
+                // Keys are usually deduplicated, so identity usually hits
+                if (keys[i] == key || keys[i].equals(key)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        Shape with(String key, byte kind) {
+            Shape[] byKind = transitions.get(key);
+            Shape result = byKind == null ? null : byKind[kind];
+            if (result == null) {
+                result = new Shape(this, key, kind);
+                if (keys.length < MAX_SHARED_KEYS && (byKind != null || transitions.size() < MAX_TRANSITIONS)
+                        && share()) {
+                    if (byKind == null) {
+                        byKind = new Shape[DOUBLE + 1];
+                        Shape[] existing = transitions.putIfAbsent(key, byKind);
+                        if (existing != null) {
+                            byKind = existing;
+                        }
+                    }
+                    // Shapes are immutable, so a racing write can only
+                    // replace one with an equivalent one
+                    byKind[kind] = result;
+                }
+            }
+            return result;
+        }
+
+        private boolean share() {
+            if (shared.get() < MAX_SHARED_SHAPES && shared.incrementAndGet() <= MAX_SHARED_SHAPES) {
+                return true;
+            }
+            if (root.shared == shared) {
+                // Racing threads may each replace the root; any of the new
+                // ones is as good as another
+                root = new Shape();
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,274 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 Tim Boudreau.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.bunyan.parse;
+
+/**
+ * A mergeable sketch of a distribution of numbers, which answers quantile
+ * queries (such as the 99th percentile) to within a fixed relative error
+ * using a bounded amount of memory however many values are added. Values are
+ * counted in buckets whose bounds grow geometrically, so a value's bucket
+ * identifies it to within the relative accuracy; sketches built over
+ * different parts of the data - on different threads, or from different
+ * files - can be merged and give the same answers as one sketch built over
+ * all of it. If more than a fixed number of buckets would be needed, the
+ * buckets of smallest magnitude are folded together, losing accuracy only
+ * for the lowest quantiles.
+ *
+ * @author Tim Boudreau
+ */
+public final class QuantileSketch {
+
+    /**
+     * The default relative accuracy, 1%.
+     */
+    public static final double DEFAULT_RELATIVE_ACCURACY = 0.01;
+    private static final int MAX_BUCKETS = 2048;
+    private static final double MIN_MAGNITUDE = 1e-9;
+    private final double relativeAccuracy;
+    private final double gamma;
+    private final double logGamma;
+    private final Buckets positive = new Buckets();
+    private final Buckets negative = new Buckets();
+    private long zeros;
+    private long count;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+
+    public QuantileSketch() {
+        this(DEFAULT_RELATIVE_ACCURACY);
+    }
+
+    /**
+     * Create a sketch.
+     *
+     * @param relativeAccuracy The maximum relative error of a quantile, such
+     * as 0.01 for 1%
+     */
+    public QuantileSketch(double relativeAccuracy) {
+        if (!(relativeAccuracy > 0 && relativeAccuracy < 1)) {
+            throw new IllegalArgumentException("Relative accuracy must be "
+                    + "between 0 and 1: " + relativeAccuracy);
+        }
+        this.relativeAccuracy = relativeAccuracy;
+        gamma = (1 + relativeAccuracy) / (1 - relativeAccuracy);
+        logGamma = Math.log(gamma);
+    }
+
+    /**
+     * Add a value. NaN is ignored.
+     *
+     * @param value A value
+     * @return this
+     */
+    public QuantileSketch add(double value) {
+        if (Double.isNaN(value)) {
+            return this;
+        }
+        if (value > MIN_MAGNITUDE) {
+            positive.add(index(value), 1);
+        } else if (value < -MIN_MAGNITUDE) {
+            negative.add(index(-value), 1);
+        } else {
+            zeros++;
+        }
+        count++;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+        return this;
+    }
+
+    /**
+     * Add all of the values counted by another sketch, which must have the
+     * same relative accuracy, to this one.
+     *
+     * @param other Another sketch
+     * @return this
+     */
+    public QuantileSketch merge(QuantileSketch other) {
+        if (other.relativeAccuracy != relativeAccuracy) {
+            throw new IllegalArgumentException("Cannot merge a sketch with "
+                    + "relative accuracy " + other.relativeAccuracy + " into one with "
+                    + relativeAccuracy);
+        }
+        positive.merge(other.positive);
+        negative.merge(other.negative);
+        zeros += other.zeros;
+        count += other.count;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+        return this;
+    }
+
+    /**
+     * Get the number of values added.
+     *
+     * @return The count
+     */
+    public long count() {
+        return count;
+    }
+
+    /**
+     * Get the smallest value added, or NaN if none.
+     *
+     * @return The minimum
+     */
+    public double min() {
+        return count == 0 ? Double.NaN : min;
+    }
+
+    /**
+     * Get the largest value added, or NaN if none.
+     *
+     * @return The maximum
+     */
+    public double max() {
+        return count == 0 ? Double.NaN : max;
+    }
+
+    /**
+     * Get an approximation of the value at a quantile.
+     *
+     * @param quantile The quantile, from 0 to 1 - e.g. 0.99 for the 99th
+     * percentile
+     * @return The value, or NaN if nothing has been added
+     */
+    public double quantile(double quantile) {
+        if (quantile < 0 || quantile > 1) {
+            throw new IllegalArgumentException("Quantile out of range: " + quantile);
+        }
+        if (count == 0) {
+            return Double.NaN;
+        }
+        double rank = quantile * (count - 1);
+        long seen = 0;
+        if (negative.counts != null) {
+            // Most negative first, i.e. highest magnitude first
+            for (int i = negative.counts.length - 1; i >= 0; i--) {
+                seen += negative.counts[i];
+                if (seen > rank) {
+                    return clamp(-value(negative.offset + i));
+                }
+            }
+        }
+        seen += zeros;
+        if (seen > rank) {
+            return clamp(0);
+        }
+        if (positive.counts != null) {
+            for (int i = 0; i < positive.counts.length; i++) {
+                seen += positive.counts[i];
+                if (seen > rank) {
+                    return clamp(value(positive.offset + i));
+                }
+            }
+        }
+        return max;
+    }
+
+    private double clamp(double value) {
+        return Math.max(min, Math.min(max, value));
+    }
+
+    private int index(double magnitude) {
+        return (int) Math.ceil(Math.log(magnitude) / logGamma);
+    }
+
+    private double value(int index) {
+        // The midpoint, relative to the bounds, of the bucket
+        return 2 * Math.pow(gamma, index) / (gamma + 1);
+    }
+
+    @Override
+    public String toString() {
+        return "QuantileSketch(" + count + " values, min=" + min()
+                + ", p50=" + quantile(0.5) + ", p99=" + quantile(0.99)
+                + ", max=" + max() + ")";
+    }
+
+    /**
+     * Counts by bucket index, stored in an array starting at an offset which
+     * grows to cover the indices seen.
+     */
+    private static final class Buckets {
+
+        private static final int INITIAL_SIZE = 64;
+        private long[] counts;
+        private int offset;
+
+        void add(int index, long n) {
+            if (counts == null) {
+                counts = new long[INITIAL_SIZE];
+                offset = index - INITIAL_SIZE / 2;
+            } else if (index < offset || index >= offset + counts.length) {
+                index = grow(index);
+            }
+            counts[index - offset] += n;
+        }
+
+        private int grow(int index) {
+            // Size the new array by the buckets in use, not the old array,
+            // so slack left on one side can move to the other
+            int low = index;
+            int high = index + 1;
+            for (int i = 0; i < counts.length; i++) {
+                if (counts[i] != 0) {
+                    low = Math.min(low, offset + i);
+                    high = Math.max(high, offset + i + 1);
+                }
+            }
+            int needed = high - low;
+            int length;
+            int newOffset;
+            if (needed > MAX_BUCKETS) {
+                length = MAX_BUCKETS;
+                newOffset = high - MAX_BUCKETS;
+            } else {
+                length = Math.min(MAX_BUCKETS, Math.max(needed, counts.length * 2));
+                newOffset = index < offset ? high - length : low;
+            }
+            long[] newCounts = new long[length];
+            for (int i = 0; i < counts.length; i++) {
+                if (counts[i] != 0) {
+                    // Indices below the new range fold into its lowest bucket
+                    newCounts[Math.max(offset + i, newOffset) - newOffset] += counts[i];
+                }
+            }
+            counts = newCounts;
+            offset = newOffset;
+            return Math.max(index, newOffset);
+        }
+
+        void merge(Buckets other) {
+            if (other.counts == null) {
+                return;
+            }
+            for (int i = 0; i < other.counts.length; i++) {
+                if (other.counts[i] != 0) {
+                    add(other.offset + i, other.counts[i]);
+                }
+            }
+        }
+    }
+}
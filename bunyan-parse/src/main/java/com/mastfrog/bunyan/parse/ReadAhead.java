@@ -0,0 +1,253 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 Tim Boudreau.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.bunyan.parse;
+
+import com.mastfrog.util.preconditions.Exceptions;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Reads and parses records from a stream on a background thread, ahead of
+ * the consumer, in batches, holding at most a fixed number of bytes of
+ * (line-length-weighted) records at any time, so the producer blocks if the
+ * consumer falls behind.
+ *
+ * @author Tim Boudreau
+ */
+final class ReadAhead implements Iterator<LogRecord>, AutoCloseable {
+
+    private static final int BATCH_RECORDS = 256;
+    // Rough allowance for the objects of a parsed record, beyond its bytes
+    private static final int RECORD_OVERHEAD = 128;
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+    private static final Object END = new Object();
+    private final BlockingQueue<Object> queue = new LinkedBlockingQueue<>();
+    private final Semaphore budget;
+    private final int budgetBytes;
+    private final Source source;
+    private final LineSpliterator.LineHandler<LogRecord> handler;
+    private volatile boolean closed;
+    private Future<?> future;
+    private Iterator<LogRecord> batch = Collections.emptyIterator();
+    private int batchCost;
+    private boolean done;
+
+    ReadAhead(Source source, LineSpliterator.LineHandler<LogRecord> handler, int budgetBytes) {
+        this.source = source;
+        this.handler = handler;
+        this.budgetBytes = budgetBytes;
+        this.budget = new Semaphore(budgetBytes);
+    }
+
+    /**
+     * Opens the input to read.
+     */
+    interface Source {
+
+        InputStream open() throws IOException;
+    }
+
+    /**
+     * Receives each item from readLines().
+     */
+    interface LineSink<T> {
+
+        /**
+         * Accept an item.
+         *
+         * @param item The item
+         * @param lineLength The length of the line it was parsed from
+         * @return false to stop reading
+         */
+        boolean accept(T item, int lineLength) throws IOException;
+    }
+
+    ReadAhead start(ExecutorService executor) {
+        future = executor.submit(this::produce);
+        return this;
+    }
+
+    private void produce() {
+        try (InputStream in = source.open()) {
+            List<LogRecord> records = new ArrayList<>(BATCH_RECORDS);
+            int[] cost = new int[1];
+            boolean completed = readLines(in, handler, (LogRecord record, int lineLength) -> {
+                records.add(record);
+                cost[0] = Math.min(budgetBytes, cost[0] + lineLength + RECORD_OVERHEAD);
+                if (records.size() == BATCH_RECORDS || cost[0] >= budgetBytes / 4) {
+                    if (!offer(new ArrayList<>(records), cost[0])) {
+                        return false;
+                    }
+                    records.clear();
+                    cost[0] = 0;
+                }
+                return true;
+            });
+            if (completed && !records.isEmpty()) {
+                offer(records, cost[0]);
+            }
+        } catch (Throwable ex) {
+            queue.add(ex);
+        } finally {
+            queue.add(END);
+        }
+    }
+
+    private boolean offer(List<LogRecord> records, int cost) {
+        try {
+            budget.acquire(cost);
+        } catch (InterruptedException ex) {
+            return false;
+        }
+        if (closed) {
+            budget.release(cost);
+            return false;
+        }
+        queue.add(new Batch(records, cost));
+        return true;
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (!batch.hasNext()) {
+            budget.release(batchCost);
+            batchCost = 0;
+            if (done) {
+                return false;
+            }
+            Object next;
+            try {
+                next = queue.take();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return Exceptions.chuck(ex);
+            }
+            if (next == END) {
+                done = true;
+            } else if (next instanceof Throwable) {
+                done = true;
+                return Exceptions.chuck((Throwable) next);
+            } else {
+                Batch b = (Batch) next;
+                batch = b.records.iterator();
+                batchCost = b.cost;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public LogRecord next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return batch.next();
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        done = true;
+        batch = Collections.emptyIterator();
+        if (future != null) {
+            future.cancel(true);
+        }
+        // Unblock the producer if it is waiting for budget
+        budget.release(budgetBytes);
+    }
+
+    /**
+     * Split an input stream into lines, passing each to the handler and
+     * whatever it returns (if non-null) to the sink.
+     *
+     * @return true if the end of the stream was reached, false if the sink
+     * stopped reading
+     */
+    static <T> boolean readLines(InputStream in, LineSpliterator.LineHandler<T> handler, LineSink<? super T> sink) throws IOException {
+        byte[] buf = new byte[READ_BUFFER_SIZE];
+        ByteBuffer wrapped = ByteBuffer.wrap(buf);
+        int length = 0;
+        for (;;) {
+            int read = in.read(buf, length, buf.length - length);
+            if (read < 0) {
+                // Last line, with no trailing newline
+                return length == 0 || handleLine(wrapped, 0, length, handler, sink);
+            }
+            length += read;
+            int lineStart = 0;
+            int newline;
+            while ((newline = LineSpliterator.indexOfNewline(wrapped, lineStart, length)) >= 0) {
+                if (!handleLine(wrapped, lineStart, newline, handler, sink)) {
+                    return false;
+                }
+                lineStart = newline + 1;
+            }
+            if (lineStart == 0 && length == buf.length) {
+                // A line longer than the buffer
+                buf = Arrays.copyOf(buf, buf.length * 2);
+                wrapped = ByteBuffer.wrap(buf);
+            } else if (lineStart > 0) {
+                System.arraycopy(buf, lineStart, buf, 0, length - lineStart);
+                length -= lineStart;
+            }
+        }
+    }
+
+    private static <T> boolean handleLine(ByteBuffer buf, int start, int end, LineSpliterator.LineHandler<T> handler, LineSink<? super T> sink) throws IOException {
+        int lineLength = end - start;
+        if (end > start && buf.get(end - 1) == '\r') {
+            end--;
+        }
+        if (end > start) {
+            T item = handler.handle(buf, start, end);
+            if (item != null) {
+                return sink.accept(item, lineLength);
+            }
+        }
+        return true;
+    }
+
+    private static final class Batch {
+
+        final List<LogRecord> records;
+        final int cost;
+
+        Batch(List<LogRecord> records, int cost) {
+            this.records = records;
+            this.cost = cost;
+        }
+    }
+}
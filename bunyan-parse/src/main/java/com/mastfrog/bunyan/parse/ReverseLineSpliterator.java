@@ -0,0 +1,166 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 Tim Boudreau.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.bunyan.parse;
+
+import com.mastfrog.util.preconditions.Exceptions;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Spliterator;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+/**
+ * Spliterator over the lines in a range of a file from last to first. The
+ * file is read backwards in chunks whose starts are aligned to multiples of
+ * the chunk size, and each chunk is scanned backwards for newlines; a line
+ * which spans chunks is carried into the next read, which is enlarged if a
+ * single line is longer than a chunk. Reading stops as soon as the passed
+ * supplier reports that nothing more can be accepted, so a search for the
+ * newest few records reads only as far back as it needs to. Does not
+ * split.
+ *
+ * @author Tim Boudreau
+ */
+final class ReverseLineSpliterator<T> implements Spliterator<T> {
+
+    private static final int AVERAGE_LINE_LENGTH = 256;
+    private final FileChannel channel;
+    private final LineSpliterator.LineHandler<? extends T> handler;
+    private final BooleanSupplier exhausted;
+    private final int chunkSize;
+    private final long start;
+    // Exclusive end of the bytes not yet handled
+    private long end;
+    private ByteBuffer chunk;
+    private long chunkOffset;
+
+    ReverseLineSpliterator(FileChannel channel, LineSpliterator.LineHandler<? extends T> handler,
+            BooleanSupplier exhausted, int chunkSize, long start, long end) {
+        this.channel = channel;
+        this.handler = handler;
+        this.exhausted = exhausted;
+        this.chunkSize = chunkSize;
+        this.start = start;
+        this.end = end;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super T> action) {
+        try {
+            for (;;) {
+                if (end <= start || (exhausted != null && exhausted.getAsBoolean())) {
+                    return false;
+                }
+                if (chunk == null || end <= chunkOffset) {
+                    // Re-check, since the file may have been truncated
+                    fill(chunkSize);
+                    continue;
+                }
+                int lineEnd = (int) (end - chunkOffset);
+                // The newline ending this line belongs to it
+                int searchFrom = lineEnd;
+                if (chunk.get(lineEnd - 1) == '\n') {
+                    lineEnd--;
+                    searchFrom--;
+                }
+                int newline = lastIndexOfNewline(chunk, searchFrom);
+                int lineStart;
+                if (newline >= 0) {
+                    lineStart = newline + 1;
+                    end = chunkOffset + lineStart;
+                } else if (chunkOffset <= start) {
+                    // First line of the range
+                    lineStart = 0;
+                    end = start;
+                } else {
+                    // The line starts before this chunk; re-read further
+                    // back, with a larger chunk if it fills this one
+                    fill((int) Math.max(chunkSize, Math.min(Integer.MAX_VALUE / 2, (end - chunkOffset) * 2)));
+                    continue;
+                }
+                if (lineEnd > lineStart && chunk.get(lineEnd - 1) == '\r') {
+                    lineEnd--;
+                }
+                if (lineEnd > lineStart) {
+                    T obj = handler.handle(chunk, lineStart, lineEnd);
+                    if (obj != null) {
+                        action.accept(obj);
+                        return true;
+                    }
+                }
+            }
+        } catch (IOException ex) {
+            return Exceptions.chuck(ex);
+        }
+    }
+
+    /**
+     * Read at least <code>size</code> bytes ending at <code>end</code>,
+     * starting at a multiple of the chunk size.
+     */
+    private void fill(int size) throws IOException {
+        long from = Math.max(start, Math.floorDiv(end - size, (long) chunkSize) * chunkSize);
+        int len = (int) (end - from);
+        if (chunk == null || chunk.capacity() < len) {
+            chunk = ByteBuffer.allocate(Math.max(len, chunkSize));
+        }
+        chunk.clear();
+        chunk.limit(len);
+        while (chunk.hasRemaining()) {
+            if (channel.read(chunk, from + chunk.position()) < 0) {
+                // Truncated since we started; what is left is gone
+                end = start;
+                chunk = null;
+                return;
+            }
+        }
+        chunk.flip();
+        chunkOffset = from;
+    }
+
+    private static int lastIndexOfNewline(ByteBuffer buf, int before) {
+        for (int i = before - 1; i >= 0; i--) {
+            if (buf.get(i) == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public Spliterator<T> trySplit() {
+        return null;
+    }
+
+    @Override
+    public long estimateSize() {
+        return Math.max(0, (end - start) / AVERAGE_LINE_LENGTH);
+    }
+
+    @Override
+    public int characteristics() {
+        return NONNULL | ORDERED;
+    }
+}
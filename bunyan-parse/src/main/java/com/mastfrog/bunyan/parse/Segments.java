@@ -0,0 +1,244 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 Tim Boudreau.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.bunyan.parse;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.ZonedDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Reads a set of log segments - such as a log file and its rotated,
+ * possibly gzipped predecessors - as a single stream in time order,
+ * decompressing and parsing several segments ahead of the consumer in
+ * parallel within a fixed memory budget.
+ *
+ * @author Tim Boudreau
+ */
+final class Segments {
+
+    /**
+     * The default number of bytes of parsed records held ahead of the
+     * consumer, across all segments being read.
+     */
+    static final int DEFAULT_MEMORY_BUDGET = 64 * 1024 * 1024;
+    static final int DEFAULT_PARALLELISM = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()));
+    /**
+     * Suffixes of the files LogIndex, MessageIndex and LogFollower write
+     * next to a log, which are never log segments themselves.
+     */
+    static final String INDEX_SUFFIX = ".idx";
+    static final String MESSAGE_INDEX_SUFFIX = ".msgidx";
+    static final String MERGE_SUFFIX = ".merge";
+    static final String TEMP_SUFFIX = ".tmp";
+    static final String CHECKPOINT_SUFFIX = ".checkpoint";
+    private static final String[] SIDECAR_SUFFIXES = {INDEX_SUFFIX, MESSAGE_INDEX_SUFFIX,
+        MERGE_SUFFIX, TEMP_SUFFIX, CHECKPOINT_SUFFIX};
+    private static final int GZIP_BUFFER_SIZE = 64 * 1024;
+    private static final AtomicInteger THREAD_IDS = new AtomicInteger();
+
+    private Segments() {
+        throw new AssertionError();
+    }
+
+    /**
+     * Determine if a file starts with the gzip magic number.
+     */
+    static boolean isGzip(Path path) throws IOException {
+        if (!Files.isRegularFile(path)) {
+            return false;
+        }
+        try (InputStream in = Files.newInputStream(path)) {
+            return in.read() == 0x1f && in.read() == 0x8b;
+        }
+    }
+
+    /**
+     * Open a segment, decompressing it if it is gzipped. GZIPInputStream
+     * reads all members of a multi-member file.
+     */
+    static InputStream open(Path path) throws IOException {
+        InputStream in = new BufferedInputStream(Files.newInputStream(path), GZIP_BUFFER_SIZE);
+        return isGzip(path) ? new GZIPInputStream(in, GZIP_BUFFER_SIZE) : in;
+    }
+
+    /**
+     * Get the sidecar file with the passed suffix for a file.
+     */
+    static Path sidecar(Path file, String suffix) {
+        return file.resolveSibling(file.getFileName() + suffix);
+    }
+
+    static boolean isSidecar(String name) {
+        for (String suffix : SIDECAR_SUFFIXES) {
+            if (name.endsWith(suffix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Find the segments in a directory matching a glob, ignoring hidden
+     * files and the sidecar files written by LogIndex, MessageIndex and
+     * LogFollower.
+     */
+    static List<Path> find(Path dir, String glob) throws IOException {
+        List<Path> result = new ArrayList<>();
+        try (DirectoryStream<Path> paths = Files.newDirectoryStream(dir, glob == null ? "*" : glob)) {
+            for (Path p : paths) {
+                String name = p.getFileName().toString();
+                if (Files.isRegularFile(p) && !name.startsWith(".") && !isSidecar(name)) {
+                    result.add(p);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Sort segments by the time of the first record in each, dropping those
+     * with no records.
+     */
+    static List<Path> inTimeOrder(List<Path> segments, ObjectMapper mapper) throws IOException {
+        ObjectReader timeReader = mapper.readerFor(ZonedDateTime.class);
+        Map<Path, ZonedDateTime> firstTimes = new LinkedHashMap<>();
+        for (Path segment : segments) {
+            ZonedDateTime[] first = new ZonedDateTime[1];
+            try (InputStream in = open(segment)) {
+                ReadAhead.readLines(in, (buf, start, end) -> TimeSeek.timeOf(mapper.getFactory(), timeReader,
+                        buf.array(), buf.arrayOffset() + start, end - start), (ZonedDateTime time, int length) -> {
+                            first[0] = time;
+                            return false;
+                        });
+            }
+            if (first[0] != null) {
+                firstTimes.put(segment, first[0]);
+            }
+        }
+        List<Path> result = new ArrayList<>(firstTimes.keySet());
+        Collections.sort(result, (a, b) -> firstTimes.get(a).compareTo(firstTimes.get(b)));
+        return result;
+    }
+
+    /**
+     * Read segments in order as one stream, with up to
+     * <code>parallelism</code> segments being read at once.
+     */
+    static Stream<LogRecord> stream(List<Path> segments, LineSpliterator.LineHandler<LogRecord> handler,
+            int parallelism, int memoryBudget) {
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism, r -> {
+            Thread t = new Thread(r, "bunyan-read-ahead-" + THREAD_IDS.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        SegmentIterator iter = new SegmentIterator(segments, handler, executor, parallelism,
+                Math.max(1, memoryBudget / parallelism));
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iter,
+                Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(iter::close);
+    }
+
+    private static final class SegmentIterator implements Iterator<LogRecord>, AutoCloseable {
+
+        private final Iterator<Path> pending;
+        private final Deque<ReadAhead> reading = new ArrayDeque<>();
+        private final LineSpliterator.LineHandler<LogRecord> handler;
+        private final ExecutorService executor;
+        private final int parallelism;
+        private final int budgetPerSegment;
+
+        SegmentIterator(List<Path> segments, LineSpliterator.LineHandler<LogRecord> handler,
+                ExecutorService executor, int parallelism, int budgetPerSegment) {
+            this.pending = segments.iterator();
+            this.handler = handler;
+            this.executor = executor;
+            this.parallelism = parallelism;
+            this.budgetPerSegment = budgetPerSegment;
+            fill();
+        }
+
+        private void fill() {
+            // Each segment has its own budget, so the segment at the head,
+            // which the consumer is draining, can never be starved by ones
+            // being read ahead of it
+            while (reading.size() < parallelism && pending.hasNext()) {
+                Path segment = pending.next();
+                reading.add(new ReadAhead(() -> open(segment), handler, budgetPerSegment).start(executor));
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (!reading.isEmpty()) {
+                if (reading.peek().hasNext()) {
+                    return true;
+                }
+                reading.poll().close();
+                fill();
+            }
+            executor.shutdown();
+            return false;
+        }
+
+        @Override
+        public LogRecord next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return reading.peek().next();
+        }
+
+        @Override
+        public void close() {
+            for (ReadAhead ra : reading) {
+                ra.close();
+            }
+            reading.clear();
+            executor.shutdownNow();
+        }
+    }
+}
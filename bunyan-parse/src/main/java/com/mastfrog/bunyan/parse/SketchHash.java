@@ -0,0 +1,72 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 Tim Boudreau.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.bunyan.parse;
+
+/**
+ * The 64-bit hash used by the sketches, which hashes values however they
+ * were decoded - an Integer and a Long of the same value hash the same.
+ *
+ * @author Tim Boudreau
+ */
+final class SketchHash {
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private SketchHash() {
+        throw new AssertionError();
+    }
+
+    static long hash(Object value) {
+        value = Fields.normalize(value);
+        if (value == null) {
+            return mix(0x9e3779b97f4a7c15L);
+        } else if (value instanceof Long) {
+            return mix((Long) value);
+        } else if (value instanceof Double) {
+            return mix(Double.doubleToLongBits((Double) value) ^ 0x5555555555555555L);
+        }
+        CharSequence text = value instanceof CharSequence ? (CharSequence) value : value.toString();
+        long result = FNV_OFFSET;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            result = (result ^ (c & 0xFF)) * FNV_PRIME;
+            result = (result ^ (c >>> 8)) * FNV_PRIME;
+        }
+        return mix(result);
+    }
+
+    /**
+     * The finalizer of MurmurHash3, so that every bit of the input affects
+     * every bit of the output.
+     */
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
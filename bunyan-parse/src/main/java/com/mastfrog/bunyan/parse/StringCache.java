@@ -0,0 +1,123 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 Tim Boudreau.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.bunyan.parse;
+
+/**
+ * Deduplicates strings which recur across many log records, such as logger
+ * names, host names, messages and property values, so that records held in
+ * memory share one copy of each. Unlike <code>String.intern()</code>, an
+ * implementation may bound its size and forget strings - the JVM's string
+ * table grows without limit when every line has a unique message - and
+ * needs no global lock. Implementations must be thread-safe.
+ *
+ * @see LogRecord#setStringCache(StringCache)
+ * @author Tim Boudreau
+ */
+public interface StringCache {
+
+    /**
+     * The default number of strings held by the default cache.
+     */
+    int DEFAULT_CAPACITY = 4096;
+    /**
+     * The default length of the longest string the default cache holds;
+     * longer strings are rarely repeated.
+     */
+    int DEFAULT_MAX_LENGTH = 128;
+
+    /**
+     * Get a string equal to the passed one, which may be an instance
+     * returned earlier.
+     *
+     * @param s A string, or null
+     * @return An equal string, or null
+     */
+    String dedup(String s);
+
+    /**
+     * Get a string with the passed characters, without creating a new one if
+     * an equal string is cached. Used when decoding JSON, to avoid
+     * allocating strings for values seen before.
+     *
+     * @param chars An array of characters
+     * @param offset The offset of the first character
+     * @param length The number of characters
+     * @return A string
+     */
+    default String dedup(char[] chars, int offset, int length) {
+        return dedup(new String(chars, offset, length));
+    }
+
+    /**
+     * Get the number of lookups which found a cached string.
+     *
+     * @return The number of hits
+     */
+    default long hits() {
+        return 0;
+    }
+
+    /**
+     * Get the number of lookups which did not find a cached string.
+     *
+     * @return The number of misses
+     */
+    default long misses() {
+        return 0;
+    }
+
+    /**
+     * Get the fraction of lookups which found a cached string.
+     *
+     * @return The hit rate, from 0 to 1
+     */
+    default double hitRate() {
+        long hits = hits();
+        long total = hits + misses();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    /**
+     * Create a cache which holds at most some number of strings no longer
+     * than some length, replacing older strings with newer ones when two
+     * compete for the same place in it. Lookups do not lock.
+     *
+     * @param capacity The number of strings to hold, which is rounded up to
+     * a power of two
+     * @param maxLength The length of the longest string to cache
+     * @return A cache
+     */
+    static StringCache bounded(int capacity, int maxLength) {
+        return new BoundedStringCache(capacity, maxLength);
+    }
+
+    /**
+     * Get a cache which does no deduplication.
+     *
+     * @return A cache which returns its argument
+     */
+    static StringCache none() {
+        return s -> s;
+    }
+}
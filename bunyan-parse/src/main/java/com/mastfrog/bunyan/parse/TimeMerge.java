@@ -0,0 +1,206 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 Tim Boudreau.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.bunyan.parse;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Merges several log files into one stream in time order, using a heap of
+ * the next record from each source, each of which is read ahead on its own
+ * thread with a bounded buffer.
+ * <p>
+ * Records within a source may be out of order by up to a tolerance - as
+ * happens when a host's clock is stepped backwards by NTP, or concurrent
+ * threads write records slightly out of order - so records are held in a
+ * second heap and only released once no source can still produce an earlier
+ * one: when the record's time is at or before the latest time yet seen from
+ * every unfinished source, less the tolerance. With a tolerance of zero this
+ * is a plain k-way merge.
+ * </p><p>
+ * Sources whose host clock is known to be skewed relative to the others
+ * can be given a clock offset, which is added to the time of each of their
+ * records before it is compared with those of other sources (the records
+ * themselves are not altered).
+ * </p>
+ *
+ * @author Tim Boudreau
+ */
+final class TimeMerge implements Iterator<LogRecord>, AutoCloseable {
+
+    /**
+     * The default number of bytes of parsed records read ahead per source.
+     */
+    static final int DEFAULT_READ_AHEAD_BYTES = 4 * 1024 * 1024;
+    private static final AtomicInteger THREAD_IDS = new AtomicInteger();
+    private final PriorityQueue<Source> heads = new PriorityQueue<>();
+    private final PriorityQueue<Pending> pending = new PriorityQueue<>();
+    private final List<Source> sources = new ArrayList<>();
+    private final Duration tolerance;
+    private final ExecutorService executor;
+    private long sequence;
+
+    TimeMerge(List<Path> paths, Map<Path, Duration> clockOffsets, LineSpliterator.LineHandler<LogRecord> handler,
+            Duration tolerance, int readAheadBytes) {
+        this.tolerance = tolerance;
+        executor = Executors.newFixedThreadPool(Math.max(1, paths.size()), r -> {
+            Thread t = new Thread(r, "bunyan-merge-" + THREAD_IDS.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        for (Path path : paths) {
+            ReadAhead readAhead = new ReadAhead(() -> Segments.open(path), handler, readAheadBytes).start(executor);
+            sources.add(new Source(readAhead, clockOffsets.getOrDefault(path, Duration.ZERO)));
+        }
+        for (Source source : sources) {
+            if (source.advance()) {
+                heads.add(source);
+            }
+        }
+    }
+
+    static Stream<LogRecord> stream(List<Path> paths, Map<Path, Duration> clockOffsets,
+            LineSpliterator.LineHandler<LogRecord> handler, Duration tolerance, int readAheadBytes) {
+        TimeMerge merge = new TimeMerge(paths, clockOffsets, handler, tolerance, readAheadBytes);
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(merge,
+                Spliterator.ORDERED | Spliterator.NONNULL), false).onClose(merge::close);
+    }
+
+    @Override
+    public boolean hasNext() {
+        for (;;) {
+            if (!pending.isEmpty() && (heads.isEmpty() || releasable(pending.peek()))) {
+                return true;
+            }
+            if (heads.isEmpty()) {
+                executor.shutdown();
+                return false;
+            }
+            Source source = heads.poll();
+            pending.add(new Pending(source.head, source.headTime, sequence++));
+            if (source.advance()) {
+                heads.add(source);
+            }
+        }
+    }
+
+    private boolean releasable(Pending p) {
+        for (Source source : heads) {
+            // A source which has only produced records with no time yet may
+            // still produce any time; subtracting from Instant.MIN overflows
+            Instant limit = source.latest.equals(Instant.MIN) ? Instant.MIN
+                    : source.latest.minus(tolerance);
+            if (p.time.isAfter(limit)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public LogRecord next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return pending.poll().record;
+    }
+
+    @Override
+    public void close() {
+        for (Source source : sources) {
+            source.readAhead.close();
+        }
+        heads.clear();
+        pending.clear();
+        executor.shutdownNow();
+    }
+
+    private static final class Source implements Comparable<Source> {
+
+        private final ReadAhead readAhead;
+        private final Duration clockOffset;
+        private LogRecord head;
+        private Instant headTime;
+        private Instant latest = Instant.MIN;
+
+        Source(ReadAhead readAhead, Duration clockOffset) {
+            this.readAhead = readAhead;
+            this.clockOffset = clockOffset;
+        }
+
+        boolean advance() {
+            if (!readAhead.hasNext()) {
+                head = null;
+                return false;
+            }
+            head = readAhead.next();
+            ZonedDateTime time = head.time();
+            // A record with no time stays with the one before it
+            headTime = time == null ? latest : time.toInstant().plus(clockOffset);
+            if (headTime.isAfter(latest)) {
+                latest = headTime;
+            }
+            return true;
+        }
+
+        @Override
+        public int compareTo(Source o) {
+            return headTime.compareTo(o.headTime);
+        }
+    }
+
+    private static final class Pending implements Comparable<Pending> {
+
+        private final LogRecord record;
+        private final Instant time;
+        private final long sequence;
+
+        Pending(LogRecord record, Instant time, long sequence) {
+            this.record = record;
+            this.time = time;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public int compareTo(Pending o) {
+            int result = time.compareTo(o.time);
+            return result != 0 ? result : Long.compare(sequence, o.sequence);
+        }
+    }
+}
@@ -0,0 +1,296 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 Tim Boudreau.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.bunyan.parse;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectReader;
+import java.io.IOException;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+
+/**
+ * Parses times in the fixed ISO-8601 shape bunyan writes -
+ * <code>2026-10-01T12:34:56.789Z</code>, with any number of fractional
+ * digits up to nine (or none), and <code>Z</code> or a numeric offset - far
+ * faster than a DateTimeFormatter. Consecutive log lines nearly always share
+ * everything up to the second and the zone, so the last such prefix is
+ * cached, and the next time with the same prefix only needs its fraction
+ * parsed. Anything in another shape is left to the caller's general-purpose
+ * parser.
+ *
+ * @author Tim Boudreau
+ */
+final class TimeParser {
+
+    /**
+     * Returned by epochMillis() for text that is not in the fixed shape.
+     */
+    static final long NO_TIME = Long.MIN_VALUE;
+    private static final int PREFIX_LENGTH = 19;
+    private static final int[] SCALE = {1, 10, 100, 1000, 10000, 100000,
+        1000000, 10000000, 100000000, 1000000000};
+    // Immutable, so safe to share between threads through a race
+    private static Prefix last;
+
+    private TimeParser() {
+        throw new AssertionError();
+    }
+
+    /**
+     * Parse a time.
+     *
+     * @param text The text
+     * @return The time - for any text ZonedDateTime.parse() accepts, one
+     * equal to what it returns - or null if the text is not in the fixed
+     * shape
+     */
+    static ZonedDateTime parse(CharSequence text) {
+        char[] chars = new char[text.length()];
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = text.charAt(i);
+        }
+        return parse(chars, 0, chars.length);
+    }
+
+    static ZonedDateTime parse(char[] chars, int offset, int length) {
+        int zoneStart = fractionEnd(chars, offset, length);
+        if (zoneStart < 0) {
+            return null;
+        }
+        Prefix prefix = prefix(chars, offset, zoneStart, offset + length);
+        if (prefix == null) {
+            return null;
+        }
+        int nanos = nanos(chars, offset + PREFIX_LENGTH, zoneStart);
+        return ZonedDateTime.of(prefix.date, LocalTime.of(prefix.hour, prefix.minute,
+                prefix.second, nanos), prefix.offset);
+    }
+
+    /**
+     * Parse a time as milliseconds since the epoch, without creating a
+     * ZonedDateTime.
+     *
+     * @return The time, or NO_TIME if the text is not in the fixed shape
+     */
+    static long epochMillis(char[] chars, int offset, int length) {
+        int zoneStart = fractionEnd(chars, offset, length);
+        if (zoneStart < 0) {
+            return NO_TIME;
+        }
+        Prefix prefix = prefix(chars, offset, zoneStart, offset + length);
+        if (prefix == null) {
+            return NO_TIME;
+        }
+        return prefix.epochSecond * 1000 + nanos(chars, offset + PREFIX_LENGTH, zoneStart) / 1000000;
+    }
+
+    /**
+     * Read a time from the current token of a parser, falling back to a
+     * reader configured by the caller's ObjectMapper for numeric times and
+     * other shapes. The zone of the result may differ from the one the
+     * mapper would produce, so this is only for comparing times, never for
+     * the time of a record.
+     */
+    static ZonedDateTime read(JsonParser parser, ObjectReader fallback) throws IOException {
+        if (parser.currentToken() == JsonToken.VALUE_STRING) {
+            ZonedDateTime result = parse(parser.getTextCharacters(), parser.getTextOffset(),
+                    parser.getTextLength());
+            if (result != null) {
+                return result;
+            }
+        }
+        return fallback.readValue(parser);
+    }
+
+    /**
+     * Get the index of the start of the zone, after any fraction of a
+     * second, or -1 if the text is too short or the fraction malformed.
+     */
+    private static int fractionEnd(char[] chars, int offset, int length) {
+        if (length <= PREFIX_LENGTH) {
+            return -1;
+        }
+        int end = offset + length;
+        int result = offset + PREFIX_LENGTH;
+        if (chars[result] == '.') {
+            int digitsStart = ++result;
+            while (result < end && isDigit(chars[result])) {
+                result++;
+            }
+            int digits = result - digitsStart;
+            if (digits == 0 || digits > 9) {
+                return -1;
+            }
+        }
+        return result < end ? result : -1;
+    }
+
+    private static int nanos(char[] chars, int from, int zoneStart) {
+        if (from == zoneStart) {
+            return 0;
+        }
+        int result = 0;
+        for (int i = from + 1; i < zoneStart; i++) {
+            result = result * 10 + (chars[i] - '0');
+        }
+        return result * SCALE[9 - (zoneStart - from - 1)];
+    }
+
+    private static Prefix prefix(char[] chars, int offset, int zoneStart, int end) {
+        Prefix prefix = last;
+        if (prefix != null && prefix.matches(chars, offset, zoneStart, end)) {
+            return prefix;
+        }
+        prefix = Prefix.create(chars, offset, zoneStart, end);
+        if (prefix != null) {
+            last = prefix;
+        }
+        return prefix;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static int digits(char[] chars, int at, int count) {
+        int result = 0;
+        for (int i = at; i < at + count; i++) {
+            char c = chars[i];
+            if (!isDigit(c)) {
+                return -1;
+            }
+            result = result * 10 + (c - '0');
+        }
+        return result;
+    }
+
+    /**
+     * The date and time to the second, and the zone, of a time.
+     */
+    private static final class Prefix {
+
+        private final char[] text;
+        private final char[] zone;
+        private final LocalDate date;
+        private final int hour;
+        private final int minute;
+        private final int second;
+        private final ZoneOffset offset;
+        private final long epochSecond;
+
+        Prefix(char[] text, char[] zone, LocalDate date, int hour, int minute, int second, ZoneOffset offset) {
+            this.text = text;
+            this.zone = zone;
+            this.date = date;
+            this.hour = hour;
+            this.minute = minute;
+            this.second = second;
+            this.offset = offset;
+            this.epochSecond = LocalDateTime.of(date, LocalTime.of(hour, minute, second))
+                    .toEpochSecond(offset);
+        }
+
+        boolean matches(char[] chars, int offset, int zoneStart, int end) {
+            if (end - zoneStart != zone.length) {
+                return false;
+            }
+            // Compare back to front - the seconds differ most often
+            for (int i = PREFIX_LENGTH - 1; i >= 0; i--) {
+                if (chars[offset + i] != text[i]) {
+                    return false;
+                }
+            }
+            for (int i = 0; i < zone.length; i++) {
+                if (chars[zoneStart + i] != zone[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        static Prefix create(char[] c, int at, int zoneStart, int end) {
+            if (c[at + 4] != '-' || c[at + 7] != '-' || c[at + 10] != 'T'
+                    || c[at + 13] != ':' || c[at + 16] != ':') {
+                return null;
+            }
+            int year = digits(c, at, 4);
+            int month = digits(c, at + 5, 2);
+            int day = digits(c, at + 8, 2);
+            int hour = digits(c, at + 11, 2);
+            int minute = digits(c, at + 14, 2);
+            int second = digits(c, at + 17, 2);
+            if (year < 0 || month < 0 || day < 0 || hour < 0 || minute < 0 || second < 0) {
+                return null;
+            }
+            ZoneOffset offset = zone(c, zoneStart, end);
+            if (offset == null) {
+                return null;
+            }
+            char[] text = new char[PREFIX_LENGTH];
+            System.arraycopy(c, at, text, 0, PREFIX_LENGTH);
+            char[] zone = new char[end - zoneStart];
+            System.arraycopy(c, zoneStart, zone, 0, zone.length);
+            try {
+                return new Prefix(text, zone, LocalDate.of(year, month, day), hour, minute, second, offset);
+            } catch (DateTimeException ex) {
+                return null;
+            }
+        }
+
+        private static ZoneOffset zone(char[] c, int start, int end) {
+            int length = end - start;
+            if (length == 1) {
+                return c[start] == 'Z' ? ZoneOffset.UTC : null;
+            }
+            int sign = c[start] == '+' ? 1 : c[start] == '-' ? -1 : 0;
+            if (sign == 0) {
+                return null;
+            }
+            int hours = length >= 3 ? digits(c, start + 1, 2) : -1;
+            int minutes;
+            if (length == 3) {
+                minutes = 0;
+            } else if (length == 5) {
+                minutes = digits(c, start + 3, 2);
+            } else if (length == 6 && c[start + 3] == ':') {
+                minutes = digits(c, start + 4, 2);
+            } else {
+                return null;
+            }
+            if (hours < 0 || minutes < 0) {
+                return null;
+            }
+            try {
+                return ZoneOffset.ofHoursMinutes(sign * hours, sign * minutes);
+            } catch (DateTimeException ex) {
+                return null;
+            }
+        }
+    }
+}
@@ -0,0 +1,167 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 Tim Boudreau.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.bunyan.parse;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.time.ZonedDateTime;
+
+/**
+ * Finds byte offsets in a nearly time-ordered log file by binary search,
+ * resynchronizing to the next line start after each probe and reading only
+ * the <code>time</code> field of the first line there that has one.
+ *
+ * @author Tim Boudreau
+ */
+final class TimeSeek {
+
+    private static final int PROBE_BUFFER_SIZE = 4096;
+    private final FileChannel channel;
+    private final JsonFactory factory;
+    private final ObjectReader timeReader;
+    private final long size;
+    private ByteBuffer buf = ByteBuffer.allocate(PROBE_BUFFER_SIZE);
+
+    TimeSeek(FileChannel channel, ObjectMapper mapper) throws IOException {
+        this.channel = channel;
+        this.factory = mapper.getFactory();
+        this.timeReader = mapper.readerFor(ZonedDateTime.class);
+        this.size = channel.size();
+    }
+
+    /**
+     * Find the offset of a line start such that, if the file is in time
+     * order, every line before it has a time before the target and every
+     * line after it has one at or after it.
+     *
+     * @param target The target time
+     * @return An offset between 0 and the file size
+     * @throws IOException If something goes wrong
+     */
+    long offsetOf(ZonedDateTime target) throws IOException {
+        // Invariant: lines starting before lo are before the target; the
+        // first timed line starting at or after hi is not
+        long lo = 0;
+        long hi = size;
+        while (lo < hi) {
+            long mid = (lo + hi) >>> 1;
+            long lineStart = lineStartAtOrAfter(mid);
+            ZonedDateTime time = null;
+            long nextLine = lineStart;
+            while (nextLine < hi && time == null) {
+                lineStart = nextLine;
+                nextLine = readLine(lineStart);
+                time = timeOfLine();
+            }
+            if (time == null || !time.isBefore(target)) {
+                hi = mid;
+            } else {
+                lo = nextLine;
+            }
+        }
+        return lineStartAtOrAfter(hi);
+    }
+
+    private long lineStartAtOrAfter(long pos) throws IOException {
+        if (pos <= 0) {
+            return 0;
+        }
+        long at = pos - 1;
+        while (at < size) {
+            buf.clear();
+            int read = channel.read(buf, at);
+            if (read <= 0) {
+                break;
+            }
+            int ix = LineSpliterator.indexOfNewline(buf, 0, read);
+            if (ix >= 0) {
+                return at + ix + 1;
+            }
+            at += read;
+        }
+        return size;
+    }
+
+    /**
+     * Read the line starting at the passed offset into the buffer, growing
+     * it if needed, returning the offset of the next line.
+     */
+    private long readLine(long lineStart) throws IOException {
+        buf.clear();
+        for (;;) {
+            int read = channel.read(buf, lineStart + buf.position());
+            int ix = LineSpliterator.indexOfNewline(buf, 0, buf.position());
+            if (ix >= 0) {
+                buf.limit(ix);
+                return lineStart + ix + 1;
+            }
+            if (read < 0 || lineStart + buf.position() >= size) {
+                buf.flip();
+                return size;
+            }
+            if (!buf.hasRemaining()) {
+                ByteBuffer nue = ByteBuffer.allocate(buf.capacity() * 2);
+                buf.flip();
+                nue.put(buf);
+                buf = nue;
+            }
+        }
+    }
+
+    private ZonedDateTime timeOfLine() {
+        return timeOf(factory, timeReader, buf.array(), buf.arrayOffset(), buf.limit());
+    }
+
+    /**
+     * Read only the time field of a line.
+     *
+     * @return A time, or null if the line is not JSON or has no time
+     */
+    static ZonedDateTime timeOf(JsonFactory factory, ObjectReader timeReader, byte[] bytes, int offset, int length) {
+        if (length == 0 || bytes[offset] != '{') {
+            return null;
+        }
+        try (JsonParser parser = factory.createParser(bytes, offset, length)) {
+            parser.nextToken();
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.getCurrentName();
+                JsonToken tok = parser.nextToken();
+                if ("time".equals(name)) {
+                    return tok == JsonToken.VALUE_NULL ? null : TimeParser.read(parser, timeReader);
+                }
+                parser.skipChildren();
+            }
+        } catch (IOException ex) {
+            // Not a parseable log line; skip it
+            return null;
+        }
+        return null;
+    }
+}
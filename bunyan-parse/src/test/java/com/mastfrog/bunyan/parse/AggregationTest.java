@@ -0,0 +1,369 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 Tim Boudreau.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.bunyan.parse;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.Test;
+
+/**
+ *
+ * @author Tim Boudreau
+ */
+public class AggregationTest {
+
+    @Test
+    public void testGroupAndBucket() throws IOException {
+        Path file = TestLogs.write(1000);
+        try {
+            LogStreamFactory f = new LogStreamFactory(file, TestLogs.mapper());
+            Aggregation byStatus = Aggregation.builder().groupBy("status")
+                    .sum("id").min("id").max("id").percentiles("id").build();
+            Aggregation.Result result = f.aggregate(null, byStatus);
+            assertEquals(2, result.groups().size());
+            Aggregation.Metrics errors = result.get(500);
+            assertEquals(100L, errors.count());
+            assertEquals(49500D, errors.sum("id"), 0);
+            assertEquals(0D, errors.min("id"), 0);
+            assertEquals(990D, errors.max("id"), 0);
+            assertEquals(495D, errors.mean("id"), 0);
+            Aggregation.Metrics ok = result.get(200);
+            assertEquals(900L, ok.count());
+            assertEquals(499500D - 49500D, ok.sum("id"), 0);
+            double median = ok.percentile("id", 0.5);
+            assertTrue("Bad median " + median, Math.abs(median - 500) <= 500 * 0.02);
+            assertNull(result.get(404));
+
+            // Only the statistics asked for are computed
+            Aggregation sumOnly = Aggregation.builder().groupBy("status").sum("id").min("level").build();
+            Aggregation.Metrics sums = f.aggregate(null, sumOnly).get(500);
+            assertEquals(49500D, sums.sum("id"), 0);
+            assertEquals(100L, sums.count("id"));
+            assertNotComputed(() -> sums.min("id"));
+            assertNotComputed(() -> sums.max("id"));
+            assertNotComputed(() -> sums.percentile("id", 0.5));
+            assertNotComputed(() -> sums.sum("level"));
+            assertNotComputed(() -> sums.mean("level"));
+            assertEquals(30D, sums.min("level"), 0);
+
+            // Parallel and sequential aggregation agree
+            try (Stream<LogRecord> s = f.stream(null)) {
+                Aggregation.Result sequential = byStatus.apply(s);
+                assertEquals(result.groups().keySet(), sequential.groups().keySet());
+                assertEquals(result.get(200).percentile("id", 0.99),
+                        sequential.get(200).percentile("id", 0.99), 0);
+            }
+
+            // Buckets are a minute long and ordered by time, then key
+            Aggregation perMinute = Aggregation.builder().groupBy("name", "level")
+                    .bucket(Duration.ofMinutes(1)).build();
+            Map<Aggregation.Group, Aggregation.Metrics> groups
+                    = f.aggregate(LogFilter.levelMatches(40), perMinute).groups();
+            List<Aggregation.Group> keys = new ArrayList<>(groups.keySet());
+            assertEquals(TestLogs.START, keys.get(0).bucket());
+            assertEquals("thing0", keys.get(0).key("name"));
+            assertEquals(40L, keys.get(0).key("level"));
+            assertEquals(TestLogs.START.plusMinutes(16), keys.get(keys.size() - 1).bucket());
+            long total = 0;
+            for (Map.Entry<Aggregation.Group, Aggregation.Metrics> e : groups.entrySet()) {
+                total += e.getValue().count();
+                if (e.getKey().bucket().equals(TestLogs.START)) {
+                    assertEquals(10L, e.getValue().count());
+                }
+            }
+            assertEquals(500L, total);
+
+            // Nested fields by dotted path
+            Aggregation byPath = Aggregation.builder().groupBy("req.path").build();
+            try (Stream<LogRecord> s = f.stream(LogFilter.propertyEquals("id", 7))) {
+                assertEquals(1L, byPath.apply(s).get("/api/7").count());
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    public void testMergeLeavesOtherResultsAlone() throws IOException {
+        Path file = TestLogs.write(300);
+        try {
+            LogStreamFactory f = new LogStreamFactory(file, TestLogs.mapper());
+            Aggregation byStatus = Aggregation.builder().groupBy("status").sum("id")
+                    .percentiles("id").distinct("name").topK("hostname", 3).build();
+            Aggregation.Result r1 = f.aggregate(LogFilter.propertyEquals("id", 1), byStatus);
+            Aggregation.Result r2 = f.aggregate(null, byStatus);
+            Aggregation.Result r3 = f.aggregate(null, byStatus);
+            String before = r2.toString();
+            r1.merge(r2).merge(r3);
+            assertEquals(before, r2.toString());
+            assertEquals(300L, r2.get(200).count() + r2.get(500).count());
+            assertEquals(2 * 270L + 1, r1.get(200).count());
+            assertEquals(2 * 30L, r1.get(500).count());
+            assertEquals(2 * r2.get(500).sum("id"), r1.get(500).sum("id"), 0);
+            assertEquals(2 * 30L, r1.get(500).sketch("id").count());
+            // The caller's keys are not modified
+            Object[] keys = new Object[]{500};
+            assertEquals(30L, r2.get(keys).count());
+            assertEquals(Integer.class, keys[0].getClass());
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    public void testQuantileSketch() {
+        Random rnd = new Random(13);
+        List<Double> values = new ArrayList<>();
+        QuantileSketch all = new QuantileSketch();
+        QuantileSketch a = new QuantileSketch();
+        QuantileSketch b = new QuantileSketch();
+        for (int i = 0; i < 100000; i++) {
+            // Long-tailed, like request durations, with some negatives
+            double v = Math.exp(rnd.nextGaussian() * 2) - (i % 100 == 0 ? 50 : 0);
+            values.add(v);
+            all.add(v);
+            (i % 2 == 0 ? a : b).add(v);
+        }
+        values.sort(null);
+        a.merge(b);
+        assertEquals(all.count(), a.count());
+        for (double q : new double[]{0, 0.001, 0.01, 0.25, 0.5, 0.9, 0.99, 0.999, 1}) {
+            double exact = values.get((int) Math.round(q * (values.size() - 1)));
+            double approx = a.quantile(q);
+            assertEquals(q + "", all.quantile(q), approx, 0);
+            assertTrue(q + ": " + approx + " vs " + exact,
+                    Math.abs(approx - exact) <= Math.abs(exact) * 0.011);
+        }
+        // Memory stays bounded over a huge range of magnitudes
+        QuantileSketch wide = new QuantileSketch();
+        for (int i = -300; i <= 300; i++) {
+            wide.add(Math.pow(10, i));
+        }
+        assertEquals(1e300, wide.quantile(1), 1e300 * 0.011);
+        assertEquals(1e299, wide.quantile(0.999), 1e299 * 0.011);
+    }
+
+    @Test
+    public void testDistinctAndTopK() throws IOException {
+        // Three hours of requests; hour h comes from 1000 * (h + 1) distinct
+        // addresses, and failed requests have a skewed distribution of paths
+        Random rnd = new Random(7);
+        Map<String, Long> failedPaths = new HashMap<>();
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 18000; i++) {
+            int hour = i / 6000;
+            int status = i % 4 == 0 ? 503 : 200;
+            String path = "/p" + (int) Math.abs(rnd.nextGaussian() * 10);
+            if (status >= 500) {
+                failedPaths.merge(path, 1L, Long::sum);
+            }
+            int address = i % (1000 * (hour + 1));
+            sb.append("{\"name\":\"web\",\"hostname\":\"host\",\"pid\":1,\"level\":30")
+                    .append(",\"msg\":\"request\",\"status\":").append(status)
+                    .append(",\"remoteAddress\":\"10.0.").append(address / 256).append('.').append(address % 256)
+                    .append("\",\"req\":{\"path\":\"").append(path)
+                    .append("\"},\"time\":\"").append(TestLogs.START.plusNanos(i * 600_000_000L))
+                    .append("\",\"v\":0}\n");
+        }
+        Path file = TestLogs.write(sb.toString());
+        try {
+            LogStreamFactory f = new LogStreamFactory(file, TestLogs.mapper());
+            Aggregation perHour = Aggregation.builder().bucket(Duration.ofHours(1))
+                    .distinct("remoteAddress").build();
+            Map<Aggregation.Group, Aggregation.Metrics> hours = f.aggregate(null, perHour).groups();
+            assertEquals(3, hours.size());
+            int hour = 0;
+            for (Map.Entry<Aggregation.Group, Aggregation.Metrics> e : hours.entrySet()) {
+                assertEquals(TestLogs.START.plusHours(hour), e.getKey().bucket());
+                long exact = 1000 * (hour + 1);
+                long estimate = e.getValue().distinct("remoteAddress");
+                assertTrue(hour + ": " + estimate + " vs " + exact,
+                        Math.abs(estimate - exact) <= exact * 0.05);
+                hour++;
+            }
+
+            // Top paths by 5xx - estimates are never low, and are high by at
+            // most e / width of the total with high probability
+            Aggregation topFailures = Aggregation.builder().topK("req.path", 20).build();
+            Aggregation.Metrics failures = f.aggregate(LogFilter.parse("status>=500"), topFailures).get();
+            assertEquals(4500L, failures.count());
+            List<Map.Entry<Object, Long>> top = failures.topK("req.path");
+            assertEquals(20, top.size());
+            long slack = (long) Math.ceil(Math.E * 4500 / CountMinSketch.DEFAULT_WIDTH);
+            List<Map.Entry<String, Long>> exact = new ArrayList<>(failedPaths.entrySet());
+            exact.sort((a, b) -> Long.compare(b.getValue(), a.getValue()));
+            assertEquals(exact.get(0).getKey(), top.get(0).getKey());
+            Set<Object> seen = new HashSet<>();
+            for (int i = 0; i < top.size(); i++) {
+                Map.Entry<Object, Long> e = top.get(i);
+                assertTrue(seen.add(e.getKey()));
+                long count = failedPaths.get(e.getKey());
+                assertTrue(e + " vs " + count, e.getValue() >= count && e.getValue() <= count + slack);
+                if (i > 0) {
+                    assertTrue(top.get(i - 1).getValue() >= e.getValue());
+                }
+            }
+            for (Map.Entry<String, Long> e : exact.subList(0, 20)) {
+                if (e.getValue() > exact.get(20).getValue() + slack) {
+                    assertTrue(e.getKey(), seen.contains(e.getKey()));
+                }
+            }
+
+            // A smaller sketch per group trades accuracy for memory
+            Aggregation smallTop = Aggregation.builder().topK("req.path", 20, 256, 3).build();
+            Aggregation.Metrics small = f.aggregate(LogFilter.parse("status>=500"), smallTop).get();
+            assertEquals(256, small.countMin("req.path").width());
+            assertEquals(3, small.countMin("req.path").depth());
+            long smallSlack = (long) Math.ceil(Math.E * 4500 / 256);
+            for (Map.Entry<Object, Long> e : small.topK("req.path")) {
+                long count = failedPaths.get(e.getKey());
+                assertTrue(e + " vs " + count, e.getValue() >= count && e.getValue() <= count + smallSlack);
+            }
+            assertEquals(top.get(0).getKey(), small.topK("req.path").get(0).getKey());
+
+            // The same, as collectors over a filtered stream
+            try (Stream<LogRecord> s = f.stream(LogFilter.parse("status>=500")).parallel()) {
+                CountMinSketch cms = s.collect(CountMinSketch.collector("req.path"));
+                assertEquals(4500L, cms.total());
+                assertEquals(top.get(0), cms.topK(1).get(0));
+            }
+            try (Stream<LogRecord> s = f.stream(null).parallel()) {
+                long distinct = s.collect(HyperLogLog.collector("remoteAddress")).estimate();
+                assertTrue(distinct + "", Math.abs(distinct - 3000) <= 3000 * 0.05);
+            }
+            try {
+                failures.distinct("req.path");
+                throw new AssertionError("Should have thrown");
+            } catch (IllegalArgumentException ex) {
+                // expected
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    public void testHyperLogLog() {
+        HyperLogLog all = new HyperLogLog();
+        HyperLogLog a = new HyperLogLog();
+        HyperLogLog b = new HyperLogLog();
+        for (int i = 0; i < 100000; i++) {
+            String value = "value-" + i;
+            all.add(value);
+            // Overlapping halves, with duplicates
+            (i % 3 == 0 ? a : b).add(value);
+            a.add("value-" + (i / 2));
+        }
+        long estimate = all.estimate();
+        assertTrue(estimate + "", Math.abs(estimate - 100000) <= 100000 * 0.05);
+        assertEquals(estimate, a.merge(b).estimate());
+        // Integers and longs are the same value
+        HyperLogLog numbers = new HyperLogLog();
+        for (int i = 0; i < 100; i++) {
+            numbers.add(i);
+            numbers.add((long) i);
+        }
+        assertTrue(numbers.estimate() + "", Math.abs(numbers.estimate() - 100) <= 2);
+        assertEquals(0L, new HyperLogLog().estimate());
+        try {
+            new HyperLogLog(10).merge(new HyperLogLog());
+            throw new AssertionError("Should have thrown");
+        } catch (IllegalArgumentException ex) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testCountMinSketch() {
+        Random rnd = new Random(5);
+        Map<Long, Long> counts = new HashMap<>();
+        CountMinSketch all = new CountMinSketch();
+        CountMinSketch a = new CountMinSketch();
+        CountMinSketch b = new CountMinSketch();
+        for (int i = 0; i < 200000; i++) {
+            // Zipf-like: value n is about twice as common as 2n
+            long value = (long) (1 / Math.max(rnd.nextDouble(), 1e-6));
+            counts.merge(value, 1L, Long::sum);
+            all.add(value);
+            (i % 2 == 0 ? a : b).add((int) value);
+        }
+        assertEquals(200000L, all.total());
+        long slack = (long) Math.ceil(Math.E * 200000 / CountMinSketch.DEFAULT_WIDTH);
+        for (Map.Entry<Object, Long> e : all.topK(10)) {
+            long exact = counts.get((Long) e.getKey());
+            assertTrue(e + " vs " + exact, e.getValue() >= exact && e.getValue() <= exact + slack);
+        }
+        List<Object> expected = all.topK(10).stream().map(Map.Entry::getKey).collect(Collectors.toList());
+        assertEquals(1L, expected.get(0));
+        assertEquals(2L, expected.get(1));
+        a.merge(b);
+        assertEquals(all.total(), a.total());
+        assertEquals(all.topK(10), a.topK(10));
+        assertEquals(all.estimate(42L), a.estimate(42));
+        assertFalse(a.topK(100).size() > CountMinSketch.DEFAULT_TRACKED);
+
+        // Frequent values displace the least frequent tracked ones once the
+        // table is full, among many values seen only once
+        CountMinSketch few = new CountMinSketch(CountMinSketch.DEFAULT_WIDTH, CountMinSketch.DEFAULT_DEPTH, 5);
+        for (int i = 0; i < 50000; i++) {
+            few.add("once-" + i);
+            if (i % 10 == 0) {
+                few.add("hot-" + (i / 10) % 5);
+            }
+            if (i % 25 == 0) {
+                few.add("warm-" + (i / 25) % 5);
+            }
+        }
+        List<Object> hot = few.topK(5).stream().map(Map.Entry::getKey).sorted(
+                Comparator.comparing(String::valueOf)).collect(Collectors.toList());
+        assertEquals(Arrays.asList("hot-0", "hot-1", "hot-2", "hot-3", "hot-4"), hot);
+    }
+
+    private static void assertNotComputed(Runnable r) {
+        try {
+            r.run();
+            fail("Statistic should not have been computed");
+        } catch (IllegalArgumentException ex) {
+            // ok
+        }
+    }
+}
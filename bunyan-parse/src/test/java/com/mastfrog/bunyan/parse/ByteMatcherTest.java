@@ -0,0 +1,198 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 Tim Boudreau.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.bunyan.parse;
+
+import java.nio.ByteBuffer;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ *
+ * @author Tim Boudreau
+ */
+public class ByteMatcherTest {
+
+    private static final boolean RUN_BENCHMARK = false;
+
+    @Test
+    public void testOverlappingAndPartialMatches() {
+        assertTrue(ByteMatcher.any("aab").matches(buf("xaaab"), 0, 5));
+        assertTrue(ByteMatcher.any("abcd", "bc").matches(buf("abce"), 0, 4));
+        assertFalse(ByteMatcher.any("abcd").matches(buf("abc"), 0, 3));
+        assertFalse(ByteMatcher.any("abcd").matches(buf("abcabc"), 0, 6));
+        assertTrue(ByteMatcher.all("abc", "cde").matches(buf("abcde"), 0, 5));
+        assertFalse(ByteMatcher.all("abc", "cdf").matches(buf("abcde"), 0, 5));
+        ByteBuffer accented = buf("{\"msg\":\"\u00e9t\u00e9\"}");
+        assertTrue(ByteMatcher.any("\u00e9t\u00e9").matches(accented, 0, accented.limit()));
+        assertFalse(ByteMatcher.any("\u00e8t\u00e9").matches(accented, 0, accented.limit()));
+        assertTrue(ByteMatcher.any().matches(buf("anything"), 0, 8));
+        assertTrue(ByteMatcher.all().matches(buf("anything"), 0, 8));
+        assertTrue(ByteMatcher.any("").matches(buf("x"), 0, 1));
+        // Only the requested range is examined
+        assertFalse(ByteMatcher.any("xyz").matches(buf("axyzb"), 2, 5));
+        assertTrue(ByteMatcher.any("yzb").matches(buf("axyzb"), 2, 5));
+    }
+
+    @Test
+    public void testAgainstIndexOf() {
+        Random rnd = new Random(1209);
+        for (int round = 0; round < 2000; round++) {
+            String[] needles = new String[1 + rnd.nextInt(6)];
+            for (int i = 0; i < needles.length; i++) {
+                needles[i] = randomString(rnd, 1 + rnd.nextInt(4));
+            }
+            String haystack = randomString(rnd, rnd.nextInt(60));
+            ByteBuffer bytes = buf(haystack);
+            boolean any = false;
+            boolean all = true;
+            for (String needle : needles) {
+                boolean found = haystack.contains(needle);
+                any |= found;
+                all &= found;
+            }
+            String msg = Arrays.toString(needles) + " in '" + haystack + "'";
+            assertEquals("any " + msg, any, ByteMatcher.any(needles).matches(bytes, 0, bytes.limit()));
+            assertEquals("all " + msg, all, ByteMatcher.all(needles).matches(bytes, 0, bytes.limit()));
+        }
+    }
+
+    @Test
+    public void testGroups() {
+        List<Set<String>> groups = new ArrayList<>();
+        groups.add(new HashSet<>(Arrays.asList("foo", "bar")));
+        groups.add(new HashSet<>(Arrays.asList("baz")));
+        ByteMatcher m = new ByteMatcher(groups);
+        assertTrue(m.matches(buf("foo baz"), 0, 7));
+        assertTrue(m.matches(buf("baz bar"), 0, 7));
+        assertFalse(m.matches(buf("foo bar"), 0, 7));
+        assertFalse(m.matches(buf("ba fo"), 0, 5));
+    }
+
+    @Test
+    public void testFilterPrefilters() {
+        ByteBuffer line = buf("{\"name\":\"stuff\",\"level\":30,\"id\":\"abc\"}");
+        int len = line.limit();
+        assertTrue(LogFilter.named("stuff").prefilter().matches(line, 0, len));
+        assertFalse(LogFilter.named("other").prefilter().matches(line, 0, len));
+        // An unconstrained side of an or cannot be prefiltered on
+        assertTrue(LogFilter.named("other").or(LogFilter.levelMatches(30)).prefilter().isEmpty());
+        assertFalse(LogFilter.named("other").or(LogFilter.named("more")).prefilter().matches(line, 0, len));
+        assertTrue(LogFilter.named("other").or(LogFilter.named("stuff")).prefilter().matches(line, 0, len));
+        assertFalse(LogFilter.named("stuff").and(LogFilter.named("other")).prefilter().matches(line, 0, len));
+        assertTrue(LogFilter.propertyEquals("id", "abc").prefilter().matches(line, 0, len));
+        assertFalse(LogFilter.propertyEquals("id", "abd").prefilter().matches(line, 0, len));
+        assertTrue(LogFilter.named("other").negate().prefilter().isEmpty());
+        // Would be escaped in JSON, so cannot be searched for
+        assertTrue(LogFilter.named("say \"hi\"").prefilter().isEmpty());
+        LogFilter f = LogFilter.named("stuff");
+        assertTrue(f.prefilter() == f.prefilter());
+    }
+
+    @Test
+    public void benchmark() {
+        if (!RUN_BENCHMARK) {
+            return;
+        }
+        Random rnd = new Random(5);
+        byte[][] lines = new byte[10000][];
+        for (int i = 0; i < lines.length; i++) {
+            lines[i] = ("{\"name\":\"requests\",\"hostname\":\"host-" + rnd.nextInt(20)
+                    + "\",\"pid\":1234,\"level\":30,\"msg\":\"request\",\"path\":\"api/users/"
+                    + rnd.nextInt(100000) + "\",\"status\":" + (200 + rnd.nextInt(5) * 100)
+                    + ",\"time\":\"2026-10-01T00:00:00.000Z\",\"v\":0}").getBytes(UTF_8);
+        }
+        String[] needles = {"api/users/4242", "status\":500", "host-13", "nothing-here"};
+        ByteMatcher matcher = ByteMatcher.any(needles);
+        byte[][] needleBytes = new byte[needles.length][];
+        for (int i = 0; i < needles.length; i++) {
+            needleBytes[i] = needles[i].getBytes(UTF_8);
+        }
+        for (int round = 0; round < 10; round++) {
+            long start = System.nanoTime();
+            int hits = 0;
+            for (int rep = 0; rep < 20; rep++) {
+                for (byte[] line : lines) {
+                    if (matcher.matches(ByteBuffer.wrap(line), 0, line.length)) {
+                        hits++;
+                    }
+                }
+            }
+            long automaton = System.nanoTime() - start;
+            start = System.nanoTime();
+            int naiveHits = 0;
+            for (int rep = 0; rep < 20; rep++) {
+                for (byte[] line : lines) {
+                    ByteBuffer b = ByteBuffer.wrap(line);
+                    for (byte[] needle : needleBytes) {
+                        if (indexOf(b, needle) >= 0) {
+                            naiveHits++;
+                            break;
+                        }
+                    }
+                }
+            }
+            long naive = System.nanoTime() - start;
+            assertEquals(naiveHits, hits);
+            System.out.println("Aho-Corasick " + (automaton / 1000000D) + "ms, indexOf "
+                    + (naive / 1000000D) + "ms for " + hits + " hits");
+        }
+    }
+
+    private static int indexOf(ByteBuffer buf, byte[] needle) {
+        outer:
+        for (int i = 0; i <= buf.limit() - needle.length; i++) {
+            for (int j = 0; j < needle.length; j++) {
+                if (buf.get(i + j) != needle[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    private static String randomString(Random rnd, int length) {
+        // Small alphabet, including a multi-byte character, so matches and
+        // near-matches are common
+        char[] alphabet = {'a', 'b', 'c', '\u00e9'};
+        StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            sb.append(alphabet[rnd.nextInt(alphabet.length)]);
+        }
+        return sb.toString();
+    }
+
+    private static ByteBuffer buf(String s) {
+        return ByteBuffer.wrap(s.getBytes(UTF_8));
+    }
+}
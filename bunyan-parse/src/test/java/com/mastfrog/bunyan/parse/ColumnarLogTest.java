@@ -0,0 +1,163 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 Tim Boudreau.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.bunyan.parse;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.ZonedDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ *
+ * @author Tim Boudreau
+ */
+public class ColumnarLogTest {
+
+    @Test
+    public void testRoundTripAndQuery() throws IOException {
+        Path file = TestLogs.write(1000);
+        Path target = file.resolveSibling(file.getFileName() + ".col");
+        try {
+            LogStreamFactory f = new LogStreamFactory(file, TestLogs.mapper());
+            ColumnarLog log;
+            try (Stream<LogRecord> s = f.stream(null)) {
+                log = ColumnarLog.write(s, target, TestLogs.mapper(), 100, "id");
+            }
+            assertEquals(1000L, log.rowCount());
+            assertEquals(10, log.blockCount());
+            log = ColumnarLog.open(target, TestLogs.mapper());
+            List<LogRecord> full;
+            try (Stream<LogRecord> s = f.stream(null)) {
+                full = s.collect(Collectors.toList());
+            }
+            List<LogRecord> columnar = log.stream(null).collect(Collectors.toList());
+            assertEquals(full.size(), columnar.size());
+            for (int i = 0; i < full.size(); i++) {
+                LogRecord a = full.get(i);
+                LogRecord b = columnar.get(i);
+                assertEquals(a.name(), b.name());
+                assertEquals(a.msg(), b.msg());
+                assertEquals(a.hostName(), b.hostName());
+                assertEquals(a.time(), b.time());
+                assertEquals(a.timeMillis(), b.timeMillis());
+                assertEquals(a.level(), b.level());
+                assertEquals(a.pid(), b.pid());
+                assertEquals(new HashSet<>(a.keys()), b.keys());
+                for (String key : a.keys()) {
+                    assertEquals(key, a.get(key), b.get(key));
+                }
+                assertEquals(a.toMap(), b.toMap());
+            }
+
+            String[] queries = {"status==500 && name==thing0", "level>=warn && id<100",
+                "req.path=~\"^/api/9\" || hostname==host3", "time>=2026-10-01T00:15:00Z && time<2026-10-01T00:15:10Z"};
+            for (String query : queries) {
+                try (Stream<LogRecord> s = f.stream(LogFilter.parse(query))) {
+                    assertEquals(query, ids(s), ids(log.stream(LogFilter.parse(query))));
+                }
+            }
+            assertEquals(Arrays.asList(555), ids(log.stream(LogFilter.propertyEquals("id", 555))));
+            assertEquals(Arrays.asList(1, 3, 5), ids(log.stream(LogFilter.levelMatches(40).and(LogFilter.limit(3)))));
+            assertEquals(0L, log.stream(LogFilter.levelMatches(50)).count());
+
+            Aggregation byName = Aggregation.builder().groupBy("name", "status").sum("id").build();
+            Aggregation.Result expected = f.aggregate(null, byName);
+            Aggregation.Result actual = log.aggregate(null, byName);
+            assertEquals(expected.groups().keySet(), actual.groups().keySet());
+            for (Aggregation.Group g : expected.groups().keySet()) {
+                assertEquals(expected.groups().get(g).count(), actual.groups().get(g).count());
+                assertEquals(expected.groups().get(g).sum("id"), actual.groups().get(g).sum("id"), 0);
+            }
+
+            // Through the factory, with the default block size
+            ColumnarLog exported = f.exportColumnar(target);
+            assertEquals(1000L, exported.rowCount());
+            assertEquals(1, exported.blockCount());
+            assertEquals(500L, exported.stream(LogFilter.parse("level==info")).count());
+        } finally {
+            Files.deleteIfExists(file);
+            Files.deleteIfExists(target);
+        }
+    }
+
+    @Test
+    public void testSparseAndMissingValues() throws IOException {
+        Path file = TestLogs.write("{\"name\":\"x\",\"level\":30,\"big\":12345678901234,\"d\":1.5,"
+                + "\"b\":true,\"n\":null,\"s\":\"caf\\u00e9\",\"list\":[1,{\"a\":\"b\"}]}\n"
+                + "{\"name\":\"y\",\"msg\":\"\",\"level\":50,\"time\":\"2026-10-01T01:02:03.123456789+05:30\",\"b\":false}\n");
+        Path target = file.resolveSibling(file.getFileName() + ".col");
+        try {
+            ColumnarLog log = new LogStreamFactory(file, TestLogs.mapper()).exportColumnar(target);
+            List<LogRecord> records = log.stream(null).collect(Collectors.toList());
+            assertEquals(2, records.size());
+            LogRecord a = records.get(0);
+            assertNull(a.msg());
+            assertNull(a.hostName());
+            assertNull(a.time());
+            assertEquals(TimeParser.NO_TIME, a.timeMillis());
+            assertEquals(12345678901234L, a.get("big"));
+            assertEquals(1.5D, a.get("d"));
+            assertEquals(Boolean.TRUE, a.get("b"));
+            assertTrue(a.has("n"));
+            assertNull(a.get("n"));
+            assertFalse(a.has("missing"));
+            assertEquals("caf\u00e9", a.get("s"));
+            assertEquals(Arrays.asList(1, Collections.singletonMap("a", "b")), a.get("list"));
+            LogRecord b = records.get(1);
+            assertEquals("", b.msg());
+            assertEquals(ZonedDateTime.parse("2026-10-01T01:02:03.123456789+05:30"), b.time());
+            assertEquals(Boolean.FALSE, b.get("b"));
+            assertFalse(b.has("big"));
+            assertEquals(new HashSet<>(Arrays.asList("b")), b.keys());
+            b.put("added", 23);
+            assertEquals(23, b.get("added"));
+            assertTrue(b.keys().contains("added"));
+
+            try {
+                ColumnarLog.open(file, TestLogs.mapper());
+                throw new AssertionError("Opened a log file as columnar");
+            } catch (IOException ex) {
+                // ok
+            }
+        } finally {
+            Files.deleteIfExists(file);
+            Files.deleteIfExists(target);
+        }
+    }
+
+    private static List<Integer> ids(Stream<LogRecord> s) {
+        return s.map(r -> ((Number) r.get("id")).intValue()).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 Tim Boudreau.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.bunyan.parse;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+import static org.junit.Assert.assertEquals;
+import org.junit.Test;
+
+/**
+ *
+ * @author Tim Boudreau
+ */
+public class ConvertedStreamTest {
+
+    @Test
+    public void testConvertedStream() throws IOException {
+        Path file = TestLogs.write(1000);
+        Path gz = Files.createTempFile("bunyan-parse", ".log.gz");
+        try {
+            LogStreamFactory f = new LogStreamFactory(file, TestLogs.mapper());
+            try (Stream<Request> s = f.convertedStream(LogFilter.parse("status==500 && level==30"), Request.class)) {
+                List<Request> requests = s.collect(Collectors.toList());
+                assertEquals(100, requests.size());
+                Request r = requests.get(3);
+                assertEquals(30, r.id);
+                assertEquals(500, r.status);
+                assertEquals("message 30", r.msg);
+                assertEquals("/api/30", r.req.get("path"));
+                assertEquals(TestLogs.START.plusSeconds(30).toInstant(), r.time.toInstant());
+            }
+            // A plain predicate sees every field
+            try (Stream<Request> s = f.convertedStream(rec -> "host2".equals(rec.hostName())
+                    && rec.get("id", Integer.class) < 20, Request.class)) {
+                assertEquals(4L, s.count());
+            }
+            // Stateful filters see lines in order
+            try (Stream<Request> s = f.convertedStream(LogFilter.named("thing2").and(LogFilter.skip(1))
+                    .and(LogFilter.limit(2)), Request.class)) {
+                assertEquals("[5, 8]", s.map(r -> r.id).collect(Collectors.toList()).toString());
+            }
+            int[] count = new int[1];
+            f.readConverted(null, Request.class, r -> {
+                count[0]++;
+                return r.id == 9 ? LogStreamFactory.ReadResult.STOP : LogStreamFactory.ReadResult.CONTINUE;
+            });
+            assertEquals(10, count[0]);
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            try (GZIPOutputStream z = new GZIPOutputStream(out)) {
+                z.write(Files.readAllBytes(file));
+            }
+            Files.write(gz, out.toByteArray());
+            try (Stream<Request> s = new LogStreamFactory(gz, TestLogs.mapper())
+                    .convertedStream(LogFilter.parse("id<3"), Request.class)) {
+                assertEquals("[0, 1, 2]", s.map(r -> r.id).collect(Collectors.toList()).toString());
+            }
+        } finally {
+            Files.deleteIfExists(file);
+            Files.deleteIfExists(gz);
+        }
+    }
+
+    public static final class Request {
+
+        public int id;
+        public int status;
+        public String msg;
+        public ZonedDateTime time;
+        public Map<String, Object> req;
+    }
+}
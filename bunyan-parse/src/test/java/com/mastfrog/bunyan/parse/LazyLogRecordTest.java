@@ -0,0 +1,95 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 Tim Boudreau.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.bunyan.parse;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ *
+ * @author Tim Boudreau
+ */
+public class LazyLogRecordTest {
+
+    @Test
+    public void testLazyRecordsMatchParsedRecords() throws IOException {
+        Path file = TestLogs.write(200);
+        try {
+            LogStreamFactory f = new LogStreamFactory(file, TestLogs.mapper());
+            LogFilter filter = LogFilter.levelGreaterThan(30).and(LogFilter.named("thing2"));
+            List<LogRecord> full;
+            try (Stream<LogRecord> s = f.stream(filter)) {
+                full = s.collect(Collectors.toList());
+            }
+            List<LogRecord> lazy;
+            try (Stream<LogRecord> s = f.lazyStream(filter)) {
+                lazy = s.collect(Collectors.toList());
+            }
+            assertEquals(33, full.size());
+            assertEquals(full.size(), lazy.size());
+            for (int i = 0; i < full.size(); i++) {
+                LogRecord a = full.get(i);
+                LogRecord b = lazy.get(i);
+                // Access out of line order, so some fields are decoded from
+                // offsets found by an earlier scan
+                assertEquals(a.get("req"), b.get("req"));
+                assertEquals(a.time(), b.time());
+                assertEquals(a.hostName(), b.hostName());
+                assertEquals(a.pid(), b.pid());
+                assertEquals(a.msg(), b.msg());
+                assertEquals(a.get("id"), b.get("id"));
+                assertEquals(a.keys(), b.keys());
+                assertEquals(a.toMap(), b.toMap());
+                assertTrue(b.has("status"));
+                assertFalse(b.has("level"));
+                assertFalse(b.has("nothing"));
+                assertNull(b.get("level"));
+                assertNull(b.get("nothing"));
+                // Fields are not populated
+                assertNull(b.name);
+            }
+            LogRecord first = lazy.get(0);
+            assertEquals(new HashSet<>(Arrays.asList("id", "status", "req")), first.keys());
+            first.put("extra", 23);
+            assertEquals(23, first.get("extra"));
+            assertTrue(first.keys().contains("extra"));
+            try (Stream<LogRecord> s = f.lazyStream(filter)) {
+                assertEquals(lazy.get(1), s.skip(1).findFirst().get());
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+}
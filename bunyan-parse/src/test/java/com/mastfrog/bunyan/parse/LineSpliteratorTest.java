@@ -0,0 +1,152 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 Tim Boudreau.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.bunyan.parse;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import static org.junit.Assert.assertEquals;
+import org.junit.Test;
+
+/**
+ *
+ * @author Tim Boudreau
+ */
+public class LineSpliteratorTest {
+
+    private static final LineSpliterator.LineHandler<String> STRINGS
+            = (ByteBuffer buf, int start, int end) -> {
+                byte[] bytes = new byte[end - start];
+                for (int i = 0; i < bytes.length; i++) {
+                    bytes[i] = buf.get(start + i);
+                }
+                return new String(bytes, UTF_8);
+            };
+
+    @Test
+    public void testLinesAreReadAcrossChunkBoundaries() throws IOException {
+        List<String> expected = new ArrayList<>();
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            String line = lineFor(i);
+            expected.add(line);
+            sb.append(line).append(i % 7 == 0 ? "\r\n" : "\n");
+            if (i % 11 == 0) {
+                // empty lines are skipped
+                sb.append('\n');
+            }
+        }
+        // No trailing newline on the last line
+        sb.append("last");
+        expected.add("last");
+        Path file = TestLogs.write(sb.toString());
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            for (boolean mapped : new boolean[]{false, true}) {
+                List<String> found = new ArrayList<>();
+                new LineSpliterator<>(channel, STRINGS, true, mapped, 16, 0, channel.size())
+                        .forEachRemaining(found::add);
+                assertEquals(expected, found);
+
+                found.clear();
+                splitAll(new LineSpliterator<>(channel, STRINGS, true, mapped, 16, 0, channel.size()), found);
+                assertEquals(expected, found);
+
+                List<String> parallel = StreamSupport.stream(
+                        new LineSpliterator<>(channel, STRINGS, true, mapped, 16, 0, channel.size()), true)
+                        .collect(Collectors.toList());
+                assertEquals(expected, parallel);
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testParallelStreamMatchesSequentialStream() throws IOException {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 500; i++) {
+            sb.append("{\"name\":\"thing").append(i % 3).append("\",\"hostname\":\"x\",\"pid\":1,")
+                    .append("\"level\":").append(i % 2 == 0 ? 30 : 40)
+                    .append(",\"msg\":\"message ").append(i).append("\",")
+                    .append("\"time\":\"2026-10-01T00:00:00.").append(String.format("%03d", i)).append("Z\",")
+                    .append("\"v\":0,\"id\":").append(i).append("}\n");
+            if (i % 50 == 0) {
+                sb.append("not json\n");
+            }
+        }
+        Path file = TestLogs.write(sb.toString());
+        try {
+            LogStreamFactory f = new LogStreamFactory(file, TestLogs.mapper());
+            LogFilter filter = LogFilter.levelMatches(40).and(LogFilter.named("thing1"));
+            List<String> expected;
+            try (Stream<LogRecord> s = f.stream(filter)) {
+                expected = s.map(r -> r.msg).collect(Collectors.toList());
+            }
+            List<String> found;
+            try (Stream<LogRecord> s = f.parallelStream(filter, true)) {
+                found = s.map(r -> r.msg).collect(Collectors.toList());
+            }
+            assertEquals(expected.size() + " records", 84, expected.size());
+            assertEquals(expected, found);
+            try (Stream<LogRecord> s = f.mappedStream(filter)) {
+                found = s.map(r -> r.msg).collect(Collectors.toList());
+            }
+            assertEquals(expected, found);
+            try (Stream<LogRecord> s = f.parallelStream(null, false)) {
+                assertEquals(500L, s.count());
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    private static void splitAll(Spliterator<String> spl, List<String> into) {
+        Spliterator<String> prefix = spl.trySplit();
+        if (prefix != null) {
+            splitAll(prefix, into);
+            splitAll(spl, into);
+        } else {
+            spl.forEachRemaining(into::add);
+        }
+    }
+
+    private static String lineFor(int i) {
+        StringBuilder sb = new StringBuilder("line-").append(i);
+        // Some lines longer than the chunk size
+        for (int j = 0; j < i % 13; j++) {
+            sb.append("-\u00e9\u00e8");
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,179 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 Tim Boudreau.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.bunyan.parse;
+
+import com.mastfrog.bunyan.parse.LogStreamFactory.ReadResult;
+import java.io.IOException;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ *
+ * @author Tim Boudreau
+ */
+public class LogFollowerTest {
+
+    @Test
+    public void testFollow() throws IOException {
+        Path dir = Files.createTempDirectory("LogFollowerTest");
+        Path file = dir.resolve("test.log");
+        Path rotated = dir.resolve("test.log.1");
+        Path checkpoint = dir.resolve("test.checkpoint");
+        try {
+            LogStreamFactory f = new LogStreamFactory(file, TestLogs.mapper());
+            try (LogFollower follower = f.follow(null, checkpoint)) {
+                // Not created yet
+                assertEquals(0, follower.poll(50, TimeUnit.MILLISECONDS).size());
+                append(file, lines(0, 10));
+                assertEquals(ids(0, 10), ids(follower.poll(5, TimeUnit.SECONDS)));
+                append(file, lines(10, 15) + "{\"name\":\"part");
+                assertEquals(ids(10, 15), ids(follower.poll(5, TimeUnit.SECONDS)));
+                append(file, "ial\",\"hostname\":\"x\",\"pid\":1,\"level\":30,\"msg\":\"m\",\"id\":15,"
+                        + "\"time\":\"2026-10-01T00:00:00Z\",\"v\":0}\n");
+                assertEquals(ids(15, 16), ids(follower.poll(5, TimeUnit.SECONDS)));
+                follower.commit();
+            }
+            // Resumes from the checkpoint
+            append(file, lines(16, 20));
+            try (LogFollower follower = f.follow(null, checkpoint)) {
+                assertEquals(ids(16, 20), ids(follower.poll(5, TimeUnit.SECONDS)));
+
+                // Truncated
+                try (FileChannel ch = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                    ch.truncate(0);
+                }
+                append(file, lines(100, 102));
+                assertEquals(ids(100, 102), ids(follower.poll(5, TimeUnit.SECONDS)));
+
+                // Rotated, with a last write to the old file
+                Files.move(file, rotated);
+                append(rotated, lines(102, 103));
+                append(file, lines(200, 203));
+                assertEquals(ids(102, 103, 200, 203), ids(follower.poll(5, TimeUnit.SECONDS)));
+                follower.commit();
+            }
+            // Stopping part way through a batch leaves the rest for later
+            append(file, lines(203, 210));
+            try (LogFollower follower = f.follow(null, checkpoint)) {
+                List<Integer> seen = new ArrayList<>();
+                follower.read(record -> {
+                    seen.add(record.get("id", Integer.class));
+                    return seen.size() == 3 ? ReadResult.STOP : ReadResult.CONTINUE;
+                });
+                assertEquals(ids(203, 206), seen);
+            }
+            try (LogFollower follower = f.follow(null, checkpoint)) {
+                assertEquals(ids(206, 210), ids(follower.poll(5, TimeUnit.SECONDS)));
+            }
+            // A replaced file invalidates the checkpoint
+            Files.delete(file);
+            append(file, lines(300, 302));
+            try (LogFollower follower = f.follow(LogFilter.propertyEquals("id", 301), checkpoint)) {
+                assertEquals(ids(301, 302), ids(follower.poll(5, TimeUnit.SECONDS)));
+                assertTrue(follower.offset() > 0);
+            }
+        } finally {
+            for (Path p : new Path[]{file, rotated, checkpoint, dir}) {
+                Files.deleteIfExists(p);
+            }
+        }
+    }
+
+    @Test
+    public void testStopBeforeRotationPoint() throws IOException {
+        Path dir = Files.createTempDirectory("LogFollowerTest");
+        Path file = dir.resolve("test.log");
+        Path rotated = dir.resolve("test.log.1");
+        Path checkpoint = dir.resolve("test.checkpoint");
+        try {
+            LogStreamFactory f = new LogStreamFactory(file, TestLogs.mapper());
+            append(file, lines(0, 5));
+            try (LogFollower follower = f.follow(null, checkpoint)) {
+                assertEquals(ids(0, 5), ids(follower.poll(5, TimeUnit.SECONDS)));
+                append(file, lines(5, 10));
+                Files.move(file, rotated);
+                append(file, lines(100, 103));
+                // Stop in the old file's part of a batch which spans the
+                // rotation
+                List<Integer> seen = new ArrayList<>();
+                follower.read(record -> {
+                    seen.add(record.get("id", Integer.class));
+                    return seen.size() == 2 ? ReadResult.STOP : ReadResult.CONTINUE;
+                });
+                assertEquals(ids(5, 7), seen);
+                seen.clear();
+                follower.read(record -> {
+                    seen.add(record.get("id", Integer.class));
+                    return seen.size() == 6 ? ReadResult.STOP : ReadResult.CONTINUE;
+                });
+                assertEquals(ids(7, 10, 100, 103), seen);
+            }
+            // The checkpoint is in the new file
+            append(file, lines(103, 105));
+            try (LogFollower follower = f.follow(null, checkpoint)) {
+                assertEquals(ids(103, 105), ids(follower.poll(5, TimeUnit.SECONDS)));
+            }
+        } finally {
+            for (Path p : new Path[]{file, rotated, checkpoint, dir}) {
+                Files.deleteIfExists(p);
+            }
+        }
+    }
+
+    private static String lines(int from, int to) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = from; i < to; i++) {
+            TestLogs.line(i, TestLogs.START.plusSeconds(i), sb).append('\n');
+        }
+        return sb.toString();
+    }
+
+    private static void append(Path file, String text) throws IOException {
+        Files.write(file, text.getBytes(UTF_8), StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    private static List<Integer> ids(List<LogRecord> records) {
+        return records.stream().map(r -> r.get("id", Integer.class)).collect(Collectors.toList());
+    }
+
+    private static List<Integer> ids(int... ranges) {
+        List<Integer> result = new ArrayList<>();
+        for (int i = 0; i < ranges.length; i += 2) {
+            for (int j = ranges[i]; j < ranges[i + 1]; j++) {
+                result.add(j);
+            }
+        }
+        return result;
+    }
+}
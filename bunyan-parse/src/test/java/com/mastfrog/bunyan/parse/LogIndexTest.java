@@ -0,0 +1,134 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 Tim Boudreau.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.bunyan.parse;
+
+import java.io.IOException;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ *
+ * @author Tim Boudreau
+ */
+public class LogIndexTest {
+
+    private static final int BLOCK_SIZE = 4096;
+
+    @Test
+    public void testIndexedStreamsMatchFullStreams() throws IOException {
+        Path file = TestLogs.write(3000);
+        Path sidecar = file.resolveSibling(file.getFileName() + ".idx");
+        try {
+            LogStreamFactory f = new LogStreamFactory(file, TestLogs.mapper());
+            LogIndex index = LogIndex.open(file, sidecar, BLOCK_SIZE, TestLogs.mapper(), "id");
+            int blocks = index.blockCount();
+            assertTrue(blocks + " blocks", blocks > 50);
+            assertEquals(Files.size(file), index.indexedTo());
+
+            check(f, index, LogFilter.propertyEquals("id", 1234));
+            check(f, index, LogFilter.propertyEquals("id", 1234).or(LogFilter.propertyEquals("id", 2999)));
+            check(f, index, LogFilter.propertyEquals("id", 1234).and(LogFilter.levelMatches(30)));
+            check(f, index, LogFilter.after(TestLogs.START.plusSeconds(2950)));
+            check(f, index, LogFilter.before(TestLogs.START.plusSeconds(20)));
+            check(f, index, LogFilter.named("thing1").negate());
+            check(f, index, LogFilter.levelGreaterThan(50));
+            check(f, index, r -> r.level() == 40);
+
+            // A lookup by id should touch only a block or two
+            List<long[]> ranges = ranges(index, LogFilter.propertyEquals("id", 1234), file);
+            long bytes = ranges.stream().mapToLong(r -> r[1] - r[0]).sum();
+            assertTrue(bytes + " bytes", bytes <= BLOCK_SIZE * 3);
+            // Out of range times and absent levels skip everything
+            assertEquals(0, ranges(index, LogFilter.levelGreaterThan(50), file).size());
+
+            // Reopening loads the saved index
+            LogIndex reopened = LogIndex.open(file, sidecar, BLOCK_SIZE, TestLogs.mapper(), "id");
+            assertEquals(blocks, reopened.blockCount());
+
+            // Appending indexes only the new lines, including a partial one
+            StringBuilder sb = new StringBuilder();
+            for (int i = 3000; i < 3100; i++) {
+                TestLogs.line(i, TestLogs.START.plusSeconds(i), sb).append('\n');
+            }
+            sb.append("{\"name\":\"partial");
+            Files.write(file, sb.toString().getBytes(UTF_8), StandardOpenOption.APPEND);
+            reopened.update();
+            assertTrue(reopened.blockCount() > blocks);
+            assertEquals(Files.size(file) - "{\"name\":\"partial".length(), reopened.indexedTo());
+            check(f, reopened, LogFilter.propertyEquals("id", 3050));
+            try (Stream<LogRecord> s = f.stream(LogFilter.propertyEquals("id", 3050), reopened)) {
+                assertEquals(1L, s.count());
+            }
+
+            // A file rotated and replaced by a larger one is read in full
+            // until the index is updated
+            StringBuilder rotated = new StringBuilder();
+            for (int i = 10000; i < 14000; i++) {
+                TestLogs.line(i, TestLogs.START.plusSeconds(i), rotated).append('\n');
+            }
+            Files.write(file, rotated.toString().getBytes(UTF_8));
+            assertTrue(Files.size(file) > reopened.indexedTo());
+            check(f, reopened, LogFilter.propertyEquals("id", 10500));
+            assertEquals(Files.size(file), ranges(reopened, LogFilter.propertyEquals("id", 10500), file).get(0)[1]);
+
+            // Replacing the file rebuilds the index
+            Files.delete(file);
+            Files.write(file, TestLogs.line(7, TestLogs.START, new StringBuilder("\n")).toString().getBytes(UTF_8));
+            reopened.update();
+            assertEquals(1, reopened.blockCount());
+            check(f, reopened, LogFilter.propertyEquals("id", 7));
+        } finally {
+            Files.deleteIfExists(file);
+            Files.deleteIfExists(sidecar);
+        }
+    }
+
+    private static List<long[]> ranges(LogIndex index, Predicate<LogRecord> filter, Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return index.candidateRanges(filter, channel);
+        }
+    }
+
+    private void check(LogStreamFactory f, LogIndex index, Predicate<LogRecord> filter) throws IOException {
+        List<String> expected;
+        try (Stream<LogRecord> s = f.stream(filter)) {
+            expected = s.map(LogRecord::msg).collect(Collectors.toList());
+        }
+        List<String> found;
+        try (Stream<LogRecord> s = f.stream(filter, index)) {
+            found = s.map(LogRecord::msg).collect(Collectors.toList());
+        }
+        assertEquals(expected, found);
+    }
+}
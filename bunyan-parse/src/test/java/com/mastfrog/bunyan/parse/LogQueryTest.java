@@ -0,0 +1,172 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 Tim Boudreau.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.bunyan.parse;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.Test;
+
+/**
+ *
+ * @author Tim Boudreau
+ */
+public class LogQueryTest {
+
+    @Test
+    public void testQueries() throws IOException {
+        Path file = TestLogs.write(1000);
+        try {
+            LogStreamFactory f = new LogStreamFactory(file, TestLogs.mapper());
+            assertEquals(100L, count(f, "level==info && status==500"));
+            assertEquals(0L, count(f, "level>=warn and status==500"));
+            assertEquals(500L, count(f, "level>30"));
+            assertEquals(1L, count(f, "name==\"thing1\" && req.path==/api/7"));
+            assertEquals(60L, count(f, "time>=2026-10-01T00:10:00Z && time<2026-10-01T00:11:00Z"));
+            assertEquals(1000L, count(f, "time>2026-09-30"));
+            assertEquals(10L, count(f, "msg =~ \"message 1[0-9]$\""));
+            assertEquals(102L, count(f, "!(status==200) || id<3"));
+            assertEquals(800L, count(f, "hostname!=host0"));
+            assertEquals(1000L, count(f, "missing!=3"));
+            assertEquals(0L, count(f, "missing>3 || status==\"500\""));
+            assertEquals(1000L, count(f, "missing==null"));
+            assertEquals(3L, count(f, "not (id>=3) && (pid<1010 or id==-1)"));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    public void testCheapestFirst() {
+        LogFilter filter = LogFilter.parse("req.path=~\"^/api\" && status==500 && name==requests && level>=40");
+        assertEquals("(((level>=40 && name==\"requests\") && status==500) && req.path=~\"^/api\")",
+                filter.toString());
+    }
+
+    @Test
+    public void testPrefilter() {
+        LogFilter filter = LogFilter.parse("level>=40 && status==500 && name==\"thing1\" && req.path=~x");
+        List<Set<String>> groups = new ArrayList<>();
+        filter.collectPrefilterGroups(groups);
+        assertTrue(groups.toString(), groups.contains(new HashSet<>(Arrays.asList("\"status\":500", "\"status\": 500"))));
+        assertTrue(groups.toString(), groups.contains(new HashSet<>(Arrays.asList("\"name\":\"thing1\"", "\"name\": \"thing1\""))));
+        assertTrue(groups.toString(), groups.contains(new HashSet<>(Arrays.asList("\"req.path\"", "\"path\""))));
+        assertEquals(groups.toString(), 3, groups.size());
+
+        ByteMatcher matcher = filter.prefilter();
+        assertTrue(matches(matcher, line(10)));
+        assertFalse(matches(matcher, line(11)));
+        assertFalse(matches(matcher, line(20)));
+
+        // Nothing can be required of an absent or unequal field
+        groups.clear();
+        LogFilter.parse("status!=500 || missing==null").collectPrefilterGroups(groups);
+        assertTrue(groups.toString(), groups.isEmpty());
+        Set<String> fields = new HashSet<>();
+        assertTrue(LogFilter.parse("req.path==x && level>30").collectFieldNames(fields));
+        assertEquals(new HashSet<>(Arrays.asList("req", "req.path", "level")), fields);
+    }
+
+    @Test
+    public void testErrors() {
+        for (String bad : new String[]{"level>>3", "status==", "(a==1", "a==\"x", "a=1",
+            "time>yesterday", "a=~\"(\"", "a==1 b==2", "==1"}) {
+            try {
+                LogFilter.parse(bad);
+                fail("Should not parse " + bad);
+            } catch (IllegalArgumentException ex) {
+                // ok
+            }
+        }
+    }
+
+    private static String line(int i) {
+        return TestLogs.line(i, TestLogs.START.plusSeconds(i), new StringBuilder()).toString();
+    }
+
+    private static boolean matches(ByteMatcher matcher, String line) {
+        byte[] bytes = line.getBytes(UTF_8);
+        return matcher.matches(ByteBuffer.wrap(bytes), 0, bytes.length);
+    }
+
+    @Test
+    public void testIndexesAgreeOnIntegralDoubles() throws IOException {
+        // Some writers emit whole numbers as 500.0
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 500; i++) {
+            int at = sb.length();
+            TestLogs.line(i, TestLogs.START.plusSeconds(i), sb).append('\n');
+            if (i == 250) {
+                String line = sb.substring(at).replace("\"status\":500", "\"status\":500.0");
+                sb.setLength(at);
+                sb.append(line);
+            }
+        }
+        Path file = TestLogs.write(sb.toString());
+        Path sidecar = file.resolveSibling(file.getFileName() + ".idx");
+        Path columnar = file.resolveSibling(file.getFileName() + ".col");
+        try {
+            LogStreamFactory f = new LogStreamFactory(file, TestLogs.mapper());
+            LogFilter query = LogFilter.parse("status==500 && id>=250 && id<260");
+            assertEquals(1L, count(f, "status==500 && id>=250 && id<260"));
+            LogIndex index = LogIndex.open(file, sidecar, 1024, TestLogs.mapper(), "status");
+            try (Stream<LogRecord> s = f.stream(query, index)) {
+                assertEquals(1L, s.count());
+            }
+            ColumnarLog log;
+            try (Stream<LogRecord> s = f.stream()) {
+                log = ColumnarLog.write(s, columnar, TestLogs.mapper(), 16, "status");
+            }
+            try (Stream<LogRecord> s = log.stream(query)) {
+                assertEquals(1L, s.count());
+            }
+            assertEquals("500", IndexBlock.indexText(500.0));
+            assertEquals("-3", IndexBlock.indexText(-3F));
+            assertEquals("100000000000000000000", IndexBlock.indexText(1e20));
+            assertEquals(null, IndexBlock.indexText(1.5));
+        } finally {
+            Files.deleteIfExists(file);
+            Files.deleteIfExists(sidecar);
+            Files.deleteIfExists(columnar);
+        }
+    }
+
+    private static long count(LogStreamFactory f, String query) throws IOException {
+        try (Stream<LogRecord> s = f.stream(LogFilter.parse(query))) {
+            return s.count();
+        }
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 Tim Boudreau.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.bunyan.parse;
+
+import java.io.IOException;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ *
+ * @author Tim Boudreau
+ */
+public class MessageIndexTest {
+
+    private static final int BLOCK_SIZE = 4096;
+    private static final String[] WORDS = {"connection", "refused", "timeout", "upstream", "cache",
+        "miss", "retrying", "request", "completed", "slowly"};
+
+    @Test
+    public void testIndexedSearchesMatchFullStreams() throws IOException, InterruptedException {
+        Path file = TestLogs.write(lines(0, 3000));
+        Path sidecar = file.resolveSibling(file.getFileName() + ".msgidx");
+        try {
+            LogStreamFactory f = new LogStreamFactory(file, TestLogs.mapper());
+            MessageIndex index = MessageIndex.open(file, sidecar, BLOCK_SIZE, TestLogs.mapper(), "user");
+            int blocks = index.blockCount();
+            assertTrue(blocks + " blocks", blocks > 50);
+            assertEquals(Files.size(file), index.indexedTo());
+            // Only a sample of the words is held in memory
+            int words = index.wordCount();
+            assertTrue(words + " words", words > 6000);
+            assertTrue(index.residentWordCount() + " resident",
+                    index.residentWordCount() <= words / MessageIndex.SAMPLE_INTERVAL + 1);
+
+            check(f, index, LogFilter.messageContains("item 1234 "));
+            check(f, index, LogFilter.messageContains("connection refused"));
+            check(f, index, LogFilter.messageContains("on refused"));
+            check(f, index, LogFilter.messageContains("em 99"));
+            check(f, index, LogFilter.messageContains("ssag"));
+            check(f, index, LogFilter.messageContains("Connection"));
+            check(f, index, LogFilter.messageContains("!"));
+            check(f, index, LogFilter.messageContains("item 12 ").or(LogFilter.messageContains("item 2999 ")));
+            check(f, index, LogFilter.messageContains("timeout").and(LogFilter.levelMatches(40)));
+            check(f, index, LogFilter.messageContains("item 77 ").negate());
+            check(f, index, LogFilter.propertyContains("user", "bob-17"));
+            check(f, index, LogFilter.propertyContains("user", "ob-1"));
+            check(f, index, LogFilter.propertyContains("host", "alice"));
+            check(f, index, r -> r.msg().contains("item 5 "));
+
+            // A search for a rare word touches only a block or two
+            assertTrue(bytes(index, LogFilter.messageContains("item 1234 "), file) <= BLOCK_SIZE * 3);
+            assertTrue(bytes(index, LogFilter.propertyContains("user", "bob-1234"), file) <= BLOCK_SIZE * 3);
+            assertEquals(0, ranges(index, LogFilter.messageContains("xyzzy"), file).size());
+            assertEquals(0, ranges(index, LogFilter.messageContains("bob"), file).size());
+
+            // Appends are written as segments, which are merged once there
+            // are too many
+            for (int i = 0; i < MessageIndex.MAX_SEGMENTS + 2; i++) {
+                Files.write(file, lines(3000 + i * 10, 3010 + i * 10).getBytes(UTF_8), StandardOpenOption.APPEND);
+                index.update();
+            }
+            index.awaitMerge();
+            assertTrue(index.segmentCount() + " segments", index.segmentCount() <= 3);
+            assertEquals(Files.size(file), index.indexedTo());
+            check(f, index, LogFilter.messageContains("item 3175 "));
+            check(f, index, LogFilter.messageContains("item 3001 "));
+
+            // Reopening replays the segments
+            MessageIndex reopened = MessageIndex.open(file, sidecar, BLOCK_SIZE, TestLogs.mapper(), "user");
+            assertEquals(index.blockCount(), reopened.blockCount());
+            assertEquals(index.wordCount(), reopened.wordCount());
+            check(f, reopened, LogFilter.messageContains("item 3175 "));
+
+            // A partly written segment is dropped
+            Files.write(file, lines(4000, 4010).getBytes(UTF_8), StandardOpenOption.APPEND);
+            reopened.update();
+            Files.write(sidecar, new byte[]{0, 0, 1, 0, 1, 2}, StandardOpenOption.APPEND);
+            reopened = MessageIndex.open(file, sidecar, BLOCK_SIZE, TestLogs.mapper(), "user");
+            assertEquals(Files.size(file), reopened.indexedTo());
+            check(f, reopened, LogFilter.messageContains("item 4005 "));
+            reopened.compact();
+            assertEquals(1, reopened.segmentCount());
+            assertTrue(reopened.residentWordCount() + " resident",
+                    reopened.residentWordCount() <= reopened.wordCount() / MessageIndex.SAMPLE_INTERVAL + 1);
+            check(f, MessageIndex.open(file, sidecar, BLOCK_SIZE, TestLogs.mapper(), "user"),
+                    LogFilter.messageContains("item 4005 "));
+
+            // A file rotated and replaced by a larger one is read in full
+            // until the index is updated
+            Files.write(file, lines(6000, 10500).getBytes(UTF_8));
+            assertTrue(Files.size(file) > reopened.indexedTo());
+            try (Stream<LogRecord> s = f.stream(LogFilter.messageContains("item 6050:"), reopened)) {
+                assertEquals(1L, s.count());
+            }
+
+            // Replacing the file rebuilds the index
+            Files.write(file, lines(5000, 5100).getBytes(UTF_8));
+            reopened.update();
+            check(f, reopened, LogFilter.messageContains("item 5050 "));
+            assertEquals(0, ranges(reopened, LogFilter.messageContains("item 4005 "), file).size());
+        } finally {
+            Files.deleteIfExists(file);
+            Files.deleteIfExists(sidecar);
+        }
+    }
+
+    private static List<long[]> ranges(MessageIndex index, Predicate<LogRecord> filter, Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return index.candidateRanges(filter, channel);
+        }
+    }
+
+    private static long bytes(MessageIndex index, LogFilter filter, Path file) throws IOException {
+        List<long[]> ranges = ranges(index, filter, file);
+        return ranges.stream().mapToLong(r -> r[1] - r[0]).sum();
+    }
+
+    private static void check(LogStreamFactory f, MessageIndex index, Predicate<LogRecord> filter) throws IOException {
+        List<String> expected;
+        try (Stream<LogRecord> s = f.stream(filter)) {
+            expected = s.map(LogRecord::msg).collect(Collectors.toList());
+        }
+        try (Stream<LogRecord> s = f.stream(filter, index)) {
+            assertEquals(filter.toString(), expected, s.map(LogRecord::msg).collect(Collectors.toList()));
+        }
+    }
+
+    private static String lines(int from, int to) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = from; i < to; i++) {
+            sb.append("{\"name\":\"thing\",\"hostname\":\"alice\",\"pid\":1,\"level\":")
+                    .append(i % 2 == 0 ? 30 : 40)
+                    .append(",\"msg\":\"Message for item ").append(i).append(": ")
+                    .append(WORDS[i % WORDS.length]).append(' ').append(WORDS[(i / 10) % WORDS.length])
+                    .append("!\",\"user\":\"bob-").append(i)
+                    .append("\",\"time\":\"").append(TestLogs.START.plusSeconds(i))
+                    .append("\",\"v\":0}\n");
+        }
+        return sb.toString();
+    }
+}
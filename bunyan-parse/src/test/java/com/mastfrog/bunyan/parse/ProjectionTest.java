@@ -0,0 +1,127 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 Tim Boudreau.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.bunyan.parse;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ *
+ * @author Tim Boudreau
+ */
+public class ProjectionTest {
+
+    private static final boolean RUN_BENCHMARK = false;
+
+    @Test
+    public void testProjectedFieldsMatchFullRecords() throws IOException {
+        Path file = TestLogs.write(300);
+        try {
+            LogStreamFactory f = new LogStreamFactory(file, TestLogs.mapper());
+            LogFilter filter = LogFilter.levelMatches(40).and(LogFilter.propertyEquals("status", 500).negate());
+            List<LogRecord> full;
+            try (Stream<LogRecord> s = f.stream(filter)) {
+                full = s.collect(Collectors.toList());
+            }
+            List<LogRecord> projected;
+            try (Stream<LogRecord> s = f.stream(filter, "msg", "time", "req")) {
+                projected = s.collect(Collectors.toList());
+            }
+            assertEquals(150, full.size());
+            assertEquals(full.size(), projected.size());
+            for (int i = 0; i < full.size(); i++) {
+                LogRecord a = full.get(i);
+                LogRecord b = projected.get(i);
+                assertEquals(a.msg(), b.msg());
+                assertEquals(a.time(), b.time());
+                assertEquals(a.level(), b.level());
+                assertEquals(a.get("req"), b.get("req"));
+                assertEquals(a.get("status"), b.get("status"));
+                // Not requested, not needed by the filter
+                assertNull(b.name());
+                assertNull(b.hostName());
+                assertEquals(0, b.pid());
+                assertFalse(b.has("id"));
+                assertTrue(b.get("req") instanceof Map<?, ?>);
+            }
+            // Non-LogFilter predicates see only the requested fields
+            try (Stream<LogRecord> s = f.stream(r -> r.level() == 40, "msg")) {
+                assertEquals(0L, s.count());
+            }
+            // A custom LogFilter may read anything, so gets whole records
+            LogFilter custom = new LogFilter() {
+                @Override
+                public boolean test(LogRecord t) {
+                    return "host1".equals(t.hostName());
+                }
+            };
+            try (Stream<LogRecord> s = f.stream(custom, "msg")) {
+                assertEquals(60L, s.count());
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void benchmark() throws IOException {
+        if (!RUN_BENCHMARK) {
+            return;
+        }
+        Path file = TestLogs.write(200000);
+        try {
+            LogStreamFactory f = new LogStreamFactory(file, TestLogs.mapper());
+            LogFilter filter = LogFilter.levelGreaterThan(30);
+            for (int i = 0; i < 10; i++) {
+                long start = System.nanoTime();
+                long fullCount;
+                try (Stream<LogRecord> s = f.stream(filter)) {
+                    fullCount = s.count();
+                }
+                long full = System.nanoTime() - start;
+                start = System.nanoTime();
+                long projectedCount;
+                try (Stream<LogRecord> s = f.stream(filter, "level")) {
+                    projectedCount = s.count();
+                }
+                long projected = System.nanoTime() - start;
+                assertEquals(fullCount, projectedCount);
+                System.out.println("Full " + (full / 1000000D) + "ms, projected "
+                        + (projected / 1000000D) + "ms for " + fullCount);
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+}
@@ -0,0 +1,175 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 Tim Boudreau.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.bunyan.parse;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ *
+ * @author Tim Boudreau
+ */
+public class PropertyMapTest {
+
+    private static final boolean RUN_BENCHMARK = false;
+
+    @Test
+    public void testBehavesLikeLinkedHashMap() {
+        PropertyMap map = new PropertyMap();
+        Map<String, Object> expected = new LinkedHashMap<>();
+        Object[][] puts = {
+            {"id", 3}, {"status", 500}, {"big", 1L << 40}, {"dur", 1.5},
+            {"path", "/api"}, {"ok", true}, {"none", null},
+            {"req", new LinkedHashMap<>()}, {"tags", Arrays.asList("a", "b")},
+            // Same kind, then a different kind
+            {"id", 4}, {"status", "error"}, {"dur", 2L}};
+        for (Object[] put : puts) {
+            assertEquals(expected.put((String) put[0], put[1]), map.put((String) put[0], put[1]));
+            assertEquals(expected, map);
+            assertEquals(new ArrayList<>(expected.keySet()), new ArrayList<>(map.keySet()));
+        }
+        assertEquals(expected.hashCode(), map.hashCode());
+        assertEquals(Integer.class, map.get("id").getClass());
+        assertEquals(Long.class, map.get("big").getClass());
+        assertEquals(Long.class, map.get("dur").getClass());
+        assertTrue(map.containsKey("none"));
+        assertNull(map.get("none"));
+        assertFalse(map.containsKey("nothing"));
+
+        assertEquals(expected.remove("path"), map.remove("path"));
+        assertEquals(expected, map);
+        Iterator<Map.Entry<String, Object>> it = map.entrySet().iterator();
+        Iterator<Map.Entry<String, Object>> eit = expected.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<String, Object> e = it.next();
+            eit.next();
+            if (e.getKey().equals("ok")) {
+                e.setValue(false);
+                expected.put("ok", false);
+            } else if (e.getKey().startsWith("s") || e.getKey().startsWith("b")) {
+                it.remove();
+                eit.remove();
+            }
+        }
+        assertEquals(expected, map);
+        assertEquals(new ArrayList<>(expected.keySet()), new ArrayList<>(map.keySet()));
+        map.clear();
+        assertTrue(map.isEmpty());
+    }
+
+    @Test
+    public void testRecordsShareShapes() throws IOException {
+        Path file = TestLogs.write(100);
+        try {
+            LogStreamFactory f = new LogStreamFactory(file, TestLogs.mapper());
+            try (Stream<LogRecord> s = f.stream()) {
+                List<LogRecord> records = s.collect(Collectors.toList());
+                PropertyMap a = (PropertyMap) records.get(1).props;
+                PropertyMap b = (PropertyMap) records.get(99).props;
+                assertSame(a.shape(), b.shape());
+                assertEquals(3, a.size());
+                assertEquals(new HashSet<>(Arrays.asList("id", "status", "req")), records.get(1).keys());
+                assertEquals(99, (int) records.get(99).get("id", Integer.class));
+                assertEquals(200, records.get(99).get("status"));
+                assertTrue(records.get(99).has("req"));
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    public void testShapeTreeIsBounded() {
+        PropertyMap.Shape initial = PropertyMap.Shape.root();
+        // Keys in ever-changing orders and kinds, as a long-running reader of
+        // arbitrary logs might see
+        Random rnd = new Random(3);
+        for (int i = 0; i < 10000; i++) {
+            PropertyMap map = new PropertyMap();
+            for (int j = 0; j < 6; j++) {
+                map.put("key" + rnd.nextInt(40), rnd.nextBoolean() ? (Object) i : (Object) (i * 1.5));
+            }
+        }
+        assertTrue(initial != PropertyMap.Shape.root());
+        // Maps still share shapes once the tree has been replaced
+        PropertyMap a = new PropertyMap();
+        PropertyMap b = new PropertyMap();
+        for (PropertyMap map : new PropertyMap[]{a, b}) {
+            map.put("id", 1);
+            map.put("status", 200);
+        }
+        assertSame(a.shape(), b.shape());
+        assertEquals(200, b.get("status"));
+    }
+
+    @Test
+    public void benchmarkHeapPerRecord() {
+        if (!RUN_BENCHMARK) {
+            return;
+        }
+        long linked = heapPerMap(LinkedHashMap::new);
+        long compact = heapPerMap(PropertyMap::new);
+        System.out.println("Bytes per map: LinkedHashMap " + linked + ", PropertyMap " + compact);
+    }
+
+    private static long heapPerMap(Supplier<Map<String, Object>> factory) {
+        int count = 200000;
+        List<Map<String, Object>> maps = new ArrayList<>(count);
+        System.gc();
+        Runtime rt = Runtime.getRuntime();
+        long before = rt.totalMemory() - rt.freeMemory();
+        for (int i = 0; i < count; i++) {
+            Map<String, Object> map = factory.get();
+            map.put("id", i + 1000);
+            map.put("status", i % 10 == 0 ? 500 : 200);
+            map.put("dur", i * 1.5);
+            map.put("bytes", (long) i * 1000);
+            map.put("method", "GET");
+            map.put("path", "/api");
+            maps.add(map);
+        }
+        System.gc();
+        long after = rt.totalMemory() - rt.freeMemory();
+        assertEquals(count, maps.size());
+        return (after - before) / count;
+    }
+}
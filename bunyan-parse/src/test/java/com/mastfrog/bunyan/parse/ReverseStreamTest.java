@@ -0,0 +1,156 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 Tim Boudreau.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.bunyan.parse;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ *
+ * @author Tim Boudreau
+ */
+public class ReverseStreamTest {
+
+    private static final LineSpliterator.LineHandler<String> STRINGS
+            = (ByteBuffer buf, int start, int end) -> {
+                byte[] bytes = new byte[end - start];
+                for (int i = 0; i < bytes.length; i++) {
+                    bytes[i] = buf.get(start + i);
+                }
+                return new String(bytes, UTF_8);
+            };
+
+    @Test
+    public void testLinesAreReadBackwardsAcrossChunks() throws IOException {
+        Random rnd = new Random(5);
+        for (boolean trailingNewline : new boolean[]{true, false}) {
+            List<String> expected = new ArrayList<>();
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < 500; i++) {
+                StringBuilder line = new StringBuilder().append(i).append(':');
+                int len = i % 50 == 0 ? 300 : rnd.nextInt(40);
+                for (int j = 0; j < len; j++) {
+                    line.append((char) ('a' + rnd.nextInt(26)));
+                }
+                expected.add(line.toString());
+                sb.append(line).append(i % 7 == 0 ? "\r\n" : "\n");
+                if (i % 11 == 0) {
+                    // Blank lines are skipped
+                    sb.append('\n');
+                }
+            }
+            if (!trailingNewline) {
+                sb.setLength(sb.length() - 1);
+            }
+            Collections.reverse(expected);
+            Path file = TestLogs.write(sb.toString());
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                for (int chunkSize : new int[]{7, 64, 100, 4096, 1024 * 1024}) {
+                    ReverseLineSpliterator<String> lines = new ReverseLineSpliterator<>(channel,
+                            STRINGS, null, chunkSize, 0, channel.size());
+                    assertEquals("chunk size " + chunkSize, expected,
+                            StreamSupport.stream(lines, false).collect(Collectors.toList()));
+                }
+            } finally {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @Test
+    public void testNewestFirstWithLimit() throws IOException {
+        Path file = TestLogs.write(3000);
+        try {
+            LogStreamFactory f = new LogStreamFactory(file, TestLogs.mapper());
+            List<Integer> forward;
+            try (Stream<LogRecord> s = f.stream(LogFilter.levelMatches(40))) {
+                forward = ids(s);
+            }
+            Collections.reverse(forward);
+            try (Stream<LogRecord> s = f.reverseStream(LogFilter.levelMatches(40))) {
+                assertEquals(forward, ids(s));
+            }
+            // Only as many records as needed to find the limit are examined
+            AtomicInteger examined = new AtomicInteger();
+            LogFilter counting = new LogFilter() {
+                @Override
+                public boolean test(LogRecord t) {
+                    examined.incrementAndGet();
+                    return true;
+                }
+            };
+            try (Stream<LogRecord> s = f.reverseStream(counting.and(LogFilter.levelMatches(40))
+                    .and(LogFilter.limit(5)))) {
+                assertEquals(Arrays.asList(2999, 2997, 2995, 2993, 2991), ids(s));
+            }
+            assertTrue(examined.get() + " examined", examined.get() <= 10);
+            try (Stream<LogRecord> s = f.reverseStream(LogFilter.parse("status==500").and(LogFilter.limit(3)))) {
+                assertEquals(Arrays.asList(2990, 2980, 2970), ids(s));
+            }
+            try (Stream<LogRecord> s = f.reverseStream(null)) {
+                assertEquals(Integer.valueOf(2999), s.findFirst().get().get("id", Integer.class));
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testTruncatedAfterOpening() throws IOException {
+        Path file = TestLogs.write(100);
+        try {
+            LogStreamFactory f = new LogStreamFactory(file, TestLogs.mapper());
+            try (Stream<LogRecord> s = f.reverseStream(null)) {
+                try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                    channel.truncate(0);
+                }
+                // What was there is gone, and nothing fails
+                assertEquals(0L, s.count());
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    private static List<Integer> ids(Stream<LogRecord> s) {
+        return s.map(r -> r.get("id", Integer.class)).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 Tim Boudreau.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.bunyan.parse;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ *
+ * @author Tim Boudreau
+ */
+public class SegmentsTest {
+
+    @Test
+    public void testRotatedAndGzippedSegments() throws IOException {
+        Path dir = Files.createTempDirectory("SegmentsTest");
+        List<Path> files = new ArrayList<>();
+        try {
+            // Oldest first: app.log.2.gz, app.log.1.gz (two gzip members),
+            // then app.log
+            files.add(write(dir.resolve("app.log.2.gz"), gzip(lines(0, 1000))));
+            ByteArrayOutputStream multi = new ByteArrayOutputStream();
+            multi.write(gzip(lines(1000, 1500)));
+            multi.write(gzip(lines(1500, 2000)));
+            files.add(write(dir.resolve("app.log.1.gz"), multi.toByteArray()));
+            files.add(write(dir.resolve("app.log"), lines(2000, 2500).getBytes(UTF_8)));
+            files.add(write(dir.resolve("other.txt"), lines(5000, 5001).getBytes(UTF_8)));
+            // Sidecars matching the glob are not segments
+            for (String sidecar : new String[]{"app.log.idx", "app.log.msgidx", "app.log.msgidx.merge",
+                "app.log.msgidx.tmp", "app.log.checkpoint"}) {
+                files.add(write(dir.resolve(sidecar), lines(6000, 6001).getBytes(UTF_8)));
+            }
+
+            LogStreamFactory f = new LogStreamFactory(dir, "app.log*", TestLogs.mapper());
+            try (Stream<LogRecord> s = f.stream(null)) {
+                assertEquals(range(0, 2500), ids(s));
+            }
+            // Stateful filters see records in order
+            try (Stream<LogRecord> s = f.stream(LogFilter.named("thing1").and(LogFilter.skip(400)).and(LogFilter.limit(5)))) {
+                assertEquals(ids(new int[]{1201, 1204, 1207, 1210, 1213}), ids(s));
+            }
+            // A tiny memory budget still reads everything
+            try (Stream<LogRecord> s = f.stream(LogFilter.levelMatches(40), 3, 4096)) {
+                assertEquals(1250L, s.count());
+            }
+            // Closing part way through does not hang
+            try (Stream<LogRecord> s = f.stream(null, 3, 4096)) {
+                Iterator<LogRecord> it = s.iterator();
+                for (int i = 0; i < 10; i++) {
+                    assertEquals(i, (int) it.next().get("id", Integer.class));
+                }
+            }
+            // A single gzipped file
+            LogStreamFactory gz = new LogStreamFactory(dir.resolve("app.log.1.gz"), TestLogs.mapper());
+            try (Stream<LogRecord> s = gz.stream(null)) {
+                assertEquals(range(1000, 2000), ids(s));
+            }
+            try {
+                gz.mappedStream(null).close();
+                throw new AssertionError("Should not be able to map a gzip file");
+            } catch (IOException ex) {
+                assertTrue(ex.getMessage().contains("gzip"));
+            }
+        } finally {
+            for (Path p : files) {
+                Files.deleteIfExists(p);
+            }
+            Files.deleteIfExists(dir);
+        }
+    }
+
+    private static List<Integer> ids(Stream<LogRecord> s) {
+        return s.map(r -> r.get("id", Integer.class)).collect(Collectors.toList());
+    }
+
+    private static List<Integer> ids(int[] ids) {
+        List<Integer> result = new ArrayList<>();
+        for (int id : ids) {
+            result.add(id);
+        }
+        return result;
+    }
+
+    private static List<Integer> range(int from, int to) {
+        List<Integer> result = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+            result.add(i);
+        }
+        return result;
+    }
+
+    private static String lines(int from, int to) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = from; i < to; i++) {
+            TestLogs.line(i, TestLogs.START.plusSeconds(i), sb).append('\n');
+        }
+        return sb.toString();
+    }
+
+    private static byte[] gzip(String text) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gz = new GZIPOutputStream(out)) {
+            gz.write(text.getBytes(UTF_8));
+        }
+        return out.toByteArray();
+    }
+
+    private static Path write(Path file, byte[] bytes) throws IOException {
+        return Files.write(file, bytes);
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 Tim Boudreau.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.bunyan.parse;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ *
+ * @author Tim Boudreau
+ */
+public class StringCacheTest {
+
+    @Test
+    public void testBoundedCache() {
+        StringCache cache = StringCache.bounded(64, 16);
+        String a = cache.dedup(new String("hello"));
+        assertSame(a, cache.dedup(new String("hello")));
+        char[] chars = "xxhelloxx".toCharArray();
+        assertSame(a, cache.dedup(chars, 2, 5));
+        assertEquals(2L, cache.hits());
+        assertEquals(1L, cache.misses());
+        assertNull(cache.dedup(null));
+
+        // Too long to cache
+        String longer = new String("this is longer than sixteen");
+        assertSame(longer, cache.dedup(longer));
+        assertNotSame(longer, cache.dedup(new String(longer)));
+
+        // Many unique strings only ever displace each other
+        for (int i = 0; i < 100000; i++) {
+            assertEquals("s" + i, cache.dedup("s" + i));
+        }
+        assertEquals(100001L, cache.misses());
+        assertTrue(cache.hitRate() < 0.001);
+    }
+
+    @Test
+    public void testConcurrentUse() throws Exception {
+        StringCache cache = StringCache.bounded(256, 32);
+        ExecutorService threads = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                futures.add(threads.submit(() -> {
+                    for (int i = 0; i < 100000; i++) {
+                        String s = "name" + (i % 50);
+                        assertEquals(s, cache.dedup(s));
+                        char[] c = s.toCharArray();
+                        assertEquals(s, cache.dedup(c, 0, c.length));
+                    }
+                }));
+            }
+            for (Future<?> f : futures) {
+                f.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            threads.shutdown();
+        }
+        assertTrue(cache.toString(), cache.hitRate() > 0.5);
+    }
+
+    @Test
+    public void testRecordsShareStrings() throws IOException {
+        Path file = TestLogs.write(100);
+        StringCache original = LogRecord.stringCache();
+        try {
+            LogRecord.setStringCache(StringCache.bounded(128, 64));
+            LogStreamFactory f = new LogStreamFactory(file, TestLogs.mapper());
+            try (Stream<LogRecord> s = f.stream()) {
+                List<LogRecord> records = s.collect(Collectors.toList());
+                assertSame(records.get(0).name(), records.get(3).name());
+                assertSame(records.get(0).hostName(), records.get(5).hostName());
+            }
+            try (Stream<LogRecord> s = f.stream(null, "name", "msg")) {
+                List<LogRecord> records = s.collect(Collectors.toList());
+                assertSame(records.get(1).name(), records.get(4).name());
+            }
+            try (Stream<LogRecord> s = f.lazyStream(null)) {
+                List<LogRecord> records = s.collect(Collectors.toList());
+                assertSame(records.get(2).hostName(), records.get(7).hostName());
+            }
+            assertTrue(LogRecord.stringCache().toString(), LogRecord.stringCache().hitRate() > 0.5);
+
+            LogRecord.setStringCache(StringCache.none());
+            try (Stream<LogRecord> s = f.stream()) {
+                List<LogRecord> records = s.collect(Collectors.toList());
+                assertNotSame(records.get(0).name(), records.get(3).name());
+                assertEquals(records.get(0).name(), records.get(3).name());
+            }
+        } finally {
+            LogRecord.setStringCache(original);
+            Files.deleteIfExists(file);
+        }
+    }
+}
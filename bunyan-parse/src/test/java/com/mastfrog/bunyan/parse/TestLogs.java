@@ -0,0 +1,92 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 Tim Boudreau.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.bunyan.parse;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import java.io.IOException;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.ZonedDateTime;
+
+/**
+ * Generates bunyan-style log files for tests.
+ *
+ * @author Tim Boudreau
+ */
+final class TestLogs {
+
+    static final ZonedDateTime START = ZonedDateTime.parse("2026-10-01T00:00:00Z");
+
+    private TestLogs() {
+        throw new AssertionError();
+    }
+
+    /**
+     * Write a log file whose i'th record has level 30 or 40 alternately,
+     * name thing0..thing2, message "message i", id i, a status, a nested
+     * object, and a time i seconds after START.
+     */
+    static Path write(int count) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            line(i, START.plusSeconds(i), sb).append('\n');
+        }
+        return write(sb.toString());
+    }
+
+    static StringBuilder line(int i, ZonedDateTime time, StringBuilder sb) {
+        return sb.append("{\"name\":\"thing").append(i % 3)
+                .append("\",\"hostname\":\"host").append(i % 5)
+                .append("\",\"pid\":").append(1000 + i % 7)
+                .append(",\"level\":").append(i % 2 == 0 ? 30 : 40)
+                .append(",\"msg\":\"message ").append(i)
+                .append("\",\"id\":").append(i)
+                .append(",\"status\":").append(i % 10 == 0 ? 500 : 200)
+                .append(",\"req\":{\"path\":\"/api/").append(i).append("\",\"tags\":[\"a\",\"b\"]}")
+                .append(",\"time\":\"").append(time)
+                .append("\",\"v\":0}");
+    }
+
+    static Path write(String content) throws IOException {
+        Path file = Files.createTempFile("bunyan-parse", ".log");
+        Files.write(file, content.getBytes(UTF_8));
+        return file;
+    }
+
+    static ObjectMapper mapper() {
+        SimpleModule module = new SimpleModule();
+        module.addDeserializer(ZonedDateTime.class, new JsonDeserializer<ZonedDateTime>() {
+            @Override
+            public ZonedDateTime deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
+                return ZonedDateTime.parse(p.getValueAsString());
+            }
+        });
+        return new ObjectMapper().registerModule(module);
+    }
+}
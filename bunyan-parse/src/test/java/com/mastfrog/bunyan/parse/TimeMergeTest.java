@@ -0,0 +1,205 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 Tim Boudreau.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.bunyan.parse;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ *
+ * @author Tim Boudreau
+ */
+public class TimeMergeTest {
+
+    @Test
+    public void testMergeInTimeOrder() throws IOException {
+        List<Path> files = new ArrayList<>();
+        try {
+            // Record i goes to host i % 3, and the third host's log is gzipped
+            StringBuilder[] hosts = new StringBuilder[]{new StringBuilder(), new StringBuilder(), new StringBuilder()};
+            for (int i = 0; i < 3000; i++) {
+                TestLogs.line(i, TestLogs.START.plusSeconds(i), hosts[i % 3]).append('\n');
+            }
+            files.add(TestLogs.write(hosts[0].toString()));
+            files.add(TestLogs.write(hosts[1].toString()));
+            files.add(gzip(hosts[2].toString()));
+            try (Stream<LogRecord> s = LogStreamFactory.merge(files, TestLogs.mapper(), Duration.ZERO, null)) {
+                assertEquals(range(0, 3000), ids(s));
+            }
+            try (Stream<LogRecord> s = LogStreamFactory.merge(files, TestLogs.mapper(), Duration.ZERO,
+                    LogFilter.levelMatches(40).and(LogFilter.skip(10)).and(LogFilter.limit(3)))) {
+                assertEquals(ids(new int[]{21, 23, 25}), ids(s));
+            }
+            // Closing part way through does not hang
+            try (Stream<LogRecord> s = LogStreamFactory.merge(files, TestLogs.mapper(), Duration.ZERO, null)) {
+                Iterator<LogRecord> it = s.iterator();
+                for (int i = 0; i < 10; i++) {
+                    assertEquals(i, (int) it.next().get("id", Integer.class));
+                }
+            }
+        } finally {
+            for (Path p : files) {
+                Files.deleteIfExists(p);
+            }
+        }
+    }
+
+    @Test
+    public void testToleranceReordersWithinSource() throws IOException {
+        List<Path> files = new ArrayList<>();
+        try {
+            // The second host's clock steps back two seconds every ten records
+            StringBuilder even = new StringBuilder();
+            StringBuilder odd = new StringBuilder();
+            for (int i = 0; i < 1000; i += 2) {
+                TestLogs.line(i, TestLogs.START.plusSeconds(i), even).append('\n');
+            }
+            for (int i = 1; i < 1000; i += 2) {
+                int shifted = i % 10 == 1 && i > 1 ? i - 3 : i;
+                TestLogs.line(i, TestLogs.START.plusSeconds(shifted), odd).append('\n');
+            }
+            files.add(TestLogs.write(even.toString()));
+            files.add(TestLogs.write(odd.toString()));
+            try (Stream<LogRecord> s = LogStreamFactory.merge(files, TestLogs.mapper(), Duration.ofSeconds(3), null)) {
+                List<LogRecord> records = s.collect(Collectors.toList());
+                assertEquals(1000, records.size());
+                for (int i = 1; i < records.size(); i++) {
+                    assertTrue("Out of order at " + i + ": " + records.get(i - 1).time() + " then " + records.get(i).time(),
+                            !records.get(i).time().isBefore(records.get(i - 1).time()));
+                }
+            }
+            // With no tolerance, records are only ordered across sources
+            try (Stream<LogRecord> s = LogStreamFactory.merge(files, TestLogs.mapper(), Duration.ZERO, null)) {
+                assertEquals(1000L, s.count());
+            }
+        } finally {
+            for (Path p : files) {
+                Files.deleteIfExists(p);
+            }
+        }
+    }
+
+    @Test
+    public void testClockOffsetsCorrectSkewedSources() throws IOException {
+        List<Path> files = new ArrayList<>();
+        try {
+            // The second host's clock runs five seconds slow
+            StringBuilder even = new StringBuilder();
+            StringBuilder odd = new StringBuilder();
+            for (int i = 0; i < 1000; i++) {
+                TestLogs.line(i, TestLogs.START.plusSeconds(i % 2 == 0 ? i : i - 5), i % 2 == 0 ? even : odd).append('\n');
+            }
+            files.add(TestLogs.write(even.toString()));
+            files.add(TestLogs.write(odd.toString()));
+            Map<Path, Duration> offsets = Collections.singletonMap(files.get(1), Duration.ofSeconds(5));
+            try (Stream<LogRecord> s = LogStreamFactory.merge(files, offsets, TestLogs.mapper(), Duration.ZERO, null)) {
+                List<LogRecord> records = s.collect(Collectors.toList());
+                assertEquals(range(0, 1000), ids(records.stream()));
+                // The records' own times are unchanged
+                assertEquals(TestLogs.START.plusSeconds(-4).toInstant(), records.get(1).time().toInstant());
+            }
+            // Without the offset, the slow host's records come early
+            try (Stream<LogRecord> s = LogStreamFactory.merge(files, TestLogs.mapper(), Duration.ZERO, null)) {
+                assertEquals(1, (int) s.findFirst().get().get("id", Integer.class));
+            }
+        } finally {
+            for (Path p : files) {
+                Files.deleteIfExists(p);
+            }
+        }
+    }
+
+    @Test
+    public void testUntimedRecordsAtStartWithTolerance() throws IOException {
+        List<Path> files = new ArrayList<>();
+        try {
+            StringBuilder a = new StringBuilder();
+            a.append("{\"name\":\"thing\",\"msg\":\"untimed 1\",\"level\":30,\"v\":0}\n");
+            a.append("{\"name\":\"thing\",\"msg\":\"untimed 2\",\"level\":30,\"v\":0}\n");
+            StringBuilder b = new StringBuilder();
+            for (int i = 0; i < 100; i++) {
+                TestLogs.line(i, TestLogs.START.plusSeconds(i), i % 2 == 0 ? a : b).append('\n');
+            }
+            files.add(TestLogs.write(a.toString()));
+            files.add(TestLogs.write(b.toString()));
+            try (Stream<LogRecord> s = LogStreamFactory.merge(files, TestLogs.mapper(), Duration.ofSeconds(1), r -> true)) {
+                List<LogRecord> records = s.collect(Collectors.toList());
+                assertEquals(102, records.size());
+                assertEquals("untimed 1", records.get(0).msg());
+                assertEquals("untimed 2", records.get(1).msg());
+                for (int i = 2; i < records.size(); i++) {
+                    assertEquals(i - 2, (int) records.get(i).get("id", Integer.class));
+                }
+            }
+        } finally {
+            for (Path p : files) {
+                Files.deleteIfExists(p);
+            }
+        }
+    }
+
+    private static List<Integer> ids(Stream<LogRecord> s) {
+        return s.map(r -> r.get("id", Integer.class)).collect(Collectors.toList());
+    }
+
+    private static List<Integer> ids(int[] ids) {
+        List<Integer> result = new ArrayList<>();
+        for (int id : ids) {
+            result.add(id);
+        }
+        return result;
+    }
+
+    private static List<Integer> range(int from, int to) {
+        List<Integer> result = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+            result.add(i);
+        }
+        return result;
+    }
+
+    private static Path gzip(String text) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gz = new GZIPOutputStream(out)) {
+            gz.write(text.getBytes(UTF_8));
+        }
+        Path file = Files.createTempFile("bunyan-parse", ".log.gz");
+        return Files.write(file, out.toByteArray());
+    }
+}
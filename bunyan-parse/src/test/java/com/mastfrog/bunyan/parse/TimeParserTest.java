@@ -0,0 +1,211 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 Tim Boudreau.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.bunyan.parse;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ *
+ * @author Tim Boudreau
+ */
+public class TimeParserTest {
+
+    private static final boolean RUN_BENCHMARK = false;
+
+    @Test
+    public void testMatchesZonedDateTimeParse() {
+        String[] times = {
+            "2026-10-01T00:00:00Z", "2026-10-01T00:00:00.000Z", "2026-10-01T00:00:00.001Z",
+            "2026-10-01T00:00:01.5Z", "2026-10-01T23:59:59.999999999Z",
+            "2026-10-01T12:34:56.789+02:00", "2026-10-01T12:34:56.789-05:30",
+            "2026-10-01T12:34:56.789+02:00", "2024-02-29T00:00:00Z", "1969-12-31T23:59:59.999Z",
+            "2026-10-02T00:00:00.25Z", "2026-10-01T12:34:56-00:00"};
+        for (String time : times) {
+            ZonedDateTime expected = ZonedDateTime.parse(time);
+            assertEquals(time, expected, TimeParser.parse(time));
+            char[] chars = ("xx" + time + "yy").toCharArray();
+            assertEquals(time, expected.toInstant().toEpochMilli(),
+                    TimeParser.epochMillis(chars, 2, time.length()));
+        }
+        assertEquals(ZonedDateTime.parse("2026-10-01T12:34:56+02:00"), TimeParser.parse("2026-10-01T12:34:56+0200"));
+        assertEquals(ZonedDateTime.parse("2026-10-01T12:34:56+02:00"), TimeParser.parse("2026-10-01T12:34:56+02"));
+    }
+
+    @Test
+    public void testRejectsOtherShapes() {
+        String[] bad = {"", "2026-10-01", "2026-10-01T00:00:00", "2026-10-01T00:00:00.Z",
+            "2026-10-01T00:00:00.1234567890Z", "2026-13-01T00:00:00Z", "2026-02-30T00:00:00Z",
+            "2026-10-01T24:00:00Z", "2026-10-01 00:00:00Z", "2026-10-01T00:00:00+2:00",
+            "2026-10-01T00:00:00Z[UTC]", "2026-10-01T00:00:00Q", "1475280000000", "2026-1x-01T00:00:00Z"};
+        for (String time : bad) {
+            assertNull(time, TimeParser.parse(time));
+            char[] chars = time.toCharArray();
+            assertEquals(time, TimeParser.NO_TIME, TimeParser.epochMillis(chars, 0, chars.length));
+        }
+    }
+
+    @Test
+    public void testRecordsAndFilters() throws IOException {
+        ObjectMapper mapper = TestLogs.mapper();
+        LogRecord record = mapper.readValue(line("2026-10-01T00:00:00.000500Z"), LogRecord.class);
+        ZonedDateTime time = ZonedDateTime.parse("2026-10-01T00:00:00.000500Z");
+        assertEquals(time, record.time());
+        assertEquals(time.toInstant().toEpochMilli(), record.timeMillis());
+        // Within the same millisecond, whole times are compared
+        assertTrue(LogFilter.after(time.minusNanos(1)).test(record));
+        assertFalse(LogFilter.after(time).test(record));
+        assertTrue(LogFilter.before(time.plusNanos(1)).test(record));
+        assertFalse(LogFilter.before(time).test(record));
+        assertTrue(LogFilter.before(time.plusSeconds(1)).test(record));
+        assertFalse(LogFilter.after(time.plusSeconds(1)).test(record));
+
+        // Other shapes fall back to the mapper's deserializer
+        record = mapper.readValue(line("2026-10-01T00:00:00Z[UTC]"), LogRecord.class);
+        assertEquals(ZonedDateTime.parse("2026-10-01T00:00:00Z[UTC]"), record.time());
+        assertEquals(time.toInstant().toEpochMilli(), record.timeMillis());
+
+        LogRecord noTime = mapper.readValue("{\"name\":\"x\",\"msg\":\"y\",\"level\":30}", LogRecord.class);
+        assertEquals(TimeParser.NO_TIME, noTime.timeMillis());
+        assertFalse(LogFilter.after(time).test(noTime));
+        assertFalse(LogFilter.before(time).test(noTime));
+    }
+
+    @Test
+    public void testRecordTimesMatchTheMapper() throws IOException {
+        // A mapper which puts times in a zone of its own, as one adjusting
+        // to a context time zone would
+        AtomicInteger decoded = new AtomicInteger();
+        SimpleModule module = new SimpleModule();
+        module.addDeserializer(ZonedDateTime.class, new JsonDeserializer<ZonedDateTime>() {
+            @Override
+            public ZonedDateTime deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
+                decoded.incrementAndGet();
+                return ZonedDateTime.parse(p.getValueAsString()).withZoneSameInstant(ZoneId.of("America/New_York"));
+            }
+        });
+        ObjectMapper mapper = new ObjectMapper().registerModule(module);
+        String[] times = {"2026-10-01T00:00:00.000Z", "2026-10-01T00:00:01.250Z", "2026-10-01T02:00:02.500+02:00"};
+        Path file = Files.createTempFile("TimeParserTest", ".log");
+        try {
+            StringBuilder lines = new StringBuilder();
+            List<ZonedDateTime> expected = new ArrayList<>();
+            for (String time : times) {
+                lines.append(line(time)).append('\n');
+                expected.add(mapper.readValue("\"" + time + "\"", ZonedDateTime.class));
+            }
+            Files.write(file, lines.toString().getBytes(StandardCharsets.UTF_8));
+            LogStreamFactory f = new LogStreamFactory(file, mapper);
+            List<List<LogRecord>> results = new ArrayList<>();
+            try (Stream<LogRecord> s = f.stream()) {
+                results.add(s.collect(Collectors.toList()));
+            }
+            try (Stream<LogRecord> s = f.lazyStream(r -> true)) {
+                results.add(s.collect(Collectors.toList()));
+            }
+            try (Stream<LogRecord> s = f.stream(r -> true, "time")) {
+                results.add(s.collect(Collectors.toList()));
+            }
+            for (String time : times) {
+                results.add(Collections.singletonList(mapper.readValue(line(time), LogRecord.class)));
+            }
+            List<ZonedDateTime> got = new ArrayList<>();
+            for (List<LogRecord> records : results) {
+                for (LogRecord record : records) {
+                    got.add(record.time());
+                    assertEquals(record.time().toInstant().toEpochMilli(), record.timeMillis());
+                }
+            }
+            for (int i = 0; i < got.size(); i++) {
+                assertEquals(got.get(i).toString(), expected.get(i % times.length), got.get(i));
+                assertEquals(expected.get(i % times.length).getZone(), got.get(i).getZone());
+            }
+
+            // A time-only filter over lazy records never decodes a time
+            decoded.set(0);
+            try (Stream<LogRecord> s = f.lazyStream(LogFilter.after(expected.get(0).plusNanos(500000000)))) {
+                assertEquals(2, s.count());
+            }
+            assertEquals(0, decoded.get());
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private static String line(String time) {
+        return "{\"name\":\"x\",\"msg\":\"y\",\"hostname\":\"h\",\"pid\":1,"
+                + "\"level\":30,\"v\":0,\"time\":\"" + time + "\"}";
+    }
+
+    @Test
+    public void benchmark() {
+        if (!RUN_BENCHMARK) {
+            return;
+        }
+        char[][] times = new char[100000][];
+        for (int i = 0; i < times.length; i++) {
+            times[i] = TestLogs.START.plusNanos(i * 3000000L).toInstant().toString().toCharArray();
+        }
+        for (int round = 0; round < 5; round++) {
+            long hash = 0;
+            long start = System.nanoTime();
+            for (char[] c : times) {
+                hash += ZonedDateTime.parse(new String(c)).getNano();
+            }
+            long standard = System.nanoTime() - start;
+            start = System.nanoTime();
+            for (char[] c : times) {
+                hash += TimeParser.parse(c, 0, c.length).getNano();
+            }
+            long fast = System.nanoTime() - start;
+            start = System.nanoTime();
+            for (char[] c : times) {
+                hash += TimeParser.epochMillis(c, 0, c.length);
+            }
+            long millis = System.nanoTime() - start;
+            System.out.println("ZonedDateTime.parse " + standard / times.length + "ns, TimeParser.parse "
+                    + fast / times.length + "ns, epochMillis " + millis / times.length + "ns (" + hash + ")");
+        }
+    }
+}
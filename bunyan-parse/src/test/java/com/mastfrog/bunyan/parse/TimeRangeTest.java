@@ -0,0 +1,94 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 Tim Boudreau.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.mastfrog.bunyan.parse;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ *
+ * @author Tim Boudreau
+ */
+public class TimeRangeTest {
+
+    @Test
+    public void testTimeRangeMatchesFullScan() throws IOException {
+        Random rnd = new Random(33);
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            // Times jitter backwards by up to two seconds
+            ZonedDateTime time = TestLogs.START.plusSeconds(i).minusNanos(rnd.nextInt(2000) * 1000000L);
+            TestLogs.line(i, time, sb).append('\n');
+            if (i % 97 == 0) {
+                sb.append("some garbage\n");
+            }
+        }
+        Path file = TestLogs.write(sb.toString());
+        try {
+            LogStreamFactory f = new LogStreamFactory(file, TestLogs.mapper());
+            check(f, TestLogs.START.plusSeconds(100), TestLogs.START.plusSeconds(160), null);
+            check(f, TestLogs.START.plusSeconds(4990), null, null);
+            check(f, null, TestLogs.START.plusSeconds(10), null);
+            check(f, TestLogs.START.minusSeconds(100), TestLogs.START.plusSeconds(3), null);
+            check(f, TestLogs.START.plusSeconds(2000), TestLogs.START.plusSeconds(2500), LogFilter.named("thing1"));
+            check(f, TestLogs.START.plusSeconds(6000), null, null);
+            check(f, TestLogs.START.plusSeconds(300), TestLogs.START.plusSeconds(200), null);
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                long offset = new TimeSeek(channel, TestLogs.mapper()).offsetOf(TestLogs.START.plusSeconds(2500));
+                double fraction = offset / (double) channel.size();
+                assertTrue(fraction + "", fraction > 0.49 && fraction < 0.51);
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    private void check(LogStreamFactory f, ZonedDateTime from, ZonedDateTime to, LogFilter filter) throws IOException {
+        List<String> expected;
+        try (Stream<LogRecord> s = f.stream(filter)) {
+            expected = s.filter(r -> (from == null || !r.time().isBefore(from)) && (to == null || r.time().isBefore(to)))
+                    .map(LogRecord::msg).collect(Collectors.toList());
+        }
+        List<String> found;
+        try (Stream<LogRecord> s = f.timeRange(from, to, Duration.ofSeconds(3), filter)) {
+            found = s.map(LogRecord::msg).collect(Collectors.toList());
+        }
+        assertEquals(from + " - " + to, expected, found);
+        if (from != null && to != null && to.isAfter(from) && from.isAfter(TestLogs.START)) {
+            assertTrue(from + " - " + to, !found.isEmpty());
+        }
+    }
+}